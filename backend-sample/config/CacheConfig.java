@@ -0,0 +1,72 @@
+package com.rideshare.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.rideshare.dto.LocationSuggestionDTO;
+import com.rideshare.service.LocationService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Caffeine behind @Cacheable. Caffeine evicts with W-TinyLFU, so a burst of
+ * one-off keystroke strings cannot push out the prefixes everyone types.
+ * Only the caches declared here exist; an unknown cache name fails fast
+ * instead of growing without bounds.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    @Bean
+    public CacheManager cacheManager(MeterRegistry meterRegistry,
+                                     @Value("${locations.suggestions.cache.max-bytes:16777216}") long maxBytes,
+                                     @Value("${locations.suggestions.cache.ttl:10m}") Duration ttl) {
+        Cache<Object, Object> suggestions = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher(CacheConfig::estimateBytes)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setCacheNames(Collections.emptyList());
+        cacheManager.registerCustomCache(LocationService.SUGGESTIONS_CACHE, suggestions);
+
+        // Hits, misses and evictions are bound by actuator as cache.*; these add the ratio and the footprint
+        Gauge.builder("locations.suggestions.cache.hit.ratio", suggestions, cache -> cache.stats().hitRate())
+                .description("Share of suggestion lookups answered from the cache")
+                .register(meterRegistry);
+        Gauge.builder("locations.suggestions.cache.bytes", suggestions,
+                        cache -> cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L))
+                .description("Estimated heap held by cached suggestions")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        return cacheManager;
+    }
+
+    /**
+     * Rough heap size of one entry: map node and key, plus each suggestion and its text
+     */
+    private static int estimateBytes(Object key, Object value) {
+        int bytes = 96 + 2 * String.valueOf(key).length();
+        if (value instanceof Collection<?> items) {
+            for (Object item : items) {
+                bytes += 64;
+                if (item instanceof LocationSuggestionDTO suggestion && suggestion.getDescription() != null) {
+                    bytes += 2 * suggestion.getDescription().length();
+                }
+            }
+        }
+        return bytes;
+    }
+}
@@ -1,6 +1,8 @@
 package com.rideshare.controller;
 
+import com.rideshare.dto.CoordinatesDTO;
 import com.rideshare.dto.LocationSuggestionDTO;
+import com.rideshare.dto.ReverseGeocodeDTO;
 import com.rideshare.service.LocationService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -33,6 +35,41 @@ public class LocationController {
         return ResponseEntity.ok(suggestions);
     }
     
+    /**
+     * Get the known place nearest to a point
+     * @param lat Latitude of the point
+     * @param lng Longitude of the point
+     * @return The nearest place with its distance from the point
+     */
+    @GetMapping("/reverse")
+    public ResponseEntity<ReverseGeocodeDTO> reverseGeocode(
+            @RequestParam(value = "lat") double lat,
+            @RequestParam(value = "lng") double lng) {
+        
+        try {
+            ReverseGeocodeDTO place = locationService.reverseGeocode(lat, lng);
+            return place != null ? ResponseEntity.ok(place) : ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    /**
+     * Get the known place nearest to each of many points
+     * @param points The points, e.g. a batch of GPS pings
+     * @return The nearest place for each point, in the same order
+     */
+    @PostMapping("/reverse")
+    public ResponseEntity<List<ReverseGeocodeDTO>> reverseGeocodeBatch(
+            @RequestBody List<CoordinatesDTO> points) {
+        
+        try {
+            return ResponseEntity.ok(locationService.reverseGeocode(points));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
     /**
      * Get directions between two points
      * @param originLat Origin latitude
@@ -0,0 +1,33 @@
+package com.rideshare.dto;
+
+/**
+ * Data Transfer Object for a point to reverse geocode
+ */
+public class CoordinatesDTO {
+    private double lat;
+    private double lng;
+    
+    public CoordinatesDTO() {
+    }
+    
+    public CoordinatesDTO(double lat, double lng) {
+        this.lat = lat;
+        this.lng = lng;
+    }
+    
+    public double getLat() {
+        return lat;
+    }
+    
+    public void setLat(double lat) {
+        this.lat = lat;
+    }
+    
+    public double getLng() {
+        return lng;
+    }
+    
+    public void setLng(double lng) {
+        this.lng = lng;
+    }
+}
@@ -1,18 +1,40 @@
 package com.rideshare.service;
 
-import com.rideshare.dto.LocationDTO;
+import com.rideshare.dto.CoordinatesDTO;
 import com.rideshare.dto.LocationSuggestionDTO;
+import com.rideshare.dto.ReverseGeocodeDTO;
+import com.rideshare.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.scheduling.annotation.Scheduled;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Service for handling location-related operations
@@ -26,76 +48,173 @@ public class LocationService {
     @Value("${google.maps.api.key}")
     private String googleMapsApiKey;
     
-    // Pre-defined UAE locations for fast access
-    private final Map<String, LocationDTO> uaeLocations = new HashMap<>();
+    private static final int MAX_SUGGESTIONS = 5;
+    public static final String SUGGESTIONS_CACHE = "locationSuggestions";
+    private static final int REVERSE_CHUNK = 256;
+    private static final double METERS_PER_MILE = 1609.344;
     
-    public LocationService(RestTemplate restTemplate) {
+    private final ObjectProvider<CacheManager> cacheManager;
+    private final Path placeStorePath;
+    
+    // Places for suggestions and reverse geocoding: the mapped place store when configured, the UAE seed list otherwise.
+    // Replaced as a whole when the store file changes, so a query always sees one complete index.
+    private volatile PlaceIndex places;
+    private volatile FileTime placeStoreModified;
+    
+    // Batch reverse geocoding runs chunks of a batch in parallel on a bounded pool
+    private final ThreadPoolExecutor reverseExecutor;
+    private final int maxReverseBatch;
+    
+    private final Counter derivedSuggestions;
+    
+    public LocationService(RestTemplate restTemplate,
+                           ObjectProvider<CacheManager> cacheManager,
+                           MeterRegistry meterRegistry,
+                           @Value("${locations.store.path:}") String placeStorePath,
+                           @Value("${locations.reverse.threads:0}") int reverseThreads,
+                           @Value("${locations.reverse.queue-capacity:256}") int reverseQueueCapacity,
+                           @Value("${locations.reverse.max-batch:10000}") int maxReverseBatch) {
         this.restTemplate = restTemplate;
+        this.cacheManager = cacheManager;
+        this.placeStorePath = placeStorePath.isBlank() ? null : Paths.get(placeStorePath);
+        this.maxReverseBatch = maxReverseBatch;
+        
+        int poolSize = reverseThreads > 0 ? reverseThreads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.reverseExecutor = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(reverseQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "reverse-geocode-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
         
-        // Initialize UAE locations
-        initializeUAELocations();
+        this.derivedSuggestions = Counter.builder("locations.suggestions.derived")
+                .description("Suggestion cache misses answered by filtering a cached shorter prefix")
+                .register(meterRegistry);
+        
+        if (this.placeStorePath == null || !reloadPlaceStore()) {
+            // Initialize UAE locations
+            this.places = initializeUAELocations();
+        }
+    }
+    
+    /**
+     * Swap in a new place store when the file has been replaced, without a restart.
+     * GazetteerCompiler renames the new file over the old one, so the previous
+     * mapping stays valid for queries still running against it.
+     */
+    @Scheduled(fixedDelayString = "${locations.store.check-interval:30000}")
+    public void checkPlaceStore() {
+        if (placeStorePath == null) {
+            return;
+        }
+        try {
+            FileTime modified = Files.getLastModifiedTime(placeStorePath);
+            if (!modified.equals(placeStoreModified)) {
+                reloadPlaceStore();
+            }
+        } catch (IOException e) {
+            logger.warn("Cannot check place store {}: {}", placeStorePath, e.getMessage());
+        }
+    }
+    
+    /**
+     * Map the place store and make it the current index
+     * @return True if the store was loaded, false if the current index was kept
+     */
+    private boolean reloadPlaceStore() {
+        long started = System.nanoTime();
+        try {
+            FileTime modified = Files.getLastModifiedTime(placeStorePath);
+            PlaceIndex loaded = PlaceIndex.open(placeStorePath);
+            this.places = loaded;
+            this.placeStoreModified = modified;
+            Cache cache = suggestionCache();
+            if (cache != null) {
+                cache.clear();
+            }
+            logger.info("Loaded {} places from {} in {} ms", loaded.size(), placeStorePath,
+                    (System.nanoTime() - started) / 1_000_000);
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            // A store from an older GazetteerCompiler is rejected too; recompile it
+            logger.error("Cannot load place store {}: {}", placeStorePath, e.getMessage());
+            return false;
+        }
     }
     
-    private void initializeUAELocations() {
+    /**
+     * Built-in places used when no place store is configured.
+     * Popularity ranks the suggestions for a prefix; higher comes first
+     */
+    private PlaceIndex initializeUAELocations() {
+        PlaceIndex.Builder builder = new PlaceIndex.Builder();
+        
         // Abu Dhabi locations
-        uaeLocations.put("abu dhabi", new LocationDTO("Abu Dhabi, UAE", 24.4539, 54.3773));
-        uaeLocations.put("abu dhabi corniche", new LocationDTO("Abu Dhabi Corniche, UAE", 24.4672, 54.3567));
-        uaeLocations.put("abu dhabi mall", new LocationDTO("Abu Dhabi Mall, UAE", 24.4979, 54.3809));
-        uaeLocations.put("sheikh zayed grand mosque", new LocationDTO("Sheikh Zayed Grand Mosque, Abu Dhabi, UAE", 24.4128, 54.4750));
+        builder.add("Abu Dhabi, UAE", 24.4539, 54.3773, 100);
+        builder.add("Abu Dhabi Corniche, UAE", 24.4672, 54.3567, 60);
+        builder.add("Abu Dhabi Mall, UAE", 24.4979, 54.3809, 55);
+        builder.add("Sheikh Zayed Grand Mosque, Abu Dhabi, UAE", 24.4128, 54.4750, 70);
         
         // Reem Island locations
-        uaeLocations.put("reem island", new LocationDTO("Reem Island, Abu Dhabi, UAE", 24.4991, 54.4017));
-        uaeLocations.put("reem mall", new LocationDTO("Reem Mall, Reem Island, Abu Dhabi, UAE", 24.5038, 54.4066));
-        uaeLocations.put("reem village", new LocationDTO("Reem Village, Reem Island, Abu Dhabi, UAE", 24.4924, 54.3972));
+        builder.add("Reem Island, Abu Dhabi, UAE", 24.4991, 54.4017, 50);
+        builder.add("Reem Mall, Reem Island, Abu Dhabi, UAE", 24.5038, 54.4066, 40);
+        builder.add("Reem Village, Reem Island, Abu Dhabi, UAE", 24.4924, 54.3972, 20);
         
         // Yas Island locations
-        uaeLocations.put("yas island", new LocationDTO("Yas Island, Abu Dhabi, UAE", 24.4959, 54.6056));
-        uaeLocations.put("yas mall", new LocationDTO("Yas Mall, Abu Dhabi, UAE", 24.4913, 54.6068));
-        uaeLocations.put("ferrari world", new LocationDTO("Ferrari World, Yas Island, Abu Dhabi, UAE", 24.4831, 54.6036));
+        builder.add("Yas Island, Abu Dhabi, UAE", 24.4959, 54.6056, 50);
+        builder.add("Yas Mall, Abu Dhabi, UAE", 24.4913, 54.6068, 45);
+        builder.add("Ferrari World, Yas Island, Abu Dhabi, UAE", 24.4831, 54.6036, 55);
         
         // Dubai locations
-        uaeLocations.put("dubai", new LocationDTO("Dubai, UAE", 25.2048, 55.2708));
-        uaeLocations.put("dubai mall", new LocationDTO("Dubai Mall, Dubai, UAE", 25.1972, 55.2744));
-        uaeLocations.put("burj khalifa", new LocationDTO("Burj Khalifa, Dubai, UAE", 25.1972, 55.2740));
-        uaeLocations.put("dubai marina", new LocationDTO("Dubai Marina, Dubai, UAE", 25.0763, 55.1304));
+        builder.add("Dubai, UAE", 25.2048, 55.2708, 100);
+        builder.add("Dubai Mall, Dubai, UAE", 25.1972, 55.2744, 80);
+        builder.add("Burj Khalifa, Dubai, UAE", 25.1972, 55.2740, 75);
+        builder.add("Dubai Marina, Dubai, UAE", 25.0763, 55.1304, 65);
+        
+        return builder.build();
     }
     
     /**
      * Get location suggestions based on a query
      * @param query The search text
-     * @return A list of location suggestions
+     * @return A list of location suggestions, most popular first
      */
-    @Cacheable("locationSuggestions")
+    @Cacheable(value = SUGGESTIONS_CACHE, key = "T(com.rideshare.service.LocationService).cacheKey(#query)",
+            unless = "T(com.rideshare.service.LocationService).isPartial(#result)")
     public List<LocationSuggestionDTO> getSuggestions(String query) {
-        logger.info("Getting location suggestions for query: {}", query);
+        logger.debug("Getting location suggestions for query: {}", query);
         
         if (query == null || query.trim().isEmpty()) {
             return new ArrayList<>();
         }
         
-        String queryLower = query.toLowerCase().trim();
-        List<LocationSuggestionDTO> suggestions = new ArrayList<>();
-        
-        // First check our pre-defined UAE locations for fast results
-        for (Map.Entry<String, LocationDTO> entry : uaeLocations.entrySet()) {
-            if (entry.getKey().contains(queryLower) || 
-                handleTyposAndPartials(entry.getKey(), queryLower)) {
-                LocationDTO location = entry.getValue();
-                suggestions.add(new LocationSuggestionDTO(
-                    location.getAddress(),
-                    location.getLatitude(),
-                    location.getLongitude()
-                ));
-                
-                // Limit to 5 suggestions from our database
-                if (suggestions.size() >= 5) {
-                    break;
-                }
-            }
+        List<LocationSuggestionDTO> derived = deriveFromCachedPrefix(cacheKey(query));
+        if (derived != null) {
+            derivedSuggestions.increment();
+            return derived;
+        }
+        
+        // Every word of the query matches the start of a word in the name, or a close typo of one
+        PlaceIndex index = places;
+        PlaceIndex.Matches matches = index.match(query, MAX_SUGGESTIONS);
+        List<LocationSuggestionDTO> suggestions = matches.truncated()
+            ? new PartialSuggestions(matches.places().length)
+            : new ArrayList<>(matches.places().length);
+        for (int place : matches.places()) {
+            suggestions.add(new LocationSuggestionDTO(
+                index.getName(place),
+                index.getLatitude(place),
+                index.getLongitude(place)
+            ));
         }
         
         // If we don't have enough suggestions, call external API
-        if (suggestions.size() < 5 && googleMapsApiKey != null && !googleMapsApiKey.isEmpty()) {
+        if (suggestions.size() < MAX_SUGGESTIONS && googleMapsApiKey != null && !googleMapsApiKey.isEmpty()) {
             try {
                 // Call Google Places API for more suggestions
                 // This would be implemented in a production system
@@ -109,64 +228,149 @@ public class LocationService {
     }
     
     /**
-     * Handle typos and partial matches
-     * @param baseKey The original key
-     * @param query The user query
-     * @return True if the query is a typo or partial match for the key
+     * Whether the suggestions come from a search cut short by the index's candidate cap.
+     * Those are not cached: a short cached list is taken to hold every match of its query.
      */
-    private boolean handleTyposAndPartials(String baseKey, String query) {
-        // Check for partial matches (start of words)
-        String[] baseWords = baseKey.split("\\s+");
-        for (String word : baseWords) {
-            if (word.startsWith(query) || query.startsWith(word)) {
-                return true;
-            }
+    public static boolean isPartial(List<LocationSuggestionDTO> suggestions) {
+        return suggestions instanceof PartialSuggestions;
+    }
+    
+    /**
+     * Cache key for a query: lower case, trimmed, with runs of spaces collapsed,
+     * so each keystroke's key extends the previous one
+     */
+    public static String cacheKey(String query) {
+        if (query == null) {
+            return "";
         }
-        
-        // Handle common typos for "abu dhabi"
-        if (baseKey.contains("abu dhabi") && 
-            (query.contains("dbu") || query.contains("abu") || 
-             query.contains("abo") || 
-             (query.contains("ab") && query.contains("dha")))) {
-            return true;
+        String trimmed = query.trim().toLowerCase(Locale.ROOT);
+        StringBuilder key = new StringBuilder(trimmed.length());
+        for (int i = 0; i < trimmed.length(); i++) {
+            char c = trimmed.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                key.append(c);
+            } else if (key.charAt(key.length() - 1) != ' ') {
+                key.append(' ');
+            }
         }
-        
-        // Handle common typos for "reem"
-        if (baseKey.contains("reem") && 
-            (query.contains("rem") || query.contains("riim") || 
-             query.contains("rim"))) {
-            return true;
+        return key.toString();
+    }
+    
+    /**
+     * Answer a cache miss from the longest cached prefix of the query. A cached
+     * result shorter than the limit lists every match of that prefix, since
+     * truncated searches are not cached, so the matches of the longer query are
+     * among them, in the same order.
+     * @param key The cache key of the query
+     * @return The filtered suggestions, or null if the search has to run
+     */
+    private List<LocationSuggestionDTO> deriveFromCachedPrefix(String key) {
+        Cache cache = suggestionCache();
+        if (cache == null) {
+            return null;
         }
-        
-        // Check Levenshtein distance for small typos
-        if (baseKey.length() > 3 && query.length() > 3) {
-            int distance = levenshteinDistance(baseKey, query);
-            return distance <= 2; // Allow up to 2 character differences
+        for (int end = key.length() - 1; end > 0; end--) {
+            Cache.ValueWrapper cached = cache.get(key.substring(0, end));
+            if (cached == null) {
+                continue;
+            }
+            if (!(cached.get() instanceof List<?> prefixSuggestions) || prefixSuggestions.size() >= MAX_SUGGESTIONS) {
+                return null;
+            }
+            List<LocationSuggestionDTO> suggestions = new ArrayList<>(prefixSuggestions.size());
+            for (Object item : prefixSuggestions) {
+                if (item instanceof LocationSuggestionDTO suggestion
+                        && PlaceIndex.matchesPrefixes(suggestion.getDescription(), key)) {
+                    suggestions.add(suggestion);
+                }
+            }
+            // Nothing left may mean the longer query needs typo matching, which only the search does
+            return suggestions.isEmpty() ? null : suggestions;
         }
-        
-        return false;
+        return null;
+    }
+    
+    private Cache suggestionCache() {
+        CacheManager manager = cacheManager.getIfAvailable();
+        return manager != null ? manager.getCache(SUGGESTIONS_CACHE) : null;
     }
     
     /**
-     * Calculate Levenshtein distance between two strings
-     * Used for fuzzy matching and handling typos
+     * Find the known place nearest to a point
+     * @param latitude Latitude of the point
+     * @param longitude Longitude of the point
+     * @return The nearest place, or null if there are no places
      */
-    private int levenshteinDistance(String a, String b) {
-        int[] costs = new int[b.length() + 1];
-        for (int j = 0; j <= b.length(); j++) {
-            costs[j] = j;
-        }
-        for (int i = 1; i <= a.length(); i++) {
-            costs[0] = i;
-            int nw = i - 1;
-            for (int j = 1; j <= b.length(); j++) {
-                int cj = Math.min(1 + Math.min(costs[j], costs[j - 1]), 
-                                  a.charAt(i - 1) == b.charAt(j - 1) ? nw : nw + 1);
-                nw = costs[j];
-                costs[j] = cj;
+    public ReverseGeocodeDTO reverseGeocode(double latitude, double longitude) {
+        checkCoordinates(latitude, longitude);
+        return reverseGeocode(places, latitude, longitude);
+    }
+    
+    /**
+     * Find the known place nearest to each of many points, e.g. a driver's GPS pings.
+     * Chunks of the batch are looked up in parallel, all against the same place store.
+     * @param points The points to look up
+     * @return The nearest place for each point, in the same order (null where there are no places)
+     */
+    public List<ReverseGeocodeDTO> reverseGeocode(List<CoordinatesDTO> points) {
+        if (points.size() > maxReverseBatch) {
+            throw new IllegalArgumentException("At most " + maxReverseBatch + " points per request");
+        }
+        for (CoordinatesDTO point : points) {
+            checkCoordinates(point.getLat(), point.getLng());
+        }
+        
+        PlaceIndex index = places;
+        ReverseGeocodeDTO[] results = new ReverseGeocodeDTO[points.size()];
+        if (points.size() <= REVERSE_CHUNK) {
+            reverseGeocode(index, points, results, 0, points.size());
+            return Arrays.asList(results);
+        }
+        
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+        try {
+            for (int from = 0; from < points.size(); from += REVERSE_CHUNK) {
+                int start = from;
+                int end = Math.min(from + REVERSE_CHUNK, points.size());
+                chunks.add(CompletableFuture.runAsync(
+                    () -> reverseGeocode(index, points, results, start, end), reverseExecutor));
             }
+        } catch (RejectedExecutionException e) {
+            throw new TooManyRequestsException("Reverse geocoding is busy, please try again shortly", 1);
+        }
+        CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0])).join();
+        return Arrays.asList(results);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        reverseExecutor.shutdown();
+    }
+    
+    private void reverseGeocode(PlaceIndex index, List<CoordinatesDTO> points, ReverseGeocodeDTO[] results,
+                                int from, int to) {
+        for (int i = from; i < to; i++) {
+            CoordinatesDTO point = points.get(i);
+            results[i] = reverseGeocode(index, point.getLat(), point.getLng());
+        }
+    }
+    
+    private ReverseGeocodeDTO reverseGeocode(PlaceIndex index, double latitude, double longitude) {
+        int place = index.nearest(latitude, longitude);
+        if (place < 0) {
+            return null;
+        }
+        double placeLatitude = index.getLatitude(place);
+        double placeLongitude = index.getLongitude(place);
+        double distance = calculateHaversineDistance(latitude, longitude, placeLatitude, placeLongitude);
+        return new ReverseGeocodeDTO(index.getName(place), placeLatitude, placeLongitude,
+            distance * METERS_PER_MILE);
+    }
+    
+    private void checkCoordinates(double latitude, double longitude) {
+        if (!(latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180)) {
+            throw new IllegalArgumentException("Invalid coordinates: " + latitude + ", " + longitude);
         }
-        return costs[b.length()];
     }
     
     /**
@@ -229,4 +433,13 @@ public class LocationService {
         
         return R * c; // Distance in miles
     }
+    
+    /**
+     * Suggestions from a truncated search, marked so they are left out of the cache
+     */
+    private static final class PartialSuggestions extends ArrayList<LocationSuggestionDTO> {
+        private PartialSuggestions(int initialCapacity) {
+            super(initialCapacity);
+        }
+    }
 } 
\ No newline at end of file
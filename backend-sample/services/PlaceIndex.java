@@ -0,0 +1,1012 @@
+package com.rideshare.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable autocomplete index over place names.
+ *
+ * Tokens of every name are kept once, sorted, in a single char pool, so the
+ * tokens starting with a prefix form one contiguous range found by binary
+ * search. Each token has a posting list of places, most popular first, and a
+ * segment tree over the tokens' best places lets a prefix range be walked in
+ * popularity order without visiting every token in it. Typos are matched with
+ * a symmetric-delete table: the 4- and 5-character heads of each token and
+ * their single-character deletions, hashed to 64 bits. Nearest-place lookups
+ * use an implicit KD-tree: place ids permuted so that each range's middle entry
+ * splits it by latitude or longitude, alternating with depth.
+ *
+ * Everything lives in one flat little-endian buffer of primitive sections, so
+ * the same index is either built on the heap or memory-mapped from a file
+ * written by {@link #writeTo(Path)}. Opening a mapped file only reads the
+ * header; pages are faulted in by the OS as queries touch them.
+ *
+ * Queries allocate a handful of small arrays; walking and checking candidates
+ * allocates nothing. Instances are safe to share between threads.
+ */
+public class PlaceIndex {
+
+    private static final int MAGIC = 0x58494c50; // "PLIX"
+    private static final int FORMAT_VERSION = 3;
+    private static final int HEADER_BYTES = 48;
+
+    private static final int MIN_TYPO_LENGTH = 4;
+    private static final int MAX_TYPO_KEY = 5;
+    private static final int MAX_TYPO_QUERY = 32;
+    private static final int MAX_CANDIDATES = 4096;
+    private static final Matches NO_MATCHES = new Matches(new int[0], false);
+
+    private final ByteBuffer data;
+    private final int placeCount;
+    private final int tokenCount;
+
+    // Places, by id
+    private final IntBuffer nameOffsets;
+    private final ByteBuffer nameBytes; // UTF-8
+    private final DoubleBuffer latitudes;
+    private final DoubleBuffer longitudes;
+    private final IntBuffer popularity;
+    private final IntBuffer placeTokenOffsets;
+    private final IntBuffer placeTokens; // token ids of each place, ascending
+
+    // Sorted token dictionary
+    private final CharBuffer tokenChars;
+    private final IntBuffer tokenOffsets;
+    private final IntBuffer postingOffsets;
+    private final IntBuffer postings; // place ids, most popular first within each token
+
+    // Segment tree of the token with the best first posting, per node
+    private final LongBuffer headKeys;
+    private final IntBuffer bestToken;
+    private final int leafBase;
+
+    // Symmetric-delete table: open addressing on key hash, chained entries
+    private final LongBuffer typoKeys;
+    private final IntBuffer typoHeads;
+    private final IntBuffer typoEntryTokens;
+    private final IntBuffer typoEntryNext;
+    private final int typoMask;
+
+    // Implicit KD-tree of place ids
+    private final IntBuffer spatialOrder;
+
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    private PlaceIndex(ByteBuffer data) {
+        this.data = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (this.data.limit() < HEADER_BYTES || this.data.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("not a place index");
+        }
+        if (this.data.getInt(4) != FORMAT_VERSION) {
+            throw new IllegalArgumentException("unsupported format version " + this.data.getInt(4));
+        }
+        Layout layout = new Layout(this.data);
+        this.placeCount = layout.placeCount;
+        this.tokenCount = layout.tokenCount;
+        this.leafBase = layout.leafBase;
+        this.typoMask = layout.typoSlots - 1;
+
+        // Sections in file order; see Layout
+        this.nameOffsets = layout.section(this.data, 4L * (placeCount + 1)).asIntBuffer();
+        this.nameBytes = layout.section(this.data, layout.nameByteCount);
+        this.latitudes = layout.section(this.data, 8L * placeCount).asDoubleBuffer();
+        this.longitudes = layout.section(this.data, 8L * placeCount).asDoubleBuffer();
+        this.popularity = layout.section(this.data, 4L * placeCount).asIntBuffer();
+        this.placeTokenOffsets = layout.section(this.data, 4L * (placeCount + 1)).asIntBuffer();
+        this.placeTokens = layout.section(this.data, 4L * layout.placeTokenCount).asIntBuffer();
+        this.tokenChars = layout.section(this.data, 2L * layout.tokenCharCount).asCharBuffer();
+        this.tokenOffsets = layout.section(this.data, 4L * (tokenCount + 1)).asIntBuffer();
+        this.postingOffsets = layout.section(this.data, 4L * (tokenCount + 1)).asIntBuffer();
+        this.postings = layout.section(this.data, 4L * layout.postingCount).asIntBuffer();
+        this.headKeys = layout.section(this.data, 8L * tokenCount).asLongBuffer();
+        this.bestToken = layout.section(this.data, 8L * leafBase).asIntBuffer();
+        this.typoKeys = layout.section(this.data, 8L * layout.typoSlots).asLongBuffer();
+        this.typoHeads = layout.section(this.data, 4L * layout.typoSlots).asIntBuffer();
+        this.typoEntryTokens = layout.section(this.data, 4L * layout.typoEntries).asIntBuffer();
+        this.typoEntryNext = layout.section(this.data, 4L * layout.typoEntries).asIntBuffer();
+        this.spatialOrder = layout.section(this.data, 4L * placeCount).asIntBuffer();
+        if (layout.position != this.data.limit()) {
+            throw new IllegalArgumentException("expected " + layout.position + " bytes, found " + this.data.limit());
+        }
+    }
+
+    /**
+     * Map an index file written by {@link #writeTo(Path)}. The mapping outlives
+     * the file name, so the file may be replaced while this instance is in use,
+     * but it must never be rewritten in place.
+     * @param file The index file
+     * @return The mapped index
+     * @throws IOException If the file cannot be read or is not a place index
+     */
+    public static PlaceIndex open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Place index " + file + " is larger than 2 GB");
+            }
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            try {
+                return new PlaceIndex(mapped);
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new IOException("Invalid place index " + file + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Write the index to a temporary file next to the target, then rename it
+     * over the target, so readers see either the old file or the complete new one
+     * @param file The index file to create or replace
+     * @throws IOException If the file cannot be written
+     */
+    public void writeTo(Path file) throws IOException {
+        Path target = file.toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer out = data.duplicate();
+                out.clear();
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public int size() {
+        return placeCount;
+    }
+
+    public String getName(int place) {
+        int start = nameOffsets.get(place);
+        byte[] bytes = new byte[nameOffsets.get(place + 1) - start];
+        nameBytes.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public double getLatitude(int place) {
+        return latitudes.get(place);
+    }
+
+    public double getLongitude(int place) {
+        return longitudes.get(place);
+    }
+
+    /**
+     * Find the place closest to a point. Distances are measured on an
+     * equirectangular projection centred on the point, which is accurate at
+     * street and city scale; the antimeridian is not wrapped.
+     * @param latitude Latitude of the point
+     * @param longitude Longitude of the point
+     * @return The closest place id, or -1 if the index is empty
+     */
+    public int nearest(double latitude, double longitude) {
+        Nearest search = new Nearest(latitude, longitude);
+        nearest(search, 0, placeCount, true);
+        return search.place;
+    }
+
+    private void nearest(Nearest search, int from, int to, boolean byLatitude) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            int place = spatialOrder.get(mid);
+            double latitude = latitudes.get(place);
+            double longitude = longitudes.get(place);
+            search.offer(place, latitude, longitude);
+
+            // Search the query's side of the split first; the other side only if the split is closer than the best
+            double split = byLatitude
+                    ? latitude - search.latitude
+                    : (longitude - search.longitude) * search.longitudeScale;
+            if (split > 0) {
+                nearest(search, from, mid, !byLatitude);
+                from = mid + 1;
+            } else {
+                nearest(search, mid + 1, to, !byLatitude);
+                to = mid;
+            }
+            if (split * split >= search.bestDistance) {
+                return;
+            }
+            byLatitude = !byLatitude;
+        }
+    }
+
+    /**
+     * Find the most popular places whose names contain every word of the query.
+     * Every word matches as a prefix; a word with no prefix match matches
+     * tokens within one or two typos (two from 8 characters on).
+     * @param query The text typed so far
+     * @param limit Maximum number of places to return
+     * @return Place ids, most popular first
+     */
+    public int[] search(String query, int limit) {
+        return match(query, limit).places();
+    }
+
+    /**
+     * Like {@link #search(String, int)}, but also says whether the candidate cap cut the search short
+     */
+    public Matches match(String query, int limit) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty() || limit <= 0 || placeCount == 0) {
+            return NO_MATCHES;
+        }
+
+        int termCount = terms.size();
+        int[] rangeStart = new int[termCount];
+        int[] rangeEnd = new int[termCount];
+        int[][] typoTokens = new int[termCount][];
+        int driving = -1;
+        long drivingPostings = Long.MAX_VALUE;
+        for (int i = 0; i < termCount; i++) {
+            String term = terms.get(i);
+            rangeStart[i] = lowerBound(term, false);
+            rangeEnd[i] = lowerBound(term, true);
+            long termPostings;
+            if (rangeStart[i] < rangeEnd[i]) {
+                termPostings = postingOffsets.get(rangeEnd[i]) - postingOffsets.get(rangeStart[i]);
+            } else {
+                typoTokens[i] = typoMatches(term);
+                if (typoTokens[i].length == 0) {
+                    return NO_MATCHES;
+                }
+                termPostings = 0;
+                for (int t : typoTokens[i]) {
+                    termPostings += postingOffsets.get(t + 1) - postingOffsets.get(t);
+                }
+            }
+            // Drive the search from the most selective word, check the others per candidate
+            if (termPostings < drivingPostings) {
+                drivingPostings = termPostings;
+                driving = i;
+            }
+        }
+
+        Scratch heap = scratch.get();
+        heap.clear();
+        if (typoTokens[driving] != null) {
+            for (int t : typoTokens[driving]) {
+                heap.push(rankKey(postings.get(postingOffsets.get(t))), Scratch.CURSOR,
+                        postingOffsets.get(t), postingOffsets.get(t + 1), t);
+            }
+        } else {
+            pushRange(heap, rangeStart[driving], rangeEnd[driving]);
+        }
+
+        int[] results = new int[limit];
+        int found = 0;
+        int scanned = 0;
+        while (found < limit && heap.size > 0 && scanned++ < MAX_CANDIDATES) {
+            int top = heap.pop();
+            int kind = heap.kind[top];
+            int place;
+            if (kind == Scratch.CURSOR) {
+                int position = heap.first[top];
+                int end = heap.second[top];
+                place = postings.get(position);
+                if (position + 1 < end) {
+                    heap.push(rankKey(postings.get(position + 1)), Scratch.CURSOR, position + 1, end, heap.token[top]);
+                }
+            } else {
+                int start = heap.first[top];
+                int end = heap.second[top];
+                int best = heap.token[top];
+                place = postings.get(postingOffsets.get(best));
+                if (postingOffsets.get(best) + 1 < postingOffsets.get(best + 1)) {
+                    heap.push(rankKey(postings.get(postingOffsets.get(best) + 1)), Scratch.CURSOR,
+                            postingOffsets.get(best) + 1, postingOffsets.get(best + 1), best);
+                }
+                pushRange(heap, start, best);
+                pushRange(heap, best + 1, end);
+            }
+
+            if (!contains(results, found, place)
+                    && matchesOtherTerms(place, driving, rangeStart, rangeEnd, typoTokens)) {
+                results[found++] = place;
+            }
+        }
+        // Candidates were left unchecked when the cap stopped the walk short of the limit
+        boolean truncated = found < limit && heap.size > 0;
+        return new Matches(found == limit ? results : Arrays.copyOf(results, found), truncated);
+    }
+
+    private void pushRange(Scratch heap, int start, int end) {
+        if (start >= end) {
+            return;
+        }
+        int best = bestInRange(start, end);
+        heap.push(headKeys.get(best), Scratch.RANGE, start, end, best);
+    }
+
+    private boolean matchesOtherTerms(int place, int driving, int[] rangeStart, int[] rangeEnd, int[][] typoTokens) {
+        int from = placeTokenOffsets.get(place);
+        int to = placeTokenOffsets.get(place + 1);
+        for (int term = 0; term < rangeStart.length; term++) {
+            if (term == driving) {
+                continue;
+            }
+            boolean matched = false;
+            for (int i = from; i < to && !matched; i++) {
+                int token = placeTokens.get(i);
+                matched = typoTokens[term] != null
+                        ? Arrays.binarySearch(typoTokens[term], token) >= 0
+                        : token >= rangeStart[term] && token < rangeEnd[term];
+            }
+            if (!matched) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param pastPrefix False for the first token starting with the term (or after it),
+     *                   true for the first token after all tokens starting with it
+     */
+    private int lowerBound(String term, boolean pastPrefix) {
+        int low = 0;
+        int high = tokenCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = comparePrefix(mid, term);
+            if (cmp < 0 || (pastPrefix && cmp == 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compare a token with a term, treating tokens that start with the term as equal
+     */
+    private int comparePrefix(int token, String term) {
+        int offset = tokenOffsets.get(token);
+        int length = tokenOffsets.get(token + 1) - offset;
+        int n = Math.min(length, term.length());
+        for (int i = 0; i < n; i++) {
+            int diff = tokenChars.get(offset + i) - term.charAt(i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length < term.length() ? -1 : 0;
+    }
+
+    private int bestInRange(int start, int end) {
+        int best = -1;
+        for (int low = start + leafBase, high = end + leafBase; low < high; low >>= 1, high >>= 1) {
+            if ((low & 1) == 1) {
+                best = better(headKeys, best, bestToken.get(low++));
+            }
+            if ((high & 1) == 1) {
+                best = better(headKeys, best, bestToken.get(--high));
+            }
+        }
+        return best;
+    }
+
+    private static int better(LongBuffer headKeys, int a, int b) {
+        if (a < 0) {
+            return b;
+        }
+        if (b < 0) {
+            return a;
+        }
+        return headKeys.get(a) >= headKeys.get(b) ? a : b;
+    }
+
+    private long rankKey(int place) {
+        return rankKey(popularity.get(place), place);
+    }
+
+    /**
+     * Higher is better: popularity first, then the lower place id
+     */
+    private static long rankKey(int placePopularity, int place) {
+        return ((long) placePopularity << 32) | (Integer.MAX_VALUE - place);
+    }
+
+    /**
+     * @return Ids of tokens whose start is within the allowed typos of the term, ascending
+     */
+    private int[] typoMatches(String term) {
+        if (term.length() < MIN_TYPO_LENGTH || term.length() > MAX_TYPO_QUERY) {
+            return new int[0];
+        }
+        char[] chars = term.toCharArray();
+        int keyLength = Math.min(chars.length, MAX_TYPO_KEY);
+        int maxDistance = chars.length >= 8 ? 2 : 1;
+        int[] rows = new int[3 * (MAX_TYPO_QUERY + 2)];
+
+        int[] matches = new int[16];
+        int count = 0;
+        for (int skip = -1; skip < keyLength; skip++) {
+            long key = typoKey(chars, 0, keyLength, skip);
+            int slot = findSlot(typoKeys, typoHeads, typoMask, key);
+            for (int entry = typoKeys.get(slot) == key ? typoHeads.get(slot) : -1; entry >= 0; entry = typoEntryNext.get(entry)) {
+                int token = typoEntryTokens.get(entry);
+                if (prefixDistance(chars, token, maxDistance, rows) <= maxDistance) {
+                    if (count == matches.length) {
+                        matches = Arrays.copyOf(matches, count * 2);
+                    }
+                    matches[count++] = token;
+                }
+            }
+        }
+        // A token reached through several deletions is listed once
+        Arrays.sort(matches, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || matches[unique - 1] != matches[i]) {
+                matches[unique++] = matches[i];
+            }
+        }
+        return Arrays.copyOf(matches, unique);
+    }
+
+    /**
+     * Optimal string alignment distance between the term and the closest of the
+     * token's prefixes one shorter, as long as, or one longer than the term
+     */
+    private int prefixDistance(char[] term, int token, int maxDistance, int[] rows) {
+        int offset = tokenOffsets.get(token);
+        int columns = Math.min(tokenOffsets.get(token + 1) - offset, term.length + 1);
+        int width = MAX_TYPO_QUERY + 2;
+        // Three rolling rows: two back, previous, current
+        for (int j = 0; j <= columns; j++) {
+            rows[width + j] = j;
+        }
+        for (int i = 1; i <= term.length; i++) {
+            int previous = ((i - 1) % 2 == 0 ? 1 : 2) * width;
+            int current = (i % 2 == 0 ? 1 : 2) * width;
+            int twoBack = 0;
+            rows[current] = i;
+            int rowMin = i;
+            for (int j = 1; j <= columns; j++) {
+                int cost = term[i - 1] == tokenChars.get(offset + j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(rows[previous + j] + 1, rows[current + j - 1] + 1),
+                        rows[previous + j - 1] + cost);
+                if (i > 1 && j > 1 && term[i - 1] == tokenChars.get(offset + j - 2)
+                        && term[i - 2] == tokenChars.get(offset + j - 1)) {
+                    value = Math.min(value, rows[twoBack + j - 2] + 1);
+                }
+                rows[current + j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > maxDistance) {
+                return rowMin;
+            }
+            System.arraycopy(rows, previous, rows, twoBack, columns + 1);
+        }
+        int last = (term.length % 2 == 0 ? 1 : 2) * width;
+        int best = Integer.MAX_VALUE;
+        for (int j = Math.max(term.length - 1, 0); j <= Math.min(term.length + 1, columns); j++) {
+            best = Math.min(best, rows[last + j]);
+        }
+        return best;
+    }
+
+    private static int findSlot(LongBuffer keys, IntBuffer heads, int mask, long key) {
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        while (heads.get(slot) >= 0 && keys.get(slot) != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of chars[offset, offset + length) without the char at skip (-1 for none).
+     * Seeded with the length of what is hashed, not of the head it came from, so a deletion from
+     * a 5-char query meets the 4-char head of a token that is one character shorter.
+     */
+    private static long typoKey(char[] chars, int offset, int length, int skip) {
+        long hash = 0xcbf29ce484222325L ^ (skip < 0 ? length : length - 1);
+        for (int i = 0; i < length; i++) {
+            if (i != skip) {
+                hash ^= chars[offset + i];
+                hash *= 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Whether every word of the query starts a word of the name. This is the
+     * match search applies when each word of the query starts some indexed token.
+     */
+    public static boolean matchesPrefixes(String name, String query) {
+        List<String> nameTokens = tokenize(name);
+        for (String term : tokenize(query)) {
+            boolean found = false;
+            for (int i = 0; i < nameTokens.size() && !found; i++) {
+                found = nameTokens.get(i).startsWith(term);
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lower-case words of a name or query; anything but letters and digits separates words
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            } else if (word.length() > 0) {
+                String token = word.toString();
+                if (!tokens.contains(token)) {
+                    tokens.add(token);
+                }
+                word.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Places found by a search, and whether the search stopped at its candidate
+     * cap before it had the limit. A truncated result may leave out places that
+     * match, so it does not list every match of the query.
+     */
+    public record Matches(int[] places, boolean truncated) {
+    }
+
+    /**
+     * State of one nearest-place search, in degrees of latitude
+     */
+    private static final class Nearest {
+        private final double latitude;
+        private final double longitude;
+        private final double longitudeScale;
+        private double bestDistance = Double.POSITIVE_INFINITY;
+        private int place = -1;
+
+        private Nearest(double latitude, double longitude) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.longitudeScale = Math.cos(Math.toRadians(latitude));
+        }
+
+        private void offer(int candidate, double candidateLatitude, double candidateLongitude) {
+            double dy = candidateLatitude - latitude;
+            double dx = (candidateLongitude - longitude) * longitudeScale;
+            double distance = dx * dx + dy * dy;
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                place = candidate;
+            }
+        }
+    }
+
+    /**
+     * Per-thread max-heap of search candidates, reused across queries
+     */
+    private static final class Scratch {
+        private static final int CURSOR = 0;
+        private static final int RANGE = 1;
+        private static final int CAPACITY = MAX_CANDIDATES * 2 + 64;
+
+        private final long[] keys = new long[CAPACITY];
+        private final int[] kind = new int[CAPACITY];
+        private final int[] first = new int[CAPACITY];
+        private final int[] second = new int[CAPACITY];
+        private final int[] token = new int[CAPACITY];
+        private final int[] order = new int[CAPACITY];
+        private final int[] free = new int[CAPACITY];
+        private int size;
+        private int freeCount;
+
+        private void clear() {
+            size = 0;
+            freeCount = CAPACITY;
+            for (int i = 0; i < CAPACITY; i++) {
+                free[i] = CAPACITY - 1 - i;
+            }
+        }
+
+        private void push(long key, int entryKind, int entryFirst, int entrySecond, int entryToken) {
+            if (freeCount == 0) {
+                return;
+            }
+            int entry = free[--freeCount];
+            keys[entry] = key;
+            kind[entry] = entryKind;
+            first[entry] = entryFirst;
+            second[entry] = entrySecond;
+            token[entry] = entryToken;
+
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[order[parent]] >= key) {
+                    break;
+                }
+                order[i] = order[parent];
+                i = parent;
+            }
+            order[i] = entry;
+        }
+
+        /**
+         * Remove the best entry; its fields stay readable until the next push
+         */
+        private int pop() {
+            int top = order[0];
+            int last = order[--size];
+            int i = 0;
+            while (true) {
+                int child = i * 2 + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && keys[order[child + 1]] > keys[order[child]]) {
+                    child++;
+                }
+                if (keys[order[child]] <= keys[last]) {
+                    break;
+                }
+                order[i] = order[child];
+                i = child;
+            }
+            if (size > 0) {
+                order[i] = last;
+            }
+            free[freeCount++] = top;
+            return top;
+        }
+    }
+
+    /**
+     * Header counts, and the cursor that hands out the sections that follow the
+     * header, each starting on an 8-byte boundary
+     */
+    private static final class Layout {
+        private final int placeCount;
+        private final int tokenCount;
+        private final int nameByteCount;
+        private final int placeTokenCount;
+        private final int tokenCharCount;
+        private final int postingCount;
+        private final int leafBase;
+        private final int typoSlots;
+        private final int typoEntries;
+        private long position = HEADER_BYTES;
+
+        private Layout(int placeCount, int tokenCount, int nameByteCount, int placeTokenCount, int tokenCharCount,
+                       int postingCount, int leafBase, int typoSlots, int typoEntries) {
+            this.placeCount = placeCount;
+            this.tokenCount = tokenCount;
+            this.nameByteCount = nameByteCount;
+            this.placeTokenCount = placeTokenCount;
+            this.tokenCharCount = tokenCharCount;
+            this.postingCount = postingCount;
+            this.leafBase = leafBase;
+            this.typoSlots = typoSlots;
+            this.typoEntries = typoEntries;
+        }
+
+        private Layout(ByteBuffer header) {
+            this(header.getInt(8), header.getInt(12), header.getInt(16), header.getInt(20), header.getInt(24),
+                    header.getInt(28), header.getInt(32), header.getInt(36), header.getInt(40));
+            if (Integer.bitCount(leafBase) != 1 || Integer.bitCount(typoSlots) != 1) {
+                throw new IllegalArgumentException("corrupt header");
+            }
+        }
+
+        private void writeHeader(ByteBuffer buffer) {
+            buffer.putInt(0, MAGIC).putInt(4, FORMAT_VERSION)
+                    .putInt(8, placeCount).putInt(12, tokenCount).putInt(16, nameByteCount)
+                    .putInt(20, placeTokenCount).putInt(24, tokenCharCount).putInt(28, postingCount)
+                    .putInt(32, leafBase).putInt(36, typoSlots).putInt(40, typoEntries);
+        }
+
+        /**
+         * Total size of the header and all sections, in the order the constructor reads them
+         */
+        private long totalBytes() {
+            long[] sections = {
+                    4L * (placeCount + 1), nameByteCount, 8L * placeCount, 8L * placeCount, 4L * placeCount,
+                    4L * (placeCount + 1), 4L * placeTokenCount, 2L * tokenCharCount,
+                    4L * (tokenCount + 1), 4L * (tokenCount + 1), 4L * postingCount,
+                    8L * tokenCount, 8L * leafBase, 8L * typoSlots, 4L * typoSlots, 4L * typoEntries, 4L * typoEntries,
+                    4L * placeCount
+            };
+            long total = HEADER_BYTES;
+            for (long bytes : sections) {
+                total = align(total) + bytes;
+            }
+            return total;
+        }
+
+        private ByteBuffer section(ByteBuffer data, long bytes) {
+            position = align(position);
+            if (position + bytes > data.limit()) {
+                throw new IllegalArgumentException("truncated");
+            }
+            ByteBuffer section = data.slice((int) position, (int) bytes).order(ByteOrder.LITTLE_ENDIAN);
+            position += bytes;
+            return section;
+        }
+
+        private static long align(long offset) {
+            return (offset + 7) & ~7L;
+        }
+    }
+
+    /**
+     * Collects places and builds the index once
+     */
+    public static class Builder {
+        private final List<String> names = new ArrayList<>();
+        private double[] latitudes = new double[16];
+        private double[] longitudes = new double[16];
+        private int[] popularity = new int[16];
+
+        public Builder add(String name, double latitude, double longitude, int placePopularity) {
+            int place = names.size();
+            if (place == latitudes.length) {
+                latitudes = Arrays.copyOf(latitudes, place * 2);
+                longitudes = Arrays.copyOf(longitudes, place * 2);
+                popularity = Arrays.copyOf(popularity, place * 2);
+            }
+            names.add(name);
+            latitudes[place] = latitude;
+            longitudes[place] = longitude;
+            popularity[place] = Math.max(placePopularity, 0);
+            return this;
+        }
+
+        public int size() {
+            return names.size();
+        }
+
+        /**
+         * Build the index on the heap; {@link #writeTo(Path)} saves it for mapping later
+         */
+        public PlaceIndex build() {
+            int placeCount = names.size();
+
+            // Sorted dictionary of distinct tokens
+            Map<String, List<Integer>> placesByToken = new HashMap<>();
+            List<List<String>> tokensByPlace = new ArrayList<>(placeCount);
+            for (int place = 0; place < placeCount; place++) {
+                List<String> tokens = tokenize(names.get(place));
+                tokensByPlace.add(tokens);
+                for (String token : tokens) {
+                    placesByToken.computeIfAbsent(token, t -> new ArrayList<>()).add(place);
+                }
+            }
+            String[] tokens = placesByToken.keySet().toArray(new String[0]);
+            Arrays.sort(tokens);
+            Map<String, Integer> tokenIds = new HashMap<>(tokens.length * 2);
+
+            int charCount = 0;
+            for (String token : tokens) {
+                charCount += token.length();
+            }
+            char[] tokenChars = new char[charCount];
+            int[] tokenOffsets = new int[tokens.length + 1];
+            int[] postingOffsets = new int[tokens.length + 1];
+            int postingCount = 0;
+            for (int t = 0; t < tokens.length; t++) {
+                tokens[t].getChars(0, tokens[t].length(), tokenChars, tokenOffsets[t]);
+                tokenOffsets[t + 1] = tokenOffsets[t] + tokens[t].length();
+                tokenIds.put(tokens[t], t);
+                postingCount += placesByToken.get(tokens[t]).size();
+            }
+
+            // Posting lists, most popular first
+            int[] postings = new int[postingCount];
+            for (int t = 0; t < tokens.length; t++) {
+                Integer[] places = placesByToken.get(tokens[t]).toArray(new Integer[0]);
+                Arrays.sort(places, (a, b) -> Long.compare(rankKey(popularity[b], b), rankKey(popularity[a], a)));
+                postingOffsets[t + 1] = postingOffsets[t] + places.length;
+                for (int i = 0; i < places.length; i++) {
+                    postings[postingOffsets[t] + i] = places[i];
+                }
+            }
+
+            // Tokens of each place, for checking the other words of a query
+            int[] placeTokenOffsets = new int[placeCount + 1];
+            int placeTokenCount = 0;
+            for (List<String> placeTokenList : tokensByPlace) {
+                placeTokenCount += placeTokenList.size();
+            }
+            int[] placeTokens = new int[placeTokenCount];
+            for (int place = 0; place < placeCount; place++) {
+                List<String> placeTokenList = tokensByPlace.get(place);
+                int start = placeTokenOffsets[place];
+                for (int i = 0; i < placeTokenList.size(); i++) {
+                    placeTokens[start + i] = tokenIds.get(placeTokenList.get(i));
+                }
+                Arrays.sort(placeTokens, start, start + placeTokenList.size());
+                placeTokenOffsets[place + 1] = start + placeTokenList.size();
+            }
+
+            // Segment tree over each token's first posting
+            long[] headKeys = new long[tokens.length];
+            for (int t = 0; t < tokens.length; t++) {
+                int head = postings[postingOffsets[t]];
+                headKeys[t] = rankKey(popularity[head], head);
+            }
+            int leafBase = 1;
+            while (leafBase < tokens.length) {
+                leafBase <<= 1;
+            }
+            int[] bestToken = new int[leafBase * 2];
+            Arrays.fill(bestToken, -1);
+            for (int t = 0; t < tokens.length; t++) {
+                bestToken[leafBase + t] = t;
+            }
+            LongBuffer headKeyView = LongBuffer.wrap(headKeys);
+            for (int node = leafBase - 1; node > 0; node--) {
+                bestToken[node] = better(headKeyView, bestToken[node * 2], bestToken[node * 2 + 1]);
+            }
+
+            // Symmetric-delete keys: each typo-eligible token's 4- and 5-char heads and their deletions
+            int typoEntries = 0;
+            for (String token : tokens) {
+                if (token.length() >= MIN_TYPO_LENGTH) {
+                    typoEntries += (MIN_TYPO_LENGTH + 1) + (token.length() > MIN_TYPO_LENGTH ? MAX_TYPO_KEY + 1 : 0);
+                }
+            }
+            int typoSlots = Integer.highestOneBit(Math.max(typoEntries, 8) * 2 - 1) * 2;
+            long[] typoKeys = new long[typoSlots];
+            int[] typoHeads = new int[typoSlots];
+            Arrays.fill(typoHeads, -1);
+            int[] typoEntryTokens = new int[typoEntries];
+            int[] typoEntryNext = new int[typoEntries];
+            LongBuffer typoKeyView = LongBuffer.wrap(typoKeys);
+            IntBuffer typoHeadView = IntBuffer.wrap(typoHeads);
+            int entry = 0;
+            for (int t = 0; t < tokens.length; t++) {
+                int length = tokenOffsets[t + 1] - tokenOffsets[t];
+                for (int keyLength = MIN_TYPO_LENGTH; keyLength <= Math.min(length, MAX_TYPO_KEY); keyLength++) {
+                    for (int skip = -1; skip < keyLength; skip++) {
+                        long key = typoKey(tokenChars, tokenOffsets[t], keyLength, skip);
+                        int slot = findSlot(typoKeyView, typoHeadView, typoSlots - 1, key);
+                        typoKeys[slot] = key;
+                        typoEntryTokens[entry] = t;
+                        typoEntryNext[entry] = typoHeads[slot];
+                        typoHeads[slot] = entry++;
+                    }
+                }
+            }
+
+            // KD-tree: split each range at its median, by latitude first
+            int[] spatialOrder = new int[placeCount];
+            for (int place = 0; place < placeCount; place++) {
+                spatialOrder[place] = place;
+            }
+            buildKdTree(spatialOrder, 0, placeCount, true);
+
+            // Names as one UTF-8 pool
+            int[] nameOffsets = new int[placeCount + 1];
+            byte[][] encodedNames = new byte[placeCount][];
+            for (int place = 0; place < placeCount; place++) {
+                encodedNames[place] = names.get(place).getBytes(StandardCharsets.UTF_8);
+                nameOffsets[place + 1] = Math.addExact(nameOffsets[place], encodedNames[place].length);
+            }
+
+            Layout layout = new Layout(placeCount, tokens.length, nameOffsets[placeCount], placeTokenCount,
+                    charCount, postingCount, leafBase, typoSlots, typoEntries);
+            long totalBytes = layout.totalBytes();
+            if (totalBytes > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Place index would need " + totalBytes + " bytes; split the places over several indexes");
+            }
+            ByteBuffer data = ByteBuffer.allocate((int) totalBytes).order(ByteOrder.LITTLE_ENDIAN);
+            layout.writeHeader(data);
+            layout.section(data, 4L * (placeCount + 1)).asIntBuffer().put(nameOffsets);
+            ByteBuffer nameSection = layout.section(data, nameOffsets[placeCount]);
+            for (byte[] name : encodedNames) {
+                nameSection.put(name);
+            }
+            layout.section(data, 8L * placeCount).asDoubleBuffer().put(latitudes, 0, placeCount);
+            layout.section(data, 8L * placeCount).asDoubleBuffer().put(longitudes, 0, placeCount);
+            layout.section(data, 4L * placeCount).asIntBuffer().put(popularity, 0, placeCount);
+            layout.section(data, 4L * (placeCount + 1)).asIntBuffer().put(placeTokenOffsets);
+            layout.section(data, 4L * placeTokenCount).asIntBuffer().put(placeTokens);
+            layout.section(data, 2L * charCount).asCharBuffer().put(tokenChars);
+            layout.section(data, 4L * (tokens.length + 1)).asIntBuffer().put(tokenOffsets);
+            layout.section(data, 4L * (tokens.length + 1)).asIntBuffer().put(postingOffsets);
+            layout.section(data, 4L * postingCount).asIntBuffer().put(postings);
+            layout.section(data, 8L * tokens.length).asLongBuffer().put(headKeys);
+            layout.section(data, 8L * leafBase).asIntBuffer().put(bestToken);
+            layout.section(data, 8L * typoSlots).asLongBuffer().put(typoKeys);
+            layout.section(data, 4L * typoSlots).asIntBuffer().put(typoHeads);
+            layout.section(data, 4L * typoEntries).asIntBuffer().put(typoEntryTokens);
+            layout.section(data, 4L * typoEntries).asIntBuffer().put(typoEntryNext);
+            layout.section(data, 4L * placeCount).asIntBuffer().put(spatialOrder);
+            return new PlaceIndex(data);
+        }
+
+        private void buildKdTree(int[] order, int from, int to, boolean byLatitude) {
+            while (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                select(order, from, to, mid, byLatitude ? latitudes : longitudes);
+                buildKdTree(order, from, mid, !byLatitude);
+                from = mid + 1;
+                byLatitude = !byLatitude;
+            }
+        }
+
+        /**
+         * Move the k-th smallest coordinate to position k, smaller ones before it and larger ones after
+         */
+        private static void select(int[] order, int from, int to, int k, double[] coordinates) {
+            int low = from;
+            int high = to - 1;
+            while (low < high) {
+                // Three-way partition, so runs of equal coordinates cannot make this quadratic
+                double pivot = coordinates[order[(low + high) >>> 1]];
+                int less = low;
+                int greater = high;
+                int i = low;
+                while (i <= greater) {
+                    double value = coordinates[order[i]];
+                    if (value < pivot) {
+                        swap(order, less++, i++);
+                    } else if (value > pivot) {
+                        swap(order, i, greater--);
+                    } else {
+                        i++;
+                    }
+                }
+                if (k < less) {
+                    high = less - 1;
+                } else if (k > greater) {
+                    low = greater + 1;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private static void swap(int[] values, int a, int b) {
+            int value = values[a];
+            values[a] = values[b];
+            values[b] = value;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.rideshare.dto;
+
+/**
+ * Data Transfer Object for the place nearest to a point
+ */
+public class ReverseGeocodeDTO {
+    private String address;
+    private double latitude;
+    private double longitude;
+    private double distanceMeters;
+    
+    public ReverseGeocodeDTO() {
+    }
+    
+    public ReverseGeocodeDTO(String address, double latitude, double longitude, double distanceMeters) {
+        this.address = address;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.distanceMeters = distanceMeters;
+    }
+    
+    public String getAddress() {
+        return address;
+    }
+    
+    public void setAddress(String address) {
+        this.address = address;
+    }
+    
+    public double getLatitude() {
+        return latitude;
+    }
+    
+    public void setLatitude(double latitude) {
+        this.latitude = latitude;
+    }
+    
+    public double getLongitude() {
+        return longitude;
+    }
+    
+    public void setLongitude(double longitude) {
+        this.longitude = longitude;
+    }
+    
+    public double getDistanceMeters() {
+        return distanceMeters;
+    }
+    
+    public void setDistanceMeters(double distanceMeters) {
+        this.distanceMeters = distanceMeters;
+    }
+}
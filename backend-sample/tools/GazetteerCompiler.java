@@ -0,0 +1,100 @@
+package com.rideshare.tools;
+
+import com.rideshare.service.PlaceIndex;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Offline build step that compiles place dumps into the memory-mapped index
+ * LocationService opens at startup (locations.store.path).
+ *
+ * Usage: java -Xmx6g com.rideshare.tools.GazetteerCompiler places.idx dump.tsv [more.tsv ...]
+ *
+ * Inputs are tab-separated, one place per line, in either layout:
+ * - GeoNames (allCountries.txt and friends): name, latitude, longitude,
+ *   country code and population are used; population ranks the suggestions
+ * - Four columns, e.g. an OSM extract: name, latitude, longitude, popularity
+ *
+ * The output replaces the target atomically, so a running service picks it
+ * up on its next check without ever seeing a half-written file.
+ */
+public class GazetteerCompiler {
+
+    private static final int GEONAMES_COLUMNS = 15;
+    private static final int SIMPLE_COLUMNS = 4;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: GazetteerCompiler <output.idx> <dump.tsv> [<dump.tsv> ...]");
+            System.exit(2);
+        }
+
+        long started = System.currentTimeMillis();
+        PlaceIndex.Builder builder = new PlaceIndex.Builder();
+        long skipped = 0;
+        String[] columns = new String[GEONAMES_COLUMNS];
+        for (int i = 1; i < args.length; i++) {
+            try (BufferedReader reader = Files.newBufferedReader(Paths.get(args[i]), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty() || line.charAt(0) == '#' || !addPlace(builder, line, columns)) {
+                        skipped++;
+                    }
+                }
+            }
+            System.out.printf("%s: %d places so far%n", args[i], builder.size());
+        }
+
+        Path output = Paths.get(args[0]);
+        PlaceIndex index = builder.build();
+        index.writeTo(output);
+        System.out.printf("Wrote %d places to %s (%d bytes, %d lines skipped) in %d ms%n",
+                index.size(), output, Files.size(output), skipped, System.currentTimeMillis() - started);
+    }
+
+    private static boolean addPlace(PlaceIndex.Builder builder, String line, String[] columns) {
+        int count = split(line, columns);
+        try {
+            if (count >= GEONAMES_COLUMNS) {
+                // geonameid, name, asciiname, alternatenames, latitude, longitude, feature class,
+                // feature code, country code, cc2, admin1..admin4, population, ...
+                String name = columns[8].isEmpty() ? columns[1] : columns[1] + ", " + columns[8];
+                long population = columns[14].isEmpty() ? 0 : Long.parseLong(columns[14]);
+                builder.add(name, Double.parseDouble(columns[4]), Double.parseDouble(columns[5]),
+                        (int) Math.min(population, Integer.MAX_VALUE));
+                return true;
+            }
+            if (count == SIMPLE_COLUMNS) {
+                builder.add(columns[0], Double.parseDouble(columns[1]), Double.parseDouble(columns[2]),
+                        Integer.parseInt(columns[3]));
+                return true;
+            }
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        return false;
+    }
+
+    /**
+     * Split on tabs into columns, keeping only as many as the array holds
+     * @return The number of columns on the line, capped at the array length
+     */
+    private static int split(String line, String[] columns) {
+        int count = 0;
+        int start = 0;
+        while (count < columns.length) {
+            int tab = line.indexOf('\t', start);
+            columns[count++] = tab < 0 ? line.substring(start) : line.substring(start, tab);
+            if (tab < 0) {
+                break;
+            }
+            start = tab + 1;
+        }
+        return count;
+    }
+}
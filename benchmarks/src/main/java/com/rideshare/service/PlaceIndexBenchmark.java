@@ -0,0 +1,96 @@
+package com.rideshare.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Suggestion lookups behind LocationService.getSuggestions, including the
+ * typo path with its bounded edit distance, and nearest-place lookups, over
+ * synthetic place names
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PlaceIndexBenchmark {
+
+    private static final String[] SYLLABLES = {
+            "al", "ba", "ra", "ma", "na", "sh", "ja", "ka", "da", "ze", "ri", "mo", "lu", "ha", "qa"
+    };
+
+    @State(Scope.Benchmark)
+    public static class Places {
+        @Param({"10000", "1000000"})
+        private int places;
+
+        private PlaceIndex index;
+
+        @Setup
+        public void setUp() {
+            Random random = new Random(42);
+            PlaceIndex.Builder builder = new PlaceIndex.Builder();
+            for (int i = 0; i < places; i++) {
+                StringBuilder name = new StringBuilder();
+                int words = 1 + random.nextInt(3);
+                for (int w = 0; w < words; w++) {
+                    int length = 2 + random.nextInt(3);
+                    for (int s = 0; s < length; s++) {
+                        name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+                    }
+                    name.append(' ');
+                }
+                name.append("Street ").append(i % 5000);
+                builder.add(name.toString(), 22 + random.nextDouble() * 4, 51 + random.nextDouble() * 5,
+                        random.nextInt(100_000));
+            }
+            index = builder.build();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Query {
+        // One-letter prefix, word prefix, two words, and a transposition typo
+        @Param({"a", "rama", "shja ma", "marabha"})
+        private String query;
+    }
+
+    @State(Scope.Thread)
+    public static class Points {
+        private final double[] coordinates = new double[2048];
+        private int next;
+
+        @Setup
+        public void setUp() {
+            Random random = new Random(7);
+            for (int i = 0; i < coordinates.length; i += 2) {
+                coordinates[i] = 22 + random.nextDouble() * 4;
+                coordinates[i + 1] = 51 + random.nextDouble() * 5;
+            }
+        }
+    }
+
+    @Benchmark
+    public int[] search(Places places, Query query) {
+        return places.index.search(query.query, 5);
+    }
+
+    @Benchmark
+    public int nearest(Places places, Points points) {
+        int i = points.next;
+        points.next = (i + 2) & (points.coordinates.length - 1);
+        return places.index.nearest(points.coordinates[i], points.coordinates[i + 1]);
+    }
+}
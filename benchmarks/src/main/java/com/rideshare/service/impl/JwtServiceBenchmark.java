@@ -0,0 +1,84 @@
+package com.rideshare.service.impl;
+
+import com.rideshare.model.User;
+import com.rideshare.model.UserRole;
+import com.rideshare.service.TokenRevocationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token issue and per-request verification. With one distinct token every
+ * check hits the verified-token cache; with many, most run the HMAC check.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtServiceBenchmark {
+
+    private static final String SECRET = "benchmark-secret-benchmark-secret-benchmark-secret-benchmark-secret";
+
+    @Param({"1", "100000"})
+    private int tokens;
+
+    private JwtServiceImpl jwtService;
+    private User user;
+    private String[] issued;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        TokenRevocationService noRevocations = new TokenRevocationService() {
+            @Override
+            public boolean revoke(String tokenId, long expiresAtMillis) {
+                return false;
+            }
+
+            @Override
+            public boolean isRevoked(String tokenId) {
+                return false;
+            }
+        };
+        jwtService = new JwtServiceImpl(noRevocations, SECRET, 3_600_000L, 604_800_000L, 4096, Clock.systemDefaultZone());
+
+        user = user(1);
+        issued = new String[tokens];
+        for (int i = 0; i < tokens; i++) {
+            issued[i] = jwtService.generateToken(user(i));
+        }
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtService.generateToken(user);
+    }
+
+    @Benchmark
+    public User extractPrincipal() {
+        String token = issued[next];
+        next = next + 1 == issued.length ? 0 : next + 1;
+        return jwtService.extractPrincipal(token);
+    }
+
+    private static User user(long id) {
+        User user = new User();
+        user.setId(id);
+        user.setEmail("rider" + id + "@example.com");
+        user.setRole(UserRole.PASSENGER);
+        return user;
+    }
+}
@@ -0,0 +1,61 @@
+package com.rideshare.service.impl;
+
+import com.rideshare.model.Ride;
+import com.rideshare.model.RideStatus;
+import com.rideshare.repository.RideRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic open rides around Dubai, and a RideServiceImpl that reads them
+ * from memory instead of the database
+ */
+final class RideFixtures {
+
+    static final double CENTER_LAT = 25.2048;
+    static final double CENTER_LNG = 55.2708;
+
+    private RideFixtures() {
+    }
+
+    /**
+     * @return Requested rides with pickups and dropoffs spread over about 20 km; every other one shared
+     */
+    static List<Ride> rides(int count, Random random) {
+        List<Ride> rides = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Ride ride = new Ride();
+            ride.setId((long) i);
+            ride.setStatus(RideStatus.REQUESTED);
+            ride.setIsShared(i % 2 == 0);
+            ride.setPickupLat(BigDecimal.valueOf(CENTER_LAT + random.nextGaussian() * 0.1));
+            ride.setPickupLng(BigDecimal.valueOf(CENTER_LNG + random.nextGaussian() * 0.1));
+            ride.setDropoffLat(BigDecimal.valueOf(CENTER_LAT + random.nextGaussian() * 0.1));
+            ride.setDropoffLng(BigDecimal.valueOf(CENTER_LNG + random.nextGaussian() * 0.1));
+            rides.add(ride);
+        }
+        return rides;
+    }
+
+    /**
+     * Only the repository queries the matching paths use are answered; anything else fails loudly
+     */
+    static RideServiceImpl rideService(List<Ride> rides) {
+        List<Ride> shared = rides.stream().filter(Ride::getIsShared).toList();
+        RideRepository repository = (RideRepository) Proxy.newProxyInstance(
+                RideRepository.class.getClassLoader(),
+                new Class<?>[]{RideRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findByStatus" -> rides;
+                    case "findByIsSharedAndStatusIn" -> shared;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        return new RideServiceImpl(repository, null, null, null, null, null, new SimpleMeterRegistry(), Clock.systemDefaultZone(), 1.5);
+    }
+}
@@ -0,0 +1,60 @@
+package com.rideshare.service.impl;
+
+import com.rideshare.dto.RideRequest;
+import com.rideshare.model.Ride;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The in-memory filters behind the nearby-ride list and shared-ride matching,
+ * over a repository that returns a fixed set of open rides
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RideMatchingBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    private int rides;
+
+    private RideServiceImpl rideService;
+    private RideRequest sharedRequest;
+
+    @Setup
+    public void setUp() {
+        rideService = RideFixtures.rideService(RideFixtures.rides(rides, new Random(42)));
+
+        sharedRequest = new RideRequest();
+        sharedRequest.setPickupCoordinates(new RideRequest.Coordinates(RideFixtures.CENTER_LAT, RideFixtures.CENTER_LNG));
+        sharedRequest.setDropoffCoordinates(new RideRequest.Coordinates(RideFixtures.CENTER_LAT + 0.1, RideFixtures.CENTER_LNG + 0.1));
+        sharedRequest.setRideTime(LocalDateTime.of(2024, 3, 1, 8, 30));
+        sharedRequest.setSeats(1);
+    }
+
+    @Benchmark
+    public List<Ride> findNearbyAvailableRides() {
+        return rideService.findNearbyAvailableRides(RideFixtures.CENTER_LAT, RideFixtures.CENTER_LNG, 5.0);
+    }
+
+    @Benchmark
+    public List<Ride> findAvailableSharedRides() {
+        return rideService.findAvailableSharedRides(sharedRequest);
+    }
+}
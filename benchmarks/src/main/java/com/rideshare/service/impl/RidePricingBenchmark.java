@@ -0,0 +1,62 @@
+package com.rideshare.service.impl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Haversine distance and fare calculation, as run for every ride request
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RidePricingBenchmark {
+
+    private static final int POINTS = 1024;
+
+    private RideServiceImpl rideService;
+    private final double[] latitudes = new double[POINTS];
+    private final double[] longitudes = new double[POINTS];
+    private final LocalDateTime[] rideTimes = new LocalDateTime[POINTS];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        rideService = RideFixtures.rideService(RideFixtures.rides(0, new Random(1)));
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.of(2024, 3, 1, 0, 0);
+        for (int i = 0; i < POINTS; i++) {
+            latitudes[i] = RideFixtures.CENTER_LAT + random.nextGaussian() * 0.1;
+            longitudes[i] = RideFixtures.CENTER_LNG + random.nextGaussian() * 0.1;
+            rideTimes[i] = start.plusMinutes(random.nextInt(24 * 60));
+        }
+    }
+
+    @Benchmark
+    public double calculateDistance() {
+        int i = next++ & (POINTS - 1);
+        int j = (i + 1) & (POINTS - 1);
+        return rideService.calculateDistance(latitudes[i], longitudes[i], latitudes[j], longitudes[j]);
+    }
+
+    @Benchmark
+    public BigDecimal calculatePrice() {
+        int i = next++ & (POINTS - 1);
+        return rideService.calculatePrice(latitudes[i] - RideFixtures.CENTER_LAT + 10, 1 + (i & 3), rideTimes[i]);
+    }
+}
@@ -0,0 +1,97 @@
+package com.rideshare.service.impl;
+
+import com.rideshare.model.Ride;
+import com.rideshare.model.RideStatus;
+import com.rideshare.model.User;
+import com.rideshare.repository.RideRepository;
+import com.rideshare.service.NearbyRideFeedService;
+import com.rideshare.service.RideService;
+import com.rideshare.service.RideStatusService;
+import com.rideshare.service.RideVersionService;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.lang.reflect.Proxy;
+import java.time.Clock;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the @Timed rides.transition timer adds to a ride transition. Both
+ * variants call startRide through a Spring AOP proxy, as the application does
+ * for @Transactional; with metrics on, Micrometer's TimedAspect is on the proxy
+ * and records into a Prometheus registry with the percentile histogram the
+ * annotation asks for. The repository and the publishers are in-memory stubs,
+ * so the difference is the timer and little else.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+// The timer's histogram takes a few seconds to settle
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TransitionTimingBenchmark {
+
+    @Param({"off", "on"})
+    private String metrics;
+
+    private RideService rideService;
+    private Ride ride;
+
+    @Setup
+    public void setUp() {
+        User driver = new User();
+        driver.setId(7L);
+        ride = new Ride();
+        ride.setId(1L);
+        ride.setDriver(driver);
+
+        RideRepository repository = stub(RideRepository.class, (method, args) -> switch (method) {
+            case "findById" -> Optional.of(ride);
+            case "save" -> args[0];
+            default -> throw new UnsupportedOperationException(method);
+        });
+        RideServiceImpl target = new RideServiceImpl(repository, null,
+                stub(NearbyRideFeedService.class, (method, args) -> null),
+                stub(RideStatusService.class, (method, args) -> null),
+                null,
+                stub(RideVersionService.class, (method, args) -> null),
+                new PrometheusMeterRegistry(PrometheusConfig.DEFAULT), Clock.systemDefaultZone(), 1.5);
+
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        if (metrics.equals("on")) {
+            factory.addAspect(new TimedAspect(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT)));
+        }
+        rideService = factory.getProxy();
+    }
+
+    @Benchmark
+    public Ride startRide() {
+        ride.setStatus(RideStatus.ACCEPTED);
+        return rideService.startRide(1L, 7L);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, StubAnswer answer) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> answer.answer(method.getName(), args));
+    }
+
+    private interface StubAnswer {
+        Object answer(String method, Object[] args);
+    }
+}
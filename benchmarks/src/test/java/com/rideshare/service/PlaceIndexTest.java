@@ -0,0 +1,88 @@
+package com.rideshare.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlaceIndexTest {
+
+    private final PlaceIndex index = new PlaceIndex.Builder()
+            .add("Reem Island, Abu Dhabi, UAE", 24.4991, 54.4017, 50)
+            .add("Yas Island, Abu Dhabi, UAE", 24.4959, 54.6056, 50)
+            .add("Dubai Marina, Dubai, UAE", 25.0805, 55.1403, 80)
+            .add("Marina Mall, Abu Dhabi, UAE", 24.4758, 54.3215, 30)
+            .build();
+
+    @Test
+    void findsATypoOneLongerThanAFourLetterWord() {
+        // Deletions of the 5-char query have to meet the 4-char token
+        assertEquals(List.of("Reem Island, Abu Dhabi, UAE"), names("reeem"));
+        assertEquals(List.of("Reem Island, Abu Dhabi, UAE"), names("reemm"));
+        assertEquals(List.of("Reem Island, Abu Dhabi, UAE"), names("rxem"));
+    }
+
+    @Test
+    void findsTyposWithinLongerWords() {
+        assertEquals(List.of("Reem Island, Abu Dhabi, UAE", "Yas Island, Abu Dhabi, UAE"), names("isalnd"));
+        assertEquals(List.of("Dubai Marina, Dubai, UAE", "Marina Mall, Abu Dhabi, UAE"), names("mraina"));
+        assertEquals(List.of("Reem Island, Abu Dhabi, UAE"), names("reem isand"));
+    }
+
+    @Test
+    void leavesUnrelatedWordsAlone() {
+        assertEquals(List.of(), names("reeemz"));
+        assertEquals(List.of(), names("qwer"));
+    }
+
+    @Test
+    void saysWhenTheCandidateCapCutsASearchShort() {
+        PlaceIndex.Builder builder = new PlaceIndex.Builder();
+        for (int i = 0; i < 5000; i++) {
+            builder.add("Alpha Tower " + i, 25, 55, 100);
+            builder.add("Bravo Tower " + i, 25, 55, 100);
+        }
+        // The only place with both words ranks below every candidate the cap lets through
+        builder.add("Alpha Bravo", 25, 55, 1);
+        PlaceIndex crowded = builder.build();
+
+        PlaceIndex.Matches both = crowded.match("alpha bravo", 5);
+        assertEquals(0, both.places().length);
+        assertTrue(both.truncated());
+
+        PlaceIndex.Matches full = crowded.match("alpha", 5);
+        assertEquals(5, full.places().length);
+        assertFalse(full.truncated());
+        assertFalse(crowded.match("bravo 4999", 5).truncated());
+    }
+
+    @Test
+    void aMappedIndexAnswersLikeTheHeapOne(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("places.idx");
+        index.writeTo(file);
+        PlaceIndex mapped = PlaceIndex.open(file);
+
+        for (String query : List.of("reeem", "reemm", "isalnd", "marina", "abu")) {
+            assertEquals(names(index, query), names(mapped, query), query);
+        }
+        assertTrue(names(mapped, "reeem").contains("Reem Island, Abu Dhabi, UAE"));
+    }
+
+    private List<String> names(String query) {
+        return names(index, query);
+    }
+
+    private static List<String> names(PlaceIndex index, String query) {
+        List<String> names = new ArrayList<>();
+        for (int place : index.search(query, 10)) {
+            names.add(index.getName(place));
+        }
+        return names;
+    }
+}
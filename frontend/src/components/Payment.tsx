@@ -52,11 +52,24 @@ const CreditCardForm: React.FC<PaymentProps> = ({ amount, rideId, onSuccess, onC
 
   const createPaymentIntent = async () => {
     try {
-      const response = await axios.post(`/api/payments/create-payment-intent`, {
+      let response = await axios.post(`/api/payments/create-payment-intent`, {
         amount,
         rideId
       });
       
+      // The intent is created in the background; poll until it is ready
+      for (let attempt = 0; attempt < 30 && !response.data.clientSecret; attempt++) {
+        if (response.data.status === 'FAILED') {
+          break;
+        }
+        await new Promise((resolve) => setTimeout(resolve, 1000));
+        response = await axios.get(`/api/payments/intents/${response.data.paymentRequestId}`);
+      }
+      
+      if (!response.data.clientSecret) {
+        throw new Error(response.data.error || 'Payment intent was not created');
+      }
+      
       setClientSecret(response.data.clientSecret);
     } catch (err) {
       console.log('Error creating payment intent:', err);
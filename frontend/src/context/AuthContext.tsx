@@ -1,11 +1,12 @@
 import React, { createContext, useState, useContext, useEffect } from 'react';
 import { useNavigate } from 'react-router-dom';
+import { authAPI } from '../services/api';
 
 interface AuthContextType {
   isAuthenticated: boolean;
   userType: string | null;
   userId: string | null;
-  login: (token: string, userType: string, userId: string) => void;
+  login: (token: string, userType: string, userId: string, refreshToken?: string) => void;
   logout: () => void;
 }
 
@@ -38,8 +39,11 @@ export const AuthProvider: React.FC<{ children: React.ReactNode }> = ({ children
     }
   }, []);
 
-  const login = (token: string, userType: string, userId: string) => {
+  const login = (token: string, userType: string, userId: string, refreshToken?: string) => {
     localStorage.setItem('token', token);
+    if (refreshToken) {
+      localStorage.setItem('refreshToken', refreshToken);
+    }
     localStorage.setItem('userType', userType);
     localStorage.setItem('userId', userId);
     
@@ -52,7 +56,14 @@ export const AuthProvider: React.FC<{ children: React.ReactNode }> = ({ children
   };
 
   const logout = () => {
+    // Revoke the tokens server-side; the local session is cleared either way
+    const refreshToken = localStorage.getItem('refreshToken');
+    if (refreshToken) {
+      authAPI.logout(refreshToken).catch(() => {});
+    }
+
     localStorage.removeItem('token');
+    localStorage.removeItem('refreshToken');
     localStorage.removeItem('userType');
     localStorage.removeItem('userId');
     
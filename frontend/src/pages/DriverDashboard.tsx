@@ -49,6 +49,7 @@ import { useNavigate } from 'react-router-dom';
 import GoogleMap from '../components/GoogleMap';
 import FreeMap from '../components/FreeMap';
 import locationService from '../services/LocationService';
+import { subscribeNearbyRides, NearbyRide } from '../services/api';
 
 // Define RideRequest interface
 interface RideRequest {
@@ -77,6 +78,28 @@ interface RideRequest {
   isShared: boolean;
 }
 
+const FEED_RADIUS_KM = 5;
+const DEFAULT_LOCATION = { lat: 37.7749, lng: -122.4194 };
+
+const toRideRequest = (ride: NearbyRide): RideRequest => ({
+  id: ride.rideId,
+  pickupLocation: ride.pickupLocation,
+  dropoffLocation: ride.dropoffLocation,
+  pickupTime: ride.rideTime,
+  estimatedDistance: ride.estimatedDistance ?? 0,
+  estimatedDuration: ride.estimatedDuration ?? 0,
+  price: ride.price,
+  status: 'REQUESTED',
+  passenger: {
+    id: 0,
+    name: ride.passengerName ?? 'Passenger',
+    rating: ride.passengerRating ?? 5
+  },
+  pickupCoordinates: { lat: ride.pickupLat, lng: ride.pickupLng },
+  dropoffCoordinates: { lat: ride.dropoffLat ?? ride.pickupLat, lng: ride.dropoffLng ?? ride.pickupLng },
+  isShared: ride.isShared
+});
+
 // Define Driver interface
 interface DriverStats {
   totalRides: number;
@@ -120,18 +143,37 @@ const DriverDashboard: React.FC = () => {
   }, []);
 
   useEffect(() => {
-    // If driver is online, start polling for available rides
-    let interval: NodeJS.Timeout | null = null;
-    
-    if (isOnline) {
-      fetchAvailableRides();
-      interval = setInterval(fetchAvailableRides, 10000); // Poll every 10 seconds
+    // While online and free, ride requests in range are pushed by the server
+    if (!isOnline || activeRide) return;
+
+    let unsubscribe: (() => void) | null = null;
+    let cancelled = false;
+
+    const start = (location: { lat: number; lng: number }) => {
+      if (cancelled) return;
+      unsubscribe = subscribeNearbyRides(
+        location,
+        FEED_RADIUS_KM,
+        (ride) => setAvailableRides(rides => [...rides.filter(r => r.id !== ride.rideId), toRideRequest(ride)]),
+        (rideId) => setAvailableRides(rides => rides.filter(r => r.id !== rideId)),
+        () => setAvailableRides([])
+      );
+    };
+
+    if (navigator.geolocation) {
+      navigator.geolocation.getCurrentPosition(
+        position => start({ lat: position.coords.latitude, lng: position.coords.longitude }),
+        () => start(DEFAULT_LOCATION)
+      );
+    } else {
+      start(DEFAULT_LOCATION);
     }
-    
+
     return () => {
-      if (interval) clearInterval(interval);
+      cancelled = true;
+      if (unsubscribe) unsubscribe();
     };
-  }, [isOnline]);
+  }, [isOnline, activeRide]);
 
   useEffect(() => {
     if (activeRide) {
@@ -185,26 +227,6 @@ const DriverDashboard: React.FC = () => {
     }
   };
 
-  const fetchAvailableRides = async () => {
-    if (!isOnline || activeRide) return;
-    
-    try {
-      // In a real app, fetch from API
-      // const response = await axios.get('/api/driver/available-rides');
-      // setAvailableRides(response.data);
-      
-      // For demo, use mock data
-      const mockRides = Array(Math.floor(Math.random() * 5) + 1)
-        .fill(null)
-        .map(() => getMockRide());
-      
-      setAvailableRides(mockRides);
-    } catch (error) {
-      console.error('Error fetching available rides:', error);
-      // Don't set error state here to avoid frequent alerts during polling
-    }
-  };
-
   const getMockRide = (isActive = false): RideRequest => {
     const locations = [
       { pickup: "123 Main St", dropoff: "456 Elm St", distance: 3.5, duration: 12, price: 12.50 },
@@ -259,10 +281,7 @@ const DriverDashboard: React.FC = () => {
       
       setIsOnline(!isOnline);
       
-      if (!isOnline) {
-        // If going online, fetch available rides immediately
-        fetchAvailableRides();
-      } else {
+      if (isOnline) {
         // If going offline, clear available rides
         setAvailableRides([]);
       }
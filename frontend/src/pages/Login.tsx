@@ -39,7 +39,8 @@ const Login: React.FC = () => {
       login(
         response.data.token,
         response.data.userType,
-        response.data.userId
+        response.data.userId,
+        response.data.refreshToken
       );
       
       // No need to navigate here - the AuthContext will handle that
@@ -22,12 +22,213 @@ api.interceptors.request.use(
   }
 );
 
-// Example API methods
+// Refresh the short-lived access token, sharing one refresh call between concurrent callers
+let refreshInFlight: Promise<string> | null = null;
+
+const refreshAccessToken = (refreshToken: string): Promise<string> => {
+  if (!refreshInFlight) {
+    refreshInFlight = axios.post('/api/auth/refresh', { refreshToken })
+      .then((response) => {
+        localStorage.setItem('token', response.data.token);
+        localStorage.setItem('refreshToken', response.data.refreshToken);
+        return response.data.token as string;
+      })
+      .finally(() => {
+        refreshInFlight = null;
+      });
+  }
+  return refreshInFlight;
+};
+
+api.interceptors.response.use(
+  (response) => response,
+  async (error) => {
+    const original = error.config;
+    const refreshToken = localStorage.getItem('refreshToken');
+    const status = error.response?.status;
+
+    if ((status === 401 || status === 403) && refreshToken && original && !original._retried
+        && !original.url?.startsWith('/auth/')) {
+      original._retried = true;
+      try {
+        const token = await refreshAccessToken(refreshToken);
+        original.headers.Authorization = `Bearer ${token}`;
+        return api(original);
+      } catch (refreshError) {
+        localStorage.removeItem('token');
+        localStorage.removeItem('refreshToken');
+        return Promise.reject(error);
+      }
+    }
+
+    return Promise.reject(error);
+  }
+);
+
+export interface NearbyRide {
+  rideId: number;
+  pickupLocation: string;
+  dropoffLocation: string;
+  pickupLat: number;
+  pickupLng: number;
+  dropoffLat: number | null;
+  dropoffLng: number | null;
+  rideTime: string;
+  price: number;
+  estimatedDistance: number | null;
+  estimatedDuration: number | null;
+  seats: number;
+  isShared: boolean;
+  passengerName: string | null;
+  passengerRating: number | null;
+}
+
+/**
+ * Subscribe to ride requests near a driver. EventSource cannot send the bearer
+ * token, so the event stream is read with fetch. The stream reconnects on its
+ * own and starts again with a snapshot of the open requests in range.
+ * Returns a function that closes the feed.
+ */
+export const subscribeNearbyRides = (
+  location: { lat: number; lng: number },
+  radiusKm: number,
+  onAdded: (ride: NearbyRide) => void,
+  onRemoved: (rideId: number) => void,
+  onReset: () => void,
+): (() => void) => {
+  const controller = new AbortController();
+  const url = `/api/rides/feed?latitude=${location.lat}&longitude=${location.lng}&radius=${radiusKm}`;
+
+  const dispatch = (block: string) => {
+    let event = 'message';
+    let data = '';
+    block.split('\n').forEach((line) => {
+      if (line.startsWith('event:')) {
+        event = line.slice(6).trim();
+      } else if (line.startsWith('data:')) {
+        data += line.slice(5).trim();
+      }
+    });
+    if (event === 'ride-added' && data) {
+      onAdded(JSON.parse(data));
+    } else if (event === 'ride-removed' && data) {
+      onRemoved(JSON.parse(data).rideId);
+    }
+  };
+
+  const connect = async (): Promise<void> => {
+    while (!controller.signal.aborted) {
+      try {
+        const response = await fetch(url, {
+          headers: {
+            Accept: 'text/event-stream',
+            Authorization: `Bearer ${localStorage.getItem('token')}`,
+          },
+          signal: controller.signal,
+        });
+
+        const refreshToken = localStorage.getItem('refreshToken');
+        if ((response.status === 401 || response.status === 403) && refreshToken) {
+          await refreshAccessToken(refreshToken);
+          continue;
+        }
+        if (!response.ok || !response.body) {
+          throw new Error(`Ride feed failed with status ${response.status}`);
+        }
+
+        // The server replays the open requests on every connection
+        onReset();
+        const reader = response.body.getReader();
+        const decoder = new TextDecoder();
+        let buffer = '';
+        for (;;) {
+          const { done, value } = await reader.read();
+          if (done) break;
+          buffer += decoder.decode(value, { stream: true }).replace(/\r/g, '');
+          let boundary = buffer.indexOf('\n\n');
+          while (boundary >= 0) {
+            dispatch(buffer.slice(0, boundary));
+            buffer = buffer.slice(boundary + 2);
+            boundary = buffer.indexOf('\n\n');
+          }
+        }
+      } catch (error) {
+        if (controller.signal.aborted) return;
+        console.error('Ride feed disconnected:', error);
+      }
+      // Back off a little, with jitter, so a restarted node is not hit by every driver at once
+      await new Promise((resolve) => setTimeout(resolve, 1000 + Math.random() * 4000));
+    }
+  };
+
+  connect();
+  return () => controller.abort();
+};
+
+export interface RideStatusUpdate {
+  type: 'ride-status';
+  sequence: number;
+  rideId: number;
+  status: string;
+  driverId: number | null;
+  driverName: string | null;
+  driverPhoneNumber: string | null;
+  startTime: string | null;
+  endTime: string | null;
+  price: number | null;
+}
+
+/**
+ * Watch a ride's status over WebSocket. The server sends the current state
+ * straight away and then the latest state on every change; updates older than
+ * one already shown are skipped. Reconnects until the returned function is called.
+ */
+export const subscribeRideStatus = (
+  rideId: number,
+  onUpdate: (update: RideStatusUpdate) => void,
+): (() => void) => {
+  let socket: WebSocket | null = null;
+  let closed = false;
+  let lastSequence = -1;
+
+  const connect = () => {
+    const protocol = window.location.protocol === 'https:' ? 'wss' : 'ws';
+    socket = new WebSocket(`${protocol}://${window.location.host}/ws/rides`);
+    socket.onopen = () => {
+      // Sequence numbers are per server, so start over on every connection
+      lastSequence = -1;
+      socket?.send(JSON.stringify({ type: 'subscribe', rideId, token: localStorage.getItem('token') }));
+    };
+    socket.onmessage = (event) => {
+      const message = JSON.parse(event.data);
+      if (message.type === 'ride-status' && message.rideId === rideId && message.sequence >= lastSequence) {
+        lastSequence = message.sequence;
+        onUpdate(message);
+      } else if (message.type === 'error') {
+        console.error('Ride status error:', message.message);
+      }
+    };
+    socket.onclose = () => {
+      if (!closed) {
+        setTimeout(connect, 1000 + Math.random() * 4000);
+      }
+    };
+  };
+
+  connect();
+  return () => {
+    closed = true;
+    socket?.close();
+  };
+};
+
 export const authAPI = {
   login: (credentials: { email: string; password: string }) => 
     api.post('/auth/login', credentials),
   register: (userData: { name: string; email: string; password: string; phoneNumber: string; role: string }) => 
     api.post('/auth/register', userData),
+  logout: (refreshToken: string) =>
+    api.post('/auth/logout', { refreshToken }),
 };
 
 export const ridesAPI = {
@@ -0,0 +1,216 @@
+package com.rideshare.simulator;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Non-blocking HTTP client for the simulated users. Every call is timed into
+ * the current report under the endpoint name it is given, and never completes
+ * exceptionally: transport failures come back with status -1.
+ */
+final class ApiClient {
+
+    static final String ENDPOINT_HEADER = "X-Simulator-Endpoint";
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String baseUrl;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile LatencyReport report;
+
+    ApiClient(String baseUrl, LatencyReport report) {
+        this.baseUrl = baseUrl;
+        this.report = report;
+    }
+
+    record Response(int status, String body, String eTag) {
+
+        boolean ok() {
+            return status >= 200 && status < 300;
+        }
+    }
+
+    /**
+     * Time later calls into another report, e.g. once setup is done
+     */
+    void reportTo(LatencyReport report) {
+        this.report = report;
+    }
+
+    /**
+     * @return Calls sent and not yet answered; open feeds are not counted
+     */
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    CompletableFuture<Response> get(String endpoint, String path, String token) {
+        return send(endpoint, request(path, token).GET());
+    }
+
+    CompletableFuture<Response> get(String endpoint, String path, String token, String ifNoneMatch) {
+        HttpRequest.Builder request = request(path, token).GET();
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return send(endpoint, request);
+    }
+
+    CompletableFuture<Response> post(String endpoint, String path, String token, Object body) {
+        HttpRequest.BodyPublisher publisher = body == null
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(toJson(body));
+        return send(endpoint, request(path, token)
+                .header("Content-Type", "application/json")
+                .POST(publisher));
+    }
+
+    /**
+     * Open a server-sent event stream. The connect time is reported under the endpoint;
+     * each complete event is handed to the listener as (name, data).
+     * @return The stream, to cancel when the user leaves
+     */
+    EventStream subscribe(String endpoint, String path, String token, BiConsumer<String, String> listener) {
+        EventStream stream = new EventStream(listener);
+        HttpRequest request = request(path, token)
+                .header(ENDPOINT_HEADER, endpoint)
+                .header("Accept", "text/event-stream")
+                .timeout(Duration.ofDays(1))
+                .GET()
+                .build();
+        LatencyReport target = report;
+        long started = System.nanoTime();
+        http.sendAsync(request, info -> {
+            target.record(endpoint, System.nanoTime() - started, info.statusCode());
+            return HttpResponse.BodySubscribers.fromLineSubscriber(stream);
+        }).exceptionally(error -> {
+            target.record(endpoint, System.nanoTime() - started, -1);
+            return null;
+        });
+        return stream;
+    }
+
+    JsonNode json(Response response) {
+        if (response.body() == null || response.body().isEmpty()) {
+            return MissingNode.getInstance();
+        }
+        try {
+            return objectMapper.readTree(response.body());
+        } catch (JsonProcessingException e) {
+            return MissingNode.getInstance();
+        }
+    }
+
+    private HttpRequest.Builder request(String path, String token) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(REQUEST_TIMEOUT);
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder;
+    }
+
+    private CompletableFuture<Response> send(String endpoint, HttpRequest.Builder request) {
+        LatencyReport target = report;
+        inFlight.incrementAndGet();
+        long started = System.nanoTime();
+        return http.sendAsync(request.header(ENDPOINT_HEADER, endpoint).build(), HttpResponse.BodyHandlers.ofString())
+                .handle((response, error) -> {
+                    inFlight.decrementAndGet();
+                    int status = error == null ? response.statusCode() : -1;
+                    target.record(endpoint, System.nanoTime() - started, status);
+                    if (error != null) {
+                        return new Response(-1, "", null);
+                    }
+                    return new Response(status, response.body(), response.headers().firstValue("ETag").orElse(null));
+                });
+    }
+
+    private String toJson(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize request body", e);
+        }
+    }
+
+    /**
+     * Parses "event:" and "data:" lines into events
+     */
+    static final class EventStream implements Flow.Subscriber<String> {
+
+        private final BiConsumer<String, String> listener;
+        private final StringBuilder data = new StringBuilder();
+        private String name = "message";
+        private volatile Flow.Subscription subscription;
+        private volatile boolean cancelled;
+
+        private EventStream(BiConsumer<String, String> listener) {
+            this.listener = listener;
+        }
+
+        void cancel() {
+            cancelled = true;
+            Flow.Subscription current = subscription;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (cancelled) {
+                subscription.cancel();
+                return;
+            }
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (line.endsWith("\r")) {
+                line = line.substring(0, line.length() - 1);
+            }
+            if (line.isEmpty()) {
+                if (data.length() > 0) {
+                    listener.accept(name, data.toString());
+                }
+                data.setLength(0);
+                name = "message";
+            } else if (line.startsWith("event:")) {
+                name = line.substring(6).trim();
+            } else if (line.startsWith("data:")) {
+                if (data.length() > 0) {
+                    data.append('\n');
+                }
+                data.append(line.substring(5).trim());
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.rideshare.simulator;
+
+import java.util.Random;
+
+/**
+ * Geometry of the synthetic city: a handful of districts around Dubai where
+ * pickups and dropoffs cluster, and a sparse spread between them
+ */
+final class City {
+
+    private static final double[][] DISTRICTS = {
+        {25.1972, 55.2744}, // Downtown
+        {25.0805, 55.1403}, // Marina
+        {25.2532, 55.3657}, // Airport
+        {25.2285, 55.2919}, // Bur Dubai
+        {25.2697, 55.3095}, // Deira
+        {25.1124, 55.1390}, // Palm
+        {25.0657, 55.2363}, // Al Barsha South
+    };
+    private static final double DISTRICT_SPREAD = 0.015; // degrees, about 1.5 km
+    private static final double CITY_SPREAD = 0.08;
+    private static final double DISPERSED_SHARE = 0.2;
+
+    // Roughly 12 m/s through traffic, as degrees of latitude per second
+    static final double DEGREES_PER_SECOND = 12 / 111_000.0;
+
+    private City() {
+    }
+
+    static double[] randomPoint(Random random) {
+        if (random.nextDouble() < DISPERSED_SHARE) {
+            double[] center = DISTRICTS[0];
+            return new double[]{
+                center[0] + random.nextGaussian() * CITY_SPREAD,
+                center[1] + random.nextGaussian() * CITY_SPREAD
+            };
+        }
+        double[] district = DISTRICTS[random.nextInt(DISTRICTS.length)];
+        return new double[]{
+            district[0] + random.nextGaussian() * DISTRICT_SPREAD,
+            district[1] + random.nextGaussian() * DISTRICT_SPREAD
+        };
+    }
+
+    /**
+     * Drift a few hundred meters, as an idle driver cruising for fares does
+     */
+    static double[] wander(double[] point, Random random) {
+        return new double[]{
+            point[0] + random.nextGaussian() * 0.002,
+            point[1] + random.nextGaussian() * 0.002
+        };
+    }
+
+    /**
+     * @return The point a vehicle reaches after driving for the given seconds from one point toward another
+     */
+    static double[] toward(double[] from, double[] to, double seconds) {
+        double dLat = to[0] - from[0];
+        double dLng = to[1] - from[1];
+        double distance = Math.hypot(dLat, dLng);
+        double step = seconds * DEGREES_PER_SECOND;
+        if (distance <= step) {
+            return to.clone();
+        }
+        return new double[]{from[0] + dLat * step / distance, from[1] + dLng * step / distance};
+    }
+
+    static String describe(double[] point) {
+        return String.format("%.5f, %.5f", point[0], point[1]);
+    }
+}
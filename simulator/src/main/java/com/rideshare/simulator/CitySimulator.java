@@ -0,0 +1,173 @@
+package com.rideshare.simulator;
+
+import com.rideshare.RideShareApplication;
+import com.rideshare.diagnostics.QueryBudgetRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Boots the application against an in-memory database and drives its HTTP
+ * API with a synthetic city of drivers and passengers, then prints throughput,
+ * latency percentiles and SQL statements per endpoint, and the endpoints
+ * that went over their query budget during sign-up or the run.
+ *
+ * Usage: CitySimulator [seed=42] [drivers=200] [passengers=1000] [duration=300] [peak-rpm=600]
+ *        [polling-share=0.5] [ping-interval=5] [minutes-per-second=1] [patience=45] [threads=platform]
+ *
+ * The seed fixes the workload: every user's home, route and choices, and the
+ * arrival schedule. What the server answers, and so which driver wins a fare,
+ * still depends on timing.
+ */
+public class CitySimulator {
+
+    private static final Logger logger = LoggerFactory.getLogger(CitySimulator.class);
+
+    private static final String PASSWORD = "simulated-password";
+    private static final int MAX_CONCURRENT_SIGNUPS = 32;
+    private static final long DRAIN_SECONDS = 45;
+
+    public static void main(String[] args) throws Exception {
+        SimulationOptions options = SimulationOptions.parse(args);
+        List<DemandCurve.Arrival> arrivals = DemandCurve.arrivals(options);
+        System.out.printf("Simulating %s%n%d passenger arrivals scheduled%n", options, arrivals.size());
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(RideShareApplication.class, SimulationConfig.class)
+                .profiles(options.profiles())
+                .run();
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4, runnable -> {
+            Thread thread = new Thread(runnable, "simulator-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            StatementCounter statements = context.getBean(StatementCounter.class);
+            LatencyReport setupReport = new LatencyReport("Sign-up");
+            ApiClient client = new ApiClient(baseUrl, setupReport);
+            Simulation sim = new Simulation(options, client, scheduler);
+
+            List<DriverAgent> drivers = new ArrayList<>(options.drivers);
+            List<PassengerAgent> passengers = new ArrayList<>(options.passengers);
+            for (int i = 0; i < options.drivers; i++) {
+                drivers.add(new DriverAgent(sim, i));
+            }
+            for (int i = 0; i < options.passengers; i++) {
+                passengers.add(new PassengerAgent(sim, i));
+            }
+
+            long setupStarted = System.nanoTime();
+            signUp(client, drivers, passengers, options.seed);
+            setupReport.print(System.out, System.nanoTime() - setupStarted, statements.snapshot());
+
+            LatencyReport runReport = new LatencyReport("City");
+            client.reportTo(runReport);
+            statements.reset();
+            long started = System.nanoTime();
+
+            Random stagger = new Random(options.seed);
+            for (DriverAgent driver : drivers) {
+                driver.start(stagger.nextDouble() * options.pingIntervalSeconds);
+            }
+            for (DemandCurve.Arrival arrival : arrivals) {
+                PassengerAgent passenger = passengers.get(arrival.passenger());
+                scheduler.schedule(() -> {
+                    if (sim.running() && !passenger.arrive(arrival.intent())) {
+                        sim.tally("arrival.skipped-busy");
+                    }
+                }, arrival.offsetMillis(), TimeUnit.MILLISECONDS);
+            }
+
+            TimeUnit.SECONDS.sleep(options.durationSeconds);
+            sim.stop();
+            drivers.forEach(DriverAgent::stop);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DRAIN_SECONDS);
+            while (client.inFlight() > 0 && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(100);
+            }
+            long elapsed = System.nanoTime() - started;
+            Map<String, Long> runStatements = statements.snapshot();
+
+            runReport.print(System.out, elapsed, runStatements);
+            sim.printTallies(System.out);
+            QueryBudgetRecorder budgets = context.getBeanProvider(QueryBudgetRecorder.class).getIfAvailable();
+            if (budgets != null) {
+                printBudgets(budgets.exceeded());
+            }
+        } finally {
+            scheduler.shutdownNow();
+            context.close();
+        }
+    }
+
+    private static void printBudgets(Map<String, Long> exceeded) {
+        System.out.println("Requests over query budget:");
+        if (exceeded.isEmpty()) {
+            System.out.println("  none");
+        }
+        exceeded.forEach((endpoint, count) -> System.out.printf("  %-40s %8d%n", endpoint, count));
+    }
+
+    /**
+     * Register every user through the API, a few at a time, and hand each their token
+     */
+    private static void signUp(ApiClient client, List<DriverAgent> drivers, List<PassengerAgent> passengers, long seed)
+            throws InterruptedException {
+        Semaphore permits = new Semaphore(MAX_CONCURRENT_SIGNUPS);
+        AtomicInteger failures = new AtomicInteger();
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+
+        for (int i = 0; i < drivers.size(); i++) {
+            DriverAgent driver = drivers.get(i);
+            permits.acquire();
+            pending.add(register(client, "driver", i, seed, "DRIVER").thenAccept(token -> {
+                permits.release();
+                if (token == null) {
+                    failures.incrementAndGet();
+                }
+                driver.signIn(token);
+            }));
+        }
+        for (int i = 0; i < passengers.size(); i++) {
+            PassengerAgent passenger = passengers.get(i);
+            permits.acquire();
+            pending.add(register(client, "passenger", i, seed, "PASSENGER").thenAccept(token -> {
+                permits.release();
+                if (token == null) {
+                    failures.incrementAndGet();
+                }
+                passenger.signIn(token);
+            }));
+        }
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).join();
+        if (failures.get() > 0) {
+            logger.warn("{} of {} users could not sign up and sit the run out",
+                    failures.get(), drivers.size() + passengers.size());
+        }
+    }
+
+    private static CompletableFuture<String> register(ApiClient client, String kind, int index, long seed, String role) {
+        Map<String, Object> request = Map.of(
+                "name", kind + " " + index,
+                "email", kind + "-" + index + "@seed-" + seed + ".sim",
+                "password", PASSWORD,
+                "phoneNumber", String.format("+9715%08d", index),
+                "role", role);
+        return client.post("POST /api/auth/register", "/api/auth/register", null, request).thenApply(response -> {
+            String token = response.ok() ? client.json(response).path("token").asText(null) : null;
+            return token == null || token.isEmpty() ? null : token;
+        });
+    }
+}
@@ -0,0 +1,75 @@
+package com.rideshare.simulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Passenger arrivals over a day compressed into the run: a non-homogeneous
+ * Poisson process with morning and evening peaks, sampled by thinning. The
+ * same seed always yields the same arrivals.
+ */
+final class DemandCurve {
+
+    enum Intent {
+        RIDE, SCHEDULE, SHARE, JOIN
+    }
+
+    record Arrival(long offsetMillis, int passenger, Intent intent) {
+    }
+
+    private static final double NIGHT_LEVEL = 0.1;
+    private static final double MIDDAY_LEVEL = 0.45;
+
+    private DemandCurve() {
+    }
+
+    /**
+     * @param hour Hour of the simulated day, 0 to 24
+     * @return Demand relative to the busiest hour, 0 to 1
+     */
+    static double intensity(double hour) {
+        double morning = peak(hour, 8.5, 1.2);
+        double evening = peak(hour, 18.0, 1.8);
+        double daytime = hour >= 7 && hour <= 22 ? MIDDAY_LEVEL : 0;
+        return Math.max(NIGHT_LEVEL, Math.max(daytime, Math.max(morning, evening)));
+    }
+
+    static List<Arrival> arrivals(SimulationOptions options) {
+        Random random = new Random(options.seed);
+        double durationMillis = options.durationSeconds * 1000.0;
+        double peakPerMilli = options.peakRequestsPerMinute / 60_000.0;
+        List<Arrival> arrivals = new ArrayList<>();
+
+        double t = 0;
+        while (true) {
+            t += -Math.log(1 - random.nextDouble()) / peakPerMilli;
+            if (t >= durationMillis) {
+                return arrivals;
+            }
+            double hour = 24 * t / durationMillis;
+            if (random.nextDouble() < intensity(hour)) {
+                arrivals.add(new Arrival((long) t, random.nextInt(options.passengers), intent(random)));
+            }
+        }
+    }
+
+    private static Intent intent(Random random) {
+        double draw = random.nextDouble();
+        if (draw < 0.6) {
+            return Intent.RIDE;
+        }
+        if (draw < 0.75) {
+            return Intent.SCHEDULE;
+        }
+        if (draw < 0.9) {
+            return Intent.SHARE;
+        }
+        return Intent.JOIN;
+    }
+
+    private static double peak(double hour, double center, double width) {
+        double z = (hour - center) / width;
+        return Math.exp(-z * z / 2);
+    }
+}
@@ -0,0 +1,212 @@
+package com.rideshare.simulator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A driver who cruises while idle and finds fares either by polling /nearby
+ * every ping interval or from a /feed subscription. An accepted fare is driven
+ * through pickup and the trip, posting GPS fixes along the way, then completed
+ * and sometimes rated.
+ */
+final class DriverAgent {
+
+    private static final double SEARCH_RADIUS_KM = 5.0;
+    private static final double CANCEL_AFTER_ACCEPT = 0.02;
+    private static final double RATE_PASSENGER = 0.5;
+    private static final int FIXES_PER_BATCH = 5;
+
+    private final Simulation sim;
+    private final int index;
+    private final Random random;
+    private final boolean polling;
+    private final AtomicBoolean idle = new AtomicBoolean(true);
+    private String token;
+    private ApiClient.EventStream feed;
+    private volatile double[] position;
+
+    DriverAgent(Simulation sim, int index) {
+        this.sim = sim;
+        this.index = index;
+        this.random = new Random(sim.options.seed * 7_000_003L + index);
+        this.polling = random.nextDouble() < sim.options.pollingShare;
+        this.position = City.randomPoint(random);
+    }
+
+    void signIn(String token) {
+        this.token = token;
+    }
+
+    /**
+     * Go online after a delay, so the fleet does not poll in lockstep
+     */
+    void start(double delaySeconds) {
+        if (token == null) {
+            return;
+        }
+        sim.after(delaySeconds, () -> {
+            if (!polling) {
+                subscribe();
+            }
+            tick();
+        });
+    }
+
+    void stop() {
+        if (feed != null) {
+            feed.cancel();
+        }
+    }
+
+    private void subscribe() {
+        double[] here = position;
+        feed = sim.client.subscribe("GET /api/rides/feed",
+                String.format("/api/rides/feed?latitude=%.6f&longitude=%.6f&radius=%.1f", here[0], here[1], SEARCH_RADIUS_KM),
+                token, this::onFeedEvent);
+    }
+
+    private void onFeedEvent(String name, String data) {
+        if (!"ride-added".equals(name) || !idle.get() || !sim.running()) {
+            return;
+        }
+        long rideId = rideId(data);
+        // Every other subscriber in range goes for each fare, so accepts still race
+        if (rideId >= 0 && (rideId + index) % 2 == 0) {
+            accept(rideId);
+        }
+    }
+
+    private void tick() {
+        if (!sim.running()) {
+            return;
+        }
+        if (idle.get()) {
+            position = City.wander(position, random);
+            if (polling) {
+                poll();
+            }
+        }
+        sim.after(sim.options.pingIntervalSeconds * (0.8 + 0.4 * random.nextDouble()), this::tick);
+    }
+
+    private void poll() {
+        double[] here = position;
+        int pick = random.nextInt(Integer.MAX_VALUE);
+        sim.client.get("GET /api/rides/nearby",
+                        String.format("/api/rides/nearby?latitude=%.6f&longitude=%.6f&radius=%.1f", here[0], here[1], SEARCH_RADIUS_KM),
+                        token)
+                .thenAccept(response -> {
+                    JsonNode rides = sim.client.json(response);
+                    if (response.ok() && rides.isArray() && !rides.isEmpty()) {
+                        accept(rides.get(pick % rides.size()).path("id").asLong());
+                    }
+                });
+    }
+
+    private void accept(long rideId) {
+        if (!idle.compareAndSet(true, false)) {
+            return;
+        }
+        sim.client.post("POST /api/rides/{id}/accept", "/api/rides/" + rideId + "/accept", token, null)
+                .thenAccept(response -> {
+                    if (!response.ok()) {
+                        sim.tally(response.status() == 409 ? "accept.lost-race" : "accept.rejected");
+                        idle.set(true);
+                        return;
+                    }
+                    sim.tally("accept.won");
+                    JsonNode ride = sim.client.json(response);
+                    if (random.nextDouble() < CANCEL_AFTER_ACCEPT) {
+                        cancel(rideId);
+                        return;
+                    }
+                    double[] pickup = {ride.path("pickupLat").asDouble(), ride.path("pickupLng").asDouble()};
+                    double[] dropoff = {ride.path("dropoffLat").asDouble(), ride.path("dropoffLng").asDouble()};
+                    double pickupMinutes = 2 + random.nextDouble() * 8;
+                    sim.after(sim.options.wallSeconds(pickupMinutes), () -> start(rideId, pickup, dropoff));
+                });
+    }
+
+    private void start(long rideId, double[] pickup, double[] dropoff) {
+        position = pickup;
+        sim.client.post("POST /api/rides/{id}/start", "/api/rides/" + rideId + "/start", token, null)
+                .thenAccept(response -> {
+                    if (!response.ok()) {
+                        sim.tally("trip.start-failed");
+                        idle.set(true);
+                        return;
+                    }
+                    double tripMinutes = 5 + random.nextDouble() * 30;
+                    long endsAt = System.nanoTime() + (long) (sim.options.wallSeconds(tripMinutes) * 1e9);
+                    drive(rideId, dropoff, endsAt);
+                });
+    }
+
+    /**
+     * Post a batch of fixes every few seconds until the trip's time is up, then complete it
+     */
+    private void drive(long rideId, double[] dropoff, long endsAt) {
+        if (System.nanoTime() >= endsAt) {
+            complete(rideId, dropoff);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> fixes = new ArrayList<>(FIXES_PER_BATCH);
+        double[] at = position;
+        for (int i = FIXES_PER_BATCH - 1; i >= 0; i--) {
+            at = City.toward(at, dropoff, 1);
+            fixes.add(Map.of("latitude", at[0], "longitude", at[1], "timestamp", now - i * 1000L));
+        }
+        position = at;
+        sim.client.post("POST /api/rides/{id}/trace", "/api/rides/" + rideId + "/trace", token, fixes)
+                .thenAccept(response -> sim.after(FIXES_PER_BATCH, () -> drive(rideId, dropoff, endsAt)));
+    }
+
+    private void complete(long rideId, double[] dropoff) {
+        position = dropoff;
+        sim.client.post("POST /api/rides/{id}/complete", "/api/rides/" + rideId + "/complete", token, null)
+                .thenAccept(response -> {
+                    if (!response.ok()) {
+                        sim.tally("trip.complete-failed");
+                        idle.set(true);
+                        return;
+                    }
+                    sim.tally("trip.completed");
+                    if (random.nextDouble() < RATE_PASSENGER) {
+                        int rating = 3 + random.nextInt(3);
+                        sim.client.post("POST /api/rides/{id}/rate-passenger",
+                                        "/api/rides/" + rideId + "/rate-passenger?rating=" + rating, token, null)
+                                .thenAccept(rated -> idle.set(true));
+                    } else {
+                        idle.set(true);
+                    }
+                });
+    }
+
+    private void cancel(long rideId) {
+        sim.client.post("POST /api/rides/{id}/cancel-by-driver",
+                        "/api/rides/" + rideId + "/cancel-by-driver?reason=simulated", token, null)
+                .thenAccept(response -> {
+                    sim.tally(response.ok() ? "accept.cancelled-by-driver" : "accept.cancel-failed");
+                    idle.set(true);
+                });
+    }
+
+    private static long rideId(String data) {
+        int key = data.indexOf("\"rideId\":");
+        if (key < 0) {
+            return -1;
+        }
+        int start = key + 9;
+        int end = start;
+        while (end < data.length() && Character.isDigit(data.charAt(end))) {
+            end++;
+        }
+        return end > start ? Long.parseLong(data.substring(start, end)) : -1;
+    }
+}
@@ -0,0 +1,62 @@
+package com.rideshare.simulator;
+
+import java.io.PrintStream;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Demand, dispatch and pricing figures per hour of the recorded day. Times
+ * come from the log, not the clock, so the same log always buckets the same way.
+ */
+final class HourlyReport {
+
+    private final Map<LocalDateTime, Hour> hours = new TreeMap<>();
+
+    Hour at(LocalDateTime time) {
+        return hours.computeIfAbsent(time.truncatedTo(ChronoUnit.HOURS), hour -> new Hour());
+    }
+
+    static final class Hour {
+        int requested;
+        int scheduled;
+        int accepted;
+        int acceptsRejected;
+        int cancelled;
+        int completed;
+        int pings;
+        int errors;
+        double quotedFares;
+        double completedFares;
+        long maxLagMillis;
+        final List<Long> secondsToAccept = new ArrayList<>();
+
+        void lag(long millis) {
+            maxLagMillis = Math.max(maxLagMillis, millis);
+        }
+    }
+
+    void print(PrintStream out) {
+        out.printf("%-16s %8s %8s %8s %8s %8s %8s %8s %7s %11s %11s %9s %9s %8s%n",
+                "hour", "request", "schedule", "accept", "rejected", "cancel", "complete", "pings", "errors",
+                "quoted", "completed", "wait p50", "wait p90", "lag ms");
+        hours.forEach((hour, h) -> out.printf("%-16s %8d %8d %8d %8d %8d %8d %8d %7d %11.2f %11.2f %9s %9s %8d%n",
+                hour.toString().replace('T', ' '), h.requested, h.scheduled, h.accepted, h.acceptsRejected,
+                h.cancelled, h.completed, h.pings, h.errors, h.quotedFares, h.completedFares,
+                percentile(h.secondsToAccept, 50), percentile(h.secondsToAccept, 90), h.maxLagMillis));
+    }
+
+    private static String percentile(List<Long> values, int percentile) {
+        if (values.isEmpty()) {
+            return "-";
+        }
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        int index = Math.min(sorted.size() - 1, (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1);
+        return sorted.get(Math.max(index, 0)) + "s";
+    }
+}
@@ -0,0 +1,88 @@
+package com.rideshare.simulator;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and status counts per endpoint for one phase of a run
+ */
+final class LatencyReport {
+
+    private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private final String title;
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    LatencyReport(String title) {
+        this.title = title;
+    }
+
+    void record(String endpoint, long nanos, int status) {
+        endpoints.computeIfAbsent(endpoint, key -> new Endpoint()).record(nanos, status);
+    }
+
+    /**
+     * @param elapsedNanos Length of the phase, for throughput
+     * @param statements SQL statements per endpoint over the same phase
+     */
+    void print(PrintStream out, long elapsedNanos, Map<String, Long> statements) {
+        double seconds = elapsedNanos / 1e9;
+        out.printf("%n== %s (%.1f s) ==%n", title, seconds);
+        out.printf("%-42s %8s %8s %9s %9s %9s %9s %6s %6s %6s %8s%n",
+                "endpoint", "count", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "4xx", "5xx", "i/o", "sql/req");
+
+        long totalRequests = 0;
+        long totalStatements = 0;
+        for (Map.Entry<String, Endpoint> entry : new TreeMap<>(endpoints).entrySet()) {
+            Endpoint endpoint = entry.getValue();
+            Histogram histogram = endpoint.histogram.copy();
+            long count = histogram.getTotalCount();
+            long sql = statements.getOrDefault(entry.getKey(), 0L);
+            totalRequests += count;
+            totalStatements += sql;
+            out.printf("%-42s %8d %8.1f %9.2f %9.2f %9.2f %9.2f %6d %6d %6d %8.2f%n",
+                    entry.getKey(), count, count / seconds,
+                    millis(histogram.getValueAtPercentile(50)),
+                    millis(histogram.getValueAtPercentile(99)),
+                    millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue()),
+                    endpoint.clientErrors.sum(), endpoint.serverErrors.sum(), endpoint.transportErrors.sum(),
+                    count == 0 ? 0.0 : (double) sql / count);
+        }
+
+        long unattributed = statements.getOrDefault(StatementCounter.UNATTRIBUTED, 0L);
+        out.printf("%-42s %8d %8.1f%n", "total", totalRequests, totalRequests / seconds);
+        out.printf("SQL statements: %d from simulated requests, %d %s%n",
+                totalStatements, unattributed, StatementCounter.UNATTRIBUTED);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static final class Endpoint {
+
+        final Histogram histogram = new ConcurrentHistogram(HIGHEST_MICROS, 3);
+        final LongAdder clientErrors = new LongAdder();
+        final LongAdder serverErrors = new LongAdder();
+        final LongAdder transportErrors = new LongAdder();
+
+        void record(long nanos, int status) {
+            histogram.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), HIGHEST_MICROS));
+            if (status < 0) {
+                transportErrors.increment();
+            } else if (status >= 500) {
+                serverErrors.increment();
+            } else if (status >= 400) {
+                clientErrors.increment();
+            }
+        }
+    }
+}
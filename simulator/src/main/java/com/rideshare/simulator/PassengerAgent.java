@@ -0,0 +1,210 @@
+package com.rideshare.simulator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A passenger who, each time demand picks them, requests, schedules, shares
+ * or joins a ride, then follows it by long-polling until it ends. Passengers
+ * cancel when no driver accepts within their patience, and sometimes after.
+ */
+final class PassengerAgent {
+
+    private static final double CANCEL_AFTER_ACCEPT = 0.05;
+    private static final double CANCEL_SCHEDULED = 0.2;
+    private static final double RATE_DRIVER = 0.7;
+    private static final long MAX_WAIT_SECONDS = 30;
+
+    private final Simulation sim;
+    private final Random random;
+    private final AtomicBoolean busy = new AtomicBoolean();
+    private String token;
+
+    PassengerAgent(Simulation sim, int index) {
+        this.sim = sim;
+        this.random = new Random(sim.options.seed * 1_000_003L + index);
+    }
+
+    void signIn(String token) {
+        this.token = token;
+    }
+
+    /**
+     * @return false if this passenger is still on an earlier ride
+     */
+    boolean arrive(DemandCurve.Intent intent) {
+        if (token == null || !busy.compareAndSet(false, true)) {
+            return false;
+        }
+        switch (intent) {
+            case RIDE -> request(false);
+            case SHARE -> request(true);
+            case SCHEDULE -> schedule();
+            case JOIN -> join();
+        }
+        return true;
+    }
+
+    private void request(boolean shared) {
+        long deadline = System.nanoTime() + (long) (exponential(sim.options.patienceSeconds) * 1e9);
+        sim.client.post("POST /api/rides", "/api/rides", token, rideRequest(6, shared))
+                .thenAccept(response -> {
+                    if (!response.ok()) {
+                        finish(shared ? "share.rejected" : "ride.rejected");
+                        return;
+                    }
+                    sim.tally(shared ? "share.requested" : "ride.requested");
+                    follow(sim.client.json(response).path("id").asLong(), response.eTag(), deadline, true, false);
+                });
+    }
+
+    private void schedule() {
+        int minutesAhead = 61 + random.nextInt(180);
+        boolean cancelLater = random.nextDouble() < CANCEL_SCHEDULED;
+        double cancelAfter = 5 + random.nextDouble() * 30;
+        sim.client.post("POST /api/rides/schedule", "/api/rides/schedule", token, rideRequest(minutesAhead, false))
+                .thenAccept(response -> {
+                    if (!response.ok()) {
+                        finish("schedule.rejected");
+                        return;
+                    }
+                    sim.tally("schedule.created");
+                    if (!cancelLater) {
+                        finish(null);
+                        return;
+                    }
+                    long rideId = sim.client.json(response).path("id").asLong();
+                    // The passenger is free in the meantime
+                    busy.set(false);
+                    sim.after(cancelAfter, () -> cancel(rideId, "schedule.cancelled", false));
+                });
+    }
+
+    private void join() {
+        int pick = random.nextInt(Integer.MAX_VALUE);
+        sim.client.get("GET /api/rides/shared", "/api/rides/shared", token).thenAccept(response -> {
+            JsonNode rides = sim.client.json(response);
+            if (!response.ok() || !rides.isArray() || rides.isEmpty()) {
+                finish("join.none-available");
+                return;
+            }
+            long rideId = rides.get(pick % rides.size()).path("id").asLong();
+            sim.client.post("POST /api/rides/{id}/join", "/api/rides/" + rideId + "/join", token, null)
+                    .thenAccept(joined -> {
+                        if (!joined.ok()) {
+                            finish("join.rejected");
+                            return;
+                        }
+                        sim.tally("join.joined");
+                        follow(rideId, joined.eTag(), Long.MAX_VALUE, false, false);
+                    });
+        });
+    }
+
+    /**
+     * Long-poll the ride until it completes or is cancelled
+     * @param deadline System.nanoTime() after which a ride still unaccepted is cancelled
+     * @param owner Whether this passenger requested the ride, and so may cancel and rate it
+     * @param accepted Whether an accepted state has been seen already
+     */
+    private void follow(long rideId, String eTag, long deadline, boolean owner, boolean accepted) {
+        if (!sim.running()) {
+            finish(null);
+            return;
+        }
+        long waitSeconds = accepted || deadline == Long.MAX_VALUE
+                ? MAX_WAIT_SECONDS
+                : Math.max(1, Math.min(MAX_WAIT_SECONDS, (deadline - System.nanoTime()) / 1_000_000_000L));
+        sim.client.get("GET /api/rides/{id}?waitForChange",
+                        "/api/rides/" + rideId + "?waitForChange=" + waitSeconds + "s", token, eTag)
+                .thenAccept(response -> {
+                    if (response.status() == 304) {
+                        if (!accepted && owner && System.nanoTime() >= deadline) {
+                            cancel(rideId, "ride.cancelled.impatient", true);
+                        } else {
+                            follow(rideId, eTag, deadline, owner, accepted);
+                        }
+                        return;
+                    }
+                    if (!response.ok()) {
+                        finish("ride.follow-failed");
+                        return;
+                    }
+                    onChange(rideId, response, deadline, owner, accepted);
+                });
+    }
+
+    private void onChange(long rideId, ApiClient.Response response, long deadline, boolean owner, boolean accepted) {
+        String status = sim.client.json(response).path("status").asText();
+        switch (status) {
+            case "REQUESTED" -> {
+                if (owner && System.nanoTime() >= deadline) {
+                    cancel(rideId, "ride.cancelled.impatient", true);
+                } else {
+                    follow(rideId, response.eTag(), deadline, owner, false);
+                }
+            }
+            case "COMPLETED" -> {
+                if (owner && random.nextDouble() < RATE_DRIVER) {
+                    int rating = 3 + random.nextInt(3);
+                    sim.client.post("POST /api/rides/{id}/rate-driver",
+                                    "/api/rides/" + rideId + "/rate-driver?rating=" + rating, token, null)
+                            .thenAccept(rated -> finish("ride.completed"));
+                } else {
+                    finish("ride.completed");
+                }
+            }
+            case "CANCELLED" -> finish("ride.cancelled.elsewhere");
+            default -> {
+                // Accepted, arriving or under way
+                if (!accepted && owner && random.nextDouble() < CANCEL_AFTER_ACCEPT) {
+                    cancel(rideId, "ride.cancelled.after-accept", true);
+                } else {
+                    follow(rideId, response.eTag(), deadline, owner, true);
+                }
+            }
+        }
+    }
+
+    private void cancel(long rideId, String outcome, boolean finishes) {
+        sim.client.post("POST /api/rides/{id}/cancel", "/api/rides/" + rideId + "/cancel", token, null)
+                .thenAccept(response -> {
+                    String result = response.ok() ? outcome : outcome + ".failed";
+                    if (finishes) {
+                        finish(result);
+                    } else {
+                        sim.tally(result);
+                    }
+                });
+    }
+
+    private void finish(String outcome) {
+        if (outcome != null) {
+            sim.tally(outcome);
+        }
+        busy.set(false);
+    }
+
+    private Map<String, Object> rideRequest(int minutesAhead, boolean shared) {
+        double[] pickup = City.randomPoint(random);
+        double[] dropoff = City.randomPoint(random);
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("pickupLocation", City.describe(pickup));
+        request.put("dropoffLocation", City.describe(dropoff));
+        request.put("rideTime", LocalDateTime.now().plusMinutes(minutesAhead).withNano(0).toString());
+        request.put("seats", 1);
+        request.put("isShared", shared);
+        request.put("pickupCoordinates", Map.of("lat", pickup[0], "lng", pickup[1]));
+        request.put("dropoffCoordinates", Map.of("lat", dropoff[0], "lng", dropoff[1]));
+        return request;
+    }
+
+    private double exponential(double mean) {
+        return -Math.log(1 - random.nextDouble()) * mean;
+    }
+}
@@ -0,0 +1,67 @@
+package com.rideshare.simulator;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+
+/**
+ * A clock that stands still at its origin until started, then runs a fixed
+ * number of times faster than real time
+ */
+final class ReplayClock extends Clock {
+
+    private final State state;
+    private final ZoneId zone;
+
+    private static final class State {
+        final Instant origin;
+        final double speed;
+        volatile long startedNanos = -1;
+
+        State(Instant origin, double speed) {
+            this.origin = origin;
+            this.speed = speed;
+        }
+    }
+
+    ReplayClock(Instant origin, double speed, ZoneId zone) {
+        this(new State(origin, speed), zone);
+    }
+
+    private ReplayClock(State state, ZoneId zone) {
+        this.state = state;
+        this.zone = zone;
+    }
+
+    void start() {
+        state.startedNanos = System.nanoTime();
+    }
+
+    /**
+     * @return Real nanoseconds from now until this clock shows the given instant; negative once it has passed
+     */
+    long realNanosUntil(Instant instant) {
+        long virtualNanos = Duration.between(state.origin, instant).toNanos();
+        return state.startedNanos + (long) (virtualNanos / state.speed) - System.nanoTime();
+    }
+
+    @Override
+    public Instant instant() {
+        long started = state.startedNanos;
+        if (started < 0) {
+            return state.origin;
+        }
+        return state.origin.plusNanos((long) ((System.nanoTime() - started) * state.speed));
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return zone.equals(this.zone) ? this : new ReplayClock(state, zone);
+    }
+}
@@ -0,0 +1,79 @@
+package com.rideshare.simulator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A recorded request log, one tab-separated event per line:
+ *
+ *   time  event  ride  user  [lat  lng  [lat2  lng2  [ride-time]]]
+ *
+ * - time and ride-time are ISO local date-times, e.g. 2024-05-01T07:58:12
+ * - event is request, share, schedule, accept, start, complete, cancel or ping
+ * - ride and user are references from the source system; the replay maps them to its own IDs
+ * - request, share and schedule carry pickup and dropoff coordinates, and schedule its ride-time
+ * - ping carries the driver's fix in lat and lng
+ *
+ * Blank lines and lines starting with # are skipped. Events are replayed in time order.
+ */
+final class ReplayLog {
+
+    enum Type {
+        REQUEST, SHARE, SCHEDULE, ACCEPT, START, COMPLETE, CANCEL, PING
+    }
+
+    record Event(int line, LocalDateTime time, Type type, String ride, String user,
+                 double lat, double lng, double lat2, double lng2, LocalDateTime rideTime) {
+    }
+
+    private ReplayLog() {
+    }
+
+    static List<Event> read(Path path) throws IOException {
+        List<Event> events = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                events.add(parse(number, line.split("\t", -1)));
+            }
+        }
+        // Stable, so events recorded in the same instant keep their order
+        events.sort(Comparator.comparing(Event::time));
+        return events;
+    }
+
+    private static Event parse(int line, String[] columns) {
+        if (columns.length < 4) {
+            throw new IllegalArgumentException("Line " + line + ": expected at least time, event, ride and user");
+        }
+        try {
+            Type type = Type.valueOf(columns[1].trim().toUpperCase());
+            return new Event(line,
+                    LocalDateTime.parse(columns[0].trim()),
+                    type,
+                    columns[2].trim(),
+                    columns[3].trim(),
+                    number(columns, 4), number(columns, 5), number(columns, 6), number(columns, 7),
+                    columns.length > 8 && !columns[8].isBlank() ? LocalDateTime.parse(columns[8].trim()) : null);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Line " + line + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static double number(String[] columns, int index) {
+        return columns.length > index && !columns[index].isBlank() ? Double.parseDouble(columns[index].trim()) : Double.NaN;
+    }
+}
@@ -0,0 +1,62 @@
+package com.rideshare.simulator;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What the simulated users share: the client, a timer and the run's outcome tallies
+ */
+final class Simulation {
+
+    final SimulationOptions options;
+    final ApiClient client;
+
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, LongAdder> tallies = new ConcurrentHashMap<>();
+    private volatile boolean running = true;
+
+    Simulation(SimulationOptions options, ApiClient client, ScheduledExecutorService scheduler) {
+        this.options = options;
+        this.client = client;
+        this.scheduler = scheduler;
+    }
+
+    boolean running() {
+        return running;
+    }
+
+    /**
+     * Users finish the call they are in but start nothing new
+     */
+    void stop() {
+        running = false;
+    }
+
+    /**
+     * Run an action after a wall-clock delay, unless the run has ended by then
+     */
+    void after(double seconds, Runnable action) {
+        if (!running) {
+            return;
+        }
+        scheduler.schedule(() -> {
+            if (running) {
+                action.run();
+            }
+        }, (long) (seconds * 1000), TimeUnit.MILLISECONDS);
+    }
+
+    void tally(String outcome) {
+        tallies.computeIfAbsent(outcome, key -> new LongAdder()).increment();
+    }
+
+    void printTallies(PrintStream out) {
+        out.println("Outcomes:");
+        new TreeMap<>(tallies).forEach((outcome, count) -> out.printf("  %-32s %8d%n", outcome, count.sum()));
+    }
+}
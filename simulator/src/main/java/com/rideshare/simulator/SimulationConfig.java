@@ -0,0 +1,38 @@
+package com.rideshare.simulator;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+
+/**
+ * Beans the simulator adds to the application it boots
+ */
+@Configuration
+@Profile("simulation")
+public class SimulationConfig {
+
+    @Bean
+    public StatementCounter statementCounter() {
+        return new StatementCounter();
+    }
+
+    @Bean
+    public FilterRegistrationBean<StatementCounter> statementCounterFilter(StatementCounter statementCounter) {
+        FilterRegistrationBean<StatementCounter> registration = new FilterRegistrationBean<>(statementCounter);
+        // Ahead of Spring Security, so the user lookup for the JWT is counted too
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer statementCounting(StatementCounter statementCounter) {
+        // Chained with the query budget recorder when both are registered, in either order
+        return properties -> properties.merge(AvailableSettings.STATEMENT_INSPECTOR, statementCounter,
+                (existing, ours) -> (StatementInspector) sql -> statementCounter.inspect(((StatementInspector) existing).inspect(sql)));
+    }
+}
@@ -0,0 +1,82 @@
+package com.rideshare.simulator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Run parameters, given on the command line as key=value pairs
+ */
+final class SimulationOptions {
+
+    /** Fixes the synthetic city: who arrives when, wanting what, from where */
+    final long seed;
+    final int drivers;
+    final int passengers;
+    /** Wall-clock length of the run, in seconds; a whole day of demand is compressed into it */
+    final int durationSeconds;
+    /** Ride requests per minute at the busiest hour */
+    final double peakRequestsPerMinute;
+    /** Share of drivers polling /nearby; the rest hold a /feed subscription */
+    final double pollingShare;
+    /** Seconds between a driver's polls and location updates */
+    final double pingIntervalSeconds;
+    /** Simulated minutes per wall-clock second for pickups and trips */
+    final double minutesPerSecond;
+    /** Mean seconds a passenger waits for a driver before cancelling */
+    final double patienceSeconds;
+    /** platform, or virtual to boot the application with the virtual-threads profile (needs JDK 21) */
+    final String threads;
+
+    private SimulationOptions(Map<String, String> values) {
+        this.seed = Long.parseLong(values.getOrDefault("seed", "42"));
+        this.drivers = Integer.parseInt(values.getOrDefault("drivers", "200"));
+        this.passengers = Integer.parseInt(values.getOrDefault("passengers", "1000"));
+        this.durationSeconds = Integer.parseInt(values.getOrDefault("duration", "300"));
+        this.peakRequestsPerMinute = Double.parseDouble(values.getOrDefault("peak-rpm", "600"));
+        this.pollingShare = Double.parseDouble(values.getOrDefault("polling-share", "0.5"));
+        this.pingIntervalSeconds = Double.parseDouble(values.getOrDefault("ping-interval", "5"));
+        this.minutesPerSecond = Double.parseDouble(values.getOrDefault("minutes-per-second", "1"));
+        this.patienceSeconds = Double.parseDouble(values.getOrDefault("patience", "45"));
+        this.threads = values.getOrDefault("threads", "platform");
+        if (!threads.equals("platform") && !threads.equals("virtual")) {
+            throw new IllegalArgumentException("threads must be platform or virtual, not " + threads);
+        }
+    }
+
+    static SimulationOptions parse(String[] args) {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String arg : args) {
+            String option = arg.startsWith("--") ? arg.substring(2) : arg;
+            int equals = option.indexOf('=');
+            if (equals <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+            values.put(option.substring(0, equals), option.substring(equals + 1));
+        }
+        return new SimulationOptions(values);
+    }
+
+    /**
+     * Spring profiles to boot the application with
+     */
+    String[] profiles() {
+        return threads.equals("virtual")
+                ? new String[] {"simulation", "virtual-threads"}
+                : new String[] {"simulation"};
+    }
+
+    /**
+     * Wall-clock seconds for a span of simulated minutes
+     */
+    double wallSeconds(double simulatedMinutes) {
+        return simulatedMinutes / minutesPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("seed=%d drivers=%d passengers=%d duration=%ds peak-rpm=%.0f polling-share=%.2f "
+                        + "ping-interval=%.1fs minutes-per-second=%.2f patience=%.0fs threads=%s",
+                seed, drivers, passengers, durationSeconds, peakRequestsPerMinute, pollingShare,
+                pingIntervalSeconds, minutesPerSecond, patienceSeconds, threads);
+    }
+}
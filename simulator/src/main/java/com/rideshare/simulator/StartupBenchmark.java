@@ -0,0 +1,161 @@
+package com.rideshare.simulator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures how long a fresh backend process takes to serve its first request.
+ * Each run launches the command, polls the URL until it answers 2xx, then
+ * stops the process; the clock starts before the process is launched, so JVM
+ * start, class loading and schema checks all count.
+ *
+ * Usage: StartupBenchmark [runs=5] [url=http://localhost:8080/api/health]
+ *        [label=...] [result=startup.tsv] -- <command...>
+ *
+ * Prints the time to first response and Spring's own "Started ... in" figure
+ * for every run, then the median, min and max. With result= each summary is
+ * appended as a line of label, runs, median, min and max milliseconds, so
+ * builds can be compared over time.
+ */
+public class StartupBenchmark {
+
+    private static final Pattern STARTED = Pattern.compile("Started RideShareApplication in ([0-9.]+) seconds");
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(20);
+    private static final Duration GIVE_UP_AFTER = Duration.ofMinutes(3);
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofMillis(200))
+            .build();
+
+    public static void main(String[] args) throws Exception {
+        int separator = Arrays.asList(args).indexOf("--");
+        if (separator < 0 || separator == args.length - 1) {
+            System.err.println("Usage: StartupBenchmark [runs=5] [url=...] [label=...] [result=file.tsv] -- <command...>");
+            System.exit(2);
+        }
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : Arrays.copyOfRange(args, 0, separator)) {
+            int equals = arg.indexOf('=');
+            if (equals <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+            options.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        List<String> command = List.of(Arrays.copyOfRange(args, separator + 1, args.length));
+
+        int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+        URI url = URI.create(options.getOrDefault("url", "http://localhost:8080/api/health"));
+        String label = options.getOrDefault("label", String.join(" ", command));
+
+        StartupBenchmark benchmark = new StartupBenchmark();
+        List<Long> firstResponseMillis = new ArrayList<>();
+        for (int run = 1; run <= runs; run++) {
+            Run result = benchmark.run(command, url);
+            firstResponseMillis.add(result.firstResponseMillis);
+            System.out.printf("run %d: first response %d ms, Spring reported %s%n", run, result.firstResponseMillis,
+                    result.springSeconds != null ? result.springSeconds + " s" : "nothing");
+        }
+
+        Collections.sort(firstResponseMillis);
+        long median = firstResponseMillis.get(firstResponseMillis.size() / 2);
+        long min = firstResponseMillis.get(0);
+        long max = firstResponseMillis.get(firstResponseMillis.size() - 1);
+        System.out.printf("%s: median %d ms, min %d ms, max %d ms over %d runs%n", label, median, min, max, runs);
+
+        String resultFile = options.get("result");
+        if (resultFile != null) {
+            Path path = Paths.get(resultFile);
+            String line = String.join("\t", label, String.valueOf(runs),
+                    String.valueOf(median), String.valueOf(min), String.valueOf(max)) + "\n";
+            Files.writeString(path, line, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+    }
+
+    private Run run(List<String> command, URI url) throws IOException, InterruptedException {
+        if (answers(url)) {
+            throw new IllegalStateException(url + " already answers; stop whatever is serving it first");
+        }
+        Run result = new Run();
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        try {
+            Thread output = new Thread(() -> readOutput(process, result), "startup-output");
+            output.setDaemon(true);
+            output.start();
+
+            long deadline = started + GIVE_UP_AFTER.toNanos();
+            while (!answers(url)) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("Process exited with " + process.exitValue() + " before answering");
+                }
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException("No answer from " + url + " within " + GIVE_UP_AFTER);
+                }
+                Thread.sleep(POLL_INTERVAL.toMillis());
+            }
+            result.firstResponseMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            // The log line comes out just before the first response, give the reader a moment to see it
+            output.join(200);
+            return result;
+        } finally {
+            stop(process);
+        }
+    }
+
+    private boolean answers(URI url) throws InterruptedException {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(url).timeout(Duration.ofSeconds(2)).GET().build();
+            int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            return status >= 200 && status < 300;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void readOutput(Process process, Run result) {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Matcher matcher = STARTED.matcher(line);
+                if (matcher.find()) {
+                    result.springSeconds = matcher.group(1);
+                }
+            }
+        } catch (IOException e) {
+            // The process was stopped
+        }
+    }
+
+    private static void stop(Process process) throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(30, TimeUnit.SECONDS)) {
+            process.destroyForcibly().waitFor();
+        }
+    }
+
+    private static final class Run {
+        private long firstResponseMillis;
+        private volatile String springSeconds;
+    }
+}
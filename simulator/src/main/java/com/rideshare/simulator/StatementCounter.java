@@ -0,0 +1,64 @@
+package com.rideshare.simulator;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the SQL statements Hibernate prepares, per simulated endpoint. The
+ * client names the endpoint in a header; statements run on other threads
+ * (async controllers, schedulers, outbox workers) land in UNATTRIBUTED.
+ */
+public class StatementCounter extends OncePerRequestFilter implements StatementInspector {
+
+    static final String UNATTRIBUTED = "(async and background)";
+
+    private static final ThreadLocal<String> currentEndpoint = new ThreadLocal<>();
+
+    private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String endpoint = request.getHeader(ApiClient.ENDPOINT_HEADER);
+        if (endpoint == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        currentEndpoint.set(endpoint);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            currentEndpoint.remove();
+        }
+    }
+
+    @Override
+    public String inspect(String sql) {
+        String endpoint = currentEndpoint.get();
+        counts.computeIfAbsent(endpoint != null ? endpoint : UNATTRIBUTED, key -> new LongAdder()).increment();
+        return sql;
+    }
+
+    /**
+     * @return Statements per endpoint since the last reset
+     */
+    Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        counts.forEach((endpoint, count) -> snapshot.put(endpoint, count.sum()));
+        return snapshot;
+    }
+
+    void reset() {
+        counts.clear();
+    }
+}
@@ -0,0 +1,248 @@
+package com.rideshare.simulator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rideshare.RideShareApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes ride status to many WebSocket subscribers at once. Boots the
+ * application like CitySimulator, signs up one passenger and one driver, and
+ * opens the given number of connections for the passenger. Each round books a
+ * ride, subscribes every connection to it, then accepts, starts and completes
+ * it, timing how long each status takes to reach every subscriber.
+ *
+ * Idle connections that never send a token are opened alongside; they should
+ * all be closed with 1008 once rides.status.auth-timeout has passed.
+ *
+ * Usage: StatusFanOut [subscribers=1000] [rounds=5] [idle=100] [seed=42]
+ */
+public class StatusFanOut {
+
+    private static final String PASSWORD = "simulated-password";
+    private static final long WAIT_SECONDS = 30;
+    private static final int POLICY_VIOLATION = 1008;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final LatencyReport deliveries = new LatencyReport("Status delivery");
+    // Keyed by "rideId:STATUS": when the change was requested, and the subscribers still to hear of it
+    private final Map<String, Long> sentAt = new ConcurrentHashMap<>();
+    private final Map<String, CountDownLatch> awaiting = new ConcurrentHashMap<>();
+    private final AtomicInteger missed = new AtomicInteger();
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+            options.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        int subscribers = Integer.parseInt(options.getOrDefault("subscribers", "1000"));
+        int rounds = Integer.parseInt(options.getOrDefault("rounds", "5"));
+        int idle = Integer.parseInt(options.getOrDefault("idle", "100"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(RideShareApplication.class, SimulationConfig.class)
+                .profiles("simulation")
+                .run();
+        try {
+            String port = context.getEnvironment().getProperty("local.server.port");
+            long authTimeoutMillis = context.getEnvironment().getProperty("rides.status.auth-timeout", Long.class, 5000L);
+            new StatusFanOut().run("http://localhost:" + port, URI.create("ws://localhost:" + port + "/ws/rides"),
+                    subscribers, rounds, idle, authTimeoutMillis, new Random(seed));
+        } finally {
+            context.close();
+        }
+    }
+
+    private void run(String baseUrl, URI wsUrl, int subscribers, int rounds, int idle, long authTimeoutMillis,
+                     Random random) throws Exception {
+        LatencyReport calls = new LatencyReport("Calls");
+        ApiClient client = new ApiClient(baseUrl, calls);
+        String passenger = register(client, "passenger", "PASSENGER");
+        String driver = register(client, "driver", "DRIVER");
+
+        List<Connection> idleConnections = open(wsUrl, idle);
+        List<Connection> connections = open(wsUrl, subscribers);
+        long idleOpenedAt = System.nanoTime();
+        System.out.printf("Opened %d subscriber and %d idle connections%n", connections.size(), idleConnections.size());
+
+        long started = System.nanoTime();
+        for (int round = 1; round <= rounds; round++) {
+            JsonNode ride = client.json(client.post("POST /api/rides", "/api/rides", passenger, rideRequest(random)).join());
+            long rideId = ride.path("id").asLong();
+            if (rideId == 0) {
+                throw new IllegalStateException("Could not book a ride: " + ride);
+            }
+
+            // The subscribe answer is the current state, so it is timed from the subscribe message
+            expect(rideId, "REQUESTED", connections.size());
+            String subscribe = objectMapper.writeValueAsString(Map.of("type", "subscribe", "rideId", rideId, "token", passenger));
+            for (Connection connection : connections) {
+                connection.socket.sendText(subscribe, true);
+            }
+            await(rideId, "REQUESTED");
+
+            transition(client, driver, rideId, "accept", "ACCEPTED", connections.size());
+            transition(client, driver, rideId, "start", "IN_PROGRESS", connections.size());
+            transition(client, driver, rideId, "complete", "COMPLETED", connections.size());
+        }
+        long elapsed = System.nanoTime() - started;
+        deliveries.print(System.out, elapsed, Map.of());
+
+        long idleFor = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - idleOpenedAt);
+        if (idleFor < authTimeoutMillis + 1000) {
+            TimeUnit.MILLISECONDS.sleep(authTimeoutMillis + 1000 - idleFor);
+        }
+        long idleClosed = idleConnections.stream().filter(connection -> connection.closeCode == POLICY_VIOLATION).count();
+        long subscribersClosed = connections.stream().filter(connection -> connection.closeCode != 0).count();
+
+        System.out.printf("%d deliveries missed the %d s wait%n", missed.get(), WAIT_SECONDS);
+        System.out.printf("%d of %d subscribers were closed by the server%n", subscribersClosed, connections.size());
+        System.out.printf("%d of %d idle connections were closed for not authenticating%n", idleClosed, idleConnections.size());
+
+        for (Connection connection : connections) {
+            connection.socket.abort();
+        }
+        for (Connection connection : idleConnections) {
+            connection.socket.abort();
+        }
+    }
+
+    private void transition(ApiClient client, String driver, long rideId, String action, String status, int subscribers) {
+        expect(rideId, status, subscribers);
+        ApiClient.Response response = client.post("POST /api/rides/{id}/" + action,
+                "/api/rides/" + rideId + "/" + action, driver, null).join();
+        if (!response.ok()) {
+            throw new IllegalStateException(action + " failed with " + response.status() + ": " + response.body());
+        }
+        await(rideId, status);
+    }
+
+    private void expect(long rideId, String status, int subscribers) {
+        String key = rideId + ":" + status;
+        awaiting.put(key, new CountDownLatch(subscribers));
+        sentAt.put(key, System.nanoTime());
+    }
+
+    private void await(long rideId, String status) {
+        CountDownLatch latch = awaiting.get(rideId + ":" + status);
+        try {
+            if (!latch.await(WAIT_SECONDS, TimeUnit.SECONDS)) {
+                missed.addAndGet((int) latch.getCount());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void delivered(String text) {
+        JsonNode update;
+        try {
+            update = objectMapper.readTree(text);
+        } catch (IOException e) {
+            return;
+        }
+        if (!"ride-status".equals(update.path("type").asText())) {
+            return;
+        }
+        String status = update.path("status").asText();
+        String key = update.path("rideId").asLong() + ":" + status;
+        Long sent = sentAt.get(key);
+        CountDownLatch latch = awaiting.get(key);
+        if (sent != null && latch != null) {
+            deliveries.record("WS ride-status " + status, System.nanoTime() - sent, 200);
+            latch.countDown();
+        }
+    }
+
+    private List<Connection> open(URI wsUrl, int count) {
+        List<CompletableFuture<WebSocket>> opening = new ArrayList<>(count);
+        List<Connection> connections = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Connection connection = new Connection();
+            connections.add(connection);
+            opening.add(http.newWebSocketBuilder().buildAsync(wsUrl, connection)
+                    .thenApply(socket -> connection.socket = socket));
+        }
+        CompletableFuture.allOf(opening.toArray(new CompletableFuture[0])).join();
+        return connections;
+    }
+
+    private static String register(ApiClient client, String kind, String role) {
+        Map<String, Object> request = Map.of(
+                "name", kind + " fan-out",
+                "email", kind + "-fan-out-" + System.nanoTime() + "@status.sim",
+                "password", PASSWORD,
+                "phoneNumber", String.format("+9715%08d", role.equals("DRIVER") ? 1 : 2),
+                "role", role);
+        ApiClient.Response response = client.post("POST /api/auth/register", "/api/auth/register", null, request).join();
+        String token = client.json(response).path("token").asText(null);
+        if (!response.ok() || token == null) {
+            throw new IllegalStateException("Could not sign up the " + kind + ": " + response.status());
+        }
+        return token;
+    }
+
+    private static Map<String, Object> rideRequest(Random random) {
+        double[] pickup = City.randomPoint(random);
+        double[] dropoff = City.randomPoint(random);
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("pickupLocation", City.describe(pickup));
+        request.put("dropoffLocation", City.describe(dropoff));
+        request.put("rideTime", LocalDateTime.now().plusMinutes(6).withNano(0).toString());
+        request.put("seats", 1);
+        request.put("isShared", false);
+        request.put("pickupCoordinates", Map.of("lat", pickup[0], "lng", pickup[1]));
+        request.put("dropoffCoordinates", Map.of("lat", dropoff[0], "lng", dropoff[1]));
+        return request;
+    }
+
+    /**
+     * One client connection; hands each complete text message to the run
+     */
+    private final class Connection implements WebSocket.Listener {
+
+        private final StringBuilder partial = new StringBuilder();
+        private volatile WebSocket socket;
+        private volatile int closeCode;
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            partial.append(data);
+            if (last) {
+                delivered(partial.toString());
+                partial.setLength(0);
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            closeCode = statusCode;
+            return null;
+        }
+    }
+}
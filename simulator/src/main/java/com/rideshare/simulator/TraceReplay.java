@@ -0,0 +1,232 @@
+package com.rideshare.simulator;
+
+import com.rideshare.RideShareApplication;
+import com.rideshare.dto.RideRequest;
+import com.rideshare.dto.TracePoint;
+import com.rideshare.model.Ride;
+import com.rideshare.model.User;
+import com.rideshare.model.UserRole;
+import com.rideshare.repository.UserRepository;
+import com.rideshare.service.RideService;
+import com.rideshare.service.TripTraceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a recorded request log through the service layer under a virtual
+ * clock, so a day of traffic runs in minutes against the current dispatch
+ * and pricing code. The application boots on the in-memory database with the
+ * replay clock as its @Primary Clock; events run one at a time on the replay
+ * thread, each once the virtual clock reaches its recorded time.
+ *
+ * Usage: TraceReplay <log.tsv> [speed=100]
+ *
+ * See ReplayLog for the log format. Prints demand, dispatch and fare figures
+ * per recorded hour; "lag ms" is how far real time the replay fell behind.
+ */
+public class TraceReplay {
+
+    private static final Logger logger = LoggerFactory.getLogger(TraceReplay.class);
+
+    private static final double DEFAULT_SPEED = 100;
+    // Live clients send ride times a little past the 5 minute minimum
+    private static final Duration DEFAULT_LEAD = Duration.ofMinutes(6);
+
+    private final RideService rideService;
+    private final TripTraceService tripTraceService;
+    private final UserRepository userRepository;
+    private final Clock clock;
+    private final HourlyReport report = new HourlyReport();
+
+    private final Map<String, User> users = new HashMap<>();
+    private final Map<String, Long> rideIds = new HashMap<>();
+    private final Map<String, LocalDateTime> requestedAt = new HashMap<>();
+
+    private TraceReplay(ConfigurableApplicationContext context, Clock clock) {
+        this.clock = clock;
+        this.rideService = context.getBean(RideService.class);
+        this.tripTraceService = context.getBean(TripTraceService.class);
+        this.userRepository = context.getBean(UserRepository.class);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: TraceReplay <log.tsv> [speed=100]");
+            System.exit(2);
+        }
+        Path logPath = Paths.get(args[0]);
+        double speed = args.length > 1 ? Double.parseDouble(args[1].replace("speed=", "")) : DEFAULT_SPEED;
+
+        List<ReplayLog.Event> events = ReplayLog.read(logPath);
+        if (events.isEmpty()) {
+            System.err.println("No events in " + logPath);
+            return;
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        ReplayClock clock = new ReplayClock(events.get(0).time().atZone(zone).toInstant(), speed, zone);
+
+        ApplicationContextInitializer<GenericApplicationContext> primaryClock = context ->
+                context.registerBean("replayClock", Clock.class, () -> clock, definition -> definition.setPrimary(true));
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(RideShareApplication.class, SimulationConfig.class)
+                .profiles("simulation")
+                .initializers(primaryClock)
+                .run();
+        try {
+            System.out.printf("Replaying %d events from %s to %s at %.0fx%n",
+                    events.size(), events.get(0).time(), events.get(events.size() - 1).time(), speed);
+            TraceReplay replay = new TraceReplay(context, clock);
+            long started = System.nanoTime();
+            clock.start();
+            for (ReplayLog.Event event : events) {
+                long wait = clock.realNanosUntil(event.time().atZone(zone).toInstant());
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                replay.apply(event, Math.max(0, -wait) / 1_000_000);
+            }
+            System.out.printf("Replayed in %.1f s%n", (System.nanoTime() - started) / 1e9);
+            replay.report.print(System.out);
+        } finally {
+            context.close();
+        }
+    }
+
+    private void apply(ReplayLog.Event event, long lagMillis) {
+        HourlyReport.Hour hour = report.at(event.time());
+        hour.lag(lagMillis);
+        try {
+            switch (event.type()) {
+                case REQUEST, SHARE -> {
+                    Ride ride = rideService.requestRide(
+                            rideRequest(event, leadTime(event), event.type() == ReplayLog.Type.SHARE),
+                            user(event.user(), UserRole.PASSENGER));
+                    created(event, ride);
+                    hour.requested++;
+                    hour.quotedFares += fare(ride);
+                }
+                case SCHEDULE -> {
+                    LocalDateTime rideTime = event.rideTime() != null ? event.rideTime() : event.time().plusHours(2);
+                    Ride ride = rideService.scheduleRide(rideRequest(event, rideTime, false),
+                            user(event.user(), UserRole.PASSENGER));
+                    created(event, ride);
+                    hour.scheduled++;
+                    hour.quotedFares += fare(ride);
+                }
+                case ACCEPT -> {
+                    Long rideId = rideIds.get(event.ride());
+                    if (rideId == null) {
+                        hour.errors++;
+                        return;
+                    }
+                    try {
+                        rideService.acceptRide(rideId, user(event.user(), UserRole.DRIVER));
+                    } catch (RuntimeException e) {
+                        // The recorded driver may lose here under a changed dispatch policy
+                        hour.acceptsRejected++;
+                        return;
+                    }
+                    hour.accepted++;
+                    LocalDateTime requested = requestedAt.get(event.ride());
+                    if (requested != null) {
+                        hour.secondsToAccept.add(Duration.between(requested, event.time()).getSeconds());
+                    }
+                }
+                case START -> rideService.startRide(rideId(event), driverId(event));
+                case COMPLETE -> {
+                    Ride ride = rideService.completeRide(rideId(event), driverId(event));
+                    hour.completed++;
+                    hour.completedFares += fare(ride);
+                }
+                case CANCEL -> {
+                    User user = users.get(event.user());
+                    if (user == null) {
+                        hour.errors++;
+                        return;
+                    }
+                    rideService.cancelRide(rideId(event), user.getId());
+                    hour.cancelled++;
+                }
+                case PING -> {
+                    long at = event.time().atZone(clock.getZone()).toInstant().toEpochMilli();
+                    tripTraceService.record(rideId(event), driverId(event),
+                            List.of(new TracePoint(event.lat(), event.lng(), at)));
+                    hour.pings++;
+                }
+            }
+        } catch (RuntimeException e) {
+            hour.errors++;
+            logger.debug("Line {} ({} {}) failed: {}", event.line(), event.type(), event.ride(), e.getMessage());
+        }
+    }
+
+    private void created(ReplayLog.Event event, Ride ride) {
+        rideIds.put(event.ride(), ride.getId());
+        requestedAt.put(event.ride(), event.time());
+    }
+
+    /**
+     * Pickup time for an immediate request, counted from the clock if the replay is running behind
+     */
+    private LocalDateTime leadTime(ReplayLog.Event event) {
+        LocalDateTime now = LocalDateTime.now(clock);
+        return (now.isAfter(event.time()) ? now : event.time()).plus(DEFAULT_LEAD);
+    }
+
+    private Long rideId(ReplayLog.Event event) {
+        Long rideId = rideIds.get(event.ride());
+        if (rideId == null) {
+            throw new IllegalStateException("Unknown ride " + event.ride());
+        }
+        return rideId;
+    }
+
+    private Long driverId(ReplayLog.Event event) {
+        return user(event.user(), UserRole.DRIVER).getId();
+    }
+
+    /**
+     * The replay's user for a reference in the log, created on first sight
+     */
+    private User user(String reference, UserRole role) {
+        return users.computeIfAbsent(reference, key -> {
+            User user = new User();
+            user.setName(role.name().toLowerCase() + " " + key);
+            user.setEmail(key.replaceAll("[^A-Za-z0-9._-]", "_") + "@replay.local");
+            user.setPassword("{noop}replay");
+            user.setRole(role);
+            user.setIsAvailable(role == UserRole.DRIVER);
+            return userRepository.save(user);
+        });
+    }
+
+    private static RideRequest rideRequest(ReplayLog.Event event, LocalDateTime rideTime, boolean shared) {
+        RideRequest request = new RideRequest();
+        request.setPickupLocation(String.format("%.5f, %.5f", event.lat(), event.lng()));
+        request.setDropoffLocation(String.format("%.5f, %.5f", event.lat2(), event.lng2()));
+        request.setRideTime(rideTime);
+        request.setSeats(1);
+        request.setIsShared(shared);
+        request.setPickupCoordinates(new RideRequest.Coordinates(event.lat(), event.lng()));
+        request.setDropoffCoordinates(new RideRequest.Coordinates(event.lat2(), event.lng2()));
+        return request;
+    }
+
+    private static double fare(Ride ride) {
+        return ride.getPrice() != null ? ride.getPrice() : 0;
+    }
+}
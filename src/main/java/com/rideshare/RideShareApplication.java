@@ -2,8 +2,10 @@ package com.rideshare;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class RideShareApplication {
     public static void main(String[] args) {
         SpringApplication.run(RideShareApplication.class, args);
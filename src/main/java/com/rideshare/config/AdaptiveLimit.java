@@ -0,0 +1,139 @@
+package com.rideshare.config;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit that follows observed latency, in the manner of a gradient
+ * limiter. A short and a long moving average of response time are kept; while
+ * the short one stays within the tolerance of the long one the limit grows by
+ * about its square root per sample, and as it rises past that the limit shrinks
+ * in proportion, down to half per sample. A failed or shed downstream call cuts
+ * the limit multiplicatively, AIMD-style.
+ *
+ * Admission is a CAS on the in-flight count. Latency samples are folded in
+ * under a lock that completions only try to take, so a busy moment drops a
+ * sample instead of queueing on it. Back-offs never wait for the lock and are
+ * never dropped: they CAS the limit down directly, and a sample that ran at the
+ * same time applies its step to the limit the back-off left.
+ */
+class AdaptiveLimit {
+
+    private static final double SHORT_WINDOW_ALPHA = 2.0 / (10 + 1);
+    private static final double LONG_WINDOW_ALPHA = 2.0 / (600 + 1);
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    // The bits of a double, so back-offs and samples can compare-and-set it
+    private final AtomicLong estimatedLimit;
+
+    // Guarded by lock
+    private double shortRttNanos;
+    private double longRttNanos;
+
+    AdaptiveLimit(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.tolerance = Math.max(1.0, tolerance);
+        this.estimatedLimit = new AtomicLong(Double.doubleToRawLongBits(clamp(initialLimit)));
+    }
+
+    /**
+     * Take a slot if fewer than the limit are in flight
+     * @return The number in flight including this one, or 0 if over the limit
+     */
+    int tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= getLimit()) {
+                return 0;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+
+    /**
+     * Give a slot back and learn from how the call went
+     * @param inFlightAtStart What tryAcquire returned
+     * @param rttNanos How long the call held the slot
+     * @param dropped Whether it failed for lack of capacity further down
+     */
+    void release(int inFlightAtStart, long rttNanos, boolean dropped) {
+        inFlight.decrementAndGet();
+        if (dropped) {
+            adjustLimit(BACKOFF, 0);
+            return;
+        }
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            sample(inFlightAtStart, rttNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getLimit() {
+        return (int) estimatedLimit();
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    private void sample(int inFlightAtStart, long rttNanos) {
+        if (longRttNanos == 0) {
+            shortRttNanos = rttNanos;
+            longRttNanos = rttNanos;
+            return;
+        }
+        shortRttNanos += (rttNanos - shortRttNanos) * SHORT_WINDOW_ALPHA;
+        longRttNanos += (rttNanos - longRttNanos) * LONG_WINDOW_ALPHA;
+
+        // Load has dropped well below what the baseline was learned under; let it catch up
+        if (longRttNanos / shortRttNanos > 2) {
+            longRttNanos *= 0.95;
+        }
+        // A limit far above what is used says nothing about what could be handled
+        if (inFlightAtStart < estimatedLimit() / 2) {
+            return;
+        }
+
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, tolerance * longRttNanos / shortRttNanos));
+        // Smoothed toward limit * gradient + sqrt(limit)
+        adjustLimit(1 - SMOOTHING + gradient * SMOOTHING, SMOOTHING);
+    }
+
+    /**
+     * Set the limit to limit * factor + sqrtWeight * sqrt(limit), retrying on whatever limit a concurrent change left
+     */
+    private void adjustLimit(double factor, double sqrtWeight) {
+        while (true) {
+            long current = estimatedLimit.get();
+            double value = Double.longBitsToDouble(current);
+            double next = clamp(value * factor + sqrtWeight * Math.sqrt(value));
+            if (estimatedLimit.compareAndSet(current, Double.doubleToRawLongBits(next))) {
+                return;
+            }
+        }
+    }
+
+    private double estimatedLimit() {
+        return Double.longBitsToDouble(estimatedLimit.get());
+    }
+
+    private double clamp(double value) {
+        return Math.max(minLimit, Math.min(maxLimit, value));
+    }
+}
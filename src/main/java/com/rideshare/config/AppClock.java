@@ -0,0 +1,24 @@
+package com.rideshare.config;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+
+/**
+ * The application clock for code Spring does not construct, such as entity
+ * lifecycle callbacks. ClockConfig points it at the Clock bean on startup.
+ */
+public final class AppClock {
+
+    private static volatile Clock clock = Clock.systemDefaultZone();
+
+    private AppClock() {
+    }
+
+    public static LocalDateTime now() {
+        return LocalDateTime.now(clock);
+    }
+
+    static void use(Clock clock) {
+        AppClock.clock = clock;
+    }
+}
@@ -0,0 +1,25 @@
+package com.rideshare.config;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+
+/**
+ * The clock every service reads the time from. A replay can supply a
+ * @Primary virtual clock to run recorded traffic faster than real time.
+ */
+@Configuration
+public class ClockConfig {
+
+    @Bean
+    public Clock systemClock() {
+        return Clock.systemDefaultZone();
+    }
+
+    @Bean
+    public InitializingBean appClockBinding(Clock clock) {
+        return () -> AppClock.use(clock);
+    }
+}
@@ -0,0 +1,175 @@
+package com.rideshare.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.PathContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Caps the requests in flight per route group at an adaptive limit, so under
+ * overload the excess gets a fast 503 instead of waiting on a database
+ * connection it would only time out on. Groups not marked critical are also
+ * shed while a critical group is close to its limit, which keeps capacity for
+ * ride transitions when browsing traffic surges.
+ *
+ * Async requests hold their slot only until the handler returns, since waiting
+ * for a ride change uses neither a thread nor a connection.
+ */
+@Component
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private final boolean enabled;
+    private final double criticalPressure;
+    private final RouteGroup[] groups;
+    private final RouteGroup[] criticalGroups;
+
+    public ConcurrencyLimitFilter(ConcurrencyLimitProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.isEnabled();
+        this.criticalPressure = properties.getCriticalPressure();
+        this.groups = properties.getGroups().entrySet().stream()
+                .map(entry -> new RouteGroup(entry.getKey(), entry.getValue(), meterRegistry))
+                .toArray(RouteGroup[]::new);
+        this.criticalGroups = Arrays.stream(groups)
+                .filter(group -> group.critical)
+                .toArray(RouteGroup[]::new);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || groups.length == 0;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        RouteGroup group = match(request);
+        if (group == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        if (!group.critical && criticalUnderPressure()) {
+            group.shedForPriority.increment();
+            reject(response);
+            return;
+        }
+        int inFlightAtStart = group.limit.tryAcquire();
+        if (inFlightAtStart == 0) {
+            group.shedAtLimit.increment();
+            reject(response);
+            return;
+        }
+
+        long started = System.nanoTime();
+        boolean dropped = false;
+        try {
+            filterChain.doFilter(request, response);
+            // GlobalExceptionHandler answers 503 when no database connection could be had in time
+            dropped = response.getStatus() == HttpStatus.SERVICE_UNAVAILABLE.value();
+        } finally {
+            group.limit.release(inFlightAtStart, System.nanoTime() - started, dropped);
+        }
+    }
+
+    private RouteGroup match(HttpServletRequest request) {
+        PathContainer path = PathContainer.parsePath(request.getRequestURI());
+        String method = request.getMethod();
+        for (RouteGroup group : groups) {
+            if (group.matches(method, path)) {
+                return group;
+            }
+        }
+        return null;
+    }
+
+    private boolean criticalUnderPressure() {
+        for (RouteGroup group : criticalGroups) {
+            if (group.limit.getInFlight() >= group.limit.getLimit() * criticalPressure) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void reject(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"error\":\"The service is busy, please try again shortly\"}");
+    }
+
+    private static final class RouteGroup {
+        private final PathPattern[] patterns;
+        private final String[] methods;
+        private final boolean critical;
+        private final AdaptiveLimit limit;
+        private final Counter shedAtLimit;
+        private final Counter shedForPriority;
+
+        private RouteGroup(String name, ConcurrencyLimitProperties.Group config, MeterRegistry meterRegistry) {
+            this.patterns = config.getPaths().stream()
+                    .map(PathPatternParser.defaultInstance::parse)
+                    .toArray(PathPattern[]::new);
+            this.methods = config.getMethods().stream()
+                    .map(String::toUpperCase)
+                    .toArray(String[]::new);
+            this.critical = config.isCritical();
+            this.limit = new AdaptiveLimit(config.getInitialLimit(), config.getMinLimit(),
+                    config.getMaxLimit(), config.getTolerance());
+
+            Gauge.builder("http.concurrency.limit", limit, AdaptiveLimit::getLimit)
+                    .description("Requests allowed in flight at once")
+                    .tag("group", name)
+                    .register(meterRegistry);
+            Gauge.builder("http.concurrency.inflight", limit, AdaptiveLimit::getInFlight)
+                    .tag("group", name)
+                    .register(meterRegistry);
+            this.shedAtLimit = Counter.builder("http.concurrency.rejected")
+                    .description("Requests shed by the concurrency limiter")
+                    .tag("group", name)
+                    .tag("reason", "limit")
+                    .register(meterRegistry);
+            this.shedForPriority = Counter.builder("http.concurrency.rejected")
+                    .description("Requests shed by the concurrency limiter")
+                    .tag("group", name)
+                    .tag("reason", "priority")
+                    .register(meterRegistry);
+        }
+
+        private boolean matches(String method, PathContainer path) {
+            if (methods.length > 0 && !contains(methods, method)) {
+                return false;
+            }
+            for (PathPattern pattern : patterns) {
+                if (pattern.matches(path)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean contains(String[] values, String value) {
+            for (String candidate : values) {
+                if (candidate.equals(value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
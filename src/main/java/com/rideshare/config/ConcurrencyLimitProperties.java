@@ -0,0 +1,47 @@
+package com.rideshare.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adaptive concurrency limits per route group, bound from the concurrency-limit section of application.yml
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "concurrency-limit")
+public class ConcurrencyLimitProperties {
+
+    private boolean enabled = true;
+
+    // Non-critical groups are shed while any critical group has this share of its limit in flight
+    private double criticalPressure = 0.8;
+
+    private Map<String, Group> groups = new LinkedHashMap<>();
+
+    @Data
+    public static class Group {
+        // Path patterns such as /api/rides/*/accept; the first group that matches takes the request
+        private List<String> paths = new ArrayList<>();
+
+        // HTTP methods to match; empty for all
+        private List<String> methods = new ArrayList<>();
+
+        // Critical groups are never shed to make room for others
+        private boolean critical = false;
+
+        private int initialLimit = 20;
+
+        private int minLimit = 4;
+
+        private int maxLimit = 200;
+
+        // How far latency may rise above its baseline before the limit starts to shrink
+        private double tolerance = 1.5;
+    }
+}
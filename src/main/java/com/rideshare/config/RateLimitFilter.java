@@ -0,0 +1,121 @@
+package com.rideshare.config;
+
+import com.rideshare.model.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Applies the configured token buckets per route group. Authenticated requests
+ * are keyed by user ID from the JWT, anonymous ones by client IP.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final String PREFIX_SUFFIX = "/**";
+    private static final long IP_KEY_TAG = Long.MIN_VALUE;
+
+    private final boolean enabled;
+    private final RouteGroup[] groups;
+
+    public RateLimitFilter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.isEnabled();
+        this.groups = properties.getGroups().entrySet().stream()
+                .map(entry -> new RouteGroup(entry.getKey(), entry.getValue(), meterRegistry))
+                .toArray(RouteGroup[]::new);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || groups.length == 0;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String path = request.getRequestURI();
+
+        for (RouteGroup group : groups) {
+            if (!group.matches(path)) {
+                continue;
+            }
+
+            long waitNanos = group.buckets.tryAcquire(keyHash(request));
+            if (waitNanos > 0) {
+                group.rejections.increment();
+                reject(response, waitNanos);
+                return;
+            }
+            break;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    private long keyHash(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof User user && user.getId() != null) {
+            return user.getId();
+        }
+        // Tag IP keys with the sign bit, which a user ID (always positive) never has
+        return IP_KEY_TAG | (request.getRemoteAddr().hashCode() & 0xFFFFFFFFL);
+    }
+
+    private void reject(HttpServletResponse response, long waitNanos) throws IOException {
+        long retryAfterSeconds = Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"error\":\"Too many requests, please slow down\"}");
+    }
+
+    private static final class RouteGroup {
+        private final String[] exactPaths;
+        private final String[] prefixes;
+        private final TokenBucketTable buckets;
+        private final Counter rejections;
+
+        private RouteGroup(String name, RateLimitProperties.Group config, MeterRegistry meterRegistry) {
+            this.exactPaths = config.getPaths().stream()
+                    .filter(path -> !path.endsWith(PREFIX_SUFFIX))
+                    .toArray(String[]::new);
+            this.prefixes = config.getPaths().stream()
+                    .filter(path -> path.endsWith(PREFIX_SUFFIX))
+                    .map(path -> path.substring(0, path.length() - PREFIX_SUFFIX.length()))
+                    .toArray(String[]::new);
+            this.buckets = new TokenBucketTable(config.getSlots(), config.getCapacity(), config.getRefillPerSecond());
+            this.rejections = Counter.builder("http.ratelimit.rejected")
+                    .description("Requests rejected by the rate limiter")
+                    .tag("group", name)
+                    .register(meterRegistry);
+        }
+
+        private boolean matches(String path) {
+            for (String exact : exactPaths) {
+                if (exact.equals(path)) {
+                    return true;
+                }
+            }
+            for (String prefix : prefixes) {
+                if (path.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
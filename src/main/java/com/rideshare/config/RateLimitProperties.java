@@ -0,0 +1,37 @@
+package com.rideshare.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Token bucket settings per route group, bound from the rate-limit section of application.yml
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    private Map<String, Group> groups = new LinkedHashMap<>();
+
+    @Data
+    public static class Group {
+        // Exact paths, or prefixes when they end with "/**"
+        private List<String> paths = new ArrayList<>();
+
+        // Burst size
+        private int capacity = 10;
+
+        private double refillPerSecond = 1.0;
+
+        // Buckets are hashed into this many slots; rounded up to a power of two
+        private int slots = 16384;
+    }
+}
@@ -1,5 +1,6 @@
 package com.rideshare.config;
 
+import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -8,21 +9,46 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.expression.WebExpressionAuthorizationManager;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
 
 @Configuration
 @EnableWebSecurity
+@RequiredArgsConstructor
 public class SecurityConfig {
 
+    private final JwtAuthenticationFilter jwtAuthenticationFilter;
+    private final RateLimitFilter rateLimitFilter;
+    private final ConcurrencyLimitFilter concurrencyLimitFilter;
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
             .csrf(csrf -> csrf.disable())
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+            // Where JwtAuthenticationFilter saves the context, so async and error dispatches stay authenticated
+            .securityContext(context -> context.securityContextRepository(new RequestAttributeSecurityContextRepository()))
             .authorizeHttpRequests(auth -> auth
                 .requestMatchers("/api/health").permitAll()
                 .requestMatchers("/api/auth/**").permitAll()
+                .requestMatchers("/actuator/health").permitAll()
+                // Scraped by Prometheus, which has no JWT; keep /actuator off the public load balancer
+                .requestMatchers("/actuator/prometheus").permitAll()
+                // Recordings expose internals; only from the host itself, e.g. over an SSH tunnel
+                .requestMatchers("/actuator/flightrecording").access(
+                    new WebExpressionAuthorizationManager("hasIpAddress('127.0.0.1') or hasIpAddress('::1')"))
+                // Stripe authenticates webhooks with a signature header, not a JWT
+                .requestMatchers("/api/payments/webhook").permitAll()
+                // The ride status socket authenticates with the token in its subscribe message
+                .requestMatchers("/ws/rides").permitAll()
                 .anyRequest().authenticated()
-            );
+            )
+            .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+            // Runs after the JWT filter so buckets can be keyed by user ID
+            .addFilterAfter(rateLimitFilter, JwtAuthenticationFilter.class)
+            // Requests over a client's rate never take a slot
+            .addFilterAfter(concurrencyLimitFilter, RateLimitFilter.class);
         
         return http.build();
     }
@@ -0,0 +1,72 @@
+package com.rideshare.config;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size table of token buckets keyed by a hash, with lazy refill.
+ * Each bucket is a single long holding its theoretical arrival time (the GCRA
+ * form of a token bucket), updated with CAS, so a check takes no lock and
+ * allocates nothing. Keys that collide share a bucket, which only makes the
+ * limit stricter for them.
+ */
+class TokenBucketTable {
+
+    // Buckets are spread one cache line apart to avoid false sharing between neighbours
+    private static final int PADDING_SHIFT = 3;
+
+    private final AtomicLongArray slots;
+    private final int mask;
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final long origin = System.nanoTime();
+
+    TokenBucketTable(int slotCount, int capacity, double refillPerSecond) {
+        int size = Integer.highestOneBit(Math.max(slotCount, 1) * 2 - 1);
+        this.slots = new AtomicLongArray(size << PADDING_SHIFT);
+        this.mask = size - 1;
+        this.emissionIntervalNanos = (long) (1_000_000_000L / refillPerSecond);
+        this.burstToleranceNanos = emissionIntervalNanos * Math.max(capacity, 1);
+    }
+
+    /**
+     * Take one token from the bucket for a key
+     * @param keyHash The hashed key
+     * @return 0 if a token was taken, otherwise the nanoseconds until one is available
+     */
+    long tryAcquire(long keyHash) {
+        return tryAcquire(keyHash, System.nanoTime() - origin);
+    }
+
+    /**
+     * Take one token as of a given time, so tests can drive the clock
+     * @param keyHash The hashed key
+     * @param elapsedNanos Nanoseconds since the table was created
+     * @return 0 if a token was taken, otherwise the nanoseconds until one is available
+     */
+    long tryAcquire(long keyHash, long elapsedNanos) {
+        int index = (int) (mix(keyHash) & mask) << PADDING_SHIFT;
+        // Shift the clock by the burst tolerance so an empty slot (0) always reads as a full bucket
+        long now = elapsedNanos + burstToleranceNanos;
+
+        while (true) {
+            long tat = slots.get(index);
+            long newTat = Math.max(tat, now) + emissionIntervalNanos;
+            long excess = newTat - now - burstToleranceNanos;
+            if (excess > 0) {
+                return excess;
+            }
+            if (slots.compareAndSet(index, tat, newTat)) {
+                return 0;
+            }
+        }
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -1,17 +1,23 @@
 package com.rideshare.controller;
 
+import com.rideshare.diagnostics.QueryBudget;
 import com.rideshare.dto.AuthResponse;
 import com.rideshare.dto.LoginRequest;
+import com.rideshare.dto.RefreshTokenRequest;
 import com.rideshare.dto.RegisterRequest;
 import com.rideshare.service.AuthService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/api/auth")
 @RequiredArgsConstructor
@@ -19,13 +25,35 @@ public class AuthController {
     
     private final AuthService authService;
     
+    // Both endpoints complete asynchronously, so the Tomcat thread is released while BCrypt runs
     @PostMapping("/register")
-    public ResponseEntity<AuthResponse> register(@Valid @RequestBody RegisterRequest request) {
-        return ResponseEntity.ok(authService.register(request));
+    // The email check, then the insert once the password is hashed
+    @QueryBudget(statements = 2, entities = 1)
+    public CompletableFuture<ResponseEntity<AuthResponse>> register(@Valid @RequestBody RegisterRequest request) {
+        return authService.register(request).thenApply(ResponseEntity::ok);
     }
     
     @PostMapping("/login")
-    public ResponseEntity<AuthResponse> login(@Valid @RequestBody LoginRequest request) {
-        return ResponseEntity.ok(authService.login(request));
+    @QueryBudget(statements = 1, entities = 1)
+    public CompletableFuture<ResponseEntity<AuthResponse>> login(@Valid @RequestBody LoginRequest request) {
+        return authService.login(request).thenApply(ResponseEntity::ok);
+    }
+
+    @PostMapping("/refresh")
+    @QueryBudget(statements = 1, entities = 1)
+    public ResponseEntity<AuthResponse> refresh(@Valid @RequestBody RefreshTokenRequest request) {
+        return ResponseEntity.ok(authService.refresh(request));
+    }
+
+    @PostMapping("/logout")
+    @QueryBudget(statements = 0, entities = 0)
+    public ResponseEntity<Void> logout(
+            @Valid @RequestBody RefreshTokenRequest request,
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        String accessToken = authorization != null && authorization.startsWith("Bearer ")
+                ? authorization.substring("Bearer ".length())
+                : null;
+        authService.logout(accessToken, request);
+        return ResponseEntity.noContent().build();
     }
-} 
\ No newline at end of file
+}
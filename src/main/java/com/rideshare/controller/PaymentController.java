@@ -1,31 +1,41 @@
 package com.rideshare.controller;
 
+import com.rideshare.diagnostics.QueryBudget;
 import com.rideshare.exception.RideException;
+import com.rideshare.model.PaymentOutbox;
 import com.rideshare.model.User;
-import com.rideshare.service.RideService;
+import com.rideshare.service.PaymentOutboxService;
 import com.rideshare.service.StripeService;
+import com.rideshare.service.StripeWebhookService;
 import com.rideshare.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/payments")
 public class PaymentController {
 
     private final StripeService stripeService;
-    private final RideService rideService;
     private final UserService userService;
+    private final PaymentOutboxService paymentOutboxService;
+    private final StripeWebhookService stripeWebhookService;
 
     @Autowired
-    public PaymentController(StripeService stripeService, RideService rideService, UserService userService) {
+    public PaymentController(StripeService stripeService, UserService userService,
+                             PaymentOutboxService paymentOutboxService, StripeWebhookService stripeWebhookService) {
         this.stripeService = stripeService;
-        this.rideService = rideService;
         this.userService = userService;
+        this.paymentOutboxService = paymentOutboxService;
+        this.stripeWebhookService = stripeWebhookService;
     }
 
     /**
@@ -33,6 +43,7 @@ public class PaymentController {
      * @return A map containing the publishable key
      */
     @GetMapping("/publishable-key")
+    @QueryBudget(statements = 0, entities = 0)
     public ResponseEntity<Map<String, String>> getPublishableKey() {
         Map<String, String> response = new HashMap<>();
         response.put("publishableKey", stripeService.getPublishableKey());
@@ -40,59 +51,86 @@ public class PaymentController {
     }
 
     /**
-     * Creates a payment intent for a ride payment
-     * @param requestBody Map containing amount and rideId
+     * Queues creation of a payment intent for a ride payment.
+     * The amount always comes from the ride's price; any amount sent by the client is ignored.
+     * @param requestBody Map containing rideId
      * @param user The authenticated user
-     * @return A map containing the client secret for the payment intent
+     * @return The queued payment request; poll it or subscribe to its events for the client secret
      */
     @PostMapping("/create-payment-intent")
+    // The ride is locked on its own, so its passenger and driver load separately
+    @QueryBudget(statements = 6, entities = 5)
     public ResponseEntity<Map<String, String>> createPaymentIntent(
             @RequestBody Map<String, Object> requestBody,
             @AuthenticationPrincipal User user) {
         
-        if (requestBody.get("amount") == null || requestBody.get("rideId") == null) {
-            throw new RideException("Amount and rideId are required");
+        if (requestBody.get("rideId") == null) {
+            throw new RideException("rideId is required");
         }
         
-        Double amount = Double.parseDouble(requestBody.get("amount").toString());
         Long rideId = Long.parseLong(requestBody.get("rideId").toString());
         
-        // Verify that the ride exists and belongs to the user
-        if (!rideService.isRideOwnedByUser(rideId, user.getId())) {
-            throw new RideException("Invalid ride or you don't have permission");
-        }
-        
-        // Get or create customer ID for the user
-        String customerId = userService.getStripeCustomerId(user.getId());
+        PaymentOutbox paymentRequest = paymentOutboxService.requestPaymentIntent(rideId, user.getId());
         
-        // Create a payment intent
-        String clientSecret = stripeService.createPaymentIntent(amount, customerId);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(toResponse(paymentRequest));
+    }
+
+    /**
+     * Get the state of a queued payment request
+     * @param id The payment request ID
+     * @param user The authenticated user
+     * @return The status, plus the client secret once the intent is created
+     */
+    @GetMapping("/intents/{id}")
+    @QueryBudget(statements = 1, entities = 1)
+    public ResponseEntity<Map<String, String>> getPaymentRequest(
+            @PathVariable Long id,
+            @AuthenticationPrincipal User user) {
+        return ResponseEntity.ok(toResponse(paymentOutboxService.getPaymentRequest(id, user.getId())));
+    }
+
+    /**
+     * Push the result of a queued payment request as a single server-sent event
+     * @param id The payment request ID
+     * @param user The authenticated user
+     * @return An event stream that sends one "payment" event and then closes
+     */
+    @GetMapping("/intents/{id}/events")
+    @QueryBudget(statements = 1, entities = 1)
+    public SseEmitter streamPaymentRequest(
+            @PathVariable Long id,
+            @AuthenticationPrincipal User user) {
+        SseEmitter emitter = new SseEmitter(30_000L);
         
-        Map<String, String> response = new HashMap<>();
-        response.put("clientSecret", clientSecret);
+        paymentOutboxService.awaitResult(id, user.getId()).thenAccept(paymentRequest -> {
+            try {
+                emitter.send(SseEmitter.event().name("payment").data(toResponse(paymentRequest)));
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                // The client has gone away or the emitter timed out; it can still poll
+                emitter.completeWithError(e);
+            }
+        });
         
-        return ResponseEntity.ok(response);
+        return emitter;
     }
     
     /**
-     * Webhook endpoint for handling Stripe events
+     * Webhook endpoint for handling Stripe events.
+     * The event is verified and stored durably before it is acknowledged;
+     * rides are updated from it in the background.
      * @param payload The raw JSON payload from Stripe
      * @param sigHeader The signature header from Stripe
-     * @return A success response
+     * @return A success response once the event is stored
      */
     @PostMapping("/webhook")
-    public ResponseEntity<String> handleStripeWebhook(
+    // The event's share of a batched insert on the writer thread
+    @QueryBudget(statements = 1, entities = 0)
+    public CompletableFuture<ResponseEntity<String>> handleStripeWebhook(
             @RequestBody String payload,
             @RequestHeader("Stripe-Signature") String sigHeader) {
-        try {
-            // Process webhook event
-            // This would typically validate the signature and handle different event types
-            // like payment_intent.succeeded, payment_intent.payment_failed, etc.
-            
-            return ResponseEntity.ok("Webhook received");
-        } catch (Exception e) {
-            return ResponseEntity.status(400).body("Webhook error: " + e.getMessage());
-        }
+        return stripeWebhookService.ingest(payload, sigHeader)
+                .thenApply(ignored -> ResponseEntity.ok("Webhook received"));
     }
     
     /**
@@ -102,6 +140,7 @@ public class PaymentController {
      * @return A success message
      */
     @PostMapping("/update-payment-method")
+    @QueryBudget(statements = 2, entities = 1)
     public ResponseEntity<Map<String, String>> updatePaymentMethod(
             @RequestParam String paymentMethodId,
             @AuthenticationPrincipal User user) {
@@ -127,6 +166,7 @@ public class PaymentController {
      * @return A list of payment methods
      */
     @GetMapping("/payment-methods")
+    @QueryBudget(statements = 2, entities = 1)
     public ResponseEntity<Map<String, Object>> getPaymentMethods(
             @AuthenticationPrincipal User user) {
         
@@ -144,4 +184,18 @@ public class PaymentController {
             throw new RideException("Failed to retrieve payment methods: " + e.getMessage());
         }
     }
-} 
\ No newline at end of file
+
+    private Map<String, String> toResponse(PaymentOutbox paymentRequest) {
+        Map<String, String> response = new HashMap<>();
+        response.put("paymentRequestId", paymentRequest.getId().toString());
+        response.put("status", paymentRequest.getStatus().toString());
+        if (paymentRequest.getPaymentIntentId() != null) {
+            response.put("paymentIntentId", paymentRequest.getPaymentIntentId());
+            response.put("clientSecret", paymentRequest.getClientSecret());
+        }
+        if (paymentRequest.getLastError() != null) {
+            response.put("error", paymentRequest.getLastError());
+        }
+        return response;
+    }
+}
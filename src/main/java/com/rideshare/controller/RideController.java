@@ -1,19 +1,35 @@
 package com.rideshare.controller;
 
+import com.rideshare.diagnostics.QueryBudget;
 import com.rideshare.dto.RideRequest;
+import com.rideshare.dto.TracePoint;
+import com.rideshare.exception.RideException;
+import com.rideshare.model.PaymentOutbox;
 import com.rideshare.model.Ride;
 import com.rideshare.model.User;
+import com.rideshare.service.NearbyRideFeedService;
+import com.rideshare.service.PaymentOutboxService;
 import com.rideshare.service.RideService;
+import com.rideshare.service.RideVersionService;
 import com.rideshare.service.StripeService;
+import com.rideshare.service.TripTraceService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.temporal.ChronoUnit;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/rides")
@@ -21,9 +37,17 @@ import java.util.Map;
 public class RideController {
     private final RideService rideService;
     private final StripeService stripeService;
+    private final PaymentOutboxService paymentOutboxService;
+    private final NearbyRideFeedService nearbyRideFeedService;
+    private final TripTraceService tripTraceService;
+    private final RideVersionService rideVersionService;
+
+    @Value("${rides.long-poll.max-wait:30000}")
+    private long maxLongPollMillis;
 
     // Passenger endpoints
     @PostMapping
+    @QueryBudget(statements = 2, entities = 1)
     public ResponseEntity<Ride> createRide(
             @Valid @RequestBody RideRequest request,
             @AuthenticationPrincipal User user) {
@@ -31,6 +55,7 @@ public class RideController {
     }
 
     @PostMapping("/schedule")
+    @QueryBudget(statements = 2, entities = 1)
     public ResponseEntity<Ride> scheduleRide(
             @Valid @RequestBody RideRequest request,
             @AuthenticationPrincipal User user) {
@@ -38,6 +63,7 @@ public class RideController {
     }
 
     @PostMapping("/{id}/cancel")
+    @QueryBudget(statements = 3, entities = 4)
     public ResponseEntity<Ride> cancelRide(
             @PathVariable Long id,
             @AuthenticationPrincipal User user) {
@@ -45,6 +71,7 @@ public class RideController {
     }
 
     @PostMapping("/{id}/rate-driver")
+    @QueryBudget(statements = 3, entities = 4)
     public ResponseEntity<Ride> rateDriver(
             @PathVariable Long id,
             @RequestParam Double rating,
@@ -55,6 +82,7 @@ public class RideController {
 
     // Driver endpoints
     @PostMapping("/{id}/accept")
+    @QueryBudget(statements = 2, entities = 4)
     public ResponseEntity<Ride> acceptRide(
             @PathVariable Long id,
             @AuthenticationPrincipal User user) {
@@ -62,6 +90,7 @@ public class RideController {
     }
 
     @PostMapping("/{id}/start")
+    @QueryBudget(statements = 2, entities = 4)
     public ResponseEntity<Ride> startRide(
             @PathVariable Long id,
             @AuthenticationPrincipal User user) {
@@ -69,13 +98,42 @@ public class RideController {
     }
 
     @PostMapping("/{id}/complete")
+    @QueryBudget(statements = 5, entities = 4)
     public ResponseEntity<Ride> completeRide(
             @PathVariable Long id,
             @AuthenticationPrincipal User user) {
         return ResponseEntity.ok(rideService.completeRide(id, user.getId()));
     }
 
+    /**
+     * Append GPS fixes to an in-progress ride's route; clients batch a few seconds of fixes per call
+     * @param id The ride ID
+     * @param points The fixes, oldest first
+     * @param user The authenticated driver
+     * @return How many fixes were recorded
+     */
+    @PostMapping("/{id}/trace")
+    @QueryBudget(statements = 2, entities = 4)
+    public ResponseEntity<Map<String, Integer>> recordTrace(
+            @PathVariable Long id,
+            @RequestBody List<TracePoint> points,
+            @AuthenticationPrincipal User user) {
+        return ResponseEntity.ok(Map.of("recorded", tripTraceService.record(id, user.getId(), points)));
+    }
+
+    @GetMapping("/{id}/trace")
+    @QueryBudget(statements = 3, entities = 5)
+    public ResponseEntity<List<TracePoint>> getTrace(
+            @PathVariable Long id,
+            @AuthenticationPrincipal User user) {
+        if (!rideService.isRideOwnedByUser(id, user.getId())) {
+            throw new RideException("You don't have permission to view this ride");
+        }
+        return ResponseEntity.ok(tripTraceService.getTrace(id));
+    }
+
     @PostMapping("/{id}/cancel-by-driver")
+    @QueryBudget(statements = 3, entities = 4)
     public ResponseEntity<Ride> cancelRideByDriver(
             @PathVariable Long id,
             @RequestParam String reason,
@@ -88,6 +146,7 @@ public class RideController {
     }
 
     @PostMapping("/{id}/rate-passenger")
+    @QueryBudget(statements = 3, entities = 4)
     public ResponseEntity<Ride> ratePassenger(
             @PathVariable Long id,
             @RequestParam Double rating,
@@ -97,32 +156,106 @@ public class RideController {
     }
 
     // Common endpoints
+    /**
+     * Get a ride. Sends the ride's version as a strong ETag; a matching If-None-Match
+     * gets 304 without a database read.
+     */
     @GetMapping("/{id}")
-    public ResponseEntity<Ride> getRide(@PathVariable Long id) {
-        return ResponseEntity.ok(rideService.getRide(id));
+    @QueryBudget(statements = 1, entities = 4)
+    public ResponseEntity<Ride> getRide(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        Long version = matchingVersion(id, ifNoneMatch);
+        return version != null ? notModified(id, version) : load(rideService.getRide(id));
+    }
+
+    /**
+     * Long-poll a ride: with waitForChange (e.g. "30s") a request whose If-None-Match
+     * matches is held, without a thread, until the ride changes or the wait ends
+     */
+    @GetMapping(value = "/{id}", params = "waitForChange")
+    @QueryBudget(statements = 1, entities = 4)
+    public CompletableFuture<ResponseEntity<Ride>> awaitRideChange(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestParam String waitForChange) {
+        Long version = matchingVersion(id, ifNoneMatch);
+        if (version == null) {
+            return CompletableFuture.completedFuture(load(rideService.getRide(id)));
+        }
+        return rideVersionService.awaitChange(id, version, waitMillis(waitForChange))
+                .thenApply(changed -> changed ? load(rideService.getRide(id)) : notModified(id, version));
     }
 
     @GetMapping
+    // Whole ride history, with one select per user not already loaded
+    @QueryBudget(statements = 25, entities = 250)
     public ResponseEntity<List<Ride>> getRides(@AuthenticationPrincipal User user) {
         return ResponseEntity.ok(rideService.findRidesByUser(user));
     }
 
+    /**
+     * Get the caller's active ride, with the ride's version as ETag. The ride is always
+     * looked up first, so a client's ETag can only ever match the caller's own ride.
+     */
     @GetMapping("/active")
-    public ResponseEntity<Ride> getActiveRide(@AuthenticationPrincipal User user) {
-        if (user.getRole().toString().equals("DRIVER")) {
-            return ResponseEntity.ok(rideService.findActiveRideForDriver(user.getId()));
-        } else {
-            return ResponseEntity.ok(rideService.findActiveRideForPassenger(user.getId()));
+    @QueryBudget(statements = 3, entities = 5)
+    public ResponseEntity<Ride> getActiveRide(
+            @AuthenticationPrincipal User user,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        Ride ride = findActiveRide(user);
+        return matches(ride, ifNoneMatch) ? notModified(ride.getId(), ride.getVersion()) : load(ride);
+    }
+
+    /**
+     * Long-poll the caller's active ride until it changes or the waitForChange duration ends
+     */
+    @GetMapping(value = "/active", params = "waitForChange")
+    @QueryBudget(statements = 3, entities = 5)
+    public CompletableFuture<ResponseEntity<Ride>> awaitActiveRideChange(
+            @AuthenticationPrincipal User user,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestParam String waitForChange) {
+        Ride ride = findActiveRide(user);
+        if (!matches(ride, ifNoneMatch)) {
+            return CompletableFuture.completedFuture(load(ride));
         }
+        Long rideId = ride.getId();
+        Long version = ride.getVersion();
+        return rideVersionService.awaitChange(rideId, version, waitMillis(waitForChange))
+                .thenApply(changed -> changed ? load(findActiveRide(user)) : notModified(rideId, version));
     }
 
     @GetMapping("/available")
+    // Loads every requested ride; see the CandidateScan event
+    @QueryBudget(statements = 25, entities = 250)
     public ResponseEntity<List<Ride>> getAvailableRides() {
         // For demo purposes, we'll use findNearbyAvailableRides with default values
         return ResponseEntity.ok(rideService.findNearbyAvailableRides(0.0, 0.0, 100.0));
     }
 
+    /**
+     * Push ride requests near the driver instead of polling /available
+     * @param latitude Driver's latitude
+     * @param longitude Driver's longitude
+     * @param radius Radius to watch in kilometers
+     * @param user The authenticated driver
+     * @return An event stream of "ride-added" and "ride-removed" events
+     */
+    @GetMapping(value = "/feed", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    // Reads the open rides in range once, as the first events
+    @QueryBudget(statements = 25, entities = 250)
+    public SseEmitter streamNearbyRides(
+            @RequestParam Double latitude,
+            @RequestParam Double longitude,
+            @RequestParam(defaultValue = "5.0") Double radius,
+            @AuthenticationPrincipal User user) {
+        return nearbyRideFeedService.subscribe(user, latitude, longitude, radius);
+    }
+
     @GetMapping("/nearby")
+    // Loads every requested ride; see the CandidateScan event
+    @QueryBudget(statements = 25, entities = 250)
     public ResponseEntity<List<Ride>> getNearbyRides(
             @RequestParam Double latitude,
             @RequestParam Double longitude,
@@ -132,6 +265,7 @@ public class RideController {
 
     // Shared ride endpoints
     @GetMapping("/shared")
+    @QueryBudget(statements = 0, entities = 0)
     public ResponseEntity<List<Ride>> getAvailableSharedRides(@AuthenticationPrincipal User user) {
         // Create a simple request for the current location
         RideRequest dummyRequest = new RideRequest();
@@ -140,6 +274,7 @@ public class RideController {
     }
 
     @PostMapping("/{id}/join")
+    @QueryBudget(statements = 3, entities = 5)
     public ResponseEntity<Ride> joinSharedRide(
             @PathVariable Long id,
             @AuthenticationPrincipal User user) {
@@ -148,20 +283,69 @@ public class RideController {
 
     // Payment processing
     @PostMapping("/{id}/process-payment")
+    // The ride is locked on its own, so its passenger and driver load separately
+    @QueryBudget(statements = 6, entities = 5)
     public ResponseEntity<Map<String, String>> processPayment(
             @PathVariable Long id,
             @AuthenticationPrincipal User user) {
-        Ride ride = rideService.getRide(id);
-        
-        String paymentIntentId = stripeService.createPaymentIntent(
-            ride.getPrice(),
-            user.getStripeCustomerId()
-        );
+        // Stripe is called by the payment outbox workers, not on this thread
+        PaymentOutbox paymentRequest = paymentOutboxService.requestPaymentIntent(id, user.getId());
         
         Map<String, String> response = new HashMap<>();
-        response.put("paymentIntentId", paymentIntentId);
+        response.put("paymentRequestId", paymentRequest.getId().toString());
+        response.put("status", paymentRequest.getStatus().toString());
+        if (paymentRequest.getPaymentIntentId() != null) {
+            response.put("paymentIntentId", paymentRequest.getPaymentIntentId());
+        }
         response.put("publishableKey", stripeService.getPublishableKey());
         
-        return ResponseEntity.ok(response);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+
+    /**
+     * @return The ride's cached version if the client's ETag matches it, otherwise null
+     */
+    private Long matchingVersion(Long rideId, String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return null;
+        }
+        Long version = rideVersionService.getVersion(rideId);
+        return version != null && ifNoneMatch.contains(eTag(rideId, version)) ? version : null;
+    }
+
+    private boolean matches(Ride ride, String ifNoneMatch) {
+        return ride != null && ifNoneMatch != null && ifNoneMatch.contains(eTag(ride.getId(), ride.getVersion()));
+    }
+
+    private Ride findActiveRide(User user) {
+        if (user.getRole().toString().equals("DRIVER")) {
+            return rideService.findActiveRideForDriver(user.getId());
+        }
+        return rideService.findActiveRideForPassenger(user.getId());
+    }
+
+    private ResponseEntity<Ride> load(Ride ride) {
+        if (ride == null) {
+            return ResponseEntity.ok(null);
+        }
+        rideVersionService.remember(ride);
+        return ResponseEntity.ok().eTag(eTag(ride.getId(), ride.getVersion())).body(ride);
+    }
+
+    private ResponseEntity<Ride> notModified(Long rideId, Long version) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag(rideId, version)).build();
+    }
+
+    private String eTag(Long rideId, Long version) {
+        return "\"" + rideId + "." + version + "\"";
+    }
+
+    private long waitMillis(String waitForChange) {
+        try {
+            long millis = DurationStyle.detectAndParse(waitForChange, ChronoUnit.SECONDS).toMillis();
+            return Math.max(0, Math.min(millis, maxLongPollMillis));
+        } catch (IllegalArgumentException e) {
+            throw new RideException("waitForChange must be a duration such as 30s");
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,115 @@
+package com.rideshare.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rideshare.exception.RideException;
+import com.rideshare.model.Ride;
+import com.rideshare.model.User;
+import com.rideshare.service.JwtService;
+import com.rideshare.service.RideService;
+import com.rideshare.service.RideStatusService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+
+/**
+ * WebSocket endpoint for ride status updates. Browsers cannot set headers on a
+ * WebSocket handshake, so the client sends its access token in its first
+ * subscribe message:
+ * {"type":"subscribe","rideId":42,"token":"..."} and {"type":"unsubscribe","rideId":42}
+ * A connection that sends no valid token within rides.status.auth-timeout is closed.
+ */
+@Component
+@RequiredArgsConstructor
+public class RideStatusWebSocketHandler extends TextWebSocketHandler {
+
+    private static final String USER_ID_ATTRIBUTE = "userId";
+
+    private final RideStatusService rideStatusService;
+    private final RideService rideService;
+    private final JwtService jwtService;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        rideStatusService.connect(session);
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws IOException {
+        JsonNode request;
+        try {
+            request = objectMapper.readTree(message.getPayload());
+        } catch (IOException e) {
+            rideStatusService.sendError(session, "Invalid message");
+            return;
+        }
+
+        String type = request.path("type").asText();
+        Long rideId = request.hasNonNull("rideId") ? request.get("rideId").asLong() : null;
+        if (rideId == null) {
+            rideStatusService.sendError(session, "rideId is required");
+            return;
+        }
+
+        if ("unsubscribe".equals(type)) {
+            rideStatusService.unsubscribe(session, rideId);
+            return;
+        }
+        if (!"subscribe".equals(type)) {
+            rideStatusService.sendError(session, "Unknown message type");
+            return;
+        }
+
+        Long userId = authenticate(session, request.path("token").asText(null));
+        if (userId == null) {
+            rideStatusService.sendError(session, "Invalid or expired token");
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Authentication required"));
+            return;
+        }
+
+        try {
+            Ride ride = rideService.getRide(rideId);
+            if (!isParticipant(ride, userId)) {
+                throw new RideException("You don't have permission to view this ride");
+            }
+            rideStatusService.subscribe(session, ride);
+        } catch (RideException e) {
+            rideStatusService.sendError(session, e.getMessage());
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        rideStatusService.disconnect(session);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        rideStatusService.disconnect(session);
+    }
+
+    private Long authenticate(WebSocketSession session, String token) {
+        if (token != null) {
+            User user = jwtService.extractPrincipal(token);
+            if (user == null) {
+                return null;
+            }
+            session.getAttributes().put(USER_ID_ATTRIBUTE, user.getId());
+            rideStatusService.authenticated(session);
+            return user.getId();
+        }
+        return (Long) session.getAttributes().get(USER_ID_ATTRIBUTE);
+    }
+
+    private boolean isParticipant(Ride ride, Long userId) {
+        return (ride.getPassenger() != null && ride.getPassenger().getId().equals(userId))
+                || (ride.getSecondPassenger() != null && ride.getSecondPassenger().getId().equals(userId))
+                || (ride.getDriver() != null && ride.getDriver().getId().equals(userId));
+    }
+}
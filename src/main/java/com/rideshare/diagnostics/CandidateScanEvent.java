@@ -0,0 +1,32 @@
+package com.rideshare.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A scan over candidate rides or drivers for matching
+ */
+@Name("com.rideshare.CandidateScan")
+@Label("Candidate Scan")
+@Category({"RideShare", "Dispatch"})
+@StackTrace(false)
+public class CandidateScanEvent extends Event {
+
+    @Label("Scan")
+    @Description("nearby, shared or drivers")
+    public String scan;
+
+    @Label("Candidates")
+    @Description("Rows loaded and checked")
+    public int candidates;
+
+    @Label("Matches")
+    public int matches;
+
+    @Label("Radius (km)")
+    public double radiusKm;
+}
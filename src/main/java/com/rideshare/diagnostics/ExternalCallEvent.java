@@ -0,0 +1,26 @@
+package com.rideshare.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A call to a system outside the application, such as Stripe
+ */
+@Name("com.rideshare.ExternalCall")
+@Label("External Call")
+@Category({"RideShare", "External"})
+@StackTrace(false)
+public class ExternalCallEvent extends Event {
+
+    @Label("System")
+    public String system;
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Outcome")
+    public String outcome;
+}
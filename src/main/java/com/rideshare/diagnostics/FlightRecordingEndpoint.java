@@ -0,0 +1,210 @@
+package com.rideshare.diagnostics;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * On-demand flight recording of the RideShare events on top of the JDK's
+ * "profile" settings. One recording at a time, always bounded by the
+ * configured maximum duration and size.
+ *
+ *   POST   /actuator/flightrecording {"durationSeconds": 120}  start
+ *   GET    /actuator/flightrecording                           download what has been recorded so far
+ *   DELETE /actuator/flightrecording                           stop and discard
+ */
+@Component
+@Endpoint(id = "flightrecording")
+public class FlightRecordingEndpoint {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlightRecordingEndpoint.class);
+
+    private static final String SETTINGS = "profile";
+    private static final String NAME = "rideshare-on-demand";
+
+    private final Duration maxDuration;
+    private final long maxSizeBytes;
+    private final Duration repositoryThreshold;
+
+    // Not synchronized: dumps write to disk, which would pin a virtual thread
+    private final ReentrantLock lock = new ReentrantLock();
+    private Recording recording;
+    // Dumps not yet read by their response; each deletes itself once it has been
+    private final Set<Path> unreadDumps = ConcurrentHashMap.newKeySet();
+
+    public FlightRecordingEndpoint(@Value("${diagnostics.jfr.max-duration:600000}") long maxDurationMillis,
+                                   @Value("${diagnostics.jfr.max-size-mb:256}") long maxSizeMb,
+                                   @Value("${diagnostics.jfr.repository-threshold:1}") long repositoryThresholdMillis) {
+        this.maxDuration = Duration.ofMillis(maxDurationMillis);
+        this.maxSizeBytes = maxSizeMb * 1024 * 1024;
+        this.repositoryThreshold = Duration.ofMillis(repositoryThresholdMillis);
+    }
+
+    @WriteOperation
+    public WebEndpointResponse<Map<String, Object>> start(@Nullable Long durationSeconds) {
+        lock.lock();
+        try {
+            if (recording != null && recording.getState() == RecordingState.RUNNING) {
+                return new WebEndpointResponse<>(status(), HttpStatus.CONFLICT.value());
+            }
+            Duration duration = durationSeconds != null && durationSeconds > 0
+                    ? Duration.ofSeconds(durationSeconds) : maxDuration;
+            if (duration.compareTo(maxDuration) > 0) {
+                duration = maxDuration;
+            }
+
+            Recording next;
+            try {
+                next = new Recording(Configuration.getConfiguration(SETTINGS));
+            } catch (IOException | ParseException e) {
+                throw new IllegalStateException("Cannot load the JFR " + SETTINGS + " settings", e);
+            }
+            next.setName(NAME);
+            next.setToDisk(true);
+            next.setDuration(duration);
+            next.setMaxSize(maxSizeBytes);
+            // Repository calls are frequent; only the slow ones are worth the buffer space
+            next.enable(RepositoryCallEvent.class).withThreshold(repositoryThreshold);
+            next.enable(RideTransitionEvent.class);
+            next.enable(CandidateScanEvent.class);
+            next.enable(PriceComputationEvent.class);
+            next.enable(ExternalCallEvent.class);
+            next.enable(PasswordHashEvent.class);
+
+            discard();
+            recording = next;
+            recording.start();
+            logger.info("Started flight recording for {} s, at most {} MB", duration.toSeconds(), maxSizeBytes / (1024 * 1024));
+            return new WebEndpointResponse<>(status(), WebEndpointResponse.STATUS_OK);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Each request gets its own dump file, since the response is written after the lock
+     * is released and another request must not replace or delete it in the meantime
+     */
+    @ReadOperation(produces = "application/octet-stream")
+    public WebEndpointResponse<Resource> dump() throws IOException {
+        Path file;
+        lock.lock();
+        try {
+            if (recording == null || recording.getState() == RecordingState.NEW) {
+                return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+            }
+            file = Files.createTempFile(NAME + "-", ".jfr");
+            try {
+                recording.dump(file);
+            } catch (IOException | RuntimeException e) {
+                delete(file);
+                throw e;
+            }
+            unreadDumps.add(file);
+        } finally {
+            lock.unlock();
+        }
+        return new WebEndpointResponse<>(new DumpResource(file), WebEndpointResponse.STATUS_OK);
+    }
+
+    @DeleteOperation
+    public Map<String, Object> stop() {
+        lock.lock();
+        try {
+            close();
+            return status();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        lock.lock();
+        try {
+            discard();
+            unreadDumps.removeIf(file -> {
+                delete(file);
+                return true;
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("state", recording != null ? recording.getState().name() : "NONE");
+        if (recording != null) {
+            status.put("startTime", recording.getStartTime());
+            status.put("durationSeconds", recording.getDuration() != null ? recording.getDuration().toSeconds() : null);
+            status.put("sizeBytes", recording.getSize());
+        }
+        status.put("maxDurationSeconds", maxDuration.toSeconds());
+        status.put("maxSizeBytes", maxSizeBytes);
+        return status;
+    }
+
+    private void discard() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not delete {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * A dump for one response. The file is deleted when the response closes its stream,
+     * after writing it out or on a failed write.
+     */
+    private final class DumpResource extends FileSystemResource {
+
+        private final Path file;
+
+        private DumpResource(Path file) {
+            super(file);
+            this.file = file;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            InputStream in = Files.newInputStream(file, StandardOpenOption.DELETE_ON_CLOSE);
+            unreadDumps.remove(file);
+            return in;
+        }
+    }
+}
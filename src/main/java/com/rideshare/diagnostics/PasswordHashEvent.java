@@ -0,0 +1,27 @@
+package com.rideshare.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * One BCrypt hash or check on the password hashing pool
+ */
+@Name("com.rideshare.PasswordHash")
+@Label("Password Hash")
+@Category({"RideShare", "Auth"})
+@StackTrace(false)
+public class PasswordHashEvent extends Event {
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Queued")
+    @Description("Time spent waiting for a hashing thread")
+    @Timespan(Timespan.NANOSECONDS)
+    public long queuedNanos;
+}
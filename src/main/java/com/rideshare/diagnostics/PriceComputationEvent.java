@@ -0,0 +1,26 @@
+package com.rideshare.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A fare quote
+ */
+@Name("com.rideshare.PriceComputation")
+@Label("Price Computation")
+@Category({"RideShare", "Pricing"})
+@StackTrace(false)
+public class PriceComputationEvent extends Event {
+
+    @Label("Distance (km)")
+    public double distanceKm;
+
+    @Label("Seats")
+    public int seats;
+
+    @Label("Price")
+    public double price;
+}
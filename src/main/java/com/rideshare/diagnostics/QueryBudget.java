@@ -0,0 +1,28 @@
+package com.rideshare.diagnostics;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The most SQL statements and entity loads a controller method may cause,
+ * checked by QueryBudgetInterceptor when diagnostics.query-budget.mode is
+ * warn or strict.
+ *
+ * The budget covers everything the request causes, including work handed to
+ * other threads such as the insert after password hashing; QueryBudgetTest
+ * holds every endpoint to it on each build. The runtime check only sees the
+ * request thread, from the handler to the end of response rendering, so it
+ * can miss what runs elsewhere.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface QueryBudget {
+
+    int statements();
+
+    int entities();
+}
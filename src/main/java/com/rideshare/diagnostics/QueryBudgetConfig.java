@@ -0,0 +1,53 @@
+package com.rideshare.diagnostics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Enforces the QueryBudget annotations on the controllers.
+ * diagnostics.query-budget.mode is off by default, warn to log the statements
+ * of requests over budget, or strict to fail them at the offending statement.
+ */
+@Configuration
+@ConditionalOnExpression("'${diagnostics.query-budget.mode:off}' != 'off'")
+public class QueryBudgetConfig implements WebMvcConfigurer {
+
+    private final QueryBudgetRecorder recorder;
+
+    public QueryBudgetConfig(@Value("${diagnostics.query-budget.mode}") String mode, MeterRegistry meterRegistry) {
+        if (!mode.equals("warn") && !mode.equals("strict")) {
+            throw new IllegalArgumentException("diagnostics.query-budget.mode must be off, warn or strict, not " + mode);
+        }
+        this.recorder = new QueryBudgetRecorder(mode.equals("strict"), meterRegistry);
+    }
+
+    @Bean
+    public QueryBudgetRecorder queryBudgetRecorder() {
+        return recorder;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer queryBudgetHibernateProperties() {
+        return properties -> {
+            // Run after any other inspector, so the SQL counted is the SQL sent
+            properties.merge(AvailableSettings.STATEMENT_INSPECTOR, recorder, (existing, ours) -> {
+                StatementInspector other = (StatementInspector) existing;
+                return (StatementInspector) sql -> recorder.inspect(other.inspect(sql));
+            });
+            properties.put(AvailableSettings.INTERCEPTOR, recorder);
+        };
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new QueryBudgetInterceptor(recorder));
+    }
+}
@@ -0,0 +1,11 @@
+package com.rideshare.diagnostics;
+
+/**
+ * Thrown in strict mode by the statement or load that goes over an endpoint's QueryBudget
+ */
+public class QueryBudgetExceededException extends RuntimeException {
+
+    public QueryBudgetExceededException(String message) {
+        super(message);
+    }
+}
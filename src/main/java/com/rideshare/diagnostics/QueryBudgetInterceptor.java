@@ -0,0 +1,61 @@
+package com.rideshare.diagnostics;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Binds a budget to the request thread for controller methods annotated with
+ * QueryBudget, and checks it once the response is complete
+ */
+public class QueryBudgetInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String USAGE_ATTRIBUTE = QueryBudgetInterceptor.class.getName() + ".usage";
+
+    private final QueryBudgetRecorder recorder;
+
+    public QueryBudgetInterceptor(QueryBudgetRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // An async redispatch carries on counting against the usage the first dispatch started
+        QueryBudgetRecorder.Usage usage = (QueryBudgetRecorder.Usage) request.getAttribute(USAGE_ATTRIBUTE);
+        if (usage == null) {
+            if (!(handler instanceof HandlerMethod method)) {
+                return true;
+            }
+            QueryBudget budget = method.getMethodAnnotation(QueryBudget.class);
+            if (budget == null) {
+                return true;
+            }
+            usage = new QueryBudgetRecorder.Usage(endpoint(request), budget);
+            request.setAttribute(USAGE_ATTRIBUTE, usage);
+        }
+        recorder.bind(usage);
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        recorder.unbind();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        QueryBudgetRecorder.Usage usage = (QueryBudgetRecorder.Usage) request.getAttribute(USAGE_ATTRIBUTE);
+        if (usage != null) {
+            recorder.unbind();
+            request.removeAttribute(USAGE_ATTRIBUTE);
+            recorder.check(usage);
+        }
+    }
+
+    private static String endpoint(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return request.getMethod() + " " + (pattern != null ? pattern : request.getRequestURI());
+    }
+}
@@ -0,0 +1,131 @@
+package com.rideshare.diagnostics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.Interceptor;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.type.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the SQL statements and entity loads on the current thread while a
+ * budgeted request is bound to it. Registered with Hibernate as both the
+ * statement inspector and the session factory interceptor.
+ */
+public class QueryBudgetRecorder implements StatementInspector, Interceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryBudgetRecorder.class);
+
+    // Statements kept for the report; a runaway N+1 would otherwise fill the log
+    private static final int MAX_REPORTED_STATEMENTS = 50;
+
+    private final boolean strict;
+    private final MeterRegistry meterRegistry;
+    private final ThreadLocal<Usage> current = new ThreadLocal<>();
+    private final Map<String, AtomicLong> exceededByEndpoint = new ConcurrentHashMap<>();
+
+    /**
+     * Statements and loads for one request; may move between threads with async dispatch
+     */
+    static final class Usage {
+        final String endpoint;
+        final QueryBudget budget;
+        int statements;
+        int entities;
+        final List<String> sql = new ArrayList<>();
+        final Map<String, Integer> entitiesByType = new TreeMap<>();
+
+        Usage(String endpoint, QueryBudget budget) {
+            this.endpoint = endpoint;
+            this.budget = budget;
+        }
+
+        boolean exceeded() {
+            return statements > budget.statements() || entities > budget.entities();
+        }
+    }
+
+    public QueryBudgetRecorder(boolean strict, MeterRegistry meterRegistry) {
+        this.strict = strict;
+        this.meterRegistry = meterRegistry;
+    }
+
+    void bind(Usage usage) {
+        current.set(usage);
+    }
+
+    void unbind() {
+        current.remove();
+    }
+
+    @Override
+    public String inspect(String sql) {
+        Usage usage = current.get();
+        if (usage != null) {
+            usage.statements++;
+            if (usage.sql.size() < MAX_REPORTED_STATEMENTS) {
+                usage.sql.add(sql);
+            }
+            if (strict && usage.statements > usage.budget.statements()) {
+                throw exceeded(usage);
+            }
+        }
+        return sql;
+    }
+
+    @Override
+    public boolean onLoad(Object entity, Object id, Object[] state, String[] propertyNames, Type[] types) {
+        Usage usage = current.get();
+        if (usage != null) {
+            usage.entities++;
+            usage.entitiesByType.merge(entity.getClass().getSimpleName(), 1, Integer::sum);
+            if (strict && usage.entities > usage.budget.entities()) {
+                throw exceeded(usage);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Report the request if it went over budget
+     */
+    void check(Usage usage) {
+        if (!usage.exceeded()) {
+            return;
+        }
+        exceededByEndpoint.computeIfAbsent(usage.endpoint, endpoint -> new AtomicLong()).incrementAndGet();
+        Counter.builder("query.budget.exceeded")
+                .description("Requests that ran more SQL statements or loaded more entities than their budget")
+                .tag("endpoint", usage.endpoint)
+                .register(meterRegistry)
+                .increment();
+        logger.warn("{}\n{}", summary(usage), String.join("\n", usage.sql));
+    }
+
+    /**
+     * @return Requests over budget so far, by endpoint
+     */
+    public Map<String, Long> exceeded() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        exceededByEndpoint.forEach((endpoint, count) -> snapshot.put(endpoint, count.get()));
+        return snapshot;
+    }
+
+    private QueryBudgetExceededException exceeded(Usage usage) {
+        return new QueryBudgetExceededException(summary(usage) + "\n" + String.join("\n", usage.sql));
+    }
+
+    private static String summary(Usage usage) {
+        return String.format("%s over query budget: %d statements (budget %d), %d entities loaded (budget %d) %s",
+                usage.endpoint, usage.statements, usage.budget.statements(),
+                usage.entities, usage.budget.entities(), usage.entitiesByType);
+    }
+}
@@ -0,0 +1,26 @@
+package com.rideshare.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Spring Data repository method call, flushes and queries included
+ */
+@Name("com.rideshare.RepositoryCall")
+@Label("Repository Call")
+@Category({"RideShare", "Persistence"})
+@StackTrace(false)
+public class RepositoryCallEvent extends Event {
+
+    @Label("Repository")
+    public String repository;
+
+    @Label("Method")
+    public String method;
+
+    @Label("Failed")
+    public boolean failed;
+}
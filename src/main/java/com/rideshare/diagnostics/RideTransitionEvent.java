@@ -0,0 +1,32 @@
+package com.rideshare.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One ride lifecycle transition, including its transaction commit
+ */
+@Name("com.rideshare.RideTransition")
+@Label("Ride Transition")
+@Category({"RideShare", "Rides"})
+@StackTrace(false)
+public class RideTransitionEvent extends Event {
+
+    @Label("Transition")
+    public String transition;
+
+    @Label("Ride ID")
+    public long rideId;
+
+    @Label("Status")
+    @Description("Ride status afterwards")
+    public String status;
+
+    @Label("Outcome")
+    @Description("success, or the exception that ended the transition")
+    public String outcome;
+}
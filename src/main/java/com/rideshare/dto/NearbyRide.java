@@ -0,0 +1,32 @@
+package com.rideshare.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * What a driver's nearby-ride feed shows about an open ride request
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearbyRide {
+    private Long rideId;
+    private String pickupLocation;
+    private String dropoffLocation;
+    private BigDecimal pickupLat;
+    private BigDecimal pickupLng;
+    private BigDecimal dropoffLat;
+    private BigDecimal dropoffLng;
+    private LocalDateTime rideTime;
+    private Double price;
+    private BigDecimal estimatedDistance;
+    private Integer estimatedDuration;
+    private Integer seats;
+    private Boolean isShared;
+    private String passengerName;
+    private Double passengerRating;
+}
@@ -0,0 +1,14 @@
+package com.rideshare.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentIntentResult {
+    private String paymentIntentId;
+    private String clientSecret;
+    private String status;
+}
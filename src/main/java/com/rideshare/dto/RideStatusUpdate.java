@@ -0,0 +1,28 @@
+package com.rideshare.dto;
+
+import com.rideshare.model.RideStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * The state of a ride pushed to its passengers and driver. Sequence numbers
+ * only grow, so a client can ignore anything older than what it has shown.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RideStatusUpdate {
+    private String type;
+    private Long sequence;
+    private Long rideId;
+    private RideStatus status;
+    private Long driverId;
+    private String driverName;
+    private String driverPhoneNumber;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private Double price;
+}
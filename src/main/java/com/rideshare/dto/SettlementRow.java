@@ -0,0 +1,17 @@
+package com.rideshare.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * The columns of a ride the settlement job needs, read without loading the entity
+ */
+@Data
+@AllArgsConstructor
+public class SettlementRow {
+    private Long rideId;
+    private Long driverId;
+    private BigDecimal price;
+}
@@ -0,0 +1,14 @@
+package com.rideshare.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * The encoded fixes of one recorded trace chunk, read without loading the entity
+ */
+@Data
+@AllArgsConstructor
+public class TraceChunkRow {
+    private Integer pointCount;
+    private byte[] data;
+}
@@ -0,0 +1,17 @@
+package com.rideshare.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One GPS fix from the driver's device
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TracePoint {
+    private Double latitude;
+    private Double longitude;
+    private Long timestamp; // epoch milliseconds; the server's time when missing
+}
@@ -0,0 +1,14 @@
+package com.rideshare.exception;
+
+public class PaymentGatewayException extends RuntimeException {
+    private final boolean retryable;
+
+    public PaymentGatewayException(String message, boolean retryable, Throwable cause) {
+        super(message, cause);
+        this.retryable = retryable;
+    }
+
+    public boolean isRetryable() {
+        return retryable;
+    }
+}
@@ -0,0 +1,43 @@
+package com.rideshare.model;
+
+import com.rideshare.config.AppClock;
+import jakarta.persistence.*;
+import lombok.Data;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Entity
+@Data
+@Table(name = "driver_payouts", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_driver_payouts_run_driver", columnNames = {"runId", "driverId"})
+})
+public class DriverPayout {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long runId;
+
+    @Column(nullable = false)
+    private Long driverId;
+
+    @Column(nullable = false)
+    private BigDecimal amount = BigDecimal.ZERO;
+
+    private Integer rideCount = 0;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = AppClock.now();
+        updatedAt = AppClock.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = AppClock.now();
+    }
+}
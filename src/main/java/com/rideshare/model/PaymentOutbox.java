@@ -0,0 +1,72 @@
+package com.rideshare.model;
+
+import com.rideshare.config.AppClock;
+import jakarta.persistence.*;
+import lombok.Data;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A payment intent waiting to be created in Stripe. Rows are written in the same
+ * transaction as the ride lookup and picked up by the payment outbox workers.
+ */
+@Entity
+@Data
+@Table(name = "payment_outbox", indexes = {
+    @Index(name = "idx_payment_outbox_due", columnList = "status, nextAttemptAt"),
+    @Index(name = "idx_payment_outbox_ride", columnList = "rideId")
+})
+public class PaymentOutbox {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long rideId;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    private BigDecimal amount;
+
+    @Column(nullable = false)
+    private String currency;
+
+    private String customerId;
+
+    // Sent to Stripe on every attempt, so retries never create a second charge
+    @Column(nullable = false, unique = true)
+    private String idempotencyKey;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private PaymentOutboxStatus status = PaymentOutboxStatus.PENDING;
+
+    private Integer attempts = 0;
+
+    // Next retry time while PENDING, lease expiry while IN_PROGRESS
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    private String paymentIntentId;
+    private String clientSecret;
+    private String lastError;
+
+    @Version
+    private Long version;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = AppClock.now();
+        updatedAt = AppClock.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = AppClock.now();
+    }
+}
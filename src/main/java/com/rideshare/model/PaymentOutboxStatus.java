@@ -0,0 +1,8 @@
+package com.rideshare.model;
+
+public enum PaymentOutboxStatus {
+    PENDING,
+    IN_PROGRESS,
+    SUCCEEDED,
+    FAILED
+}
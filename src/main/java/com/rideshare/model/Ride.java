@@ -1,5 +1,6 @@
 package com.rideshare.model;
 
+import com.rideshare.config.AppClock;
 import jakarta.persistence.*;
 import lombok.Data;
 import java.math.BigDecimal;
@@ -7,7 +8,9 @@ import java.time.LocalDateTime;
 
 @Entity
 @Data
-@Table(name = "rides")
+@Table(name = "rides", indexes = {
+        @Index(name = "idx_rides_status_pickup", columnList = "status, pickup_lat, pickup_lng")
+})
 public class Ride {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -43,6 +46,8 @@ public class Ride {
     private BigDecimal price;
     private BigDecimal estimatedDistance;
     private Integer estimatedDuration; // in minutes
+    private BigDecimal actualDistance; // in km, from the driver's GPS trace
+    private Integer actualDuration; // in minutes
     private LocalDateTime rideTime;
     private LocalDateTime startTime;
     private LocalDateTime endTime;
@@ -50,6 +55,7 @@ public class Ride {
     private Integer seats = 1;
     private String paymentIntentId;
     private Boolean isPaid = false;
+    private Long payoutRunId; // settlement run that paid the driver, null until settled
     private String cancellationReason;
     private Double driverRating;
     private Double passengerRating;
@@ -61,15 +67,20 @@ public class Ride {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
+    // Bumped on every change; served as the ETag of the ride
+    @Version
+    @Column(nullable = false, columnDefinition = "BIGINT DEFAULT 0")
+    private Long version = 0L;
+
     @PrePersist
     protected void onCreate() {
-        createdAt = LocalDateTime.now();
-        updatedAt = LocalDateTime.now();
+        createdAt = AppClock.now();
+        updatedAt = AppClock.now();
     }
 
     @PreUpdate
     protected void onUpdate() {
-        updatedAt = LocalDateTime.now();
+        updatedAt = AppClock.now();
     }
 
     // Compatibility methods for legacy code
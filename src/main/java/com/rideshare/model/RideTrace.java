@@ -0,0 +1,45 @@
+package com.rideshare.model;
+
+import com.rideshare.config.AppClock;
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * The GPS trace of a completed ride, stored as one compressed blob.
+ * See TripTrace for the encoding.
+ */
+@Entity
+@Data
+@Table(name = "ride_traces")
+public class RideTrace {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, unique = true)
+    private Long rideId;
+
+    @Column(nullable = false)
+    private Integer encoding;
+
+    @Column(nullable = false)
+    private Integer pointCount;
+
+    @Column(nullable = false)
+    private Double distanceMeters;
+
+    @Column(nullable = false)
+    private Long durationSeconds;
+
+    @Lob
+    @Column(nullable = false, columnDefinition = "MEDIUMBLOB")
+    private byte[] data;
+
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = AppClock.now();
+    }
+}
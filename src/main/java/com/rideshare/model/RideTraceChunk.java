@@ -0,0 +1,42 @@
+package com.rideshare.model;
+
+import com.rideshare.config.AppClock;
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * GPS fixes of an in-progress ride, one row per batch the driver posted, written
+ * by whichever node received it. Merged into a RideTrace when the ride completes.
+ * See TripTrace for the encoding.
+ */
+@Entity
+@Data
+@Table(name = "ride_trace_chunks", indexes = {
+    @Index(name = "idx_ride_trace_chunks_ride", columnList = "rideId, id")
+})
+public class RideTraceChunk {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long rideId;
+
+    @Column(nullable = false)
+    private Integer encoding;
+
+    @Column(nullable = false)
+    private Integer pointCount;
+
+    @Lob
+    @Column(nullable = false, columnDefinition = "MEDIUMBLOB")
+    private byte[] data;
+
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = AppClock.now();
+    }
+}
@@ -0,0 +1,42 @@
+package com.rideshare.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One pass of the driver payout settlement job. The checkpoint lets a crashed
+ * run resume from the last committed id range.
+ */
+@Entity
+@Data
+@Table(name = "settlement_runs")
+public class SettlementRun {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private SettlementRunStatus status = SettlementRunStatus.RUNNING;
+
+    // Highest ride id covered by committed chunks
+    @Column(nullable = false)
+    private Long checkpointRideId = 0L;
+
+    // Highest ride id when the run started; later rides wait for the next run
+    @Column(nullable = false)
+    private Long maxRideId;
+
+    private Long ridesSettled = 0L;
+    private BigDecimal totalPaidOut = BigDecimal.ZERO;
+    private Double ridesPerSecond;
+
+    // Stops two nodes from committing the same chunk
+    @Version
+    private Long version;
+
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
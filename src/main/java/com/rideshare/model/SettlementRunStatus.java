@@ -0,0 +1,7 @@
+package com.rideshare.model;
+
+public enum SettlementRunStatus {
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
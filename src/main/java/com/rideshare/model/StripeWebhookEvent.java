@@ -0,0 +1,46 @@
+package com.rideshare.model;
+
+import com.rideshare.config.AppClock;
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * A verified Stripe webhook event, stored raw before it is acknowledged
+ */
+@Entity
+@Data
+@Table(name = "stripe_webhook_events", indexes = {
+    @Index(name = "idx_stripe_webhook_events_status", columnList = "status, id")
+})
+public class StripeWebhookEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Stripe's event ID; unique so a retried delivery cannot be stored twice
+    @Column(nullable = false, unique = true)
+    private String eventId;
+
+    @Column(nullable = false)
+    private String type;
+
+    // ID of the object the event is about, e.g. the payment intent
+    private String objectId;
+
+    @Lob
+    @Column(nullable = false, columnDefinition = "LONGTEXT")
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private WebhookEventStatus status = WebhookEventStatus.RECEIVED;
+
+    private LocalDateTime receivedAt;
+    private LocalDateTime processedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        receivedAt = AppClock.now();
+    }
+}
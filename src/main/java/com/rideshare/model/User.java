@@ -1,5 +1,7 @@
 package com.rideshare.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.rideshare.config.AppClock;
 import jakarta.persistence.*;
 import lombok.Data;
 import com.rideshare.model.UserRole;
@@ -45,9 +47,13 @@ public class User {
     @Column(columnDefinition = "TEXT")
     private String address;
     
+    // Not rendered: every ride response would lazy-load the user's whole history, and each
+    // ride in it refers back to the user
+    @JsonIgnore
     @OneToMany(mappedBy = "driver")
     private List<Ride> driverRides = new ArrayList<>();
     
+    @JsonIgnore
     @OneToMany(mappedBy = "passenger")
     private List<Ride> passengerRides = new ArrayList<>();
     
@@ -70,12 +76,12 @@ public class User {
     
     @PrePersist
     protected void onCreate() {
-        createdAt = LocalDateTime.now();
-        updatedAt = LocalDateTime.now();
+        createdAt = AppClock.now();
+        updatedAt = AppClock.now();
     }
     
     @PreUpdate
     protected void onUpdate() {
-        updatedAt = LocalDateTime.now();
+        updatedAt = AppClock.now();
     }
 }
\ No newline at end of file
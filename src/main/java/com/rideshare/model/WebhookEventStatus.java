@@ -0,0 +1,7 @@
+package com.rideshare.model;
+
+public enum WebhookEventStatus {
+    RECEIVED,
+    PROCESSED,
+    IGNORED
+}
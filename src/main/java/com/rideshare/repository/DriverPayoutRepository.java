@@ -0,0 +1,13 @@
+package com.rideshare.repository;
+
+import com.rideshare.model.DriverPayout;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface DriverPayoutRepository extends JpaRepository<DriverPayout, Long> {
+    List<DriverPayout> findByRunIdAndDriverIdIn(Long runId, Collection<Long> driverIds);
+}
@@ -0,0 +1,23 @@
+package com.rideshare.repository;
+
+import com.rideshare.model.PaymentOutbox;
+import com.rideshare.model.PaymentOutboxStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PaymentOutboxRepository extends JpaRepository<PaymentOutbox, Long> {
+    Optional<PaymentOutbox> findFirstByRideIdAndUserIdAndStatusInOrderByIdDesc(Long rideId, Long userId, List<PaymentOutboxStatus> statuses);
+
+    long countByRideIdAndUserIdAndStatus(Long rideId, Long userId, PaymentOutboxStatus status);
+
+    // Pending rows that are due, plus in-progress rows whose worker lease has expired
+    @Query("SELECT p FROM PaymentOutbox p WHERE p.status IN ('PENDING', 'IN_PROGRESS') AND p.nextAttemptAt <= :now ORDER BY p.nextAttemptAt")
+    List<PaymentOutbox> findDue(LocalDateTime now, Pageable pageable);
+}
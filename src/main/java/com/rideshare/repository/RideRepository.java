@@ -1,14 +1,20 @@
 package com.rideshare.repository;
 
+import com.rideshare.dto.SettlementRow;
 import com.rideshare.model.Ride;
 import com.rideshare.model.RideStatus;
 import com.rideshare.model.User;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface RideRepository extends JpaRepository<Ride, Long> {
@@ -17,6 +23,12 @@ public interface RideRepository extends JpaRepository<Ride, Long> {
     List<Ride> findByDriver(User driver);
     
     List<Ride> findByStatus(RideStatus status);
+
+    long countByStatus(RideStatus status);
+    
+    List<Ride> findByStatusAndPickupLatBetweenAndPickupLngBetween(RideStatus status,
+                                                                 BigDecimal minLat, BigDecimal maxLat,
+                                                                 BigDecimal minLng, BigDecimal maxLng);
     
     List<Ride> findByStatusAndIsShared(RideStatus status, Boolean isShared);
     
@@ -26,6 +38,11 @@ public interface RideRepository extends JpaRepository<Ride, Long> {
     
     List<Ride> findByPassengerAndStatusIn(User passenger, List<RideStatus> statuses);
     
+    // Serializes work that must happen at most once per ride, such as requesting its payment
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM Ride r WHERE r.id = :id")
+    Optional<Ride> findByIdForUpdate(Long id);
+
     @Query("SELECT r FROM Ride r WHERE r.status = :status AND r.driver = NULL")
     List<Ride> findAvailableRides(RideStatus status);
     
@@ -37,4 +54,32 @@ public interface RideRepository extends JpaRepository<Ride, Long> {
     
     @Query("SELECT r FROM Ride r WHERE r.passenger = :passenger AND r.status IN ('ACCEPTED', 'DRIVER_ARRIVING', 'DRIVER_ARRIVED', 'IN_PROGRESS')")
     List<Ride> findActiveRidesByPassenger(User passenger);
-} 
\ No newline at end of file
+    
+    @Modifying
+    @Query("UPDATE Ride r SET r.isPaid = true, r.updatedAt = :now, r.version = r.version + 1 WHERE r.paymentIntentId IN :paymentIntentIds AND (r.isPaid = false OR r.isPaid IS NULL)")
+    int markPaidByPaymentIntentIds(List<String> paymentIntentIds, LocalDateTime now);
+    
+    @Query("SELECT r.id FROM Ride r WHERE r.paymentIntentId IN :paymentIntentIds")
+    List<Long> findIdsByPaymentIntentIds(List<String> paymentIntentIds);
+    
+    @Query("SELECT r.version FROM Ride r WHERE r.id = :id")
+    Long findVersionById(Long id);
+    
+    @Query("SELECT r.id, r.version FROM Ride r WHERE r.id IN :ids")
+    List<Object[]> findVersionsByIds(List<Long> ids);
+    
+    @Query("SELECT COALESCE(MAX(r.id), 0) FROM Ride r")
+    Long findMaxId();
+    
+    @Query("SELECT MIN(r.id) FROM Ride r WHERE r.status = 'COMPLETED' AND r.isPaid = true AND r.payoutRunId IS NULL")
+    Long findMinUnsettledId();
+    
+    @Query("SELECT new com.rideshare.dto.SettlementRow(r.id, r.driver.id, r.price) FROM Ride r " +
+           "WHERE r.id > :fromId AND r.id <= :toId AND r.status = 'COMPLETED' AND r.isPaid = true " +
+           "AND r.payoutRunId IS NULL AND r.driver IS NOT NULL AND r.price IS NOT NULL")
+    List<SettlementRow> findSettlementRows(Long fromId, Long toId);
+    
+    @Modifying
+    @Query("UPDATE Ride r SET r.payoutRunId = :runId, r.version = r.version + 1 WHERE r.id IN :rideIds AND r.payoutRunId IS NULL")
+    int markSettled(List<Long> rideIds, Long runId);
+}
@@ -0,0 +1,23 @@
+package com.rideshare.repository;
+
+import com.rideshare.dto.TraceChunkRow;
+import com.rideshare.model.RideTraceChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface RideTraceChunkRepository extends JpaRepository<RideTraceChunk, Long> {
+    @Query("SELECT new com.rideshare.dto.TraceChunkRow(c.pointCount, c.data) FROM RideTraceChunk c " +
+           "WHERE c.rideId = :rideId ORDER BY c.id")
+    List<TraceChunkRow> findRowsByRideId(Long rideId);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RideTraceChunk c WHERE c.rideId = :rideId")
+    int deleteByRideId(Long rideId);
+}
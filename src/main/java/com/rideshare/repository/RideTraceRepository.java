@@ -0,0 +1,12 @@
+package com.rideshare.repository;
+
+import com.rideshare.model.RideTrace;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface RideTraceRepository extends JpaRepository<RideTrace, Long> {
+    Optional<RideTrace> findByRideId(Long rideId);
+}
@@ -0,0 +1,13 @@
+package com.rideshare.repository;
+
+import com.rideshare.model.SettlementRun;
+import com.rideshare.model.SettlementRunStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface SettlementRunRepository extends JpaRepository<SettlementRun, Long> {
+    Optional<SettlementRun> findFirstByStatusOrderByIdDesc(SettlementRunStatus status);
+}
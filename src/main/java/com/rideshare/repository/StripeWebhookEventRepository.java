@@ -0,0 +1,21 @@
+package com.rideshare.repository;
+
+import com.rideshare.model.StripeWebhookEvent;
+import com.rideshare.model.WebhookEventStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface StripeWebhookEventRepository extends JpaRepository<StripeWebhookEvent, Long> {
+    List<StripeWebhookEvent> findByStatusOrderByIdAsc(WebhookEventStatus status, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE StripeWebhookEvent e SET e.status = :status, e.processedAt = :now WHERE e.id IN :ids")
+    int updateStatus(List<Long> ids, WebhookEventStatus status, LocalDateTime now);
+}
@@ -1,10 +1,13 @@
 package com.rideshare.repository;
 
 import com.rideshare.model.User;
+import com.rideshare.model.UserRole;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     User findByEmail(String email);
+
+    long countByRoleAndIsAvailable(UserRole role, Boolean isAvailable);
 } 
\ No newline at end of file
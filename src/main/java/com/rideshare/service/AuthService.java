@@ -2,9 +2,14 @@ package com.rideshare.service;
 
 import com.rideshare.dto.AuthResponse;
 import com.rideshare.dto.LoginRequest;
+import com.rideshare.dto.RefreshTokenRequest;
 import com.rideshare.dto.RegisterRequest;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface AuthService {
-    AuthResponse register(RegisterRequest request);
-    AuthResponse login(LoginRequest request);
-} 
\ No newline at end of file
+    CompletableFuture<AuthResponse> register(RegisterRequest request);
+    CompletableFuture<AuthResponse> login(LoginRequest request);
+    AuthResponse refresh(RefreshTokenRequest request);
+    void logout(String accessToken, RefreshTokenRequest request);
+}
@@ -6,4 +6,32 @@ public interface JwtService {
     String generateToken(User user);
     String extractUsername(String token);
     boolean isTokenValid(String token, User user);
-} 
\ No newline at end of file
+
+    /**
+     * Verify an access token and build the authenticated principal from its claims
+     * @param token The raw JWT
+     * @return A user carrying the id, email and role from the token, or null if the token is invalid, expired or revoked
+     */
+    User extractPrincipal(String token);
+
+    /**
+     * Generate a long-lived refresh token for a user
+     * @param user The user
+     * @return The signed refresh token
+     */
+    String generateRefreshToken(User user);
+
+    /**
+     * Verify a refresh token
+     * @param token The raw refresh token
+     * @return The user ID from the token, or null if the token is invalid, expired or revoked
+     */
+    Long extractRefreshUserId(String token);
+
+    /**
+     * Revoke an access or refresh token until it expires
+     * @param token The raw JWT; invalid or expired tokens are ignored
+     * @return True if this call revoked the token, false if it was invalid, expired or already revoked
+     */
+    boolean revokeToken(String token);
+}
@@ -0,0 +1,29 @@
+package com.rideshare.service;
+
+import com.rideshare.model.Ride;
+import com.rideshare.model.User;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public interface NearbyRideFeedService {
+
+    /**
+     * Open a push feed of ride requests near a driver. The stream starts with the
+     * open requests already in range, then sends "ride-added" and "ride-removed"
+     * events as rides are requested, accepted or cancelled there.
+     * A driver has at most one feed; subscribing again closes the previous one.
+     * @param driver The driver subscribing
+     * @param latitude Driver's latitude
+     * @param longitude Driver's longitude
+     * @param radiusInKm Radius to watch in kilometers
+     * @return The event stream
+     * @throws com.rideshare.exception.ServiceUnavailableException if this node has no room for another feed
+     */
+    SseEmitter subscribe(User driver, double latitude, double longitude, double radiusInKm);
+
+    /**
+     * Tell drivers watching the ride's pickup area that the ride changed.
+     * Delivery happens after the current transaction commits.
+     * @param ride The ride that was requested, accepted or cancelled
+     */
+    void publish(Ride ride);
+}
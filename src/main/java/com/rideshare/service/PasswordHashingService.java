@@ -0,0 +1,25 @@
+package com.rideshare.service;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface PasswordHashingService {
+
+    /**
+     * Hash a password on the dedicated hashing pool
+     * @param account The account the password belongs to, used for per-account admission
+     * @param rawPassword The plain text password
+     * @return A future completing with the encoded password
+     * @throws com.rideshare.exception.TooManyRequestsException if the pool or the account is saturated
+     */
+    CompletableFuture<String> encode(String account, String rawPassword);
+
+    /**
+     * Check a password against its hash on the dedicated hashing pool
+     * @param account The account the password belongs to, used for per-account admission
+     * @param rawPassword The plain text password
+     * @param encodedPassword The stored hash
+     * @return A future completing with true if the password matches
+     * @throws com.rideshare.exception.TooManyRequestsException if the pool or the account is saturated
+     */
+    CompletableFuture<Boolean> matches(String account, String rawPassword, String encodedPassword);
+}
@@ -0,0 +1,34 @@
+package com.rideshare.service;
+
+import com.rideshare.model.PaymentOutbox;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface PaymentOutboxService {
+
+    /**
+     * Queue creation of a payment intent for a ride. Repeat calls for a ride with
+     * a pending or successful request return that request instead of a new one.
+     * Only a completed ride can be paid, since completing it sets the final price.
+     * @param rideId The ride to pay for
+     * @param userId The user paying, who must be a rider on the ride
+     * @return The queued payment request
+     */
+    PaymentOutbox requestPaymentIntent(Long rideId, Long userId);
+
+    /**
+     * Get the current state of a payment request
+     * @param requestId The payment request ID
+     * @param userId The user who created the request
+     * @return The payment request
+     */
+    PaymentOutbox getPaymentRequest(Long requestId, Long userId);
+
+    /**
+     * Wait for a payment request to succeed or fail
+     * @param requestId The payment request ID
+     * @param userId The user who created the request
+     * @return A future completing with the resolved payment request
+     */
+    CompletableFuture<PaymentOutbox> awaitResult(Long requestId, Long userId);
+}
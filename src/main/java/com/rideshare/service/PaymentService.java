@@ -1,37 +0,0 @@
-package com.rideshare.service;
-
-import com.stripe.Stripe;
-import com.stripe.exception.StripeException;
-import com.stripe.model.PaymentIntent;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.stereotype.Service;
-
-import java.math.BigDecimal;
-import java.util.HashMap;
-import java.util.Map;
-
-@Service
-public class PaymentService {
-
-    @Value("${stripe.api.key}")
-    private String stripeApiKey;
-
-    public PaymentService(@Value("${stripe.api.key}") String stripeApiKey) {
-        Stripe.apiKey = stripeApiKey;
-    }
-
-    public PaymentIntent createPaymentIntent(BigDecimal amount, String currency, String customerId) throws StripeException {
-        Map<String, Object> params = new HashMap<>();
-        params.put("amount", amount.multiply(new BigDecimal(100)).longValue()); // Convert to cents
-        params.put("currency", currency);
-        params.put("customer", customerId);
-        params.put("payment_method_types", new String[]{"card"});
-
-        return PaymentIntent.create(params);
-    }
-
-    public PaymentIntent confirmPayment(String paymentIntentId) throws StripeException {
-        PaymentIntent paymentIntent = PaymentIntent.retrieve(paymentIntentId);
-        return paymentIntent.confirm();
-    }
-} 
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.rideshare.service;
+
+import com.rideshare.model.SettlementRun;
+
+public interface PayoutSettlementService {
+
+    /**
+     * Settle driver earnings for completed, paid rides that have not been settled yet.
+     * Resumes an interrupted run from its checkpoint if there is one.
+     * @return The finished settlement run
+     */
+    SettlementRun runSettlement();
+}
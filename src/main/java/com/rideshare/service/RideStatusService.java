@@ -0,0 +1,56 @@
+package com.rideshare.service;
+
+import com.rideshare.model.Ride;
+import org.springframework.web.socket.WebSocketSession;
+
+public interface RideStatusService {
+
+    /**
+     * Start tracking a newly opened WebSocket connection. It is closed unless it
+     * authenticates in time, and turned away at once if too many connections
+     * are already waiting to authenticate.
+     * @param session The connection
+     */
+    void connect(WebSocketSession session);
+
+    /**
+     * Record that a connection has sent a valid token, lifting its authentication deadline
+     * @param session The connection
+     */
+    void authenticated(WebSocketSession session);
+
+    /**
+     * Subscribe a connection to a ride's status updates and send it the current state
+     * @param session The connection
+     * @param ride The ride, already checked to belong to the connection's user
+     * @throws com.rideshare.exception.RideException if the connection already watches too many rides
+     */
+    void subscribe(WebSocketSession session, Ride ride);
+
+    /**
+     * Stop sending a ride's updates to a connection
+     * @param session The connection
+     * @param rideId The ride ID
+     */
+    void unsubscribe(WebSocketSession session, Long rideId);
+
+    /**
+     * Forget a closed connection and all of its subscriptions
+     * @param session The connection
+     */
+    void disconnect(WebSocketSession session);
+
+    /**
+     * Send an error message to a connection
+     * @param session The connection
+     * @param message The error message
+     */
+    void sendError(WebSocketSession session, String message);
+
+    /**
+     * Push a ride's new state to everyone subscribed to it.
+     * Delivery happens after the current transaction commits.
+     * @param ride The ride that changed
+     */
+    void publish(Ride ride);
+}
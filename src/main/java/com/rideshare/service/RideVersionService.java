@@ -0,0 +1,46 @@
+package com.rideshare.service;
+
+import com.rideshare.model.Ride;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
+public interface RideVersionService {
+
+    /**
+     * Get the current version of a ride. Answered from memory when this node has
+     * seen the ride recently, otherwise with a single-column database lookup.
+     * @param rideId The ride ID
+     * @return The version, or null if the ride does not exist
+     */
+    Long getVersion(Long rideId);
+
+    /**
+     * Remember the version of a ride just read from the database
+     * @param ride The ride
+     */
+    void remember(Ride ride);
+
+    /**
+     * Record a ride's new version and wake requests waiting for it to change.
+     * Takes effect after the current transaction commits.
+     * @param ride The ride that changed
+     */
+    void publish(Ride ride);
+
+    /**
+     * Forget the versions of rides changed by a bulk update and wake requests
+     * waiting on them. Takes effect after the current transaction commits.
+     * @param rideIds The ride IDs
+     */
+    void invalidate(Collection<Long> rideIds);
+
+    /**
+     * Wait for a ride to move past a version
+     * @param rideId The ride ID
+     * @param knownVersion The version the client already has
+     * @param timeoutMillis How long to wait
+     * @return A future completing with true once the ride changes, or false on timeout
+     */
+    CompletableFuture<Boolean> awaitChange(Long rideId, long knownVersion, long timeoutMillis);
+}
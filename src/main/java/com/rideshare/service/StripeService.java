@@ -1,6 +1,21 @@
 package com.rideshare.service;
 
+import com.rideshare.dto.PaymentIntentResult;
+
+import java.math.BigDecimal;
+
 public interface StripeService {
-    String createPaymentIntent(Double amount, String customerId);
+
+    /**
+     * Create a payment intent in Stripe
+     * @param amount The amount in major currency units
+     * @param currency The ISO currency code
+     * @param customerId The Stripe customer ID, may be null
+     * @param idempotencyKey Sent to Stripe so a retried call cannot create a second intent
+     * @return The created intent's ID and client secret
+     * @throws com.rideshare.exception.PaymentGatewayException if Stripe rejects the call or cannot be reached
+     */
+    PaymentIntentResult createPaymentIntent(BigDecimal amount, String currency, String customerId, String idempotencyKey);
+
     String getPublishableKey();
-} 
\ No newline at end of file
+}
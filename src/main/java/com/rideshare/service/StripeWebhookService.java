@@ -0,0 +1,16 @@
+package com.rideshare.service;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface StripeWebhookService {
+
+    /**
+     * Verify a webhook delivery and store it durably for background processing
+     * @param payload The raw request body
+     * @param signatureHeader The Stripe-Signature header
+     * @return A future completing once the event is persisted, or straight away for a duplicate delivery
+     * @throws com.rideshare.exception.RideException if the signature or payload is invalid
+     * @throws com.rideshare.exception.ServiceUnavailableException if the ingest queue is full
+     */
+    CompletableFuture<Void> ingest(String payload, String signatureHeader);
+}
@@ -0,0 +1,19 @@
+package com.rideshare.service;
+
+public interface TokenRevocationService {
+
+    /**
+     * Revoke a token until it would have expired anyway
+     * @param tokenId The token's jti claim
+     * @param expiresAtMillis When the token expires, in epoch milliseconds
+     * @return True if this call revoked the token; false if it was already revoked or has expired
+     */
+    boolean revoke(String tokenId, long expiresAtMillis);
+
+    /**
+     * Check whether a token has been revoked, without any I/O
+     * @param tokenId The token's jti claim
+     * @return True if the token is revoked
+     */
+    boolean isRevoked(String tokenId);
+}
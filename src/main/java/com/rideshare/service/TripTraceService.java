@@ -0,0 +1,41 @@
+package com.rideshare.service;
+
+import com.rideshare.dto.TracePoint;
+import com.rideshare.model.Ride;
+import com.rideshare.model.RideTrace;
+
+import java.util.List;
+
+public interface TripTraceService {
+
+    /**
+     * Append GPS fixes from the driver of an in-progress ride; the accepted ones are stored at once
+     * @param rideId The ride ID
+     * @param driverId The driver ID sending the fixes
+     * @param points The fixes, oldest first
+     * @return The number of fixes recorded; noise, duplicates and impossible jumps are skipped
+     * @throws com.rideshare.exception.RideException if the ride is not in progress or belongs to another driver
+     */
+    int record(Long rideId, Long driverId, List<TracePoint> points);
+
+    /**
+     * Merge the fixes recorded on every node into the stored trace of a ride being completed,
+     * as part of the current transaction. This node's buffer is released once the transaction commits.
+     * @param ride The ride being completed
+     * @return The stored trace, or null if fewer than two fixes were recorded
+     */
+    RideTrace finish(Ride ride);
+
+    /**
+     * Drop the trace of a ride that will not be completed
+     * @param rideId The ride ID
+     */
+    void discard(Long rideId);
+
+    /**
+     * Get the trace of a ride, stored once completed or merged from the recorded fixes while in progress
+     * @param rideId The ride ID
+     * @return The fixes, oldest first; empty if none were recorded
+     */
+    List<TracePoint> getTrace(Long rideId);
+}
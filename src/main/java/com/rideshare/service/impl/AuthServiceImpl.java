@@ -2,73 +2,123 @@ package com.rideshare.service.impl;
 
 import com.rideshare.dto.AuthResponse;
 import com.rideshare.dto.LoginRequest;
+import com.rideshare.dto.RefreshTokenRequest;
 import com.rideshare.dto.RegisterRequest;
 import com.rideshare.model.User;
 import com.rideshare.repository.UserRepository;
 import com.rideshare.service.AuthService;
 import com.rideshare.service.JwtService;
+import com.rideshare.service.PasswordHashingService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.BadCredentialsException;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+
 @Service
 @RequiredArgsConstructor
 public class AuthServiceImpl implements AuthService {
 
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
     private final JwtService jwtService;
 
     @Override
-    public AuthResponse register(RegisterRequest request) {
+    public CompletableFuture<AuthResponse> register(RegisterRequest request) {
         // Check if user already exists
         if (userRepository.findByEmail(request.getEmail()) != null) {
             throw new RuntimeException("User with this email already exists");
         }
 
-        // Create new user
-        User user = new User();
-        user.setName(request.getName());
-        user.setEmail(request.getEmail());
-        user.setPassword(passwordEncoder.encode(request.getPassword()));
-        user.setRole(request.getRole());
-        user.setPhoneNumber(request.getPhoneNumber());
-        
-        // Save user to database
-        User savedUser = userRepository.save(user);
-        
-        // Generate JWT token
-        String token = jwtService.generateToken(savedUser);
-        
-        // Return auth response
-        return AuthResponse.builder()
-                .token(token)
-                .message("User registered successfully")
-                .userType(savedUser.getRole().toString())
-                .userId(savedUser.getId())
-                .build();
+        // Hash the password off the request thread, then save the user
+        return passwordHashingService.encode(request.getEmail(), request.getPassword())
+                .thenApply(encodedPassword -> {
+                    // Create new user
+                    User user = new User();
+                    user.setName(request.getName());
+                    user.setEmail(request.getEmail());
+                    user.setPassword(encodedPassword);
+                    user.setRole(request.getRole());
+                    user.setPhoneNumber(request.getPhoneNumber());
+
+                    // Save user to database
+                    User savedUser = userRepository.save(user);
+
+                    // Generate JWT token
+                    String token = jwtService.generateToken(savedUser);
+
+                    // Return auth response
+                    return AuthResponse.builder()
+                            .token(token)
+                            .refreshToken(jwtService.generateRefreshToken(savedUser))
+                            .message("User registered successfully")
+                            .userType(savedUser.getRole().toString())
+                            .userId(savedUser.getId())
+                            .build();
+                });
     }
 
     @Override
-    public AuthResponse login(LoginRequest request) {
+    public CompletableFuture<AuthResponse> login(LoginRequest request) {
         // Find user by email
         User user = userRepository.findByEmail(request.getEmail());
         
-        // Check if user exists and password matches
-        if (user == null || !passwordEncoder.matches(request.getPassword(), user.getPassword())) {
+        if (user == null) {
             throw new BadCredentialsException("Invalid email or password");
         }
-        
-        // Generate JWT token
-        String token = jwtService.generateToken(user);
-        
-        // Return auth response
+
+        // Check the password off the request thread
+        return passwordHashingService.matches(request.getEmail(), request.getPassword(), user.getPassword())
+                .thenApply(matches -> {
+                    if (!matches) {
+                        throw new BadCredentialsException("Invalid email or password");
+                    }
+
+                    // Generate JWT token
+                    String token = jwtService.generateToken(user);
+
+                    // Return auth response
+                    return AuthResponse.builder()
+                            .token(token)
+                            .refreshToken(jwtService.generateRefreshToken(user))
+                            .message("Login successful")
+                            .userType(user.getRole().toString())
+                            .userId(user.getId())
+                            .build();
+                });
+    }
+
+    @Override
+    public AuthResponse refresh(RefreshTokenRequest request) {
+        Long userId = jwtService.extractRefreshUserId(request.getRefreshToken());
+        if (userId == null) {
+            throw new BadCredentialsException("Invalid or expired refresh token");
+        }
+
+        // Rotate: the presented refresh token can only be used once. Revoking is a test-and-set,
+        // so of two concurrent replays only the one that revoked it gets new tokens
+        if (!jwtService.revokeToken(request.getRefreshToken())) {
+            throw new BadCredentialsException("Invalid or expired refresh token");
+        }
+
+        // Refresh is rare, so reload the user to pick up role changes
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new BadCredentialsException("Invalid or expired refresh token"));
+
         return AuthResponse.builder()
-                .token(token)
-                .message("Login successful")
+                .token(jwtService.generateToken(user))
+                .refreshToken(jwtService.generateRefreshToken(user))
+                .message("Token refreshed")
                 .userType(user.getRole().toString())
                 .userId(user.getId())
                 .build();
     }
-} 
\ No newline at end of file
+
+    @Override
+    public void logout(String accessToken, RefreshTokenRequest request) {
+        if (accessToken != null) {
+            jwtService.revokeToken(accessToken);
+        }
+        jwtService.revokeToken(request.getRefreshToken());
+    }
+}
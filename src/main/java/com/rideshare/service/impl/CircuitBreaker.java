@@ -0,0 +1,134 @@
+package com.rideshare.service.impl;
+
+/**
+ * Count-based sliding-window circuit breaker. Opens when the failure rate or
+ * slow-call rate over the last calls crosses its threshold. After the open
+ * period it lets a few trial calls through, then closes or opens again
+ * depending on how they go. State changes are guarded by the instance lock,
+ * and the protected call itself always runs outside it.
+ */
+class CircuitBreaker {
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenPermits;
+
+    // Ring buffer of outcomes: bit 0 = failed, bit 1 = slow
+    private final byte[] outcomes;
+    private int next;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenIssued;
+    private int halfOpenSucceeded;
+
+    CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold,
+                   double slowCallRateThreshold, long slowCallMillis, long openMillis, int halfOpenPermits) {
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = slowCallMillis * 1_000_000L;
+        this.openNanos = openMillis * 1_000_000L;
+        this.halfOpenPermits = halfOpenPermits;
+        this.outcomes = new byte[windowSize];
+    }
+
+    /**
+     * @return True if a call may go ahead; the caller must then report its outcome
+     */
+    synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                return false;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenIssued >= halfOpenPermits) {
+                return false;
+            }
+            halfOpenIssued++;
+        }
+        return true;
+    }
+
+    /**
+     * Give back a permission that was acquired but never used for a call
+     */
+    synchronized void releasePermission() {
+        if (state == State.HALF_OPEN && halfOpenIssued > 0) {
+            halfOpenIssued--;
+        }
+    }
+
+    synchronized void onResult(boolean failed, long durationNanos) {
+        boolean slow = durationNanos >= slowCallNanos;
+
+        if (state == State.HALF_OPEN) {
+            if (failed || slow) {
+                transitionTo(State.OPEN);
+            } else if (++halfOpenSucceeded >= halfOpenPermits) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            // A call that started before the breaker opened; nothing to learn from it
+            return;
+        }
+
+        if (recorded == windowSize) {
+            byte evicted = outcomes[next];
+            failures -= evicted & 1;
+            slowCalls -= (evicted >> 1) & 1;
+        } else {
+            recorded++;
+        }
+        byte outcome = (byte) ((failed ? 1 : 0) | (slow ? 2 : 0));
+        outcomes[next] = outcome;
+        next = (next + 1) % windowSize;
+        failures += outcome & 1;
+        slowCalls += (outcome >> 1) & 1;
+
+        if (recorded >= minimumCalls
+                && ((double) failures / recorded >= failureRateThreshold
+                    || (double) slowCalls / recorded >= slowCallRateThreshold)) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    private void transitionTo(State newState) {
+        state = newState;
+        if (newState == State.OPEN) {
+            openedAt = System.nanoTime();
+        }
+        if (newState == State.HALF_OPEN) {
+            halfOpenIssued = 0;
+            halfOpenSucceeded = 0;
+        }
+        if (newState == State.CLOSED) {
+            next = 0;
+            recorded = 0;
+            failures = 0;
+            slowCalls = 0;
+        }
+    }
+}
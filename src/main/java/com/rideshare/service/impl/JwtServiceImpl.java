@@ -1,8 +1,12 @@
 package com.rideshare.service.impl;
 
 import com.rideshare.model.User;
+import com.rideshare.model.UserRole;
 import com.rideshare.service.JwtService;
+import com.rideshare.service.TokenRevocationService;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -10,69 +14,188 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.security.Key;
+import java.time.Clock;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 @Service
 public class JwtServiceImpl implements JwtService {
 
-    @Value("${jwt.secret}")
-    private String secret;
+    private static final String TOKEN_TYPE_CLAIM = "type";
+    private static final String ACCESS_TOKEN = "access";
+    private static final String REFRESH_TOKEN = "refresh";
 
-    @Value("${jwt.expiration}")
-    private Long expiration;
+    private final Long expiration;
+    private final Long refreshExpiration;
+    private final TokenRevocationService tokenRevocationService;
+    private final Clock clock;
+
+    // The key and parser are immutable and thread-safe, so build them once
+    private final Key signingKey;
+    private final JwtParser parser;
+
+    // Direct-mapped cache of recently verified tokens, so repeat calls skip the signature check
+    private final AtomicReferenceArray<VerifiedToken> verifiedTokens;
+    private final int cacheMask;
+
+    public JwtServiceImpl(TokenRevocationService tokenRevocationService,
+                          @Value("${jwt.secret}") String secret,
+                          @Value("${jwt.expiration}") Long expiration,
+                          @Value("${jwt.refresh-expiration}") Long refreshExpiration,
+                          @Value("${jwt.cache-size:4096}") int cacheSize,
+                          Clock clock) {
+        this.tokenRevocationService = tokenRevocationService;
+        this.clock = clock;
+        this.expiration = expiration;
+        this.refreshExpiration = refreshExpiration;
+        this.signingKey = Keys.hmacShaKeyFor(secret.getBytes());
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .setClock(() -> new Date(clock.millis()))
+                .build();
+
+        // Round up to a power of two so a slot is picked with a mask
+        int slots = Integer.highestOneBit(Math.max(cacheSize, 1) * 2 - 1);
+        this.verifiedTokens = new AtomicReferenceArray<>(slots);
+        this.cacheMask = slots - 1;
+    }
 
     @Override
     public String generateToken(User user) {
-        Map<String, Object> claims = new HashMap<>();
-        claims.put("userId", user.getId());
-        claims.put("role", user.getRole().toString());
-        
-        return Jwts.builder()
-                .setClaims(claims)
-                .setSubject(user.getEmail())
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
-                .compact();
+        return buildToken(user, ACCESS_TOKEN, expiration);
+    }
+
+    @Override
+    public String generateRefreshToken(User user) {
+        return buildToken(user, REFRESH_TOKEN, refreshExpiration);
     }
 
     @Override
     public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+        return extractAllClaims(token).getSubject();
     }
 
     @Override
     public boolean isTokenValid(String token, User user) {
-        final String username = extractUsername(token);
-        return (username.equals(user.getEmail())) && !isTokenExpired(token);
+        VerifiedToken verified = verify(token);
+        return verified != null && verified.email.equals(user.getEmail());
     }
 
-    private <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+    @Override
+    public User extractPrincipal(String token) {
+        VerifiedToken verified = verify(token);
+        if (verified == null || verified.refresh) {
+            return null;
+        }
+
+        // Build a fresh principal per request from the claims, without touching the database
+        User user = new User();
+        user.setId(verified.userId);
+        user.setEmail(verified.email);
+        user.setRole(verified.role);
+        return user;
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    @Override
+    public Long extractRefreshUserId(String token) {
+        VerifiedToken verified = verify(token);
+        return verified != null && verified.refresh ? verified.userId : null;
     }
 
-    private Key getSigningKey() {
-        byte[] keyBytes = secret.getBytes();
-        return Keys.hmacShaKeyFor(keyBytes);
+    @Override
+    public boolean revokeToken(String token) {
+        VerifiedToken verified = verify(token);
+        return verified != null && verified.tokenId != null
+                && tokenRevocationService.revoke(verified.tokenId, verified.expiresAt);
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    private String buildToken(User user, String type, long validity) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("userId", user.getId());
+        claims.put("role", user.getRole().toString());
+        claims.put(TOKEN_TYPE_CLAIM, type);
+
+        long now = clock.millis();
+        return Jwts.builder()
+                .setClaims(claims)
+                .setId(UUID.randomUUID().toString())
+                .setSubject(user.getEmail())
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + validity))
+                .signWith(signingKey, SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    /**
+     * Verify a token, using the cache of previously verified tokens when possible
+     * @return The verified token details, or null if the token is invalid, expired or revoked
+     */
+    private VerifiedToken verify(String token) {
+        int slot = token.hashCode() & cacheMask;
+        long now = clock.millis();
+
+        VerifiedToken cached = verifiedTokens.get(slot);
+        if (cached != null && cached.token.equals(token)) {
+            return isLive(cached, now) ? cached : null;
+        }
+
+        Claims claims;
+        try {
+            claims = extractAllClaims(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+
+        Number userId = claims.get("userId", Number.class);
+        String role = claims.get("role", String.class);
+        Date expiresAt = claims.getExpiration();
+        if (userId == null || role == null || expiresAt == null || claims.getSubject() == null) {
+            return null;
+        }
+
+        VerifiedToken verified;
+        try {
+            // Tokens issued before refresh tokens existed carry no type and are access tokens
+            verified = new VerifiedToken(token, claims.getId(), userId.longValue(), claims.getSubject(),
+                    UserRole.valueOf(role), expiresAt.getTime(),
+                    REFRESH_TOKEN.equals(claims.get(TOKEN_TYPE_CLAIM, String.class)));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        verifiedTokens.set(slot, verified);
+        return isLive(verified, now) ? verified : null;
+    }
+
+    private boolean isLive(VerifiedToken verified, long now) {
+        return verified.expiresAt > now && !tokenRevocationService.isRevoked(verified.tokenId);
     }
 
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    private Claims extractAllClaims(String token) {
+        return parser.parseClaimsJws(token).getBody();
+    }
+
+    private static final class VerifiedToken {
+        private final String token;
+        private final String tokenId;
+        private final long userId;
+        private final String email;
+        private final UserRole role;
+        private final long expiresAt;
+        private final boolean refresh;
+
+        private VerifiedToken(String token, String tokenId, long userId, String email, UserRole role,
+                              long expiresAt, boolean refresh) {
+            this.token = token;
+            this.tokenId = tokenId;
+            this.userId = userId;
+            this.email = email;
+            this.role = role;
+            this.expiresAt = expiresAt;
+            this.refresh = refresh;
+        }
     }
-} 
\ No newline at end of file
+}
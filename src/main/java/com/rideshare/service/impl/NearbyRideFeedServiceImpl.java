@@ -0,0 +1,469 @@
+package com.rideshare.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rideshare.config.WorkerThreads;
+import com.rideshare.dto.NearbyRide;
+import com.rideshare.exception.RideException;
+import com.rideshare.exception.ServiceUnavailableException;
+import com.rideshare.model.Ride;
+import com.rideshare.model.RideStatus;
+import com.rideshare.model.User;
+import com.rideshare.model.UserRole;
+import com.rideshare.repository.RideRepository;
+import com.rideshare.service.NearbyRideFeedService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes ride requests to drivers over server-sent events. Each feed is
+ * registered in every grid cell its radius overlaps. A ride change is fanned
+ * out only to the feeds in the cell of its pickup point; nothing is re-queried
+ * per driver. Idle streams hold no request thread, so a node can keep 100k
+ * of them open.
+ *
+ * Fan-out never writes to a client. It leaves each feed's event in that feed's
+ * pending map, where a newer event for the same ride replaces an unsent one,
+ * and a sender thread drains the map. A feed that falls further behind than
+ * max-pending rides is closed; the client reconnects and gets a fresh snapshot.
+ */
+@Service
+public class NearbyRideFeedServiceImpl implements NearbyRideFeedService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NearbyRideFeedServiceImpl.class);
+
+    private static final String RIDE_ADDED = "ride-added";
+    private static final String RIDE_REMOVED = "ride-removed";
+    private static final double KM_PER_DEGREE = 111.32;
+    private static final long RETRY_AFTER_SECONDS = 10;
+    private static final Set<ResponseBodyEmitter.DataWithMediaType> HEARTBEAT = SseEmitter.event().comment("").build();
+
+    private final RideRepository rideRepository;
+    private final ObjectMapper objectMapper;
+
+    private final double cellDegrees;
+    private final double maxRadiusKm;
+    private final long timeoutMillis;
+    private final int maxSubscribers;
+    private final int maxPending;
+
+    // Grid cell -> feeds whose radius overlaps it
+    private final ConcurrentHashMap<Long, Set<Subscriber>> subscribersByCell = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Subscriber> subscribersByDriver = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    // Fan-out runs off the request thread so a slow client never delays a ride update
+    private final ThreadPoolExecutor fanOutExecutor;
+    // Writes to clients; a feed has at most one drain task queued
+    private final ThreadPoolExecutor senders;
+
+    private final Counter addedEvents;
+    private final Counter removedEvents;
+    private final Counter droppedEvents;
+    private final Counter coalescedEvents;
+    private final Counter slowFeedsClosed;
+    private final Counter failedFeedsClosed;
+
+    public NearbyRideFeedServiceImpl(RideRepository rideRepository,
+                                     ObjectMapper objectMapper,
+                                     MeterRegistry meterRegistry,
+                                     WorkerThreads workerThreads,
+                                     @Value("${rides.feed.cell-size-degrees:0.05}") double cellDegrees,
+                                     @Value("${rides.feed.max-radius-km:25}") double maxRadiusKm,
+                                     @Value("${rides.feed.timeout:600000}") long timeoutMillis,
+                                     @Value("${rides.feed.max-subscribers:100000}") int maxSubscribers,
+                                     @Value("${rides.feed.threads:2}") int threads,
+                                     @Value("${rides.feed.queue-capacity:10000}") int queueCapacity,
+                                     @Value("${rides.feed.sender-threads:8}") int senderThreads,
+                                     @Value("${rides.feed.max-pending:128}") int maxPending) {
+        this.rideRepository = rideRepository;
+        this.objectMapper = objectMapper;
+        this.cellDegrees = cellDegrees;
+        this.maxRadiusKm = maxRadiusKm;
+        this.timeoutMillis = timeoutMillis;
+        this.maxSubscribers = maxSubscribers;
+        this.maxPending = maxPending;
+
+        this.fanOutExecutor = new ThreadPoolExecutor(
+                threads, threads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                workerThreads.factory("ride-feed-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        // Unbounded only in name: a feed has at most one drain task queued
+        this.senders = new ThreadPoolExecutor(
+                senderThreads, senderThreads,
+                0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                workerThreads.factory("ride-feed-sender-"));
+
+        this.addedEvents = Counter.builder("rides.feed.events")
+                .tag("type", RIDE_ADDED)
+                .register(meterRegistry);
+        this.removedEvents = Counter.builder("rides.feed.events")
+                .tag("type", RIDE_REMOVED)
+                .register(meterRegistry);
+        this.droppedEvents = Counter.builder("rides.feed.dropped")
+                .description("Ride changes not fanned out because the feed queue was full")
+                .register(meterRegistry);
+        this.coalescedEvents = Counter.builder("rides.feed.coalesced")
+                .description("Feed events replaced by a newer event for the same ride before they were sent")
+                .register(meterRegistry);
+        this.slowFeedsClosed = Counter.builder("rides.feed.closed")
+                .tag("reason", "too_slow")
+                .register(meterRegistry);
+        this.failedFeedsClosed = Counter.builder("rides.feed.closed")
+                .tag("reason", "send_failed")
+                .register(meterRegistry);
+        Gauge.builder("rides.feed.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open nearby-ride feeds on this node")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public SseEmitter subscribe(User driver, double latitude, double longitude, double radiusInKm) {
+        if (driver.getRole() != UserRole.DRIVER) {
+            throw new RideException("Only drivers can watch for nearby rides");
+        }
+        if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+            throw new RideException("Invalid coordinates");
+        }
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new ServiceUnavailableException("Too many open ride feeds, please try again shortly", RETRY_AFTER_SECONDS);
+        }
+
+        double radius = Math.min(Math.max(radiusInKm, 0.1), maxRadiusKm);
+        double latSpan = radius / KM_PER_DEGREE;
+        double lngSpan = radius / (KM_PER_DEGREE * Math.max(Math.cos(Math.toRadians(latitude)), 0.01));
+
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(driver.getId(), emitter, latitude, longitude, radius,
+                cellsCovering(latitude - latSpan, latitude + latSpan, longitude - lngSpan, longitude + lngSpan));
+
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(e -> unsubscribe(subscriber));
+
+        for (long cell : subscriber.cells) {
+            subscribersByCell.compute(cell, (k, subscribers) -> {
+                Set<Subscriber> set = subscribers != null ? subscribers : ConcurrentHashMap.newKeySet();
+                set.add(subscriber);
+                return set;
+            });
+        }
+        Subscriber previous = subscribersByDriver.put(driver.getId(), subscriber);
+        if (previous != null) {
+            close(previous);
+        }
+
+        // Register before reading the snapshot, so a change committed in between is pushed rather than missed.
+        // The feed starts out marked as draining, so nothing queued meanwhile is sent ahead of the snapshot.
+        List<Ride> openRides;
+        try {
+            openRides = rideRepository.findByStatusAndPickupLatBetweenAndPickupLngBetween(
+                    RideStatus.REQUESTED,
+                    BigDecimal.valueOf(latitude - latSpan), BigDecimal.valueOf(latitude + latSpan),
+                    BigDecimal.valueOf(longitude - lngSpan), BigDecimal.valueOf(longitude + lngSpan));
+        } catch (RuntimeException e) {
+            unsubscribe(subscriber);
+            throw e;
+        }
+        try {
+            for (Ride ride : openRides) {
+                // A queued event for the ride is newer than the snapshot, so it wins
+                if (!subscriber.pending.containsKey(ride.getId())
+                        && distanceInKm(latitude, longitude, ride.getPickupLat().doubleValue(), ride.getPickupLng().doubleValue()) <= radius) {
+                    // The stream is not open yet, so this only buffers the event in the emitter
+                    emitter.send(toEvent(RIDE_ADDED, ride.getId(), toNearbyRide(ride)));
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+            unsubscribe(subscriber);
+            return emitter;
+        }
+        subscriber.draining.set(false);
+        if (subscriber.closed.get() || !subscriber.pending.isEmpty() || subscriber.heartbeatDue) {
+            schedule(subscriber);
+        }
+
+        return emitter;
+    }
+
+    @Override
+    public void publish(Ride ride) {
+        if (ride.getPickupLat() == null || ride.getPickupLng() == null || subscriberCount.get() == 0) {
+            return;
+        }
+        // Only requesting, accepting or cancelling a ride can change what drivers see
+        RideStatus status = ride.getStatus();
+        if (status != RideStatus.REQUESTED && status != RideStatus.ACCEPTED && status != RideStatus.CANCELLED) {
+            return;
+        }
+
+        // Serialize once while the entity is still attached; every subscriber gets the same bytes
+        boolean added = status == RideStatus.REQUESTED;
+        Set<ResponseBodyEmitter.DataWithMediaType> event = added
+                ? toEvent(RIDE_ADDED, ride.getId(), toNearbyRide(ride))
+                : toEvent(RIDE_REMOVED, ride.getId(), Map.of("rideId", ride.getId()));
+        double lat = ride.getPickupLat().doubleValue();
+        double lng = ride.getPickupLng().doubleValue();
+        Long rideId = ride.getId();
+        Runnable fanOut = () -> {
+            (added ? addedEvents : removedEvents).increment();
+            fanOut(rideId, lat, lng, event);
+        };
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatch(fanOut);
+                }
+            });
+        } else {
+            dispatch(fanOut);
+        }
+    }
+
+    /**
+     * Send a comment on every open feed, so proxies keep the connection open
+     * and feeds whose client has gone away are found and closed
+     */
+    @Scheduled(fixedDelayString = "${rides.feed.heartbeat-interval:25000}")
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribersByDriver.values()) {
+            subscriber.heartbeatDue = true;
+            schedule(subscriber);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fanOutExecutor.shutdown();
+        senders.shutdown();
+        for (Subscriber subscriber : subscribersByDriver.values()) {
+            subscriber.emitter.complete();
+        }
+    }
+
+    private void dispatch(Runnable fanOut) {
+        try {
+            fanOutExecutor.execute(fanOut);
+        } catch (RejectedExecutionException e) {
+            droppedEvents.increment();
+            logger.warn("Nearby-ride feed queue is full, dropping a ride update");
+        }
+    }
+
+    private void fanOut(Long rideId, double lat, double lng, Set<ResponseBodyEmitter.DataWithMediaType> event) {
+        Set<Subscriber> subscribers = subscribersByCell.get(cellOf(lat, lng));
+        if (subscribers == null) {
+            return;
+        }
+        for (Subscriber subscriber : subscribers) {
+            if (distanceInKm(subscriber.latitude, subscriber.longitude, lat, lng) <= subscriber.radiusInKm) {
+                offer(subscriber, rideId, event);
+            }
+        }
+    }
+
+    private void offer(Subscriber subscriber, Long rideId, Set<ResponseBodyEmitter.DataWithMediaType> event) {
+        if (subscriber.pending.put(rideId, event) != null) {
+            coalescedEvents.increment();
+        } else if (subscriber.pending.size() > maxPending) {
+            // Too far behind to catch up; a reconnect gets a fresh snapshot instead of the backlog
+            slowFeedsClosed.increment();
+            close(subscriber);
+            return;
+        }
+        schedule(subscriber);
+    }
+
+    /**
+     * Stop feeding a subscriber and let its sender complete the stream. Completing it here
+     * could block, since the emitter is locked while a send to a stalled client is in progress.
+     */
+    private void close(Subscriber subscriber) {
+        unsubscribe(subscriber);
+        schedule(subscriber);
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (subscriber.draining.compareAndSet(false, true)) {
+            try {
+                senders.execute(() -> drain(subscriber));
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+                subscriber.draining.set(false);
+            }
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            do {
+                if (subscriber.closed.get()) {
+                    subscriber.emitter.complete();
+                    return;
+                }
+                if (subscriber.heartbeatDue) {
+                    subscriber.heartbeatDue = false;
+                    subscriber.emitter.send(HEARTBEAT);
+                }
+                for (Long rideId : subscriber.pending.keySet()) {
+                    Set<ResponseBodyEmitter.DataWithMediaType> event = subscriber.pending.remove(rideId);
+                    if (event != null) {
+                        // A client that stops reading holds this thread until the connector's write timeout
+                        subscriber.emitter.send(event);
+                    }
+                }
+                subscriber.draining.set(false);
+            } while ((subscriber.closed.get() || !subscriber.pending.isEmpty() || subscriber.heartbeatDue)
+                    && subscriber.draining.compareAndSet(false, true));
+        } catch (IOException | IllegalStateException e) {
+            // The client has gone away; it reconnects and gets a fresh snapshot
+            failedFeedsClosed.increment();
+            subscriber.emitter.completeWithError(e);
+            unsubscribe(subscriber);
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return;
+        }
+        for (long cell : subscriber.cells) {
+            subscribersByCell.computeIfPresent(cell, (k, subscribers) -> {
+                subscribers.remove(subscriber);
+                return subscribers.isEmpty() ? null : subscribers;
+            });
+        }
+        subscribersByDriver.remove(subscriber.driverId, subscriber);
+        subscriber.pending.clear();
+        subscriberCount.decrementAndGet();
+    }
+
+    private Set<ResponseBodyEmitter.DataWithMediaType> toEvent(String name, Long rideId, Object payload) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            logger.error("Could not serialize nearby-ride event for ride {}", rideId, e);
+            return Collections.emptySet();
+        }
+        return SseEmitter.event()
+                .id(String.valueOf(rideId))
+                .name(name)
+                .data(json, MediaType.APPLICATION_JSON)
+                .build();
+    }
+
+    private NearbyRide toNearbyRide(Ride ride) {
+        User passenger = ride.getPassenger();
+        return new NearbyRide(ride.getId(), ride.getPickupLocation(), ride.getDropoffLocation(),
+                ride.getPickupLat(), ride.getPickupLng(), ride.getDropoffLat(), ride.getDropoffLng(),
+                ride.getRideTime(), ride.getPrice(), ride.getEstimatedDistance(), ride.getEstimatedDuration(),
+                ride.getSeats(), ride.getIsShared(),
+                passenger != null ? passenger.getName() : null,
+                passenger != null ? passenger.getRating() : null);
+    }
+
+    private long[] cellsCovering(double minLat, double maxLat, double minLng, double maxLng) {
+        long minRow = row(Math.max(minLat, -90));
+        long maxRow = row(Math.min(maxLat, 90));
+        long minColumn = column(Math.max(minLng, -180));
+        long maxColumn = column(Math.min(maxLng, 180));
+
+        long[] cells = new long[(int) ((maxRow - minRow + 1) * (maxColumn - minColumn + 1))];
+        int i = 0;
+        for (long row = minRow; row <= maxRow; row++) {
+            for (long column = minColumn; column <= maxColumn; column++) {
+                cells[i++] = (row << 32) | column;
+            }
+        }
+        return cells;
+    }
+
+    private long cellOf(double lat, double lng) {
+        return (row(lat) << 32) | column(lng);
+    }
+
+    private long row(double lat) {
+        return (long) Math.floor((lat + 90) / cellDegrees);
+    }
+
+    private long column(double lng) {
+        return (long) Math.floor((lng + 180) / cellDegrees);
+    }
+
+    /**
+     * Calculate distance between two points using the Haversine formula
+     * @return Distance in kilometers
+     */
+    private static double distanceInKm(double lat1, double lon1, double lat2, double lon2) {
+        final int R = 6371; // Radius of the earth in km
+
+        double latDistance = Math.toRadians(lat2 - lat1);
+        double lonDistance = Math.toRadians(lon2 - lon1);
+
+        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
+
+        return R * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    private static final class Subscriber {
+        private final Long driverId;
+        private final SseEmitter emitter;
+        private final double latitude;
+        private final double longitude;
+        private final double radiusInKm;
+        private final long[] cells;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        // Latest unsent event per ride
+        private final ConcurrentHashMap<Long, Set<ResponseBodyEmitter.DataWithMediaType>> pending = new ConcurrentHashMap<>();
+        private volatile boolean heartbeatDue;
+        // Set while the snapshot is being sent, then by whichever sender thread drains the feed
+        private final AtomicBoolean draining = new AtomicBoolean(true);
+
+        private Subscriber(Long driverId, SseEmitter emitter, double latitude, double longitude,
+                           double radiusInKm, long[] cells) {
+            this.driverId = driverId;
+            this.emitter = emitter;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.radiusInKm = radiusInKm;
+            this.cells = cells;
+        }
+    }
+}
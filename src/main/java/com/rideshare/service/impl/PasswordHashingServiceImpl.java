@@ -0,0 +1,152 @@
+package com.rideshare.service.impl;
+
+import com.rideshare.diagnostics.PasswordHashEvent;
+import com.rideshare.exception.TooManyRequestsException;
+import com.rideshare.service.PasswordHashingService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs BCrypt on a bounded pool sized to the CPU count, so a login peak cannot
+ * occupy every Tomcat thread. Work beyond the queue limit, or beyond the
+ * per-account limit, is rejected straight away with a 429. The pool stays on
+ * platform threads under the virtual-threads profile, since BCrypt is CPU work.
+ */
+@Service
+public class PasswordHashingServiceImpl implements PasswordHashingService {
+
+    private static final long RETRY_AFTER_SECONDS = 1;
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final int perAccountLimit;
+
+    // In-flight hashes per account; entries are removed when they drop back to zero
+    private final ConcurrentHashMap<String, AtomicInteger> inFlightByAccount = new ConcurrentHashMap<>();
+
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Counter poolRejections;
+    private final Counter accountRejections;
+
+    public PasswordHashingServiceImpl(PasswordEncoder passwordEncoder,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${auth.hashing.threads:0}") int threads,
+                                      @Value("${auth.hashing.queue-capacity:64}") int queueCapacity,
+                                      @Value("${auth.hashing.per-account-limit:2}") int perAccountLimit) {
+        this.passwordEncoder = passwordEncoder;
+        this.perAccountLimit = perAccountLimit;
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.encodeTimer = Timer.builder("auth.password.hash")
+                .description("Time spent hashing or checking passwords")
+                .tag("operation", "encode")
+                .register(meterRegistry);
+        this.matchesTimer = Timer.builder("auth.password.hash")
+                .description("Time spent hashing or checking passwords")
+                .tag("operation", "matches")
+                .register(meterRegistry);
+        this.poolRejections = Counter.builder("auth.password.hash.rejected")
+                .tag("reason", "saturated")
+                .register(meterRegistry);
+        this.accountRejections = Counter.builder("auth.password.hash.rejected")
+                .tag("reason", "account")
+                .register(meterRegistry);
+        Gauge.builder("auth.password.hash.queue", executor, e -> e.getQueue().size())
+                .description("Password hashes waiting for a thread")
+                .register(meterRegistry);
+        Gauge.builder("auth.password.hash.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Password hashes currently running")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public CompletableFuture<String> encode(String account, String rawPassword) {
+        return submit(account, "encode", encodeTimer, () -> passwordEncoder.encode(rawPassword));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> matches(String account, String rawPassword, String encodedPassword) {
+        return submit(account, "matches", matchesTimer, () -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private <T> CompletableFuture<T> submit(String account, String operation, Timer timer, Supplier<T> task) {
+        String key = account.toLowerCase(Locale.ROOT);
+        acquire(key);
+
+        long submitted = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> hash(operation, timer, task, submitted), executor)
+                    .whenComplete((result, error) -> release(key));
+        } catch (RejectedExecutionException e) {
+            release(key);
+            poolRejections.increment();
+            throw new TooManyRequestsException("Too many login attempts, please try again shortly", RETRY_AFTER_SECONDS);
+        }
+    }
+
+    private static <T> T hash(String operation, Timer timer, Supplier<T> task, long submittedNanos) {
+        long started = System.nanoTime();
+        PasswordHashEvent event = new PasswordHashEvent();
+        event.begin();
+        T result = timer.record(task);
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.queuedNanos = started - submittedNanos;
+            event.commit();
+        }
+        return result;
+    }
+
+    private void acquire(String key) {
+        // Increment inside compute so it cannot race with release removing the entry
+        int[] count = new int[1];
+        inFlightByAccount.compute(key, (k, inFlight) -> {
+            AtomicInteger counter = inFlight != null ? inFlight : new AtomicInteger();
+            count[0] = counter.incrementAndGet();
+            return counter;
+        });
+        if (count[0] > perAccountLimit) {
+            release(key);
+            accountRejections.increment();
+            throw new TooManyRequestsException("Too many login attempts for this account, please try again shortly", RETRY_AFTER_SECONDS);
+        }
+    }
+
+    private void release(String key) {
+        inFlightByAccount.computeIfPresent(key, (k, inFlight) -> inFlight.decrementAndGet() <= 0 ? null : inFlight);
+    }
+}
@@ -0,0 +1,340 @@
+package com.rideshare.service.impl;
+
+import com.rideshare.config.WorkerThreads;
+import com.rideshare.dto.PaymentIntentResult;
+import com.rideshare.exception.PaymentGatewayException;
+import com.rideshare.exception.RideException;
+import com.rideshare.model.PaymentOutbox;
+import com.rideshare.model.PaymentOutboxStatus;
+import com.rideshare.model.Ride;
+import com.rideshare.model.RideStatus;
+import com.rideshare.repository.PaymentOutboxRepository;
+import com.rideshare.repository.RideRepository;
+import com.rideshare.repository.UserRepository;
+import com.rideshare.service.PaymentOutboxService;
+import com.rideshare.service.RideVersionService;
+import com.rideshare.service.StripeService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates Stripe payment intents off the request thread. Requests are written
+ * as outbox rows, claimed by a scheduled poller with optimistic locking, and
+ * executed on a bounded worker pool. Failed calls are retried with jittered
+ * exponential backoff using the row's idempotency key.
+ */
+@Service
+public class PaymentOutboxServiceImpl implements PaymentOutboxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentOutboxServiceImpl.class);
+
+    private static final List<PaymentOutboxStatus> REUSABLE_STATUSES = List.of(
+        PaymentOutboxStatus.PENDING, PaymentOutboxStatus.IN_PROGRESS, PaymentOutboxStatus.SUCCEEDED);
+
+    private final PaymentOutboxRepository outboxRepository;
+    private final RideRepository rideRepository;
+    private final RideVersionService rideVersionService;
+    private final UserRepository userRepository;
+    private final StripeService stripeService;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+
+    private final ThreadPoolExecutor workers;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long leaseMillis;
+    private final Counter retriedFailures;
+    private final Counter finalFailures;
+
+    // Callers waiting on a result on this node
+    private final Map<Long, CompletableFuture<PaymentOutbox>> waiters = new ConcurrentHashMap<>();
+
+    public PaymentOutboxServiceImpl(PaymentOutboxRepository outboxRepository,
+                                    RideRepository rideRepository,
+                                    RideVersionService rideVersionService,
+                                    UserRepository userRepository,
+                                    StripeService stripeService,
+                                    PlatformTransactionManager transactionManager,
+                                    MeterRegistry meterRegistry,
+                                    Clock clock,
+                                    WorkerThreads workerThreads,
+                                    @Value("${payments.outbox.workers:8}") int workerCount,
+                                    @Value("${payments.outbox.queue-capacity:100}") int queueCapacity,
+                                    @Value("${payments.outbox.max-attempts:8}") int maxAttempts,
+                                    @Value("${payments.outbox.base-backoff:500}") long baseBackoffMillis,
+                                    @Value("${payments.outbox.max-backoff:60000}") long maxBackoffMillis,
+                                    @Value("${payments.outbox.lease:120000}") long leaseMillis) {
+        this.outboxRepository = outboxRepository;
+        this.rideRepository = rideRepository;
+        this.rideVersionService = rideVersionService;
+        this.userRepository = userRepository;
+        this.stripeService = stripeService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.leaseMillis = leaseMillis;
+        this.retriedFailures = Counter.builder("payment.failures")
+                .description("Payment intent attempts that failed")
+                .tag("outcome", "retry")
+                .register(meterRegistry);
+        this.finalFailures = Counter.builder("payment.failures")
+                .description("Payment intent attempts that failed")
+                .tag("outcome", "failed")
+                .register(meterRegistry);
+
+        this.workers = new ThreadPoolExecutor(
+                workerCount, workerCount,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                workerThreads.factory("payment-worker-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    @Transactional
+    public PaymentOutbox requestPaymentIntent(Long rideId, Long userId) {
+        // Locked so a concurrent request for the same ride waits here and then finds this one's row
+        Ride ride = rideRepository.findByIdForUpdate(rideId)
+            .orElseThrow(() -> new RideException("Ride not found"));
+
+        boolean isPassenger = ride.getPassenger() != null && ride.getPassenger().getId().equals(userId);
+        boolean isSecondPassenger = ride.getSecondPassenger() != null && ride.getSecondPassenger().getId().equals(userId);
+        if (!isPassenger && !isSecondPassenger) {
+            throw new RideException("Invalid ride or you don't have permission");
+        }
+
+        // The ride's paid flag tracks the first passenger's share; a second passenger pays their own
+        if (isPassenger && Boolean.TRUE.equals(ride.getIsPaid())) {
+            throw new RideException("This ride has already been paid");
+        }
+
+        // The price is only final once the ride completes and is billed on the distance driven;
+        // an intent created earlier would charge the estimate and be left behind by the repricing
+        if (ride.getStatus() != RideStatus.COMPLETED || ride.getPrice() == null) {
+            throw new RideException("A ride can only be paid once it is completed");
+        }
+
+        // A client retry gets the request it already made, not a second charge. On a shared ride each
+        // passenger has their own requests, so one never sees the other's intent or client secret.
+        PaymentOutbox existing = outboxRepository
+            .findFirstByRideIdAndUserIdAndStatusInOrderByIdDesc(rideId, userId, REUSABLE_STATUSES)
+            .orElse(null);
+        if (existing != null) {
+            return existing;
+        }
+
+        PaymentOutbox outbox = new PaymentOutbox();
+        outbox.setRideId(rideId);
+        outbox.setUserId(userId);
+        outbox.setAmount(BigDecimal.valueOf(ride.getPrice()));
+        outbox.setCurrency("usd");
+        outbox.setCustomerId(userRepository.findById(userId)
+            .map(user -> user.getStripeCustomerId())
+            .orElse(null));
+        // One key per ride, passenger and attempt, which only advances once the previous attempt has failed,
+        // so the unique constraint rejects a duplicate row and Stripe could never see two keys for one charge
+        long attempt = outboxRepository.countByRideIdAndUserIdAndStatus(rideId, userId, PaymentOutboxStatus.FAILED) + 1;
+        outbox.setIdempotencyKey("ride-" + rideId + "-user-" + userId + "-" + attempt);
+        outbox.setStatus(PaymentOutboxStatus.PENDING);
+        outbox.setNextAttemptAt(LocalDateTime.now(clock));
+
+        return outboxRepository.save(outbox);
+    }
+
+    @Override
+    public PaymentOutbox getPaymentRequest(Long requestId, Long userId) {
+        PaymentOutbox outbox = outboxRepository.findById(requestId)
+            .orElseThrow(() -> new RideException("Payment request not found"));
+
+        if (!outbox.getUserId().equals(userId)) {
+            throw new RideException("Payment request not found");
+        }
+
+        return outbox;
+    }
+
+    @Override
+    public CompletableFuture<PaymentOutbox> awaitResult(Long requestId, Long userId) {
+        PaymentOutbox outbox = getPaymentRequest(requestId, userId);
+        if (isResolved(outbox)) {
+            return CompletableFuture.completedFuture(outbox);
+        }
+
+        CompletableFuture<PaymentOutbox> future = waiters.computeIfAbsent(requestId, id -> new CompletableFuture<>());
+
+        // Re-check in case the row resolved between the read and the registration
+        outboxRepository.findById(requestId)
+            .filter(this::isResolved)
+            .ifPresent(this::notifyWaiters);
+
+        return future;
+    }
+
+    /**
+     * Claim due rows, up to the free capacity of the worker pool, and hand them to the workers
+     */
+    @Scheduled(fixedDelayString = "${payments.outbox.poll-interval:500}")
+    public void dispatchDueRequests() {
+        resolveRemoteWaiters();
+
+        int capacity = workers.getQueue().remainingCapacity();
+        if (capacity == 0) {
+            return;
+        }
+
+        List<PaymentOutbox> due = outboxRepository.findDue(LocalDateTime.now(clock), PageRequest.of(0, capacity));
+        for (PaymentOutbox outbox : due) {
+            PaymentOutbox claimed = claim(outbox);
+            if (claimed == null) {
+                continue;
+            }
+
+            try {
+                workers.execute(() -> process(claimed));
+            } catch (RejectedExecutionException e) {
+                // The lease expires and another poll picks it up again
+                logger.warn("Payment worker queue full, deferring payment request {}", claimed.getId());
+                break;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    private PaymentOutbox claim(PaymentOutbox outbox) {
+        outbox.setStatus(PaymentOutboxStatus.IN_PROGRESS);
+        outbox.setAttempts(outbox.getAttempts() + 1);
+        outbox.setNextAttemptAt(LocalDateTime.now(clock).plus(leaseMillis, ChronoUnit.MILLIS));
+
+        try {
+            // The version column makes sure only one poller, on any node, wins the claim
+            return outboxRepository.save(outbox);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            return null;
+        }
+    }
+
+    private void process(PaymentOutbox outbox) {
+        PaymentOutbox resolved;
+        try {
+            PaymentIntentResult result = stripeService.createPaymentIntent(
+                outbox.getAmount(), outbox.getCurrency(), outbox.getCustomerId(), outbox.getIdempotencyKey());
+            resolved = transactionTemplate.execute(status -> markSucceeded(outbox.getId(), result));
+        } catch (PaymentGatewayException e) {
+            logger.warn("Payment request {} attempt {} failed: {}", outbox.getId(), outbox.getAttempts(), e.getMessage());
+            resolved = transactionTemplate.execute(status -> markFailed(outbox.getId(), e));
+        } catch (RuntimeException e) {
+            // Leave the row leased; it is retried once the lease expires
+            logger.error("Error processing payment request {}", outbox.getId(), e);
+            return;
+        }
+
+        if (resolved != null && isResolved(resolved)) {
+            notifyWaiters(resolved);
+        }
+    }
+
+    private PaymentOutbox markSucceeded(Long outboxId, PaymentIntentResult result) {
+        PaymentOutbox outbox = outboxRepository.findById(outboxId).orElse(null);
+        if (outbox == null) {
+            return null;
+        }
+
+        outbox.setStatus(PaymentOutboxStatus.SUCCEEDED);
+        outbox.setPaymentIntentId(result.getPaymentIntentId());
+        outbox.setClientSecret(result.getClientSecret());
+        outbox.setLastError(null);
+
+        // The ride records the first passenger's intent, which the webhook matches to mark it paid
+        rideRepository.findById(outbox.getRideId())
+            .filter(ride -> ride.getPassenger() != null && ride.getPassenger().getId().equals(outbox.getUserId()))
+            .ifPresent(ride -> {
+                ride.setPaymentIntentId(result.getPaymentIntentId());
+                rideVersionService.publish(rideRepository.save(ride));
+            });
+
+        return outboxRepository.save(outbox);
+    }
+
+    private PaymentOutbox markFailed(Long outboxId, PaymentGatewayException error) {
+        PaymentOutbox outbox = outboxRepository.findById(outboxId).orElse(null);
+        if (outbox == null) {
+            return null;
+        }
+
+        outbox.setLastError(error.getMessage());
+        if (error.isRetryable() && outbox.getAttempts() < maxAttempts) {
+            outbox.setStatus(PaymentOutboxStatus.PENDING);
+            outbox.setNextAttemptAt(LocalDateTime.now(clock).plus(backoffMillis(outbox.getAttempts()), ChronoUnit.MILLIS));
+            retriedFailures.increment();
+        } else {
+            outbox.setStatus(PaymentOutboxStatus.FAILED);
+            finalFailures.increment();
+        }
+
+        return outboxRepository.save(outbox);
+    }
+
+    /**
+     * Exponential backoff with full jitter, so retries from many rows do not line up
+     */
+    private long backoffMillis(int attempts) {
+        long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempts, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * Complete waiters whose rows were resolved by another node
+     */
+    private void resolveRemoteWaiters() {
+        if (waiters.isEmpty()) {
+            return;
+        }
+
+        outboxRepository.findAllById(waiters.keySet()).stream()
+            .filter(this::isResolved)
+            .forEach(this::notifyWaiters);
+    }
+
+    private void notifyWaiters(PaymentOutbox outbox) {
+        CompletableFuture<PaymentOutbox> future = waiters.remove(outbox.getId());
+        if (future != null) {
+            future.complete(outbox);
+        }
+    }
+
+    private boolean isResolved(PaymentOutbox outbox) {
+        return outbox.getStatus() == PaymentOutboxStatus.SUCCEEDED || outbox.getStatus() == PaymentOutboxStatus.FAILED;
+    }
+}
@@ -0,0 +1,239 @@
+package com.rideshare.service.impl;
+
+import com.rideshare.dto.SettlementRow;
+import com.rideshare.exception.RideException;
+import com.rideshare.model.DriverPayout;
+import com.rideshare.model.SettlementRun;
+import com.rideshare.model.SettlementRunStatus;
+import com.rideshare.repository.DriverPayoutRepository;
+import com.rideshare.repository.RideRepository;
+import com.rideshare.repository.SettlementRunRepository;
+import com.rideshare.service.PayoutSettlementService;
+import com.rideshare.service.RideVersionService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Settles driver earnings in ride id ranges. Each chunk is read as a light
+ * projection, aggregated per driver on a fork/join pool, and committed in one
+ * transaction. That transaction adds to the drivers' payouts, marks the rides
+ * settled and moves the run's checkpoint, so a crashed run resumes where it
+ * stopped and no ride is paid twice.
+ */
+@Service
+public class PayoutSettlementServiceImpl implements PayoutSettlementService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PayoutSettlementServiceImpl.class);
+
+    private static final int MARK_BATCH_SIZE = 1000;
+
+    private final RideRepository rideRepository;
+    private final SettlementRunRepository settlementRunRepository;
+    private final DriverPayoutRepository driverPayoutRepository;
+    private final RideVersionService rideVersionService;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ForkJoinPool aggregationPool;
+    private final long chunkSize;
+    private final BigDecimal driverShare;
+    private final Clock clock;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public PayoutSettlementServiceImpl(RideRepository rideRepository,
+                                       SettlementRunRepository settlementRunRepository,
+                                       DriverPayoutRepository driverPayoutRepository,
+                                       RideVersionService rideVersionService,
+                                       PlatformTransactionManager transactionManager,
+                                       Clock clock,
+                                       @Value("${payouts.settlement.chunk-size:10000}") long chunkSize,
+                                       @Value("${payouts.settlement.parallelism:0}") int parallelism,
+                                       @Value("${payouts.driver-share:0.80}") BigDecimal driverShare) {
+        this.rideRepository = rideRepository;
+        this.settlementRunRepository = settlementRunRepository;
+        this.driverPayoutRepository = driverPayoutRepository;
+        this.rideVersionService = rideVersionService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.driverShare = driverShare;
+        this.clock = clock;
+        this.aggregationPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @Scheduled(cron = "${payouts.settlement.cron:0 0 3 * * *}")
+    public void scheduledSettlement() {
+        try {
+            runSettlement();
+        } catch (RuntimeException e) {
+            logger.error("Scheduled settlement run failed", e);
+        }
+    }
+
+    @Override
+    public SettlementRun runSettlement() {
+        if (!running.compareAndSet(false, true)) {
+            throw new RideException("A settlement run is already in progress");
+        }
+
+        try {
+            SettlementRun run = settlementRunRepository.findFirstByStatusOrderByIdDesc(SettlementRunStatus.RUNNING)
+                .orElseGet(this::startRun);
+            logger.info("Settlement run {} covering rides {} to {}", run.getId(), run.getCheckpointRideId(), run.getMaxRideId());
+
+            long startNanos = System.nanoTime();
+            long settledBefore = run.getRidesSettled();
+
+            while (run.getCheckpointRideId() < run.getMaxRideId()) {
+                long fromId = run.getCheckpointRideId();
+                long toId = Math.min(fromId + chunkSize, run.getMaxRideId());
+                SettlementRun current = run;
+                run = transactionTemplate.execute(status -> settleChunk(current, fromId, toId));
+            }
+
+            double seconds = Math.max((System.nanoTime() - startNanos) / 1e9, 1e-9);
+            double ridesPerSecond = (run.getRidesSettled() - settledBefore) / seconds;
+
+            run.setStatus(SettlementRunStatus.COMPLETED);
+            run.setRidesPerSecond(ridesPerSecond);
+            run.setFinishedAt(LocalDateTime.now(clock));
+            run = settlementRunRepository.save(run);
+
+            logger.info("Settlement run {} completed: {} rides, {} paid out, {} rides/s",
+                run.getId(), run.getRidesSettled(), run.getTotalPaidOut(), String.format("%.0f", ridesPerSecond));
+            return run;
+        } catch (ObjectOptimisticLockingFailureException e) {
+            throw new RideException("Settlement run was taken over by another node", e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        aggregationPool.shutdown();
+    }
+
+    private SettlementRun startRun() {
+        SettlementRun run = new SettlementRun();
+        run.setStatus(SettlementRunStatus.RUNNING);
+        run.setMaxRideId(rideRepository.findMaxId());
+
+        // Skip the settled prefix of the table, which is most of it after the first run
+        Long firstUnsettled = rideRepository.findMinUnsettledId();
+        run.setCheckpointRideId(firstUnsettled != null ? firstUnsettled - 1 : run.getMaxRideId());
+        run.setStartedAt(LocalDateTime.now(clock));
+        return settlementRunRepository.save(run);
+    }
+
+    private SettlementRun settleChunk(SettlementRun run, long fromId, long toId) {
+        List<SettlementRow> rows = rideRepository.findSettlementRows(fromId, toId);
+        BigDecimal chunkTotal = BigDecimal.ZERO;
+
+        if (!rows.isEmpty()) {
+            Map<Long, long[]> earnings = aggregationPool.invoke(new AggregateTask(rows, 0, rows.size()));
+
+            // Mark exactly the rides that were aggregated; a short count means another run got there first
+            List<Long> rideIds = new ArrayList<>(rows.size());
+            rows.forEach(row -> rideIds.add(row.getRideId()));
+            int marked = 0;
+            for (int i = 0; i < rideIds.size(); i += MARK_BATCH_SIZE) {
+                marked += rideRepository.markSettled(
+                    rideIds.subList(i, Math.min(i + MARK_BATCH_SIZE, rideIds.size())), run.getId());
+            }
+            if (marked != rideIds.size()) {
+                throw new IllegalStateException("Rides " + fromId + " to " + toId + " were settled concurrently");
+            }
+            rideVersionService.invalidate(rideIds);
+
+            Map<Long, DriverPayout> payouts = new HashMap<>();
+            driverPayoutRepository.findByRunIdAndDriverIdIn(run.getId(), earnings.keySet())
+                .forEach(payout -> payouts.put(payout.getDriverId(), payout));
+
+            for (Map.Entry<Long, long[]> entry : earnings.entrySet()) {
+                BigDecimal amount = BigDecimal.valueOf(entry.getValue()[0], 2)
+                    .multiply(driverShare)
+                    .setScale(2, RoundingMode.HALF_UP);
+
+                DriverPayout payout = payouts.computeIfAbsent(entry.getKey(), driverId -> {
+                    DriverPayout created = new DriverPayout();
+                    created.setRunId(run.getId());
+                    created.setDriverId(driverId);
+                    return created;
+                });
+                payout.setAmount(payout.getAmount().add(amount));
+                payout.setRideCount(payout.getRideCount() + (int) entry.getValue()[1]);
+                chunkTotal = chunkTotal.add(amount);
+            }
+            driverPayoutRepository.saveAll(payouts.values());
+        }
+
+        run.setCheckpointRideId(toId);
+        run.setRidesSettled(run.getRidesSettled() + rows.size());
+        run.setTotalPaidOut(run.getTotalPaidOut().add(chunkTotal));
+        return settlementRunRepository.save(run);
+    }
+
+    /**
+     * Sums fares in cents and ride counts per driver over a slice of a chunk
+     */
+    private static final class AggregateTask extends RecursiveTask<Map<Long, long[]>> {
+        private static final int THRESHOLD = 2048;
+
+        private final List<SettlementRow> rows;
+        private final int from;
+        private final int to;
+
+        private AggregateTask(List<SettlementRow> rows, int from, int to) {
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<Long, long[]> compute() {
+            if (to - from <= THRESHOLD) {
+                Map<Long, long[]> totals = new HashMap<>();
+                for (int i = from; i < to; i++) {
+                    SettlementRow row = rows.get(i);
+                    long cents = row.getPrice().movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue();
+                    long[] total = totals.computeIfAbsent(row.getDriverId(), id -> new long[2]);
+                    total[0] += cents;
+                    total[1]++;
+                }
+                return totals;
+            }
+
+            int mid = (from + to) >>> 1;
+            AggregateTask left = new AggregateTask(rows, from, mid);
+            left.fork();
+            Map<Long, long[]> right = new AggregateTask(rows, mid, to).compute();
+            Map<Long, long[]> merged = left.join();
+
+            right.forEach((driverId, total) -> {
+                long[] existing = merged.computeIfAbsent(driverId, id -> new long[2]);
+                existing[0] += total[0];
+                existing[1] += total[1];
+            });
+            return merged;
+        }
+    }
+}
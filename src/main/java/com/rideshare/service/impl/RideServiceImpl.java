@@ -1,38 +1,122 @@
 package com.rideshare.service.impl;
 
+import com.rideshare.diagnostics.CandidateScanEvent;
+import com.rideshare.diagnostics.PriceComputationEvent;
 import com.rideshare.dto.RideRequest;
 import com.rideshare.exception.RideException;
 import com.rideshare.model.Ride;
 import com.rideshare.model.RideStatus;
+import com.rideshare.model.RideTrace;
 import com.rideshare.model.User;
 import com.rideshare.model.UserRole;
 import com.rideshare.repository.RideRepository;
 import com.rideshare.repository.UserRepository;
+import com.rideshare.service.NearbyRideFeedService;
 import com.rideshare.service.RideService;
+import com.rideshare.service.RideStatusService;
+import com.rideshare.service.RideVersionService;
+import com.rideshare.service.TripTraceService;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Service
 public class RideServiceImpl implements RideService {
 
+    static final String TRANSITION_TIMER = "rides.transition";
+
+    private static final Logger logger = LoggerFactory.getLogger(RideServiceImpl.class);
+
     private final RideRepository rideRepository;
     private final UserRepository userRepository;
+    private final NearbyRideFeedService nearbyRideFeedService;
+    private final RideStatusService rideStatusService;
+    private final TripTraceService tripTraceService;
+    private final RideVersionService rideVersionService;
+    private final MeterRegistry meterRegistry;
+    private final Clock clock;
+    private final Counter acceptRacesLostOnRead;
+    private final Counter acceptRacesLostOnCommit;
+    private final Counter cappedFares;
+    private final double maxBilledDetour;
+
+    // Refreshed by refreshGauges so a scrape never queries the database
+    private final AtomicLong requestedRides = new AtomicLong();
+    private final AtomicLong scheduledRides = new AtomicLong();
+    private final AtomicLong onlineDrivers = new AtomicLong();
 
     @Autowired
-    public RideServiceImpl(RideRepository rideRepository, UserRepository userRepository) {
+    public RideServiceImpl(RideRepository rideRepository, UserRepository userRepository,
+                           NearbyRideFeedService nearbyRideFeedService, RideStatusService rideStatusService,
+                           TripTraceService tripTraceService, RideVersionService rideVersionService,
+                           MeterRegistry meterRegistry, Clock clock,
+                           @Value("${rides.fare.max-billed-detour:1.5}") double maxBilledDetour) {
         this.rideRepository = rideRepository;
         this.userRepository = userRepository;
+        this.nearbyRideFeedService = nearbyRideFeedService;
+        this.rideStatusService = rideStatusService;
+        this.tripTraceService = tripTraceService;
+        this.rideVersionService = rideVersionService;
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+        this.maxBilledDetour = maxBilledDetour;
+
+        this.acceptRacesLostOnRead = Counter.builder("rides.accept.races")
+                .description("Accepts that lost to another driver")
+                .tag("detected", "read")
+                .register(meterRegistry);
+        this.acceptRacesLostOnCommit = Counter.builder("rides.accept.races")
+                .description("Accepts that lost to another driver")
+                .tag("detected", "commit")
+                .register(meterRegistry);
+        this.cappedFares = Counter.builder("rides.fare.capped")
+                .description("Completed rides whose traced distance was over the billing cap")
+                .register(meterRegistry);
+        Gauge.builder("rides.open", requestedRides, AtomicLong::get)
+                .description("Rides waiting for a driver or for their pickup time")
+                .tag("status", RideStatus.REQUESTED.name())
+                .register(meterRegistry);
+        Gauge.builder("rides.open", scheduledRides, AtomicLong::get)
+                .description("Rides waiting for a driver or for their pickup time")
+                .tag("status", RideStatus.SCHEDULED.name())
+                .register(meterRegistry);
+        Gauge.builder("drivers.online", onlineDrivers, AtomicLong::get)
+                .description("Drivers marked available")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Recount open rides and online drivers for the gauges
+     */
+    @Scheduled(fixedDelayString = "${rides.metrics.refresh-interval:15000}")
+    public void refreshGauges() {
+        requestedRides.set(rideRepository.countByStatus(RideStatus.REQUESTED));
+        scheduledRides.set(rideRepository.countByStatus(RideStatus.SCHEDULED));
+        onlineDrivers.set(userRepository.countByRoleAndIsAvailable(UserRole.DRIVER, true));
     }
 
     @Override
     @Transactional
+    @Timed(value = TRANSITION_TIMER, extraTags = {"transition", "request"}, histogram = true)
     public Ride requestRide(RideRequest request, User passenger) {
         validateRideRequest(request);
 
@@ -77,16 +161,17 @@ public class RideServiceImpl implements RideService {
             ride.setEstimatedDuration(estimatedDuration);
         }
 
-        return rideRepository.save(ride);
+        return saveAndPublish(ride);
     }
 
     @Override
     @Transactional
+    @Timed(value = TRANSITION_TIMER, extraTags = {"transition", "schedule"}, histogram = true)
     public Ride scheduleRide(RideRequest request, User passenger) {
         validateRideRequest(request);
         
         // Scheduled rides must be at least 1 hour in the future
-        if (request.getRideTime().isBefore(LocalDateTime.now().plusHours(1))) {
+        if (request.getRideTime().isBefore(LocalDateTime.now(clock).plusHours(1))) {
             throw new RideException("Scheduled rides must be at least 1 hour in the future");
         }
         
@@ -127,11 +212,12 @@ public class RideServiceImpl implements RideService {
             ride.setEstimatedDuration(estimatedDuration);
         }
 
-        return rideRepository.save(ride);
+        return saveAndPublish(ride);
     }
 
     @Override
     @Transactional
+    @Timed(value = TRANSITION_TIMER, extraTags = {"transition", "cancel"}, histogram = true)
     public Ride cancelRide(Long rideId, Long userId) {
         Ride ride = getRide(rideId);
         
@@ -153,12 +239,20 @@ public class RideServiceImpl implements RideService {
             // This could involve a payment processor call
         }
         
+        Counter.builder("rides.cancellations")
+                .description("Rides cancelled, by who cancelled and the status they left")
+                .tag("by", isPassenger ? "passenger" : "driver")
+                .tag("from", ride.getStatus().name())
+                .register(meterRegistry)
+                .increment();
         ride.setStatus(RideStatus.CANCELLED);
-        return rideRepository.save(ride);
+        tripTraceService.discard(rideId);
+        return saveAndPublish(ride);
     }
 
     @Override
     @Transactional
+    @Timed(value = TRANSITION_TIMER, extraTags = {"transition", "accept"}, histogram = true)
     public Ride acceptRide(Long rideId, User driver) {
         if (driver.getRole() != UserRole.DRIVER) {
             throw new RideException("Only drivers can accept rides");
@@ -167,20 +261,32 @@ public class RideServiceImpl implements RideService {
         Ride ride = getRide(rideId);
 
         if (ride.getStatus() != RideStatus.REQUESTED) {
+            if (ride.getStatus() == RideStatus.ACCEPTED) {
+                acceptRacesLostOnRead.increment();
+            }
             throw new RideException("Ride is not available for acceptance");
         }
 
         if (ride.getDriver() != null && !ride.getDriver().equals(driver)) {
+            acceptRacesLostOnRead.increment();
             throw new RideException("Ride already accepted by another driver");
         }
 
         ride.setDriver(driver);
         ride.setStatus(RideStatus.ACCEPTED);
-        return rideRepository.save(ride);
+        try {
+            // Flush before publishing so a concurrent accept is caught, and counted, here rather than at commit
+            rideRepository.saveAndFlush(ride);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            acceptRacesLostOnCommit.increment();
+            throw e;
+        }
+        return saveAndPublish(ride);
     }
 
     @Override
     @Transactional
+    @Timed(value = TRANSITION_TIMER, extraTags = {"transition", "start"}, histogram = true)
     public Ride startRide(Long rideId, Long driverId) {
         Ride ride = getRide(rideId);
         
@@ -193,13 +299,14 @@ public class RideServiceImpl implements RideService {
         }
         
         ride.setStatus(RideStatus.IN_PROGRESS);
-        ride.setStartTime(LocalDateTime.now());
+        ride.setStartTime(LocalDateTime.now(clock));
         
-        return rideRepository.save(ride);
+        return saveAndPublish(ride);
     }
 
     @Override
     @Transactional
+    @Timed(value = TRANSITION_TIMER, extraTags = {"transition", "complete"}, histogram = true)
     public Ride completeRide(Long rideId, Long driverId) {
         Ride ride = getRide(rideId);
         
@@ -212,16 +319,51 @@ public class RideServiceImpl implements RideService {
         }
         
         ride.setStatus(RideStatus.COMPLETED);
-        ride.setEndTime(LocalDateTime.now());
-        
-        // Calculate actual distance and duration if needed
-        // This could be based on GPS data collected during the ride
-        
-        return rideRepository.save(ride);
+        ride.setEndTime(LocalDateTime.now(clock));
+        
+        // Calculate actual distance and duration from the GPS trace collected during the ride
+        RideTrace trace = tripTraceService.finish(ride);
+        if (trace != null) {
+            double distance = trace.getDistanceMeters() / 1000;
+            ride.setActualDistance(BigDecimal.valueOf(distance).setScale(3, RoundingMode.HALF_UP));
+            ride.setActualDuration((int) Math.round(trace.getDurationSeconds() / 60.0));
+            
+            // Bill the distance actually driven, unless the ride has already been paid for
+            if (!Boolean.TRUE.equals(ride.getIsPaid())) {
+                BigDecimal price = calculatePrice(billedDistance(ride, distance),
+                        ride.getSeats() != null ? ride.getSeats() : 1, ride.getRideTime());
+                if (ride.getSecondPassenger() != null) {
+                    // Keep the shared ride discount applied when the second passenger joined
+                    price = price.multiply(BigDecimal.valueOf(0.75)).setScale(2, RoundingMode.HALF_UP);
+                }
+                ride.setPrice(price);
+            }
+        } else if (ride.getStartTime() != null) {
+            ride.setActualDuration((int) Duration.between(ride.getStartTime(), ride.getEndTime()).toMinutes());
+        }
+        
+        return saveAndPublish(ride);
+    }
+
+    /**
+     * The trace is posted by the driver, so a detour far beyond the estimate is billed
+     * at the cap and logged for review instead of being charged to the passenger
+     */
+    private double billedDistance(Ride ride, double tracedDistance) {
+        Double estimated = ride.getDistance();
+        if (estimated == null || estimated <= 0 || tracedDistance <= estimated * maxBilledDetour) {
+            return tracedDistance;
+        }
+        double capped = estimated * maxBilledDetour;
+        cappedFares.increment();
+        logger.warn("Ride {} traced {} km against an estimate of {} km; billing {} km, review the trace",
+                ride.getId(), String.format("%.3f", tracedDistance), estimated, String.format("%.3f", capped));
+        return capped;
     }
 
     @Override
     @Transactional
+    @Timed(value = TRANSITION_TIMER, extraTags = {"transition", "rate_driver"}, histogram = true)
     public Ride rateDriver(Long rideId, Long passengerId, Double rating, String review) {
         Ride ride = getRide(rideId);
         
@@ -250,11 +392,12 @@ public class RideServiceImpl implements RideService {
             updateUserRating(ride.getDriver().getId(), rating);
         }
         
-        return rideRepository.save(ride);
+        return saveAndPublish(ride);
     }
 
     @Override
     @Transactional
+    @Timed(value = TRANSITION_TIMER, extraTags = {"transition", "rate_passenger"}, histogram = true)
     public Ride ratePassenger(Long rideId, Long driverId, Double rating, String review) {
         Ride ride = getRide(rideId);
         
@@ -283,7 +426,7 @@ public class RideServiceImpl implements RideService {
             updateUserRating(ride.getPassenger().getId(), rating);
         }
         
-        return rideRepository.save(ride);
+        return saveAndPublish(ride);
     }
 
     @Override
@@ -336,9 +479,11 @@ public class RideServiceImpl implements RideService {
     public List<Ride> findNearbyAvailableRides(Double latitude, Double longitude, Double radiusInKm) {
         // This would typically use a database with geospatial capabilities
         // For this example, we'll get all requested rides and filter by distance
+        CandidateScanEvent scan = new CandidateScanEvent();
+        scan.begin();
         List<Ride> requestedRides = rideRepository.findByStatus(RideStatus.REQUESTED);
         
-        return requestedRides.stream()
+        List<Ride> nearby = requestedRides.stream()
             .filter(ride -> ride.getPickupLat() != null && ride.getPickupLng() != null)
             .filter(ride -> {
                 double distance = calculateDistance(
@@ -348,6 +493,8 @@ public class RideServiceImpl implements RideService {
                 return distance <= radiusInKm;
             })
             .collect(Collectors.toList());
+        commitScan(scan, "nearby", requestedRides.size(), nearby.size(), radiusInKm);
+        return nearby;
     }
 
     @Override
@@ -359,13 +506,15 @@ public class RideServiceImpl implements RideService {
             return List.of(); // Can't match without coordinates
         }
         
+        CandidateScanEvent scan = new CandidateScanEvent();
+        scan.begin();
         List<Ride> sharedRides = rideRepository.findByIsSharedAndStatusIn(
             true,
             List.of(RideStatus.REQUESTED, RideStatus.ACCEPTED)
         );
         
         // Filter rides by proximity to pickup and dropoff locations
-        return sharedRides.stream()
+        List<Ride> matches = sharedRides.stream()
             .filter(ride -> ride.getPickupLat() != null && ride.getPickupLng() != null &&
                           ride.getDropoffLat() != null && ride.getDropoffLng() != null)
             .filter(ride -> {
@@ -385,10 +534,23 @@ public class RideServiceImpl implements RideService {
                 return pickupDistance <= 2.0 && dropoffDistance <= 2.0;
             })
             .collect(Collectors.toList());
+        commitScan(scan, "shared", sharedRides.size(), matches.size(), 2.0);
+        return matches;
+    }
+
+    private static void commitScan(CandidateScanEvent scan, String name, int candidates, int matches, double radiusKm) {
+        if (scan.shouldCommit()) {
+            scan.scan = name;
+            scan.candidates = candidates;
+            scan.matches = matches;
+            scan.radiusKm = radiusKm;
+            scan.commit();
+        }
     }
 
     @Override
     @Transactional
+    @Timed(value = TRANSITION_TIMER, extraTags = {"transition", "join_shared"}, histogram = true)
     public Ride joinSharedRide(Long sharedRideId, Long passengerId) {
         Ride sharedRide = getRide(sharedRideId);
         User passenger = userRepository.findById(passengerId)
@@ -413,7 +575,7 @@ public class RideServiceImpl implements RideService {
         BigDecimal discountedPrice = sharedRide.getPrice().multiply(BigDecimal.valueOf(0.75));
         sharedRide.setPrice(discountedPrice);
         
-        return rideRepository.save(sharedRide);
+        return saveAndPublish(sharedRide);
     }
     
     @Override
@@ -429,13 +591,25 @@ public class RideServiceImpl implements RideService {
     
     // Helper methods
     
+    /**
+     * Save a ride and push its new state to the nearby-ride feeds, the ride's status subscribers
+     * and any clients long-polling it
+     */
+    private Ride saveAndPublish(Ride ride) {
+        Ride saved = rideRepository.save(ride);
+        nearbyRideFeedService.publish(saved);
+        rideStatusService.publish(saved);
+        rideVersionService.publish(saved);
+        return saved;
+    }
+    
     private boolean isDriverForRide(Ride ride, Long driverId) {
         return ride.getDriver() != null && ride.getDriver().getId().equals(driverId);
     }
     
     private boolean isValidPickupTime(LocalDateTime pickupTime) {
         // Ride must be at least 5 minutes in the future
-        return pickupTime.isAfter(LocalDateTime.now().plusMinutes(5));
+        return pickupTime.isAfter(LocalDateTime.now(clock).plusMinutes(5));
     }
     
     private void validateRideRequest(RideRequest request) {
@@ -457,20 +631,39 @@ public class RideServiceImpl implements RideService {
     }
     
     private BigDecimal calculatePrice(RideRequest request) {
+        Double distance = null;
+        if (request.getPickupCoordinates() != null && request.getDropoffCoordinates() != null) {
+            distance = calculateDistance(
+                request.getPickupCoordinates().getLat(), request.getPickupCoordinates().getLng(),
+                request.getDropoffCoordinates().getLat(), request.getDropoffCoordinates().getLng()
+            );
+        }
+        return calculatePrice(distance, request.getSeats(), request.getRideTime());
+    }
+    
+    BigDecimal calculatePrice(Double distance, int seats, LocalDateTime rideTime) {
+        PriceComputationEvent event = new PriceComputationEvent();
+        event.begin();
+        BigDecimal price = computePrice(distance, seats, rideTime);
+        if (event.shouldCommit()) {
+            event.distanceKm = distance != null ? distance : Double.NaN;
+            event.seats = seats;
+            event.price = price.doubleValue();
+            event.commit();
+        }
+        return price;
+    }
+
+    private BigDecimal computePrice(Double distance, int seats, LocalDateTime rideTime) {
         // Base price
         double basePrice = 5.0;
         
         // Price per seat
-        double seatPrice = 2.0 * request.getSeats();
+        double seatPrice = 2.0 * seats;
         
-        // Calculate distance-based price if coordinates are available
+        // Calculate distance-based price if the distance is known
         double distancePrice = 0.0;
-        if (request.getPickupCoordinates() != null && request.getDropoffCoordinates() != null) {
-            double distance = calculateDistance(
-                request.getPickupCoordinates().getLat(), request.getPickupCoordinates().getLng(),
-                request.getDropoffCoordinates().getLat(), request.getDropoffCoordinates().getLng()
-            );
-            
+        if (distance != null) {
             // Price per kilometer (or mile)
             distancePrice = distance * 1.5;
         } else {
@@ -479,7 +672,6 @@ public class RideServiceImpl implements RideService {
         }
         
         // Apply time-of-day pricing (e.g., surge pricing during peak hours)
-        LocalDateTime rideTime = request.getRideTime();
         double timeMultiplier = 1.0;
         
         int hour = rideTime.getHour();
@@ -501,7 +693,7 @@ public class RideServiceImpl implements RideService {
      * Calculate distance between two points using the Haversine formula
      * @return Distance in kilometers
      */
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
+    double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
         final int R = 6371; // Radius of the earth in km
         
         double latDistance = Math.toRadians(lat2 - lat1);
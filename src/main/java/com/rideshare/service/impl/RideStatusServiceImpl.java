@@ -0,0 +1,401 @@
+package com.rideshare.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rideshare.config.WorkerThreads;
+import com.rideshare.dto.RideStatusUpdate;
+import com.rideshare.exception.RideException;
+import com.rideshare.model.Ride;
+import com.rideshare.model.RideStatus;
+import com.rideshare.model.User;
+import com.rideshare.service.RideStatusService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.websocket.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-ride topics of status updates over WebSocket. A connection never has
+ * more than one message waiting per ride. A newer state replaces an unsent
+ * older one, so a slow client gets the latest state late, never a growing
+ * backlog. At most one sender thread writes to a connection at a time, so
+ * the send queue holds at most one task per connection.
+ *
+ * The endpoint is open to anyone, since the token arrives in the first
+ * message. A connection that has not authenticated within auth-timeout is
+ * closed. New connections are turned away while max-unauthenticated of them
+ * are still waiting to authenticate.
+ */
+@Service
+public class RideStatusServiceImpl implements RideStatusService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RideStatusServiceImpl.class);
+
+    private static final String RIDE_STATUS = "ride-status";
+    private static final String TOMCAT_BLOCKING_SEND_TIMEOUT = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+    private static final int MAX_PENDING_ERRORS = 8;
+
+    private final ObjectMapper objectMapper;
+    private final int maxRidesPerConnection;
+    private final long sendTimeoutMillis;
+    private final long authTimeoutMillis;
+    private final int maxUnauthenticated;
+
+    private final ConcurrentHashMap<Long, Set<Channel>> channelsByRide = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Channel> channelsBySession = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger unauthenticated = new AtomicInteger();
+
+    private final ThreadPoolExecutor senders;
+    // Closes connections that miss their authentication deadline
+    private final ScheduledThreadPoolExecutor authDeadlines;
+
+    private final Counter coalescedUpdates;
+    private final Counter slowClientsClosed;
+    private final Counter unauthenticatedClosed;
+    private final Counter overloadRejections;
+
+    public RideStatusServiceImpl(ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry,
+                                 WorkerThreads workerThreads,
+                                 @Value("${rides.status.max-rides-per-connection:4}") int maxRidesPerConnection,
+                                 @Value("${rides.status.send-timeout:5000}") long sendTimeoutMillis,
+                                 @Value("${rides.status.threads:8}") int threads,
+                                 @Value("${rides.status.auth-timeout:5000}") long authTimeoutMillis,
+                                 @Value("${rides.status.max-unauthenticated:1000}") int maxUnauthenticated) {
+        this.objectMapper = objectMapper;
+        this.maxRidesPerConnection = maxRidesPerConnection;
+        this.sendTimeoutMillis = sendTimeoutMillis;
+        this.authTimeoutMillis = authTimeoutMillis;
+        this.maxUnauthenticated = maxUnauthenticated;
+
+        // Unbounded only in name: a connection has at most one drain task queued
+        this.senders = new ThreadPoolExecutor(
+                threads, threads,
+                0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                workerThreads.factory("ride-status-"));
+        this.authDeadlines = new ScheduledThreadPoolExecutor(1, workerThreads.factory("ride-status-auth-"));
+        this.authDeadlines.setRemoveOnCancelPolicy(true);
+
+        this.coalescedUpdates = Counter.builder("rides.status.coalesced")
+                .description("Ride status updates replaced by a newer one before they were sent")
+                .register(meterRegistry);
+        this.slowClientsClosed = Counter.builder("rides.status.closed")
+                .tag("reason", "send_failed")
+                .register(meterRegistry);
+        this.unauthenticatedClosed = Counter.builder("rides.status.closed")
+                .tag("reason", "auth_timeout")
+                .register(meterRegistry);
+        this.overloadRejections = Counter.builder("rides.status.closed")
+                .tag("reason", "too_many_unauthenticated")
+                .register(meterRegistry);
+        Gauge.builder("rides.status.unauthenticated", unauthenticated, AtomicInteger::get)
+                .description("Connections waiting for their first valid token")
+                .register(meterRegistry);
+        Gauge.builder("rides.status.connections", channelsBySession, Map::size)
+                .description("Open ride status WebSocket connections on this node")
+                .register(meterRegistry);
+        Gauge.builder("rides.status.rides", channelsByRide, Map::size)
+                .description("Rides with at least one subscriber on this node")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void connect(WebSocketSession session) {
+        // Bound how long a write to a client with a full socket buffer may hold a sender thread
+        if (session instanceof NativeWebSocketSession nativeSession) {
+            Session standardSession = nativeSession.getNativeSession(Session.class);
+            if (standardSession != null) {
+                standardSession.getUserProperties().put(TOMCAT_BLOCKING_SEND_TIMEOUT, sendTimeoutMillis);
+            }
+        }
+
+        if (unauthenticated.incrementAndGet() > maxUnauthenticated) {
+            unauthenticated.decrementAndGet();
+            overloadRejections.increment();
+            close(session, CloseStatus.SERVICE_OVERLOAD);
+            return;
+        }
+        Channel channel = new Channel(session);
+        channelsBySession.put(session.getId(), channel);
+        try {
+            channel.authDeadline = authDeadlines.schedule(() -> expire(channel), authTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    @Override
+    public void authenticated(WebSocketSession session) {
+        Channel channel = channelsBySession.get(session.getId());
+        if (channel != null) {
+            clearAuthDeadline(channel);
+        }
+    }
+
+    @Override
+    public void subscribe(WebSocketSession session, Ride ride) {
+        Channel channel = channelsBySession.get(session.getId());
+        if (channel == null) {
+            return;
+        }
+        if (!channel.rideIds.contains(ride.getId()) && channel.rideIds.size() >= maxRidesPerConnection) {
+            throw new RideException("Too many rides watched on one connection");
+        }
+
+        channel.rideIds.add(ride.getId());
+        channelsByRide.compute(ride.getId(), (k, channels) -> {
+            Set<Channel> set = channels != null ? channels : ConcurrentHashMap.newKeySet();
+            set.add(channel);
+            return set;
+        });
+
+        // A concurrent publish carries a sequence at least as high, so it wins over this snapshot
+        Outgoing snapshot = toOutgoing(toUpdate(ride), sequence.get());
+        if (snapshot != null) {
+            offer(channel, ride.getId(), snapshot);
+        }
+    }
+
+    @Override
+    public void unsubscribe(WebSocketSession session, Long rideId) {
+        Channel channel = channelsBySession.get(session.getId());
+        if (channel != null) {
+            removeFromTopic(channel, rideId);
+        }
+    }
+
+    @Override
+    public void disconnect(WebSocketSession session) {
+        Channel channel = channelsBySession.remove(session.getId());
+        if (channel == null) {
+            return;
+        }
+        clearAuthDeadline(channel);
+        for (Long rideId : channel.rideIds) {
+            removeFromTopic(channel, rideId);
+        }
+        channel.pending.clear();
+        channel.errors.clear();
+    }
+
+    @Override
+    public void sendError(WebSocketSession session, String message) {
+        Channel channel = channelsBySession.get(session.getId());
+        if (channel == null || channel.errors.size() >= MAX_PENDING_ERRORS) {
+            return;
+        }
+        try {
+            channel.errors.offer(new TextMessage(objectMapper.writeValueAsString(Map.of("type", "error", "message", message))));
+            schedule(channel);
+        } catch (JsonProcessingException e) {
+            logger.error("Could not serialize WebSocket error message", e);
+        }
+    }
+
+    @Override
+    public void publish(Ride ride) {
+        // Build the update while the entity is still attached; send it once the change is committed
+        RideStatusUpdate update = toUpdate(ride);
+        Long rideId = ride.getId();
+        boolean finished = ride.getStatus() == RideStatus.COMPLETED || ride.getStatus() == RideStatus.CANCELLED;
+        Runnable fanOut = () -> fanOut(rideId, update, finished);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    fanOut.run();
+                }
+            });
+        } else {
+            fanOut.run();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        senders.shutdown();
+        authDeadlines.shutdownNow();
+    }
+
+    private void expire(Channel channel) {
+        if (channel.awaitingAuth.compareAndSet(true, false)) {
+            unauthenticated.decrementAndGet();
+            unauthenticatedClosed.increment();
+            disconnect(channel.session);
+            close(channel.session, CloseStatus.POLICY_VIOLATION.withReason("Authentication required"));
+        }
+    }
+
+    private void clearAuthDeadline(Channel channel) {
+        if (channel.awaitingAuth.compareAndSet(true, false)) {
+            unauthenticated.decrementAndGet();
+            ScheduledFuture<?> deadline = channel.authDeadline;
+            if (deadline != null) {
+                deadline.cancel(false);
+            }
+        }
+    }
+
+    private static void close(WebSocketSession session, CloseStatus status) {
+        try {
+            session.close(status);
+        } catch (IOException ignored) {
+            // Already closed
+        }
+    }
+
+    private void fanOut(Long rideId, RideStatusUpdate update, boolean finished) {
+        Set<Channel> channels = finished ? channelsByRide.remove(rideId) : channelsByRide.get(rideId);
+        if (channels == null) {
+            return;
+        }
+
+        // Serialized once; the same message object goes to every subscriber
+        Outgoing outgoing = toOutgoing(update, sequence.incrementAndGet());
+        if (outgoing == null) {
+            return;
+        }
+        for (Channel channel : channels) {
+            if (finished) {
+                // Nothing follows a finished ride, so its topic is dropped after this last update
+                channel.rideIds.remove(rideId);
+            }
+            offer(channel, rideId, outgoing);
+        }
+    }
+
+    private void offer(Channel channel, Long rideId, Outgoing outgoing) {
+        boolean[] coalesced = new boolean[1];
+        channel.pending.compute(rideId, (k, current) -> {
+            if (current == null) {
+                return outgoing;
+            }
+            coalesced[0] = true;
+            return outgoing.sequence >= current.sequence ? outgoing : current;
+        });
+        if (coalesced[0]) {
+            coalescedUpdates.increment();
+        }
+        schedule(channel);
+    }
+
+    private void schedule(Channel channel) {
+        if (channel.draining.compareAndSet(false, true)) {
+            try {
+                senders.execute(() -> drain(channel));
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+                channel.draining.set(false);
+            }
+        }
+    }
+
+    private void drain(Channel channel) {
+        try {
+            do {
+                TextMessage error;
+                while ((error = channel.errors.poll()) != null) {
+                    channel.session.sendMessage(error);
+                }
+                for (Long rideId : channel.pending.keySet()) {
+                    Outgoing outgoing = channel.pending.remove(rideId);
+                    if (outgoing != null) {
+                        channel.session.sendMessage(outgoing.message);
+                    }
+                }
+                channel.draining.set(false);
+            } while ((!channel.pending.isEmpty() || !channel.errors.isEmpty())
+                    && channel.draining.compareAndSet(false, true));
+        } catch (IOException | IllegalStateException e) {
+            // The client is gone or too slow to take even the latest state; it reconnects and resubscribes
+            slowClientsClosed.increment();
+            disconnect(channel.session);
+            close(channel.session, CloseStatus.SESSION_NOT_RELIABLE);
+        }
+    }
+
+    private void removeFromTopic(Channel channel, Long rideId) {
+        channel.rideIds.remove(rideId);
+        channel.pending.remove(rideId);
+        channelsByRide.computeIfPresent(rideId, (k, channels) -> {
+            channels.remove(channel);
+            return channels.isEmpty() ? null : channels;
+        });
+    }
+
+    private RideStatusUpdate toUpdate(Ride ride) {
+        User driver = ride.getDriver();
+        return new RideStatusUpdate(RIDE_STATUS, null, ride.getId(), ride.getStatus(),
+                driver != null ? driver.getId() : null,
+                driver != null ? driver.getName() : null,
+                driver != null ? driver.getPhoneNumber() : null,
+                ride.getStartTime(), ride.getEndTime(), ride.getPrice());
+    }
+
+    private Outgoing toOutgoing(RideStatusUpdate update, long sequenceNumber) {
+        RideStatusUpdate sequenced = new RideStatusUpdate(update.getType(), sequenceNumber, update.getRideId(),
+                update.getStatus(), update.getDriverId(), update.getDriverName(), update.getDriverPhoneNumber(),
+                update.getStartTime(), update.getEndTime(), update.getPrice());
+        try {
+            return new Outgoing(sequenceNumber, new TextMessage(objectMapper.writeValueAsString(sequenced)));
+        } catch (JsonProcessingException e) {
+            logger.error("Could not serialize status update for ride {}", update.getRideId(), e);
+            return null;
+        }
+    }
+
+    private static final class Channel {
+        private final WebSocketSession session;
+        private final Set<Long> rideIds = ConcurrentHashMap.newKeySet();
+        // Latest unsent update per ride
+        private final ConcurrentHashMap<Long, Outgoing> pending = new ConcurrentHashMap<>();
+        private final Queue<TextMessage> errors = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean awaitingAuth = new AtomicBoolean(true);
+        private volatile ScheduledFuture<?> authDeadline;
+
+        private Channel(WebSocketSession session) {
+            this.session = session;
+        }
+    }
+
+    private static final class Outgoing {
+        private final long sequence;
+        private final TextMessage message;
+
+        private Outgoing(long sequence, TextMessage message) {
+            this.sequence = sequence;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.rideshare.service.impl;
+
+import com.rideshare.config.WorkerThreads;
+import com.rideshare.model.Ride;
+import com.rideshare.repository.RideRepository;
+import com.rideshare.service.RideVersionService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the latest known version of recently read or changed rides, so
+ * conditional GETs can be answered without the database. Changes made through
+ * this node update the cache as they commit. Changes made on other nodes are
+ * picked up when an entry is older than the TTL, and by a periodic check of
+ * the rides that long-polling clients are waiting on.
+ */
+@Service
+public class RideVersionServiceImpl implements RideVersionService {
+
+    private final RideRepository rideRepository;
+    private final long ttlMillis;
+    private final int maxEntries;
+
+    private final ConcurrentHashMap<Long, KnownVersion> versions = new ConcurrentHashMap<>();
+    private final Map<Long, CompletableFuture<Void>> waiters = new ConcurrentHashMap<>();
+
+    // Woken long polls re-read the ride here, not on the thread that committed the change
+    private final ThreadPoolExecutor wakeExecutor;
+
+    public RideVersionServiceImpl(RideRepository rideRepository,
+                                  MeterRegistry meterRegistry,
+                                  WorkerThreads workerThreads,
+                                  @Value("${rides.versions.ttl:30000}") long ttlMillis,
+                                  @Value("${rides.versions.max-entries:200000}") int maxEntries,
+                                  @Value("${rides.versions.wake-threads:4}") int wakeThreads) {
+        this.rideRepository = rideRepository;
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+
+        this.wakeExecutor = new ThreadPoolExecutor(
+                wakeThreads, wakeThreads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(10000),
+                workerThreads.factory("ride-long-poll-"),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("rides.versions.cached", versions, Map::size)
+                .register(meterRegistry);
+        Gauge.builder("rides.long_poll.waiting", waiters, Map::size)
+                .description("Rides with long-polling clients waiting on this node")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Long getVersion(Long rideId) {
+        KnownVersion known = versions.get(rideId);
+        long now = System.currentTimeMillis();
+        if (known != null && now - known.checkedAt < ttlMillis) {
+            return known.version;
+        }
+
+        Long version = rideRepository.findVersionById(rideId);
+        if (version == null) {
+            versions.remove(rideId);
+            return null;
+        }
+        put(rideId, version, now);
+        return version;
+    }
+
+    @Override
+    public void remember(Ride ride) {
+        put(ride.getId(), ride.getVersion(), System.currentTimeMillis());
+    }
+
+    @Override
+    public void publish(Ride ride) {
+        // The version is bumped when the transaction flushes, so read it after commit
+        afterCommit(() -> {
+            put(ride.getId(), ride.getVersion(), System.currentTimeMillis());
+            wake(ride.getId());
+        });
+    }
+
+    @Override
+    public void invalidate(Collection<Long> rideIds) {
+        List<Long> ids = new ArrayList<>(rideIds);
+        afterCommit(() -> {
+            for (Long rideId : ids) {
+                versions.remove(rideId);
+                wake(rideId);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> awaitChange(Long rideId, long knownVersion, long timeoutMillis) {
+        CompletableFuture<Void> future = waiters.computeIfAbsent(rideId, id -> new CompletableFuture<>());
+
+        // Re-check in case the ride changed before the registration
+        Long current = getVersion(rideId);
+        if (current == null || current != knownVersion) {
+            wake(rideId);
+            return CompletableFuture.completedFuture(true);
+        }
+
+        return future.thenApply(changed -> true)
+                .completeOnTimeout(false, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Wake long polls for rides changed by another node, with one query for all waited-on rides
+     */
+    @Scheduled(fixedDelayString = "${rides.versions.remote-check-interval:1000}")
+    public void checkRemoteChanges() {
+        if (waiters.isEmpty()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        List<Long> rideIds = new ArrayList<>(waiters.keySet());
+        for (Object[] row : rideRepository.findVersionsByIds(rideIds)) {
+            Long rideId = (Long) row[0];
+            Long version = (Long) row[1];
+            KnownVersion known = versions.get(rideId);
+            if (known == null || !known.version.equals(version)) {
+                put(rideId, version, now);
+                wake(rideId);
+            }
+        }
+    }
+
+    /**
+     * Drop entries too old to answer from
+     */
+    @Scheduled(fixedDelayString = "${rides.versions.ttl:30000}")
+    public void evictExpired() {
+        long cutoff = System.currentTimeMillis() - ttlMillis;
+        versions.values().removeIf(known -> known.checkedAt < cutoff);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        wakeExecutor.shutdown();
+    }
+
+    private void put(Long rideId, Long version, long checkedAt) {
+        if (version == null || (versions.size() >= maxEntries && !versions.containsKey(rideId))) {
+            return;
+        }
+        // Versions only grow, so a late write of an older read never wins
+        versions.merge(rideId, new KnownVersion(version, checkedAt),
+                (current, update) -> update.version >= current.version ? update : current);
+    }
+
+    private void wake(Long rideId) {
+        CompletableFuture<Void> future = waiters.remove(rideId);
+        if (future == null) {
+            return;
+        }
+        try {
+            wakeExecutor.execute(() -> future.complete(null));
+        } catch (RejectedExecutionException e) {
+            future.complete(null);
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static final class KnownVersion {
+        private final Long version;
+        private final long checkedAt;
+
+        private KnownVersion(Long version, long checkedAt) {
+            this.version = version;
+            this.checkedAt = checkedAt;
+        }
+    }
+}
@@ -1,47 +1,206 @@
 package com.rideshare.service.impl;
 
+import com.rideshare.diagnostics.ExternalCallEvent;
+import com.rideshare.dto.PaymentIntentResult;
+import com.rideshare.exception.PaymentGatewayException;
 import com.rideshare.service.StripeService;
-import com.stripe.Stripe;
+import com.stripe.StripeClient;
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.ApiException;
+import com.stripe.exception.RateLimitException;
 import com.stripe.exception.StripeException;
 import com.stripe.model.PaymentIntent;
+import com.stripe.net.RequestOptions;
 import com.stripe.param.PaymentIntentCreateParams;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The single gateway to Stripe. Every call goes through a circuit breaker, then
+ * a bulkhead that caps concurrent Stripe calls. Each call also has connect
+ * and read timeouts. When Stripe is slow or failing, callers get a fast
+ * retryable failure instead of a blocked thread.
+ */
 @Service
 public class StripeServiceImpl implements StripeService {
 
-    @Value("${stripe.api.key}")
-    private String stripeApiKey;
-    
-    @Value("${stripe.api.publishable-key}")
-    private String publishableKey;
+    // Holds its own API key, so nothing touches the global Stripe.apiKey
+    private final StripeClient stripeClient;
+
+    private final String publishableKey;
+
+    private final Semaphore bulkhead;
+    private final long bulkheadWaitMillis;
+    private final CircuitBreaker circuitBreaker;
+
+    private final MeterRegistry meterRegistry;
+    private final Counter bulkheadRejections;
+    private final Counter shortCircuits;
+
+    public StripeServiceImpl(MeterRegistry meterRegistry,
+                             @Value("${stripe.api.key}") String stripeApiKey,
+                             @Value("${stripe.api.publishable-key}") String publishableKey,
+                             @Value("${stripe.api.base:https://api.stripe.com}") String apiBase,
+                             @Value("${stripe.gateway.connect-timeout:2000}") int connectTimeoutMillis,
+                             @Value("${stripe.gateway.read-timeout:5000}") int readTimeoutMillis,
+                             @Value("${stripe.gateway.max-concurrent-calls:20}") int maxConcurrentCalls,
+                             @Value("${stripe.gateway.bulkhead-wait:50}") long bulkheadWaitMillis,
+                             @Value("${stripe.gateway.breaker.window-size:50}") int windowSize,
+                             @Value("${stripe.gateway.breaker.minimum-calls:10}") int minimumCalls,
+                             @Value("${stripe.gateway.breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+                             @Value("${stripe.gateway.breaker.slow-call-rate-threshold:0.8}") double slowCallRateThreshold,
+                             @Value("${stripe.gateway.breaker.slow-call-duration:3000}") long slowCallMillis,
+                             @Value("${stripe.gateway.breaker.open-duration:30000}") long openMillis,
+                             @Value("${stripe.gateway.breaker.half-open-calls:3}") int halfOpenCalls) {
+        this.stripeClient = StripeClient.builder()
+                .setApiKey(stripeApiKey)
+                .setApiBase(apiBase)
+                .setConnectTimeout(connectTimeoutMillis)
+                .setReadTimeout(readTimeoutMillis)
+                // Retries belong to the callers (the payment outbox), not inside a bulkhead slot
+                .setMaxNetworkRetries(0)
+                .build();
+        this.publishableKey = publishableKey;
+
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.bulkheadWaitMillis = bulkheadWaitMillis;
+        this.circuitBreaker = new CircuitBreaker(windowSize, minimumCalls, failureRateThreshold,
+                slowCallRateThreshold, slowCallMillis, openMillis, halfOpenCalls);
+
+        this.meterRegistry = meterRegistry;
+        this.bulkheadRejections = Counter.builder("payment.gateway.rejected")
+                .tag("reason", "bulkhead")
+                .register(meterRegistry);
+        this.shortCircuits = Counter.builder("payment.gateway.rejected")
+                .tag("reason", "circuit_open")
+                .register(meterRegistry);
+        Gauge.builder("payment.gateway.circuit.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+                .description("0 = closed, 1 = open, 2 = half open")
+                .register(meterRegistry);
+        Gauge.builder("payment.gateway.bulkhead.available", bulkhead, Semaphore::availablePermits)
+                .register(meterRegistry);
+    }
 
     @Override
-    public String createPaymentIntent(Double amount, String customerId) {
-        try {
-            Stripe.apiKey = stripeApiKey;
-            
-            long amountInCents = Math.round(amount * 100);
-            
-            PaymentIntentCreateParams.Builder paramsBuilder = PaymentIntentCreateParams.builder()
-                    .setCurrency("usd")
-                    .setAmount(amountInCents)
-                    .setDescription("Ride payment");
-            
-            if (customerId != null && !customerId.isEmpty()) {
-                paramsBuilder.setCustomer(customerId);
-            }
-            
-            PaymentIntent paymentIntent = PaymentIntent.create(paramsBuilder.build());
-            return paymentIntent.getId();
-        } catch (StripeException e) {
-            throw new RuntimeException("Error creating payment intent: " + e.getMessage(), e);
+    public PaymentIntentResult createPaymentIntent(BigDecimal amount, String currency, String customerId, String idempotencyKey) {
+        long amountInCents = amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue();
+        
+        PaymentIntentCreateParams.Builder paramsBuilder = PaymentIntentCreateParams.builder()
+                .setCurrency(currency)
+                .setAmount(amountInCents)
+                .setDescription("Ride payment");
+        
+        if (customerId != null && !customerId.isEmpty()) {
+            paramsBuilder.setCustomer(customerId);
         }
+
+        RequestOptions options = RequestOptions.builder()
+                .setIdempotencyKey(idempotencyKey)
+                .build();
+
+        PaymentIntent paymentIntent = call("create_payment_intent", "Error creating payment intent",
+                () -> stripeClient.paymentIntents().create(paramsBuilder.build(), options));
+        return toResult(paymentIntent);
     }
 
     @Override
     public String getPublishableKey() {
         return publishableKey;
     }
-} 
\ No newline at end of file
+
+    private <T> T call(String operation, String errorMessage, StripeCall<T> stripeCall) {
+        // Begun before the breaker, so a recording also shows time spent waiting on the bulkhead
+        ExternalCallEvent event = new ExternalCallEvent();
+        event.begin();
+        // Check the breaker first, so an open circuit fails without waiting on the bulkhead
+        if (!circuitBreaker.tryAcquirePermission()) {
+            shortCircuits.increment();
+            commit(event, operation, "short_circuited");
+            throw new PaymentGatewayException(errorMessage + ": payment provider is unavailable", true, null);
+        }
+
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire(bulkheadWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            circuitBreaker.releasePermission();
+            commit(event, operation, "interrupted");
+            throw new PaymentGatewayException(errorMessage + ": interrupted", true, e);
+        }
+        if (!acquired) {
+            circuitBreaker.releasePermission();
+            bulkheadRejections.increment();
+            commit(event, operation, "bulkhead_full");
+            throw new PaymentGatewayException(errorMessage + ": payment provider is busy", true, null);
+        }
+
+        long start = System.nanoTime();
+        try {
+            T result = stripeCall.execute();
+            long duration = System.nanoTime() - start;
+            circuitBreaker.onResult(false, duration);
+            record(event, operation, "success", duration);
+            return result;
+        } catch (StripeException e) {
+            long duration = System.nanoTime() - start;
+            boolean retryable = isRetryable(e);
+            // Client errors such as declined cards say nothing about Stripe's health
+            circuitBreaker.onResult(retryable, duration);
+            record(event, operation, retryable ? "error" : "rejected_by_stripe", duration);
+            throw new PaymentGatewayException(errorMessage + ": " + e.getMessage(), retryable, e);
+        } catch (RuntimeException e) {
+            long duration = System.nanoTime() - start;
+            circuitBreaker.onResult(true, duration);
+            record(event, operation, "error", duration);
+            throw new PaymentGatewayException(errorMessage + ": " + e.getMessage(), true, e);
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    private void record(ExternalCallEvent event, String operation, String outcome, long durationNanos) {
+        commit(event, operation, outcome);
+        Timer.builder("payment.gateway.calls")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static void commit(ExternalCallEvent event, String operation, String outcome) {
+        if (event.shouldCommit()) {
+            event.system = "stripe";
+            event.operation = operation;
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+
+    private PaymentIntentResult toResult(PaymentIntent paymentIntent) {
+        return new PaymentIntentResult(paymentIntent.getId(), paymentIntent.getClientSecret(), paymentIntent.getStatus());
+    }
+
+    private boolean isRetryable(StripeException e) {
+        // Network failures, throttling and Stripe-side errors are safe to retry with the same idempotency key
+        return e instanceof ApiConnectionException
+                || e instanceof RateLimitException
+                || e instanceof ApiException
+                || (e.getStatusCode() != null && e.getStatusCode() >= 500);
+    }
+
+    @FunctionalInterface
+    private interface StripeCall<T> {
+        T execute() throws StripeException;
+    }
+}
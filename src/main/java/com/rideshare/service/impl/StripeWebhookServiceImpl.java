@@ -0,0 +1,293 @@
+package com.rideshare.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rideshare.exception.RideException;
+import com.rideshare.exception.ServiceUnavailableException;
+import com.rideshare.model.StripeWebhookEvent;
+import com.rideshare.model.WebhookEventStatus;
+import com.rideshare.repository.RideRepository;
+import com.rideshare.repository.StripeWebhookEventRepository;
+import com.rideshare.service.RideVersionService;
+import com.rideshare.service.StripeWebhookService;
+import com.stripe.exception.SignatureVerificationException;
+import com.stripe.net.Webhook;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingests Stripe webhooks without holding Tomcat threads. Verified events are
+ * queued and written by a single writer thread in group commits. The request
+ * is acknowledged once its batch commits. Redeliveries of recent events are
+ * answered from a bounded in-memory set without touching the database. A
+ * scheduled consumer applies payment_intent events to rides in bulk updates.
+ */
+@Service
+public class StripeWebhookServiceImpl implements StripeWebhookService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StripeWebhookServiceImpl.class);
+
+    private static final String PAYMENT_INTENT_PREFIX = "payment_intent.";
+    private static final String PAYMENT_INTENT_SUCCEEDED = "payment_intent.succeeded";
+    private static final long RETRY_AFTER_SECONDS = 5;
+
+    private final StripeWebhookEventRepository eventRepository;
+    private final RideRepository rideRepository;
+    private final RideVersionService rideVersionService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    private final String webhookSecret;
+    private final long toleranceSeconds;
+    private final int batchSize;
+    private final Clock clock;
+
+    private final BlockingQueue<PendingEvent> queue;
+    private final RecentIdSet recentEventIds;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public StripeWebhookServiceImpl(StripeWebhookEventRepository eventRepository,
+                                    RideRepository rideRepository,
+                                    RideVersionService rideVersionService,
+                                    ObjectMapper objectMapper,
+                                    PlatformTransactionManager transactionManager,
+                                    Clock clock,
+                                    @Value("${stripe.webhook.secret}") String webhookSecret,
+                                    @Value("${stripe.webhook.tolerance:300}") long toleranceSeconds,
+                                    @Value("${stripe.webhook.queue-capacity:10000}") int queueCapacity,
+                                    @Value("${stripe.webhook.batch-size:500}") int batchSize,
+                                    @Value("${stripe.webhook.dedupe-size:100000}") int dedupeSize) {
+        this.eventRepository = eventRepository;
+        this.rideRepository = rideRepository;
+        this.rideVersionService = rideVersionService;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.webhookSecret = webhookSecret;
+        this.toleranceSeconds = toleranceSeconds;
+        this.batchSize = batchSize;
+        this.clock = clock;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.recentEventIds = new RecentIdSet(dedupeSize);
+
+        this.writer = new Thread(this::writeLoop, "stripe-webhook-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public CompletableFuture<Void> ingest(String payload, String signatureHeader) {
+        try {
+            Webhook.Signature.verifyHeader(payload, signatureHeader, webhookSecret, toleranceSeconds);
+        } catch (SignatureVerificationException e) {
+            throw new RideException("Invalid webhook signature");
+        }
+
+        StripeWebhookEvent event = toEvent(payload);
+
+        // Stripe retries aggressively during incidents; answer repeats without any I/O
+        if (recentEventIds.contains(event.getEventId())) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        PendingEvent pending = new PendingEvent(event);
+        if (!queue.offer(pending)) {
+            // Stripe will redeliver, so shedding here loses nothing
+            throw new ServiceUnavailableException("Webhook queue is full", RETRY_AFTER_SECONDS);
+        }
+        return pending.persisted;
+    }
+
+    /**
+     * Apply stored payment_intent events to rides in bulk
+     */
+    @Scheduled(fixedDelayString = "${stripe.webhook.consumer-interval:200}")
+    public void applyReceivedEvents() {
+        List<StripeWebhookEvent> events;
+        do {
+            events = eventRepository.findByStatusOrderByIdAsc(WebhookEventStatus.RECEIVED, PageRequest.of(0, batchSize));
+            if (events.isEmpty()) {
+                return;
+            }
+            applyBatch(events);
+        } while (events.size() == batchSize);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        writer.interrupt();
+    }
+
+    private void applyBatch(List<StripeWebhookEvent> events) {
+        Set<String> succeededIntents = new LinkedHashSet<>();
+        List<Long> processed = new ArrayList<>();
+        List<Long> ignored = new ArrayList<>();
+
+        for (StripeWebhookEvent event : events) {
+            if (event.getType().startsWith(PAYMENT_INTENT_PREFIX)) {
+                processed.add(event.getId());
+                // Only success changes a ride; other states leave it unpaid, whatever order they arrive in
+                if (PAYMENT_INTENT_SUCCEEDED.equals(event.getType()) && event.getObjectId() != null) {
+                    succeededIntents.add(event.getObjectId());
+                }
+            } else {
+                ignored.add(event.getId());
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            LocalDateTime now = LocalDateTime.now(clock);
+            if (!succeededIntents.isEmpty()) {
+                List<String> paymentIntentIds = new ArrayList<>(succeededIntents);
+                if (rideRepository.markPaidByPaymentIntentIds(paymentIntentIds, now) > 0) {
+                    rideVersionService.invalidate(rideRepository.findIdsByPaymentIntentIds(paymentIntentIds));
+                }
+            }
+            if (!processed.isEmpty()) {
+                eventRepository.updateStatus(processed, WebhookEventStatus.PROCESSED, now);
+            }
+            if (!ignored.isEmpty()) {
+                eventRepository.updateStatus(ignored, WebhookEventStatus.IGNORED, now);
+            }
+        });
+    }
+
+    private StripeWebhookEvent toEvent(String payload) {
+        JsonNode root;
+        try {
+            root = objectMapper.readTree(payload);
+        } catch (IOException e) {
+            throw new RideException("Invalid webhook payload");
+        }
+
+        String eventId = root.path("id").asText(null);
+        String type = root.path("type").asText(null);
+        if (eventId == null || type == null) {
+            throw new RideException("Invalid webhook payload");
+        }
+
+        StripeWebhookEvent event = new StripeWebhookEvent();
+        event.setEventId(eventId);
+        event.setType(type);
+        event.setObjectId(root.path("data").path("object").path("id").asText(null));
+        event.setPayload(payload);
+        event.setStatus(WebhookEventStatus.RECEIVED);
+        return event;
+    }
+
+    private void writeLoop() {
+        List<PendingEvent> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                PendingEvent first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                persist(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Error persisting webhook batch", e);
+                batch.forEach(pending -> pending.persisted.completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void persist(List<PendingEvent> batch) {
+        try {
+            // One transaction, and so one commit, for the whole batch
+            transactionTemplate.executeWithoutResult(status ->
+                eventRepository.saveAll(batch.stream().map(pending -> pending.event).toList()));
+        } catch (DataIntegrityViolationException e) {
+            // A duplicate is somewhere in the batch; fall back to one insert per event
+            batch.forEach(this::persistOne);
+            return;
+        }
+
+        batch.forEach(this::markPersisted);
+    }
+
+    private void persistOne(PendingEvent pending) {
+        try {
+            pending.event.setId(null);
+            transactionTemplate.executeWithoutResult(status -> eventRepository.save(pending.event));
+        } catch (DataIntegrityViolationException e) {
+            // Already stored by an earlier delivery
+        } catch (RuntimeException e) {
+            pending.persisted.completeExceptionally(e);
+            return;
+        }
+        markPersisted(pending);
+    }
+
+    private void markPersisted(PendingEvent pending) {
+        recentEventIds.add(pending.event.getEventId());
+        pending.persisted.complete(null);
+    }
+
+    private static final class PendingEvent {
+        private final StripeWebhookEvent event;
+        private final CompletableFuture<Void> persisted = new CompletableFuture<>();
+
+        private PendingEvent(StripeWebhookEvent event) {
+            this.event = event;
+        }
+    }
+
+    /**
+     * Bounded set of recently stored event IDs; the oldest ID is evicted first
+     */
+    private static final class RecentIdSet {
+        private final int capacity;
+        private final Set<String> ids;
+        private final ArrayDeque<String> order;
+
+        private RecentIdSet(int capacity) {
+            this.capacity = capacity;
+            this.ids = new HashSet<>(capacity * 2);
+            this.order = new ArrayDeque<>(capacity);
+        }
+
+        private synchronized boolean contains(String id) {
+            return ids.contains(id);
+        }
+
+        private synchronized void add(String id) {
+            if (!ids.add(id)) {
+                return;
+            }
+            order.addLast(id);
+            if (order.size() > capacity) {
+                ids.remove(order.removeFirst());
+            }
+        }
+    }
+}
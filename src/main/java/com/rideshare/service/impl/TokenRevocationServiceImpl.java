@@ -0,0 +1,261 @@
+package com.rideshare.service.impl;
+
+import com.rideshare.service.TokenRevocationService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps revoked token ids in memory so the auth filter can check them without I/O.
+ * A bloom filter answers the common "not revoked" case, and an exact map of
+ * token id to expiry confirms positives. Entries are dropped once the token
+ * would have expired.
+ *
+ * Every revocation is appended to a journal and synced before it is reported,
+ * so a logout or a spent refresh token survives a crash. The purge folds the
+ * journal into a compact snapshot file and starts a new journal.
+ */
+@Service
+public class TokenRevocationServiceImpl implements TokenRevocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationServiceImpl.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x52564b31; // "RVK1"
+    // Same layout as a snapshot entry: 16-byte token id, then the 8-byte expiry
+    private static final int JOURNAL_RECORD_BYTES = 24;
+
+    private final Path snapshotPath;
+    private final Path journalPath;
+    private final int expectedEntries;
+    private final Clock clock;
+
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+    private volatile BloomFilter bloomFilter;
+    private FileChannel journal;
+    // A lock rather than synchronized: journal and snapshot writes block on disk, which would pin a virtual thread
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public TokenRevocationServiceImpl(@Value("${jwt.revocation.snapshot-path:data/revoked-tokens.bin}") String snapshotPath,
+                                      @Value("${jwt.revocation.expected-entries:100000}") int expectedEntries,
+                                      Clock clock) {
+        this.snapshotPath = Paths.get(snapshotPath);
+        this.journalPath = this.snapshotPath.resolveSibling(this.snapshotPath.getFileName() + ".journal");
+        this.expectedEntries = expectedEntries;
+        this.clock = clock;
+        this.bloomFilter = new BloomFilter(expectedEntries);
+        loadSnapshot();
+        replayJournal();
+        openJournal();
+    }
+
+    @Override
+    public boolean revoke(String tokenId, long expiresAtMillis) {
+        lock.lock();
+        try {
+            if (expiresAtMillis <= clock.millis() || revoked.putIfAbsent(tokenId, expiresAtMillis) != null) {
+                return false;
+            }
+            bloomFilter.add(tokenId);
+            appendToJournal(tokenId, expiresAtMillis);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isRevoked(String tokenId) {
+        if (tokenId == null || !bloomFilter.mightContain(tokenId)) {
+            return false;
+        }
+        return revoked.containsKey(tokenId);
+    }
+
+    /**
+     * Drop expired entries and rebuild the bloom filter, since bits cannot be cleared
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.purge-interval:60000}")
+    public void purgeExpired() {
+        lock.lock();
+        try {
+            long now = clock.millis();
+            revoked.values().removeIf(expiresAt -> expiresAt <= now);
+
+            BloomFilter rebuilt = new BloomFilter(Math.max(expectedEntries, revoked.size()));
+            revoked.keySet().forEach(rebuilt::add);
+            bloomFilter = rebuilt;
+
+            saveSnapshot();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write the whole set to the snapshot file, then empty the journal it now covers
+     */
+    public void saveSnapshot() {
+        lock.lock();
+        try {
+            Path parent = snapshotPath.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+
+            // Write to a temp file and move it into place, so a crash never leaves a torn snapshot
+            Path temp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(revoked.size());
+                for (Map.Entry<String, Long> entry : revoked.entrySet()) {
+                    // Token ids are UUIDs, so store them as 16 raw bytes
+                    UUID id = UUID.fromString(entry.getKey());
+                    out.writeLong(id.getMostSignificantBits());
+                    out.writeLong(id.getLeastSignificantBits());
+                    out.writeLong(entry.getValue());
+                }
+            }
+            // The journal is emptied next, so the snapshot must be on disk first
+            try (FileChannel written = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                written.force(true);
+            }
+            Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            // A crash before this truncate only replays entries the snapshot already has
+            if (journal != null) {
+                journal.truncate(0);
+                journal.force(true);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("Error saving token revocation snapshot: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        lock.lock();
+        try {
+            saveSnapshot();
+            if (journal != null) {
+                journal.close();
+                journal = null;
+            }
+        } catch (IOException e) {
+            logger.error("Error closing token revocation journal: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void appendToJournal(String tokenId, long expiresAtMillis) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            UUID id = UUID.fromString(tokenId);
+            ByteBuffer record = ByteBuffer.allocate(JOURNAL_RECORD_BYTES)
+                    .putLong(id.getMostSignificantBits())
+                    .putLong(id.getLeastSignificantBits())
+                    .putLong(expiresAtMillis)
+                    .flip();
+            while (record.hasRemaining()) {
+                journal.write(record);
+            }
+            journal.force(false);
+        } catch (IOException | IllegalArgumentException e) {
+            // The revocation still holds on this node; only a restart before the next snapshot would lose it
+            logger.error("Error appending to token revocation journal: {}", e.getMessage());
+        }
+    }
+
+    private void openJournal() {
+        try {
+            Path parent = journalPath.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            journal = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            // Drop a record torn by a crash, so the next append starts on a record boundary
+            long torn = journal.size() % JOURNAL_RECORD_BYTES;
+            if (torn != 0) {
+                journal.truncate(journal.size() - torn);
+            }
+        } catch (IOException e) {
+            logger.error("Error opening token revocation journal, revocations will only be saved by snapshot: {}", e.getMessage());
+        }
+    }
+
+    private void loadSnapshot() {
+        if (!Files.exists(snapshotPath)) {
+            return;
+        }
+
+        long now = clock.millis();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                logger.warn("Ignoring token revocation snapshot with unknown format: {}", snapshotPath);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                restore(new UUID(in.readLong(), in.readLong()).toString(), in.readLong(), now);
+            }
+            logger.info("Loaded {} revoked tokens from {}", revoked.size(), snapshotPath);
+        } catch (IOException e) {
+            logger.error("Error loading token revocation snapshot: {}", e.getMessage());
+        }
+    }
+
+    private void replayJournal() {
+        if (!Files.exists(journalPath)) {
+            return;
+        }
+
+        long now = clock.millis();
+        int replayed = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(journalPath)))) {
+            while (true) {
+                restore(new UUID(in.readLong(), in.readLong()).toString(), in.readLong(), now);
+                replayed++;
+            }
+        } catch (EOFException e) {
+            // End of the journal, or a record torn by a crash mid-append, which was never reported as revoked
+        } catch (IOException e) {
+            logger.error("Error replaying token revocation journal: {}", e.getMessage());
+        }
+        if (replayed > 0) {
+            logger.info("Replayed {} token revocations from {}", replayed, journalPath);
+        }
+    }
+
+    private void restore(String tokenId, long expiresAt, long now) {
+        if (expiresAt > now) {
+            revoked.put(tokenId, expiresAt);
+            bloomFilter.add(tokenId);
+        }
+    }
+}
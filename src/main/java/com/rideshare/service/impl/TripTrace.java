@@ -0,0 +1,226 @@
+package com.rideshare.service.impl;
+
+import com.rideshare.dto.TracePoint;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Append-only GPS trace of one ride. Coordinates are kept as fixed-point
+ * integers (1e-5 degrees, about 1 m) and times in milliseconds. Each point is
+ * stored as the change in its delta from the previous point, zigzag varint
+ * encoded. At a steady speed these deltas are near zero, so most points take
+ * three or four bytes before the finished blob is deflated.
+ * Not thread-safe; callers lock the instance.
+ */
+class TripTrace {
+
+    static final int ENCODING = 1;
+
+    private static final double SCALE = 1e5;
+    private static final double EARTH_RADIUS_METERS = 6_371_000;
+
+    private final double minStepMeters;
+    private final double maxSpeedMetersPerSecond;
+    private final int maxBytes;
+
+    private byte[] data = new byte[1024];
+    private int size;
+    private int pointCount;
+
+    private int lastLat;
+    private int lastLng;
+    private long lastTime;
+    private long lastDeltaLat;
+    private long lastDeltaLng;
+    private long lastDeltaTime;
+
+    private long firstTime;
+    private double distanceMeters;
+
+    TripTrace(double minStepMeters, double maxSpeedMetersPerSecond, int maxBytes) {
+        this.minStepMeters = minStepMeters;
+        this.maxSpeedMetersPerSecond = maxSpeedMetersPerSecond;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return True if the point was recorded; false if it was a duplicate, out of
+     *         order, within GPS noise of the last point, an impossible jump, or the trace is full
+     */
+    boolean append(double latitude, double longitude, long time) {
+        int lat = (int) Math.round(latitude * SCALE);
+        int lng = (int) Math.round(longitude * SCALE);
+
+        double meters = 0;
+        if (pointCount > 0) {
+            if (time <= lastTime) {
+                return false;
+            }
+            meters = distanceInMeters(lastLat / SCALE, lastLng / SCALE, lat / SCALE, lng / SCALE);
+            if (meters < minStepMeters || meters / ((time - lastTime) / 1000.0) > maxSpeedMetersPerSecond) {
+                return false;
+            }
+        }
+        // Three varints of at most 10 bytes each
+        if (size + 30 > maxBytes) {
+            return false;
+        }
+
+        long deltaLat = lat - lastLat;
+        long deltaLng = lng - lastLng;
+        long deltaTime = time - lastTime;
+        writeVarint(zigzag(deltaLat - lastDeltaLat));
+        writeVarint(zigzag(deltaLng - lastDeltaLng));
+        writeVarint(zigzag(deltaTime - lastDeltaTime));
+
+        if (pointCount == 0) {
+            firstTime = time;
+            // The first point is stored absolute; deltas start from the second
+            deltaLat = 0;
+            deltaLng = 0;
+            deltaTime = 0;
+        }
+        lastDeltaLat = deltaLat;
+        lastDeltaLng = deltaLng;
+        lastDeltaTime = deltaTime;
+        lastLat = lat;
+        lastLng = lng;
+        lastTime = time;
+        distanceMeters += meters;
+        pointCount++;
+        return true;
+    }
+
+    int getPointCount() {
+        return pointCount;
+    }
+
+    double getDistanceMeters() {
+        return distanceMeters;
+    }
+
+    long getDurationMillis() {
+        return pointCount > 1 ? lastTime - firstTime : 0;
+    }
+
+    /**
+     * @return The encoded points, deflated
+     */
+    byte[] toBlob() {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(data, 0, size);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(size / 2 + 64);
+            byte[] chunk = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * @return The points of a trace, uncompressed and decoded
+     */
+    List<TracePoint> toPoints() {
+        return decode(Arrays.copyOf(data, size), pointCount);
+    }
+
+    static List<TracePoint> fromBlob(byte[] blob, int pointCount) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(blob);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(blob.length * 3);
+            byte[] chunk = new byte[4096];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(chunk);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated trace");
+                }
+                out.write(chunk, 0, n);
+            }
+            return decode(out.toByteArray(), pointCount);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt trace", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static List<TracePoint> decode(byte[] encoded, int pointCount) {
+        List<TracePoint> points = new ArrayList<>(pointCount);
+        int[] position = {0};
+        long lat = 0;
+        long lng = 0;
+        long time = 0;
+        long deltaLat = 0;
+        long deltaLng = 0;
+        long deltaTime = 0;
+        for (int i = 0; i < pointCount; i++) {
+            deltaLat += unzigzag(readVarint(encoded, position));
+            deltaLng += unzigzag(readVarint(encoded, position));
+            deltaTime += unzigzag(readVarint(encoded, position));
+            lat += deltaLat;
+            lng += deltaLng;
+            time += deltaTime;
+            if (i == 0) {
+                deltaLat = 0;
+                deltaLng = 0;
+                deltaTime = 0;
+            }
+            points.add(new TracePoint(lat / SCALE, lng / SCALE, time));
+        }
+        return points;
+    }
+
+    private void writeVarint(long value) {
+        if (size + 10 > data.length) {
+            data = Arrays.copyOf(data, Math.min(Math.max(data.length * 2, size + 10), maxBytes));
+        }
+        while ((value & ~0x7FL) != 0) {
+            data[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[size++] = (byte) value;
+    }
+
+    private static long readVarint(byte[] encoded, int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = encoded[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static double distanceInMeters(double lat1, double lon1, double lat2, double lon2) {
+        double latDistance = Math.toRadians(lat2 - lat1);
+        double lonDistance = Math.toRadians(lon2 - lon1);
+
+        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
+
+        return EARTH_RADIUS_METERS * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+}
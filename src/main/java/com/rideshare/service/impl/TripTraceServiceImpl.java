@@ -0,0 +1,257 @@
+package com.rideshare.service.impl;
+
+import com.rideshare.dto.TraceChunkRow;
+import com.rideshare.dto.TracePoint;
+import com.rideshare.exception.RideException;
+import com.rideshare.model.Ride;
+import com.rideshare.model.RideStatus;
+import com.rideshare.model.RideTrace;
+import com.rideshare.model.RideTraceChunk;
+import com.rideshare.repository.RideRepository;
+import com.rideshare.repository.RideTraceChunkRepository;
+import com.rideshare.repository.RideTraceRepository;
+import com.rideshare.service.TripTraceService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records driver GPS fixes for in-progress rides. Each batch is filtered against
+ * a per-ride buffer on this node, then appended to the database as one encoded
+ * chunk, so fixes received by different nodes all reach the bill. The database
+ * is only read for the first fix of a ride on this node; completing the ride
+ * merges the chunks in time order into a single stored trace.
+ */
+@Service
+public class TripTraceServiceImpl implements TripTraceService {
+
+    private static final long MAX_CLOCK_SKEW_MILLIS = 60_000;
+
+    private final RideRepository rideRepository;
+    private final RideTraceRepository rideTraceRepository;
+    private final RideTraceChunkRepository rideTraceChunkRepository;
+    private final Clock clock;
+
+    private final double minStepMeters;
+    private final double maxSpeedMetersPerSecond;
+    private final int maxBytesPerRide;
+    private final int maxPointsPerRequest;
+    private final long abandonAfterMillis;
+
+    private final ConcurrentHashMap<Long, ActiveTrace> activeTraces = new ConcurrentHashMap<>();
+
+    private final Counter recordedPoints;
+    private final Counter skippedPoints;
+
+    public TripTraceServiceImpl(RideRepository rideRepository,
+                                RideTraceRepository rideTraceRepository,
+                                RideTraceChunkRepository rideTraceChunkRepository,
+                                MeterRegistry meterRegistry,
+                                Clock clock,
+                                @Value("${rides.trace.min-step-meters:3}") double minStepMeters,
+                                @Value("${rides.trace.max-speed:70}") double maxSpeedMetersPerSecond,
+                                @Value("${rides.trace.max-bytes-per-ride:262144}") int maxBytesPerRide,
+                                @Value("${rides.trace.max-points-per-request:600}") int maxPointsPerRequest,
+                                @Value("${rides.trace.abandon-after:21600000}") long abandonAfterMillis) {
+        this.rideRepository = rideRepository;
+        this.rideTraceRepository = rideTraceRepository;
+        this.rideTraceChunkRepository = rideTraceChunkRepository;
+        this.clock = clock;
+        this.minStepMeters = minStepMeters;
+        this.maxSpeedMetersPerSecond = maxSpeedMetersPerSecond;
+        this.maxBytesPerRide = maxBytesPerRide;
+        this.maxPointsPerRequest = maxPointsPerRequest;
+        this.abandonAfterMillis = abandonAfterMillis;
+
+        this.recordedPoints = Counter.builder("rides.trace.points")
+                .tag("outcome", "recorded")
+                .register(meterRegistry);
+        this.skippedPoints = Counter.builder("rides.trace.points")
+                .tag("outcome", "skipped")
+                .register(meterRegistry);
+        Gauge.builder("rides.trace.active", activeTraces, Map::size)
+                .description("Rides with a GPS trace buffered on this node")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public int record(Long rideId, Long driverId, List<TracePoint> points) {
+        if (points == null || points.isEmpty()) {
+            return 0;
+        }
+        if (points.size() > maxPointsPerRequest) {
+            throw new RideException("Too many points in one request");
+        }
+
+        ActiveTrace active = activeTraces.get(rideId);
+        if (active == null) {
+            active = startTrace(rideId, driverId);
+        }
+        if (!active.driverId.equals(driverId)) {
+            throw new RideException("Only the assigned driver can record this ride's route");
+        }
+
+        long now = clock.millis();
+        // Points that passed the buffer's checks are already spaced and ordered, so the chunk does not filter
+        TripTrace chunk = new TripTrace(0, Double.MAX_VALUE, maxBytesPerRide);
+        synchronized (active.trace) {
+            for (TracePoint point : points) {
+                long time = point != null && point.getTimestamp() != null ? point.getTimestamp() : now;
+                if (isValid(point, now)
+                        && active.trace.append(point.getLatitude(), point.getLongitude(), time)) {
+                    chunk.append(point.getLatitude(), point.getLongitude(), time);
+                }
+            }
+        }
+        active.lastActivity = now;
+
+        int recorded = chunk.getPointCount();
+        if (recorded > 0) {
+            RideTraceChunk stored = new RideTraceChunk();
+            stored.setRideId(rideId);
+            stored.setEncoding(TripTrace.ENCODING);
+            stored.setPointCount(recorded);
+            stored.setData(chunk.toBlob());
+            rideTraceChunkRepository.save(stored);
+        }
+
+        recordedPoints.increment(recorded);
+        skippedPoints.increment(points.size() - recorded);
+        return recorded;
+    }
+
+    @Override
+    public RideTrace finish(Ride ride) {
+        Long rideId = ride.getId();
+        List<TraceChunkRow> chunks = rideTraceChunkRepository.findRowsByRideId(rideId);
+        releaseAfterCommit(rideId, activeTraces.get(rideId));
+        if (chunks.isEmpty()) {
+            return null;
+        }
+
+        TripTrace merged = merge(chunks);
+        rideTraceChunkRepository.deleteByRideId(rideId);
+        if (merged.getPointCount() < 2) {
+            return null;
+        }
+
+        RideTrace rideTrace = new RideTrace();
+        rideTrace.setRideId(rideId);
+        rideTrace.setEncoding(TripTrace.ENCODING);
+        rideTrace.setPointCount(merged.getPointCount());
+        rideTrace.setDistanceMeters(merged.getDistanceMeters());
+        rideTrace.setDurationSeconds(merged.getDurationMillis() / 1000);
+        rideTrace.setData(merged.toBlob());
+        return rideTraceRepository.save(rideTrace);
+    }
+
+    @Override
+    public void discard(Long rideId) {
+        activeTraces.remove(rideId);
+        rideTraceChunkRepository.deleteByRideId(rideId);
+    }
+
+    @Override
+    public List<TracePoint> getTrace(Long rideId) {
+        return rideTraceRepository.findByRideId(rideId)
+                .map(rideTrace -> TripTrace.fromBlob(rideTrace.getData(), rideTrace.getPointCount()))
+                .orElseGet(() -> {
+                    List<TraceChunkRow> chunks = rideTraceChunkRepository.findRowsByRideId(rideId);
+                    return chunks.isEmpty() ? List.of() : merge(chunks).toPoints();
+                });
+    }
+
+    /**
+     * Free buffers of rides that stopped sending fixes and were never completed
+     */
+    @Scheduled(fixedDelayString = "${rides.trace.sweep-interval:600000}")
+    public void sweepAbandonedTraces() {
+        long cutoff = clock.millis() - abandonAfterMillis;
+        activeTraces.values().removeIf(active -> active.lastActivity < cutoff);
+    }
+
+    /**
+     * Chunks from different nodes can interleave in time, so the points are sorted and
+     * filtered again as one trace; overlapping fixes fall out as duplicates
+     */
+    private TripTrace merge(List<TraceChunkRow> chunks) {
+        List<TracePoint> points = new ArrayList<>();
+        for (TraceChunkRow chunk : chunks) {
+            points.addAll(TripTrace.fromBlob(chunk.getData(), chunk.getPointCount()));
+        }
+        points.sort(Comparator.comparing(TracePoint::getTimestamp));
+
+        TripTrace merged = new TripTrace(minStepMeters, maxSpeedMetersPerSecond, maxBytesPerRide);
+        for (TracePoint point : points) {
+            merged.append(point.getLatitude(), point.getLongitude(), point.getTimestamp());
+        }
+        return merged;
+    }
+
+    private void releaseAfterCommit(Long rideId, ActiveTrace active) {
+        if (active == null) {
+            return;
+        }
+        // Keep the buffer until the completion commits, so a rollback leaves its filter state intact
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    activeTraces.remove(rideId, active);
+                }
+            });
+        } else {
+            activeTraces.remove(rideId, active);
+        }
+    }
+
+    private ActiveTrace startTrace(Long rideId, Long driverId) {
+        // First fix for this ride on this node: check it once, then trust the buffer
+        Ride ride = rideRepository.findById(rideId)
+                .orElseThrow(() -> new RideException("Ride not found"));
+        if (ride.getStatus() != RideStatus.IN_PROGRESS) {
+            throw new RideException("Ride must be in IN_PROGRESS state to record its route");
+        }
+        if (ride.getDriver() == null || !ride.getDriver().getId().equals(driverId)) {
+            throw new RideException("Only the assigned driver can record this ride's route");
+        }
+
+        ActiveTrace created = new ActiveTrace(driverId,
+                new TripTrace(minStepMeters, maxSpeedMetersPerSecond, maxBytesPerRide), clock.millis());
+        ActiveTrace existing = activeTraces.putIfAbsent(rideId, created);
+        return existing != null ? existing : created;
+    }
+
+    private boolean isValid(TracePoint point, long now) {
+        // A clock far ahead would block every later fix, since fixes must move forward in time
+        return point != null
+                && (point.getTimestamp() == null || point.getTimestamp() <= now + MAX_CLOCK_SKEW_MILLIS)
+                && point.getLatitude() != null && point.getLongitude() != null
+                && point.getLatitude() >= -90 && point.getLatitude() <= 90
+                && point.getLongitude() >= -180 && point.getLongitude() <= 180;
+    }
+
+    private static final class ActiveTrace {
+        private final Long driverId;
+        private final TripTrace trace;
+        private volatile long lastActivity;
+
+        private ActiveTrace(Long driverId, TripTrace trace, long now) {
+            this.driverId = driverId;
+            this.trace = trace;
+            this.lastActivity = now;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.rideshare.service.impl;
 
+import com.rideshare.diagnostics.CandidateScanEvent;
 import com.rideshare.model.User;
 import com.rideshare.model.UserRole;
 import com.rideshare.repository.UserRepository;
@@ -48,7 +49,20 @@ public class UserServiceImpl implements UserService {
     public List<User> findNearbyDrivers(Double latitude, Double longitude, Double radiusInKm) {
         // This would typically use a spatial query or a distance calculation
         // For simplicity, we'll just return all drivers for now
-        return findByRole("DRIVER");
+        CandidateScanEvent scan = new CandidateScanEvent();
+        scan.begin();
+        List<User> users = userRepository.findAll();
+        List<User> drivers = users.stream()
+                .filter(user -> user.getRole() == UserRole.DRIVER)
+                .collect(Collectors.toList());
+        if (scan.shouldCommit()) {
+            scan.scan = "drivers";
+            scan.candidates = users.size();
+            scan.matches = drivers.size();
+            scan.radiusKm = radiusInKm != null ? radiusInKm : Double.NaN;
+            scan.commit();
+        }
+        return drivers;
     }
 
     @Override
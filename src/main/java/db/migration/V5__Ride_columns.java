@@ -0,0 +1,62 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Columns and the matching index added to rides since V1: the traced distance
+ * and duration, the settlement run that paid the driver, and the version that
+ * serves as the ride's ETag. A database kept up by ddl-auto: update may have
+ * some or all of them already, and MySQL has no "add column if not exists", so
+ * each one is checked before it is added.
+ */
+public class V5__Ride_columns extends BaseJavaMigration {
+
+    private static final String[][] COLUMNS = {
+            {"actual_distance", "decimal(38,2)"},
+            {"actual_duration", "integer"},
+            {"payout_run_id", "bigint"},
+            // Existing rides start at version 0
+            {"version", "BIGINT DEFAULT 0 not null"},
+    };
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        Connection connection = context.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            for (String[] column : COLUMNS) {
+                if (!hasColumn(connection, column[0])) {
+                    statement.execute("alter table rides add column " + column[0] + " " + column[1]);
+                }
+            }
+            if (!hasIndex(connection, "idx_rides_status_pickup")) {
+                statement.execute("create index idx_rides_status_pickup on rides (status, pickup_lat, pickup_lng)");
+            }
+        }
+    }
+
+    private static boolean hasColumn(Connection connection, String column) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet columns = metaData.getColumns(connection.getCatalog(), connection.getSchema(), "rides", column)) {
+            return columns.next();
+        }
+    }
+
+    private static boolean hasIndex(Connection connection, String index) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet indexes = metaData.getIndexInfo(connection.getCatalog(), connection.getSchema(), "rides", false, true)) {
+            while (indexes.next()) {
+                if (index.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+-- The schema ddl-auto built before any migrations existed. Column types follow
+-- what Hibernate generates for MySQL, so such databases baseline at this
+-- version unchanged.
+
+create table users (
+    id bigint not null auto_increment,
+    name varchar(255) not null,
+    email varchar(255) not null,
+    password varchar(255) not null,
+    role enum ('DRIVER','PASSENGER') not null,
+    phone_number varchar(255),
+    profile_picture varchar(255),
+    stripe_customer_id varchar(255),
+    rating float(53),
+    rating_count integer,
+    total_rides integer,
+    is_verified bit,
+    address TEXT,
+    driver_license varchar(255),
+    car_model varchar(255),
+    car_color varchar(255),
+    license_plate varchar(255),
+    car_year integer,
+    is_available bit,
+    created_at datetime(6),
+    updated_at datetime(6),
+    primary key (id),
+    constraint uk_users_email unique (email)
+) engine=InnoDB;
+
+create table rides (
+    id bigint not null auto_increment,
+    passenger_id bigint,
+    driver_id bigint,
+    second_passenger_id bigint,
+    pickup_location varchar(255) not null,
+    dropoff_location varchar(255) not null,
+    pickup_lat decimal(38,2),
+    pickup_lng decimal(38,2),
+    dropoff_lat decimal(38,2),
+    dropoff_lng decimal(38,2),
+    status enum ('REQUESTED','ACCEPTED','DRIVER_ARRIVING','DRIVER_ARRIVED','IN_PROGRESS','COMPLETED','CANCELLED','SCHEDULED') not null,
+    price decimal(38,2),
+    estimated_distance decimal(38,2),
+    estimated_duration integer,
+    ride_time datetime(6),
+    start_time datetime(6),
+    end_time datetime(6),
+    is_shared bit,
+    seats integer,
+    payment_intent_id varchar(255),
+    is_paid bit,
+    cancellation_reason varchar(255),
+    driver_rating float(53),
+    passenger_rating float(53),
+    driver_review TEXT,
+    passenger_review TEXT,
+    notes varchar(255),
+    created_at datetime(6),
+    updated_at datetime(6),
+    primary key (id),
+    constraint fk_rides_passenger foreign key (passenger_id) references users (id),
+    constraint fk_rides_driver foreign key (driver_id) references users (id),
+    constraint fk_rides_second_passenger foreign key (second_passenger_id) references users (id)
+) engine=InnoDB;
@@ -0,0 +1,29 @@
+-- Tables added after V1 use "if not exists": a database that ddl-auto: update
+-- kept up with the entities already has them when it is baselined at V1.
+-- Their indexes are declared inline so they come and go with the table.
+
+-- The GPS trace of a completed ride, which its fare is billed on
+create table if not exists ride_traces (
+    id bigint not null auto_increment,
+    ride_id bigint not null,
+    encoding integer not null,
+    point_count integer not null,
+    distance_meters float(53) not null,
+    duration_seconds bigint not null,
+    data MEDIUMBLOB not null,
+    created_at datetime(6),
+    primary key (id),
+    constraint uk_ride_traces_ride unique (ride_id)
+) engine=InnoDB;
+
+-- GPS fixes of in-progress rides, written by whichever node receives them
+create table if not exists ride_trace_chunks (
+    id bigint not null auto_increment,
+    ride_id bigint not null,
+    encoding integer not null,
+    point_count integer not null,
+    data MEDIUMBLOB not null,
+    created_at datetime(6),
+    primary key (id),
+    index idx_ride_trace_chunks_ride (ride_id, id)
+) engine=InnoDB;
@@ -0,0 +1,38 @@
+-- Payment intents waiting to be created at Stripe, and the webhook events Stripe sends back
+
+create table if not exists payment_outbox (
+    id bigint not null auto_increment,
+    ride_id bigint not null,
+    user_id bigint not null,
+    amount decimal(38,2) not null,
+    currency varchar(255) not null,
+    customer_id varchar(255),
+    idempotency_key varchar(255) not null,
+    status enum ('PENDING','IN_PROGRESS','SUCCEEDED','FAILED') not null,
+    attempts integer,
+    next_attempt_at datetime(6) not null,
+    payment_intent_id varchar(255),
+    client_secret varchar(255),
+    last_error varchar(255),
+    version bigint,
+    created_at datetime(6),
+    updated_at datetime(6),
+    primary key (id),
+    constraint uk_payment_outbox_idempotency_key unique (idempotency_key),
+    index idx_payment_outbox_due (status, next_attempt_at),
+    index idx_payment_outbox_ride (ride_id)
+) engine=InnoDB;
+
+create table if not exists stripe_webhook_events (
+    id bigint not null auto_increment,
+    event_id varchar(255) not null,
+    type varchar(255) not null,
+    object_id varchar(255),
+    payload LONGTEXT not null,
+    status enum ('RECEIVED','PROCESSED','IGNORED') not null,
+    received_at datetime(6),
+    processed_at datetime(6),
+    primary key (id),
+    constraint uk_stripe_webhook_events_event unique (event_id),
+    index idx_stripe_webhook_events_status (status, id)
+) engine=InnoDB;
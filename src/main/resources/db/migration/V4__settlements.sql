@@ -0,0 +1,27 @@
+-- Driver payouts: one row per settlement run, and one per driver paid in it
+
+create table if not exists settlement_runs (
+    id bigint not null auto_increment,
+    status enum ('RUNNING','COMPLETED','FAILED') not null,
+    checkpoint_ride_id bigint not null,
+    max_ride_id bigint not null,
+    rides_settled bigint,
+    total_paid_out decimal(38,2),
+    rides_per_second float(53),
+    version bigint,
+    started_at datetime(6),
+    finished_at datetime(6),
+    primary key (id)
+) engine=InnoDB;
+
+create table if not exists driver_payouts (
+    id bigint not null auto_increment,
+    run_id bigint not null,
+    driver_id bigint not null,
+    amount decimal(38,2) not null,
+    ride_count integer,
+    created_at datetime(6),
+    updated_at datetime(6),
+    primary key (id),
+    constraint uk_driver_payouts_run_driver unique (run_id, driver_id)
+) engine=InnoDB;
@@ -0,0 +1,138 @@
+package com.rideshare.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveLimitTest {
+
+    private static final long MILLISECOND = 1_000_000;
+
+    @Test
+    void growsWhileLatencyHoldsSteady() {
+        AdaptiveLimit limit = new AdaptiveLimit(20, 4, 200, 1.5);
+
+        // Barely used, the limit has nothing to learn from
+        for (int i = 0; i < 100; i++) {
+            call(limit, 1, MILLISECOND);
+        }
+        assertEquals(20, limit.getLimit());
+
+        for (int i = 0; i < 10; i++) {
+            call(limit, limit.getLimit(), MILLISECOND);
+        }
+        assertTrue(limit.getLimit() > 25, "limit was " + limit.getLimit());
+        for (int i = 0; i < 500; i++) {
+            call(limit, limit.getLimit(), MILLISECOND);
+        }
+        assertEquals(200, limit.getLimit());
+    }
+
+    @Test
+    void shrinksWhenLatencyRisesPastTheTolerance() {
+        AdaptiveLimit limit = new AdaptiveLimit(200, 4, 200, 1.5);
+        for (int i = 0; i < 100; i++) {
+            call(limit, limit.getLimit(), 10 * MILLISECOND);
+        }
+        assertEquals(200, limit.getLimit());
+
+        // Within 1.5 times the baseline the limit holds
+        for (int i = 0; i < 100; i++) {
+            call(limit, limit.getLimit(), 14 * MILLISECOND);
+        }
+        assertEquals(200, limit.getLimit());
+
+        for (int i = 0; i < 50; i++) {
+            call(limit, limit.getLimit(), 100 * MILLISECOND);
+        }
+        assertTrue(limit.getLimit() < 20, "limit was " + limit.getLimit());
+    }
+
+    @Test
+    void backsOffOnEveryDroppedCall() throws Exception {
+        AdaptiveLimit limit = new AdaptiveLimit(1000, 1, 1000, 1.5);
+        int threads = 4;
+        int dropsPerThread = 10;
+        CyclicBarrier start = new CyclicBarrier(threads);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                for (int i = 0; i < dropsPerThread; i++) {
+                    // Latency samples in between contend for the lock but leave this limit alone
+                    call(limit, 1, MILLISECOND);
+                    limit.release(limit.tryAcquire(), MILLISECOND, true);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        double expected = 1000;
+        for (int i = 0; i < threads * dropsPerThread; i++) {
+            expected *= 0.9;
+        }
+        assertEquals((int) expected, limit.getLimit());
+        assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    void backsOffWhileASampleIsBeingTaken() throws Exception {
+        AdaptiveLimit limit = new AdaptiveLimit(100, 4, 200, 1.5);
+        Field field = AdaptiveLimit.class.getDeclaredField("lock");
+        field.setAccessible(true);
+        ReentrantLock lock = (ReentrantLock) field.get(limit);
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        // Stands in for another completion folding in its latency sample
+        Thread sampler = new Thread(() -> {
+            lock.lock();
+            try {
+                held.countDown();
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                lock.unlock();
+            }
+        });
+        sampler.start();
+        held.await();
+
+        limit.release(limit.tryAcquire(), MILLISECOND, true);
+        limit.release(limit.tryAcquire(), MILLISECOND, true);
+        done.countDown();
+        sampler.join();
+
+        assertEquals(81, limit.getLimit());
+    }
+
+    @Test
+    void neverBacksOffBelowTheMinimum() {
+        AdaptiveLimit limit = new AdaptiveLimit(10, 4, 200, 1.5);
+        for (int i = 0; i < 50; i++) {
+            limit.release(limit.tryAcquire(), MILLISECOND, true);
+        }
+        assertEquals(4, limit.getLimit());
+    }
+
+    private static void call(AdaptiveLimit limit, int inFlightAtStart, long rttNanos) {
+        limit.tryAcquire();
+        limit.release(inFlightAtStart, rttNanos, false);
+    }
+}
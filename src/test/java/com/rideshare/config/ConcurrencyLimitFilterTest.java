@@ -0,0 +1,100 @@
+package com.rideshare.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ConcurrencyLimitFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(properties(), meterRegistry);
+
+    @Test
+    void shedsBrowsingWhileRideTransitionsNearTheirLimit() throws Exception {
+        List<Integer> browsing = new ArrayList<>();
+        List<Integer> transitions = new ArrayList<>();
+        // Each transition, while in flight, tries a browsing request and then starts the next
+        // transition, so the k-th browsing request runs with k transitions in flight
+        FilterChain transition = new FilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response) throws IOException, ServletException {
+                browsing.add(perform("GET", "/api/rides/nearby", new MockFilterChain()));
+                if (browsing.size() < 5) {
+                    transitions.add(perform("POST", "/api/rides/1/start", this));
+                }
+            }
+        };
+
+        assertEquals(200, perform("POST", "/api/rides/1/start", transition));
+
+        // Shed from 80% of the transitions' limit of 5, while the transitions themselves all get in
+        assertEquals(List.of(200, 200, 200, 503, 503), browsing);
+        assertEquals(List.of(200, 200, 200, 200), transitions);
+        assertEquals(2, rejected("ride-browsing", "priority"));
+        assertEquals(0, rejected("ride-transitions", "limit"));
+
+        // With the transitions done, browsing is let back in
+        assertEquals(200, perform("GET", "/api/rides/nearby", new MockFilterChain()));
+    }
+
+    @Test
+    void capsEachGroupAtItsOwnLimit() throws Exception {
+        List<Integer> statuses = new ArrayList<>();
+        FilterChain whileTwoInFlight = (request, response) -> {
+            statuses.add(perform("GET", "/api/rides/nearby", new MockFilterChain()));
+            statuses.add(perform("GET", "/api/rides/nearby", new MockFilterChain()));
+        };
+        FilterChain whileOneInFlight = (request, response) ->
+                statuses.add(perform("GET", "/api/rides/nearby", whileTwoInFlight));
+
+        assertEquals(200, perform("GET", "/api/rides/nearby", whileOneInFlight));
+
+        assertEquals(List.of(503, 503, 200), statuses);
+        assertEquals(2, rejected("ride-browsing", "limit"));
+        assertEquals(0, rejected("ride-browsing", "priority"));
+    }
+
+    private int perform(String method, String uri, FilterChain chain) throws IOException, ServletException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest(method, uri), response, chain);
+        return response.getStatus();
+    }
+
+    private double rejected(String group, String reason) {
+        return meterRegistry.get("http.concurrency.rejected").tag("group", group).tag("reason", reason).counter().count();
+    }
+
+    private static ConcurrencyLimitProperties properties() {
+        ConcurrencyLimitProperties.Group transitions = new ConcurrencyLimitProperties.Group();
+        transitions.setCritical(true);
+        transitions.setPaths(List.of("/api/rides/*/start"));
+        fixedLimit(transitions, 5);
+        ConcurrencyLimitProperties.Group browsing = new ConcurrencyLimitProperties.Group();
+        browsing.setPaths(List.of("/api/rides/nearby"));
+        browsing.setMethods(List.of("GET"));
+        fixedLimit(browsing, 2);
+
+        ConcurrencyLimitProperties properties = new ConcurrencyLimitProperties();
+        properties.getGroups().put("ride-transitions", transitions);
+        properties.getGroups().put("ride-browsing", browsing);
+        return properties;
+    }
+
+    private static void fixedLimit(ConcurrencyLimitProperties.Group group, int limit) {
+        group.setInitialLimit(limit);
+        group.setMinLimit(limit);
+        group.setMaxLimit(limit);
+    }
+}
@@ -0,0 +1,78 @@
+package com.rideshare.config;
+
+import com.rideshare.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RateLimitFilterTest {
+
+    private final RateLimitFilter filter = new RateLimitFilter(properties(), new SimpleMeterRegistry());
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void anAddressNeverSharesABucketWithAUser() throws Exception {
+        // An address whose hash is negative: its bitwise complement is a valid user ID
+        String address = null;
+        for (int i = 0; address == null; i++) {
+            String candidate = "10.0." + (i / 256) + "." + (i % 256);
+            if (candidate.hashCode() < 0) {
+                address = candidate;
+            }
+        }
+        User user = new User();
+        user.setId(~((long) address.hashCode()));
+
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(user, null, List.of()));
+        assertEquals(200, send("192.168.0.1"));
+        assertEquals(429, send("192.168.0.1"));
+
+        SecurityContextHolder.clearContext();
+        assertEquals(200, send(address));
+        assertEquals(429, send(address));
+    }
+
+    @Test
+    void rejectionsCarryRetryAfter() throws Exception {
+        send("192.168.0.2");
+        MockHttpServletResponse response = perform("192.168.0.2");
+        assertEquals(429, response.getStatus());
+        // The wait for the next token, rounded up to whole seconds
+        assertEquals("1000", response.getHeader("Retry-After"));
+    }
+
+    private int send(String remoteAddr) throws Exception {
+        return perform(remoteAddr).getStatus();
+    }
+
+    private MockHttpServletResponse perform(String remoteAddr) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/rides/nearby");
+        request.setRemoteAddr(remoteAddr);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private static RateLimitProperties properties() {
+        RateLimitProperties.Group group = new RateLimitProperties.Group();
+        group.setPaths(List.of("/api/rides/nearby"));
+        group.setCapacity(1);
+        group.setRefillPerSecond(0.001);
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.getGroups().put("ride-browsing", group);
+        return properties;
+    }
+}
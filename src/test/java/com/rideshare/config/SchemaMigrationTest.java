@@ -0,0 +1,137 @@
+package com.rideshare.config;
+
+import jakarta.persistence.Entity;
+import org.flywaydb.core.Flyway;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.jdbc.env.spi.NameQualifierSupport;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The migrations against the entities, the way a production node starts: Flyway
+ * migrates, then Hibernate validates. Runs on H2 in MySQL mode; each test gets
+ * its own database.
+ */
+class SchemaMigrationTest {
+
+    @Test
+    void migratesAnEmptyDatabase() throws Exception {
+        String url = url("empty");
+
+        assertEquals(5, flyway(url).migrate().migrationsExecuted);
+
+        flyway(url).validate();
+        hibernate(url, "validate");
+    }
+
+    @Test
+    void bringsABaselineDatabaseWithRidesUpToDate() throws Exception {
+        String url = url("baseline");
+        Flyway.configure().dataSource(url, "sa", "").target("1").load().migrate();
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("insert into users (name, email, password, role) values ('Driver', 'd@example.com', 'hash', 'DRIVER')");
+            statement.execute("insert into rides (driver_id, pickup_location, dropoff_location, status) values (1, 'A', 'B', 'COMPLETED')");
+        }
+
+        flyway(url).migrate();
+
+        hibernate(url, "validate");
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             ResultSet version = connection.createStatement().executeQuery("select version from rides")) {
+            assertTrue(version.next());
+            assertEquals(0, version.getLong(1));
+        }
+    }
+
+    @Test
+    void adoptsADatabaseThatDdlAutoKeptUpToDate() throws Exception {
+        // What a dev database looks like: every table and column already there, no schema history
+        String url = url("ddlauto");
+        hibernate(url, "update");
+
+        assertEquals(4, flyway(url).migrate().migrationsExecuted);
+
+        flyway(url).validate();
+        hibernate(url, "validate");
+    }
+
+    private static String url(String name) {
+        return "jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    }
+
+    /**
+     * Flyway as the production profile configures it
+     */
+    private static Flyway flyway(String url) {
+        return Flyway.configure()
+                .dataSource(url, "sa", "")
+                .baselineOnMigrate(true)
+                .baselineVersion("1")
+                .load();
+    }
+
+    /**
+     * Start Hibernate on the entities with Spring Boot's naming, which checks or updates the schema
+     */
+    private static void hibernate(String url, String ddlAuto) throws Exception {
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+                .applySetting(AvailableSettings.JAKARTA_JDBC_URL, url)
+                .applySetting(AvailableSettings.JAKARTA_JDBC_USER, "sa")
+                .applySetting(AvailableSettings.JAKARTA_JDBC_PASSWORD, "")
+                .applySetting(AvailableSettings.HBM2DDL_AUTO, ddlAuto)
+                .applySetting(AvailableSettings.DIALECT, MySqlOnH2Dialect.class.getName())
+                .applySetting(AvailableSettings.JAKARTA_HBM2DDL_DB_MAJOR_VERSION, 8)
+                .applySetting(AvailableSettings.DEFAULT_SCHEMA, "public")
+                .applySetting(AvailableSettings.PHYSICAL_NAMING_STRATEGY, CamelCaseToUnderscoresNamingStrategy.class.getName())
+                .applySetting(AvailableSettings.IMPLICIT_NAMING_STRATEGY, SpringImplicitNamingStrategy.class.getName())
+                .build();
+        try {
+            MetadataSources sources = new MetadataSources(registry);
+            ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+            scanner.addIncludeFilter(new AnnotationTypeFilter(Entity.class));
+            for (BeanDefinition entity : scanner.findCandidateComponents("com.rideshare.model")) {
+                sources.addAnnotatedClass(Class.forName(entity.getBeanClassName()));
+            }
+            sources.buildMetadata().buildSessionFactory().close();
+        } finally {
+            StandardServiceRegistryBuilder.destroy(registry);
+        }
+    }
+
+    /**
+     * The column types production sees, rather than what H2 itself would map the
+     * entities to. Tables are looked up in H2's schema, so information_schema.users
+     * is not taken for ours, and H2 reports the LONGTEXT it stores as varchar.
+     */
+    public static class MySqlOnH2Dialect extends MySQLDialect {
+
+        @Override
+        public NameQualifierSupport getNameQualifierSupport() {
+            return NameQualifierSupport.SCHEMA;
+        }
+
+        @Override
+        public boolean equivalentTypes(int typeCode1, int typeCode2) {
+            return super.equivalentTypes(typeCode1, typeCode2)
+                    || typeCode1 == Types.CLOB && typeCode2 == Types.VARCHAR;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.rideshare.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TokenBucketTableTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    // Five tokens of burst, refilled at two a second
+    private final TokenBucketTable table = new TokenBucketTable(1024, 5, 2.0);
+
+    @Test
+    void allowsTheBurstThenRejectsUntilTheNextEmission() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, table.tryAcquire(42, 0), "request " + i);
+        }
+        assertEquals(SECOND / 2, table.tryAcquire(42, 0));
+        // Rejections don't move the bucket, so the wait shrinks with time
+        assertEquals(SECOND / 4, table.tryAcquire(42, SECOND / 4));
+    }
+
+    @Test
+    void refillsOneTokenPerEmissionInterval() {
+        for (int i = 0; i < 5; i++) {
+            table.tryAcquire(42, 0);
+        }
+
+        assertEquals(0, table.tryAcquire(42, SECOND / 2));
+        assertEquals(SECOND / 2, table.tryAcquire(42, SECOND / 2));
+        assertEquals(0, table.tryAcquire(42, SECOND));
+        assertEquals(0, table.tryAcquire(42, SECOND * 3 / 2));
+    }
+
+    @Test
+    void refillStopsAtCapacity() {
+        table.tryAcquire(42, 0);
+
+        // A long idle spell earns no more than a full burst
+        long later = 60 * SECOND;
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, table.tryAcquire(42, later), "request " + i);
+        }
+        assertEquals(SECOND / 2, table.tryAcquire(42, later));
+    }
+
+    @Test
+    void keysHaveTheirOwnBuckets() {
+        for (int i = 0; i < 5; i++) {
+            table.tryAcquire(42, 0);
+        }
+        assertEquals(SECOND / 2, table.tryAcquire(42, 0));
+        assertEquals(0, table.tryAcquire(43, 0));
+    }
+}
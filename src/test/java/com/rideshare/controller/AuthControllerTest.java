@@ -0,0 +1,110 @@
+package com.rideshare.controller;
+
+import com.rideshare.exception.GlobalExceptionHandler;
+import com.rideshare.model.User;
+import com.rideshare.model.UserRole;
+import com.rideshare.repository.UserRepository;
+import com.rideshare.service.JwtService;
+import com.rideshare.service.impl.AuthServiceImpl;
+import com.rideshare.service.impl.PasswordHashingServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * A login storm against the real hashing pool, with BCrypt held so that
+ * nothing finishes during the burst: requests beyond the per-account limit
+ * or beyond the pool and its queue must get 429 at once.
+ */
+class AuthControllerTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private PasswordHashingServiceImpl hashing;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        PasswordEncoder slowEncoder = mock(PasswordEncoder.class);
+        when(slowEncoder.matches(anyString(), anyString())).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return false;
+        });
+        hashing = new PasswordHashingServiceImpl(slowEncoder, new SimpleMeterRegistry(), 2, 4, 2);
+
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findByEmail(anyString())).thenAnswer(invocation -> {
+            User user = new User();
+            user.setId(1L);
+            user.setEmail(invocation.getArgument(0));
+            user.setPassword("$2a$10$hash");
+            user.setRole(UserRole.PASSENGER);
+            return user;
+        });
+
+        AuthServiceImpl authService = new AuthServiceImpl(userRepository, hashing, mock(JwtService.class));
+        mockMvc = MockMvcBuilders.standaloneSetup(new AuthController(authService))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        hashing.shutdown();
+    }
+
+    @Test
+    void loginStormOnOneAccountGets429BeyondItsLimit() throws Exception {
+        assertAsync(login("target@example.com"));
+        assertAsync(login("target@example.com"));
+        for (int i = 0; i < 10; i++) {
+            assertRejected(login("target@example.com"));
+        }
+        // Other accounts still get a slot
+        assertAsync(login("someone@example.com"));
+    }
+
+    @Test
+    void loginStormBeyondThePoolGets429() throws Exception {
+        // Two threads and four queue slots admit six logins
+        for (int i = 0; i < 6; i++) {
+            assertAsync(login("user" + i + "@example.com"));
+        }
+        for (int i = 6; i < 50; i++) {
+            assertRejected(login("user" + i + "@example.com"));
+        }
+    }
+
+    private MvcResult login(String email) throws Exception {
+        return mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"" + email + "\",\"password\":\"secret1\"}"))
+                .andReturn();
+    }
+
+    private static void assertAsync(MvcResult result) {
+        assertTrue(result.getRequest().isAsyncStarted(), "expected the login to wait for its hash");
+    }
+
+    private static void assertRejected(MvcResult result) {
+        assertEquals(429, result.getResponse().getStatus());
+        assertEquals("1", result.getResponse().getHeader(HttpHeaders.RETRY_AFTER));
+    }
+}
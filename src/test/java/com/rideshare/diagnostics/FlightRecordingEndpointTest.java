@@ -0,0 +1,48 @@
+package com.rideshare.diagnostics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.core.io.Resource;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FlightRecordingEndpointTest {
+
+    private final FlightRecordingEndpoint endpoint = new FlightRecordingEndpoint(60_000, 16, 1);
+
+    @AfterEach
+    void tearDown() {
+        endpoint.close();
+    }
+
+    @Test
+    void eachDumpIsItsOwnFileAndGoesOnceRead() throws Exception {
+        assertEquals(WebEndpointResponse.STATUS_NOT_FOUND, endpoint.dump().getStatus());
+        endpoint.start(60L);
+
+        Resource first = endpoint.dump().getBody();
+        Resource second = endpoint.dump().getBody();
+        Path firstFile = first.getFile().toPath();
+        Path secondFile = second.getFile().toPath();
+        assertNotEquals(firstFile, secondFile);
+
+        // The second request does not disturb the first response, still being written
+        try (InputStream in = first.getInputStream()) {
+            assertTrue(in.readAllBytes().length > 0);
+        }
+        assertFalse(Files.exists(firstFile));
+        assertTrue(Files.exists(secondFile));
+
+        // A dump whose response never read it goes with the endpoint
+        endpoint.close();
+        assertFalse(Files.exists(secondFile));
+    }
+}
@@ -0,0 +1,371 @@
+package com.rideshare.diagnostics;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rideshare.controller.AuthController;
+import com.rideshare.controller.PaymentController;
+import com.rideshare.controller.RideController;
+import com.rideshare.model.Ride;
+import com.rideshare.repository.RideRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Drives every budgeted endpoint through its usual flow on H2 and fails when
+ * a request runs more statements or loads more entities than its QueryBudget
+ * allows. Hibernate's statistics count the whole session factory, so work a
+ * request hands to another thread, such as saving a user once its password
+ * is hashed or storing a webhook event, counts against it too.
+ *
+ * A budget is a ceiling, not an exact count: it covers the largest shape an
+ * endpoint serves, like a shared ride's second passenger or a long ride
+ * history, which these flows do not all build. Fewer statements pass; the
+ * failure message lists every statement that ran, to set a budget from.
+ */
+// A real server, since the WebSocket configuration needs a servlet container
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class QueryBudgetTest {
+
+    private static final List<Class<?>> BUDGETED_CONTROLLERS =
+            List.of(AuthController.class, RideController.class, PaymentController.class);
+    private static final long ASYNC_TIMEOUT_MILLIS = 10_000;
+    private static final AtomicInteger userCount = new AtomicInteger();
+    private static final Set<Method> measured = ConcurrentHashMap.newKeySet();
+    private static volatile boolean startupJobsDone;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    @Qualifier("requestMappingHandlerMapping")
+    private RequestMappingHandlerMapping handlerMapping;
+
+    @BeforeEach
+    void awaitStartupJobs() throws InterruptedException {
+        if (startupJobsDone) {
+            return;
+        }
+        // Each scheduled job runs once as the context starts; let them finish before anything is counted
+        long deadline = System.currentTimeMillis() + 10_000;
+        do {
+            Thread.sleep(250);
+        } while (!StatementLog.drain().isEmpty() && System.currentTimeMillis() < deadline);
+        startupJobsDone = true;
+    }
+
+    @Test
+    void authEndpoints() throws Exception {
+        String email = "rider" + userCount.incrementAndGet() + "@example.com";
+        JsonNode registered = json(perform(post("/api/auth/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body(Map.of("name", "Rider", "email", email, "password", "secret1",
+                        "phoneNumber", "555-0100", "role", "PASSENGER"))), 200));
+
+        perform(post("/api/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body(Map.of("email", email, "password", "secret1"))), 200);
+
+        JsonNode refreshed = json(perform(post("/api/auth/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body(Map.of("refreshToken", registered.path("refreshToken").asText()))), 200));
+
+        perform(post("/api/auth/logout")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + refreshed.path("token").asText())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body(Map.of("refreshToken", refreshed.path("refreshToken").asText()))), 204);
+    }
+
+    @Test
+    void rideLifecycle() throws Exception {
+        String passenger = register("PASSENGER");
+        String driver = register("DRIVER");
+
+        MvcResult created = perform(authorized(post("/api/rides"), passenger)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body(rideRequest(10))), 200);
+        long rideId = json(created).path("id").asLong();
+
+        String eTag = perform(authorized(get("/api/rides/" + rideId), passenger), 200)
+                .getResponse().getHeader(HttpHeaders.ETAG);
+        perform(authorized(get("/api/rides/" + rideId), passenger)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag), 304);
+        perform(authorized(get("/api/rides/" + rideId), passenger)
+                .param("waitForChange", "100ms")
+                .header(HttpHeaders.IF_NONE_MATCH, eTag), 304);
+
+        String activeETag = perform(authorized(get("/api/rides/active"), passenger), 200)
+                .getResponse().getHeader(HttpHeaders.ETAG);
+        perform(authorized(get("/api/rides/active"), passenger)
+                .header(HttpHeaders.IF_NONE_MATCH, activeETag), 304);
+        perform(authorized(get("/api/rides/active"), passenger)
+                .param("waitForChange", "100ms")
+                .header(HttpHeaders.IF_NONE_MATCH, activeETag), 304);
+
+        perform(authorized(get("/api/rides/nearby"), driver)
+                .param("latitude", "40.7128")
+                .param("longitude", "-74.0060"), 200);
+        perform(authorized(get("/api/rides/available"), driver), 200);
+        perform(authorized(get("/api/rides/shared"), driver), 200);
+        perform(authorized(get("/api/rides/feed"), driver)
+                .param("latitude", "40.7128")
+                .param("longitude", "-74.0060"), 200);
+
+        perform(authorized(post("/api/rides/" + rideId + "/accept"), driver), 200);
+        perform(authorized(get("/api/rides/active"), driver), 200);
+        perform(authorized(post("/api/rides/" + rideId + "/start"), driver), 200);
+
+        perform(authorized(post("/api/rides/" + rideId + "/trace"), driver)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body(trace())), 200);
+        perform(authorized(get("/api/rides/" + rideId + "/trace"), passenger), 200);
+        perform(authorized(post("/api/rides/" + rideId + "/complete"), driver), 200);
+        perform(authorized(get("/api/rides/" + rideId + "/trace"), passenger), 200);
+
+        perform(authorized(post("/api/rides/" + rideId + "/rate-driver"), passenger)
+                .param("rating", "5"), 200);
+        perform(authorized(post("/api/rides/" + rideId + "/rate-passenger"), driver)
+                .param("rating", "5"), 200);
+
+        long paymentRequestId = json(perform(authorized(post("/api/rides/" + rideId + "/process-payment"), passenger), 202))
+                .path("paymentRequestId").asLong();
+        perform(authorized(post("/api/payments/create-payment-intent"), passenger)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body(Map.of("rideId", rideId))), 202);
+        perform(authorized(get("/api/payments/intents/" + paymentRequestId), passenger), 200);
+        perform(authorized(get("/api/payments/intents/" + paymentRequestId + "/events"), passenger), 200);
+
+        perform(authorized(get("/api/rides"), passenger), 200);
+        perform(authorized(get("/api/rides"), driver), 200);
+    }
+
+    @Test
+    void cancellations() throws Exception {
+        String passenger = register("PASSENGER");
+        String driver = register("DRIVER");
+
+        perform(authorized(post("/api/rides/schedule"), passenger)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body(rideRequest(120))), 200);
+
+        long cancelled = requestRide(passenger);
+        perform(authorized(post("/api/rides/" + cancelled + "/cancel"), passenger), 200);
+
+        long dropped = requestRide(passenger);
+        perform(authorized(post("/api/rides/" + dropped + "/accept"), driver), 200);
+        perform(authorized(post("/api/rides/" + dropped + "/cancel-by-driver"), driver)
+                .param("reason", "Vehicle trouble"), 200);
+    }
+
+    @Test
+    void joinSharedRide() throws Exception {
+        String first = register("PASSENGER");
+        String second = register("PASSENGER");
+
+        // Rides cannot be requested as shared yet, so mark one directly
+        long rideId = requestRide(first);
+        Ride ride = rideRepository.findById(rideId).orElseThrow();
+        ride.setIsShared(true);
+        rideRepository.save(ride);
+
+        perform(authorized(post("/api/rides/" + rideId + "/join"), second), 200);
+    }
+
+    @Test
+    void paymentEndpoints() throws Exception {
+        String passenger = register("PASSENGER");
+
+        perform(authorized(get("/api/payments/publishable-key"), passenger), 200);
+        perform(authorized(post("/api/payments/update-payment-method"), passenger)
+                .param("paymentMethodId", "pm_card_visa"), 200);
+        perform(authorized(get("/api/payments/payment-methods"), passenger), 200);
+
+        String payload = "{\"id\":\"evt_budget\",\"type\":\"payment_intent.succeeded\",\"data\":{\"object\":{\"id\":\"pi_budget\"}}}";
+        perform(post("/api/payments/webhook")
+                .header("Stripe-Signature", stripeSignature(payload))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(payload), 200);
+    }
+
+    @Test
+    void everyEndpointDeclaresABudget() {
+        List<String> missing = new ArrayList<>();
+        handlerMapping.getHandlerMethods().forEach((mapping, handler) -> {
+            if (BUDGETED_CONTROLLERS.contains(handler.getBeanType())
+                    && handler.getMethodAnnotation(QueryBudget.class) == null) {
+                missing.add(handler.getShortLogMessage());
+            }
+        });
+        assertTrue(missing.isEmpty(), "Endpoints without a @QueryBudget: " + missing);
+    }
+
+    @Test
+    @Order(Integer.MAX_VALUE)
+    void everyBudgetIsExercised() {
+        List<String> untested = new ArrayList<>();
+        for (Class<?> controller : BUDGETED_CONTROLLERS) {
+            for (Method method : controller.getDeclaredMethods()) {
+                if (method.isAnnotationPresent(QueryBudget.class) && !measured.contains(method)) {
+                    untested.add(controller.getSimpleName() + "." + method.getName());
+                }
+            }
+        }
+        assertTrue(untested.isEmpty(), "Budgets no test measures: " + untested);
+    }
+
+    /**
+     * Run a request, and any async dispatch it starts, then check it against its handler's budget.
+     * Event streams are measured up to the point the stream is opened.
+     */
+    private MvcResult perform(MockHttpServletRequestBuilder request, int expectedStatus) throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        StatementLog.drain();
+
+        MvcResult result = mockMvc.perform(request).andReturn();
+        HandlerMethod handler = (HandlerMethod) result.getHandler();
+        String endpoint = result.getRequest().getMethod() + " " + result.getRequest().getRequestURI();
+        if (result.getRequest().isAsyncStarted() && !SseEmitter.class.isAssignableFrom(handler.getReturnType().getParameterType())) {
+            result.getAsyncResult(ASYNC_TIMEOUT_MILLIS);
+            result = mockMvc.perform(asyncDispatch(result)).andReturn();
+        }
+        if (result.getResponse().getStatus() != expectedStatus) {
+            throw new AssertionError(endpoint + " answered " + result.getResponse().getStatus() + " "
+                    + result.getResponse().getContentAsString(), result.getResolvedException());
+        }
+
+        QueryBudget budget = handler.getMethodAnnotation(QueryBudget.class);
+        if (budget == null) {
+            fail(endpoint + " has no @QueryBudget");
+        }
+        long statements = statistics.getPrepareStatementCount();
+        long entities = statistics.getEntityLoadCount();
+        if (statements > budget.statements() || entities > budget.entities()) {
+            fail(String.format("%s over query budget: %d statements (budget %d), %d entities loaded (budget %d) %s%n%s",
+                    endpoint, statements, budget.statements(), entities, budget.entities(),
+                    loadsByEntity(statistics), String.join("\n", StatementLog.drain())));
+        }
+        measured.add(handler.getMethod());
+        return result;
+    }
+
+    private String register(String role) throws Exception {
+        int n = userCount.incrementAndGet();
+        MvcResult result = perform(post("/api/auth/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body(Map.of("name", "User " + n, "email", "user" + n + "@example.com",
+                        "password", "secret1", "phoneNumber", "555-01" + n, "role", role))), 200);
+        return json(result).path("token").asText();
+    }
+
+    private long requestRide(String passenger) throws Exception {
+        MvcResult result = perform(authorized(post("/api/rides"), passenger)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body(rideRequest(10))), 200);
+        return json(result).path("id").asLong();
+    }
+
+    private static MockHttpServletRequestBuilder authorized(MockHttpServletRequestBuilder request, String token) {
+        return request.header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+    }
+
+    private static Map<String, Object> rideRequest(int minutesAhead) {
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("pickupLocation", "City Hall");
+        request.put("dropoffLocation", "Union Square");
+        request.put("rideTime", LocalDateTime.now().plusMinutes(minutesAhead).withNano(0).toString());
+        request.put("seats", 1);
+        request.put("isShared", false);
+        request.put("pickupCoordinates", Map.of("lat", 40.7128, "lng", -74.0060));
+        request.put("dropoffCoordinates", Map.of("lat", 40.7359, "lng", -73.9911));
+        return request;
+    }
+
+    private static List<Map<String, Object>> trace() {
+        long start = System.currentTimeMillis() - 60_000;
+        List<Map<String, Object>> points = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            points.add(Map.of("latitude", 40.7128 + i * 0.001, "longitude", -74.0060 + i * 0.001,
+                    "timestamp", start + i * 10_000));
+        }
+        return points;
+    }
+
+    private static String stripeSignature(String payload) throws Exception {
+        long timestamp = System.currentTimeMillis() / 1000;
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec("whsec_test".getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        byte[] signature = mac.doFinal((timestamp + "." + payload).getBytes(StandardCharsets.UTF_8));
+        return "t=" + timestamp + ",v1=" + HexFormat.of().formatHex(signature);
+    }
+
+    private static Map<String, Long> loadsByEntity(Statistics statistics) {
+        Map<String, Long> loads = new TreeMap<>();
+        for (String entityName : statistics.getEntityNames()) {
+            long count = statistics.getEntityStatistics(entityName).getLoadCount();
+            if (count > 0) {
+                loads.put(entityName.substring(entityName.lastIndexOf('.') + 1), count);
+            }
+        }
+        return loads;
+    }
+
+    private String body(Object value) throws Exception {
+        return objectMapper.writeValueAsString(value);
+    }
+
+    private JsonNode json(MvcResult result) throws Exception {
+        return objectMapper.readTree(result.getResponse().getContentAsString());
+    }
+}
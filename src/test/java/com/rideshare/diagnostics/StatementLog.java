@@ -0,0 +1,31 @@
+package com.rideshare.diagnostics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps every SQL statement Hibernate sends, with the thread that sent it, so
+ * a test that goes over a query budget can show what ran
+ */
+public class StatementLog implements StatementInspector {
+
+    private static final List<String> statements = new ArrayList<>();
+
+    @Override
+    public String inspect(String sql) {
+        synchronized (statements) {
+            statements.add("[" + Thread.currentThread().getName() + "] " + sql);
+        }
+        return sql;
+    }
+
+    static List<String> drain() {
+        synchronized (statements) {
+            List<String> drained = new ArrayList<>(statements);
+            statements.clear();
+            return drained;
+        }
+    }
+}
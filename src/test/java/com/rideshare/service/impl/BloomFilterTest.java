@@ -0,0 +1,82 @@
+package com.rideshare.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomFilterTest {
+
+    @Test
+    void neverMissesAnAddedKey() {
+        BloomFilter filter = new BloomFilter(10_000);
+        List<String> added = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            String key = UUID.randomUUID().toString();
+            filter.add(key);
+            added.add(key);
+        }
+
+        for (String key : added) {
+            assertTrue(filter.mightContain(key), key);
+        }
+    }
+
+    @Test
+    void falsePositiveRateStaysNearOnePercentAtCapacity() {
+        BloomFilter filter = new BloomFilter(10_000);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add(UUID.randomUUID().toString());
+        }
+
+        int falsePositives = 0;
+        int probes = 100_000;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain(UUID.randomUUID().toString())) {
+                falsePositives++;
+            }
+        }
+        // Ten bits and seven hashes per entry give about 0.8%; allow for noise
+        assertTrue(falsePositives < probes * 0.015, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void emptyFilterContainsNothing() {
+        BloomFilter filter = new BloomFilter(0);
+        assertFalse(filter.mightContain(UUID.randomUUID().toString()));
+        assertFalse(filter.mightContain(""));
+    }
+
+    @Test
+    void concurrentAddsAreAllVisible() throws Exception {
+        BloomFilter filter = new BloomFilter(40_000);
+        String[][] keys = new String[4][10_000];
+        Thread[] threads = new Thread[keys.length];
+        for (int t = 0; t < keys.length; t++) {
+            String[] own = keys[t];
+            for (int i = 0; i < own.length; i++) {
+                own[i] = UUID.randomUUID().toString();
+            }
+            threads[t] = new Thread(() -> {
+                for (String key : own) {
+                    filter.add(key);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Bits set by CAS, so no thread's bit is lost to another's write of the same word
+        for (String[] own : keys) {
+            for (String key : own) {
+                assertTrue(filter.mightContain(key), key);
+            }
+        }
+    }
+}
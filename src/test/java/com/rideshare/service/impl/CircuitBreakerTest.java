@@ -0,0 +1,121 @@
+package com.rideshare.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private static final long FAST = 1_000_000L;
+    private static final long SLOW = 200_000_000L;
+
+    @Test
+    void opensOnceTheFailureRateCrossesTheThreshold() {
+        CircuitBreaker breaker = new CircuitBreaker(10, 4, 0.5, 1.0, 100, 60_000, 2);
+
+        // Below the minimum number of calls nothing trips, however bad
+        for (int i = 0; i < 3; i++) {
+            call(breaker, true, FAST);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        call(breaker, true, FAST);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        // Open: calls fail fast until the open period is over
+        assertFalse(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void staysClosedWhileFailuresStayBelowTheThreshold() {
+        CircuitBreaker breaker = new CircuitBreaker(10, 4, 0.5, 1.0, 100, 60_000, 2);
+        for (int i = 0; i < 20; i++) {
+            call(breaker, i % 4 == 0, FAST);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void oldOutcomesLeaveTheWindow() {
+        CircuitBreaker breaker = new CircuitBreaker(4, 4, 0.75, 1.0, 100, 60_000, 2);
+        call(breaker, true, FAST);
+        call(breaker, true, FAST);
+        call(breaker, false, FAST);
+        call(breaker, false, FAST);
+        // The two failures are pushed out before a third arrives
+        call(breaker, false, FAST);
+        call(breaker, false, FAST);
+        call(breaker, true, FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void slowCallsTripTheBreakerEvenWhenTheySucceed() {
+        CircuitBreaker breaker = new CircuitBreaker(10, 4, 0.5, 0.75, 100, 60_000, 2);
+        call(breaker, false, FAST);
+        call(breaker, false, SLOW);
+        call(breaker, false, SLOW);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        call(breaker, false, SLOW);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void halfOpenTrialsCloseTheBreakerWhenTheySucceed() {
+        // No open period, so the next permission request moves straight to half open
+        CircuitBreaker breaker = new CircuitBreaker(10, 2, 0.5, 1.0, 100, 0, 2);
+        call(breaker, true, FAST);
+        call(breaker, true, FAST);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        assertTrue(breaker.tryAcquirePermission());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquirePermission());
+        // Only the configured number of trial calls go through
+        assertFalse(breaker.tryAcquirePermission());
+
+        breaker.onResult(false, FAST);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.onResult(false, FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        // Closing starts a fresh window, so one failure does not reopen it
+        call(breaker, true, FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void aFailedOrSlowTrialReopensTheBreaker() {
+        CircuitBreaker breaker = new CircuitBreaker(10, 2, 0.5, 1.0, 100, 0, 2);
+        call(breaker, true, FAST);
+        call(breaker, true, FAST);
+
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onResult(true, FAST);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onResult(false, SLOW);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void aReleasedTrialPermissionCanBeReissued() {
+        CircuitBreaker breaker = new CircuitBreaker(10, 2, 0.5, 1.0, 100, 0, 1);
+        call(breaker, true, FAST);
+        call(breaker, true, FAST);
+
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse(breaker.tryAcquirePermission());
+        // As when the bulkhead turns the trial call away
+        breaker.releasePermission();
+        assertTrue(breaker.tryAcquirePermission());
+    }
+
+    private static void call(CircuitBreaker breaker, boolean failed, long durationNanos) {
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onResult(failed, durationNanos);
+    }
+}
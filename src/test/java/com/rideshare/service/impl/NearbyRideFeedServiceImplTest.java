@@ -0,0 +1,189 @@
+package com.rideshare.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.rideshare.config.WorkerThreads;
+import com.rideshare.model.Ride;
+import com.rideshare.model.RideStatus;
+import com.rideshare.model.User;
+import com.rideshare.model.UserRole;
+import com.rideshare.repository.RideRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class NearbyRideFeedServiceImplTest {
+
+    private static final double LAT = 40.7128;
+    private static final double LNG = -74.0060;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch unstall = new CountDownLatch(1);
+    private NearbyRideFeedServiceImpl feeds;
+
+    @AfterEach
+    void tearDown() {
+        unstall.countDown();
+        feeds.shutdown();
+    }
+
+    @Test
+    void aStalledClientHoldsUpNeitherTheFanOutNorOtherFeeds() throws Exception {
+        feeds = service(4);
+        Client stalled = connect(1L, true);
+        Client healthy = connect(2L, false);
+
+        // Each ride reaches the healthy feed while the stalled one sits on its first send
+        for (int rideId = 1; rideId <= 20; rideId++) {
+            feeds.publish(ride(rideId));
+            assertTrue(healthy.received(rideId), "healthy feed got " + healthy.events.get() + " of " + rideId + " events");
+        }
+
+        // The stalled feed took one event, then fell more than four rides behind and was dropped
+        assertEquals(1.0, closed("too_slow"));
+        assertEquals(1.0, meterRegistry.get("rides.feed.subscribers").gauge().value());
+        assertEquals(1, stalled.events.get());
+
+        // Its sender completes the stream once the stuck write returns
+        unstall.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!stalled.completed.get() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(stalled.completed.get());
+        assertEquals(1, stalled.events.get());
+        assertFalse(healthy.completed.get());
+    }
+
+    @Test
+    void updatesToTheSameRideReplaceEachOtherInsteadOfQueueing() throws Exception {
+        feeds = service(4);
+        Client stalled = connect(1L, true);
+
+        feeds.publish(ride(1));
+        assertTrue(stalled.entered.await(5, TimeUnit.SECONDS));
+        // While the first send is stuck, one ride changes many times: that is one pending event, not many
+        for (int i = 0; i < 50; i++) {
+            feeds.publish(ride(2));
+        }
+        awaitCoalesced(49);
+
+        assertFalse(stalled.completed.get());
+        assertEquals(0.0, closed("too_slow"));
+    }
+
+    private void awaitCoalesced(double expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.get("rides.feed.coalesced").counter().count() < expected
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, meterRegistry.get("rides.feed.coalesced").counter().count());
+    }
+
+    private double closed(String reason) {
+        return meterRegistry.get("rides.feed.closed").tag("reason", reason).counter().count();
+    }
+
+    private NearbyRideFeedServiceImpl service(int maxPending) {
+        RideRepository rideRepository = mock(RideRepository.class);
+        when(rideRepository.findByStatusAndPickupLatBetweenAndPickupLngBetween(any(), any(), any(), any(), any()))
+                .thenReturn(List.of());
+        return new NearbyRideFeedServiceImpl(rideRepository, new ObjectMapper().registerModule(new JavaTimeModule()),
+                meterRegistry, new WorkerThreads(new StandardEnvironment()),
+                0.05, 25, 600_000, 100, 1, 100, 2, maxPending);
+    }
+
+    private Client connect(Long driverId, boolean stalls) throws Exception {
+        User driver = new User();
+        driver.setId(driverId);
+        driver.setRole(UserRole.DRIVER);
+        SseEmitter emitter = feeds.subscribe(driver, LAT, LNG, 5);
+        Client client = new Client(stalls);
+        client.attach(emitter);
+        return client;
+    }
+
+    private static Ride ride(long id) {
+        Ride ride = new Ride();
+        ride.setId(id);
+        ride.setStatus(RideStatus.REQUESTED);
+        ride.setPickupLocation("Pickup");
+        ride.setDropoffLocation("Dropoff");
+        ride.setPickupLat(BigDecimal.valueOf(LAT));
+        ride.setPickupLng(BigDecimal.valueOf(LNG));
+        return ride;
+    }
+
+    /**
+     * Stands in for the servlet container's side of an emitter. Spring's handler
+     * interface is package-private, so the client is a proxy attached by reflection.
+     */
+    private final class Client {
+        private final boolean stalls;
+        private final AtomicInteger events = new AtomicInteger();
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private final CountDownLatch entered = new CountDownLatch(1);
+
+        private Client(boolean stalls) {
+            this.stalls = stalls;
+        }
+
+        private void attach(ResponseBodyEmitter emitter) throws Exception {
+            Class<?> handlerType = Class.forName(ResponseBodyEmitter.class.getName() + "$Handler");
+            Object handler = Proxy.newProxyInstance(handlerType.getClassLoader(), new Class<?>[]{handlerType},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "send" -> onSend(args);
+                            case "complete", "completeWithError" -> completed.set(true);
+                            default -> {
+                            }
+                        }
+                        return null;
+                    });
+            Method initialize = ResponseBodyEmitter.class.getDeclaredMethod("initialize", handlerType);
+            initialize.setAccessible(true);
+            initialize.invoke(emitter, handler);
+        }
+
+        private void onSend(Object[] args) throws InterruptedException {
+            // Heartbeats are comments without an event name
+            if (args.length == 1 && args[0] instanceof Set<?> items && items.stream()
+                    .anyMatch(item -> String.valueOf(((ResponseBodyEmitter.DataWithMediaType) item).getData()).contains("event:"))) {
+                events.incrementAndGet();
+                if (stalls) {
+                    entered.countDown();
+                    unstall.await(10, TimeUnit.SECONDS);
+                }
+            }
+        }
+
+        private boolean received(int expected) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (events.get() < expected && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            return events.get() == expected;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.rideshare.service.impl;
+
+import com.rideshare.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PasswordHashingServiceImplTest {
+
+    private final BlockingEncoder encoder = new BlockingEncoder();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PasswordHashingServiceImpl service;
+
+    @AfterEach
+    void tearDown() {
+        encoder.release.countDown();
+        service.shutdown();
+    }
+
+    @Test
+    void rejectsAnAccountBeyondItsInFlightLimit() throws Exception {
+        service = new PasswordHashingServiceImpl(encoder, meterRegistry, 4, 16, 2);
+
+        CompletableFuture<Boolean> first = service.matches("Rider@example.com", "pw", "hash");
+        CompletableFuture<Boolean> second = service.matches("rider@example.com", "pw", "hash");
+        assertThrows(TooManyRequestsException.class, () -> service.matches("RIDER@example.com", "pw", "hash"));
+
+        // Other accounts are not held back by the busy one
+        CompletableFuture<Boolean> other = service.matches("other@example.com", "pw", "hash");
+        assertEquals(1.0, rejected("account"));
+
+        encoder.release.countDown();
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+        assertTrue(other.get(5, TimeUnit.SECONDS));
+
+        // Once the hashes finish the account is admitted again
+        assertTrue(service.matches("rider@example.com", "pw", "hash").get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void rejectsABurstBeyondThePoolAndQueueInsteadOfQueueing() throws Exception {
+        service = new PasswordHashingServiceImpl(encoder, meterRegistry, 1, 2, 2);
+
+        CompletableFuture<Boolean> running = service.matches("a@example.com", "pw", "hash");
+        assertTrue(encoder.started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> queued1 = service.matches("b@example.com", "pw", "hash");
+        CompletableFuture<Boolean> queued2 = service.matches("c@example.com", "pw", "hash");
+
+        long started = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            String account = "burst" + i + "@example.com";
+            assertThrows(TooManyRequestsException.class, () -> service.matches(account, "pw", "hash"));
+        }
+        // Rejections are immediate, not a wait for a thread
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) < 1000);
+        assertEquals(20.0, rejected("saturated"));
+        assertFalse(running.isDone());
+
+        encoder.release.countDown();
+        assertTrue(running.get(5, TimeUnit.SECONDS));
+        assertTrue(queued1.get(5, TimeUnit.SECONDS));
+        assertTrue(queued2.get(5, TimeUnit.SECONDS));
+
+        // A rejected account holds no in-flight slot afterwards
+        assertTrue(service.matches("burst0@example.com", "pw", "hash").get(5, TimeUnit.SECONDS));
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.get("auth.password.hash.rejected").tag("reason", reason).counter().count();
+    }
+
+    /**
+     * Holds every hash until released, standing in for a slow BCrypt
+     */
+    static final class BlockingEncoder implements PasswordEncoder {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            await();
+            return "hash";
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            await();
+            return true;
+        }
+
+        private void await() {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
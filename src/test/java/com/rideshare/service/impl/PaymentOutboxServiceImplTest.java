@@ -0,0 +1,114 @@
+package com.rideshare.service.impl;
+
+import com.rideshare.exception.RideException;
+import com.rideshare.model.PaymentOutbox;
+import com.rideshare.model.Ride;
+import com.rideshare.model.RideStatus;
+import com.rideshare.model.User;
+import com.rideshare.model.UserRole;
+import com.rideshare.repository.RideRepository;
+import com.rideshare.repository.UserRepository;
+import com.rideshare.service.PaymentOutboxService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Payment requests on a shared ride, against the same H2 context as the query budget tests
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class PaymentOutboxServiceImplTest {
+
+    @Autowired
+    private PaymentOutboxService paymentOutboxService;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void eachPassengerOfASharedRideGetsTheirOwnRequest() {
+        User first = user(UserRole.PASSENGER);
+        User second = user(UserRole.PASSENGER);
+        Ride ride = sharedRide(first, second);
+
+        PaymentOutbox firstRequest = paymentOutboxService.requestPaymentIntent(ride.getId(), first.getId());
+        PaymentOutbox secondRequest = paymentOutboxService.requestPaymentIntent(ride.getId(), second.getId());
+
+        assertNotEquals(firstRequest.getId(), secondRequest.getId());
+        assertNotEquals(firstRequest.getIdempotencyKey(), secondRequest.getIdempotencyKey());
+        assertEquals(second.getId(), secondRequest.getUserId());
+
+        // Retries return each passenger's own request
+        assertEquals(firstRequest.getId(), paymentOutboxService.requestPaymentIntent(ride.getId(), first.getId()).getId());
+        assertEquals(secondRequest.getId(), paymentOutboxService.requestPaymentIntent(ride.getId(), second.getId()).getId());
+
+        // And each can poll theirs, but not the other's
+        assertEquals(secondRequest.getId(), paymentOutboxService.getPaymentRequest(secondRequest.getId(), second.getId()).getId());
+        assertThrows(RideException.class, () -> paymentOutboxService.getPaymentRequest(firstRequest.getId(), second.getId()));
+    }
+
+    @Test
+    void theFirstPassengerPayingDoesNotBlockTheSecond() {
+        User first = user(UserRole.PASSENGER);
+        User second = user(UserRole.PASSENGER);
+        Ride ride = sharedRide(first, second);
+        ride.setIsPaid(true);
+        rideRepository.save(ride);
+
+        assertThrows(RideException.class, () -> paymentOutboxService.requestPaymentIntent(ride.getId(), first.getId()));
+        assertEquals(second.getId(), paymentOutboxService.requestPaymentIntent(ride.getId(), second.getId()).getUserId());
+    }
+
+    @Test
+    void aRideCannotBePaidBeforeItsFinalPrice() {
+        User first = user(UserRole.PASSENGER);
+        Ride ride = sharedRide(first, user(UserRole.PASSENGER));
+        ride.setStatus(RideStatus.IN_PROGRESS);
+        Ride inProgress = rideRepository.save(ride);
+
+        assertThrows(RideException.class, () -> paymentOutboxService.requestPaymentIntent(ride.getId(), first.getId()));
+
+        // Completing reprices the ride, and only then is an intent created, for the new price
+        inProgress.setStatus(RideStatus.COMPLETED);
+        inProgress.setPrice(new BigDecimal("14.20"));
+        rideRepository.save(inProgress);
+        assertEquals(0, new BigDecimal("14.20").compareTo(
+                paymentOutboxService.requestPaymentIntent(ride.getId(), first.getId()).getAmount()));
+    }
+
+    private Ride sharedRide(User first, User second) {
+        Ride ride = new Ride();
+        ride.setPassenger(first);
+        ride.setSecondPassenger(second);
+        ride.setDriver(user(UserRole.DRIVER));
+        ride.setPickupLocation("Pickup");
+        ride.setDropoffLocation("Dropoff");
+        ride.setIsShared(true);
+        ride.setStatus(RideStatus.COMPLETED);
+        ride.setPrice(new BigDecimal("12.50"));
+        return rideRepository.save(ride);
+    }
+
+    private User user(UserRole role) {
+        User user = new User();
+        user.setName(role.name());
+        user.setEmail(UUID.randomUUID() + "@example.com");
+        user.setPassword("hash");
+        user.setRole(role);
+        return userRepository.save(user);
+    }
+}
@@ -0,0 +1,129 @@
+package com.rideshare.service.impl;
+
+import com.rideshare.dto.TracePoint;
+import com.rideshare.model.Ride;
+import com.rideshare.model.RideStatus;
+import com.rideshare.model.User;
+import com.rideshare.model.UserRole;
+import com.rideshare.repository.RideRepository;
+import com.rideshare.repository.UserRepository;
+import com.rideshare.service.RideService;
+import com.rideshare.service.TripTraceService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Billing a completed ride on its GPS trace, against the same H2 context as the query budget tests
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class RideServiceImplTest {
+
+    // Off-peak, so no surge multiplier
+    private static final LocalDateTime RIDE_TIME = LocalDateTime.of(2026, 3, 2, 11, 0);
+
+    @Autowired
+    private RideService rideService;
+
+    @Autowired
+    private TripTraceService tripTraceService;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void billsTheTracedDistanceWithinTheDetourCap() {
+        double cappedBefore = capped();
+        Ride ride = inProgressRide(2.0);
+        drive(ride, 25);
+
+        Ride completed = rideService.completeRide(ride.getId(), ride.getDriver().getId());
+
+        double traced = completed.getActualDistance().doubleValue();
+        assertEquals(2.5, traced, 0.05);
+        assertPrice(price(traced), completed);
+        assertEquals(cappedBefore, capped());
+    }
+
+    @Test
+    void billsALongDetourAtTheCap() {
+        double cappedBefore = capped();
+        Ride ride = inProgressRide(2.0);
+        drive(ride, 60);
+
+        Ride completed = rideService.completeRide(ride.getId(), ride.getDriver().getId());
+
+        // The whole trace is kept for review, but only 1.5 times the estimate is billed
+        assertEquals(6.0, completed.getActualDistance().doubleValue(), 0.1);
+        assertPrice(price(3.0), completed);
+        assertEquals(cappedBefore + 1, capped());
+    }
+
+    /**
+     * Post one fix every ten seconds, 100 m apart, due north
+     */
+    private void drive(Ride ride, int hundredsOfMeters) {
+        long start = System.currentTimeMillis() - hundredsOfMeters * 10_000L;
+        List<TracePoint> points = new ArrayList<>();
+        for (int i = 0; i <= hundredsOfMeters; i++) {
+            points.add(new TracePoint(25.2 + i * 100 / 111_195.0, 55.27, start + i * 10_000L));
+        }
+        tripTraceService.record(ride.getId(), ride.getDriver().getId(), points);
+    }
+
+    private Ride inProgressRide(double estimatedKm) {
+        Ride ride = new Ride();
+        ride.setPassenger(user(UserRole.PASSENGER));
+        ride.setDriver(user(UserRole.DRIVER));
+        ride.setPickupLocation("Pickup");
+        ride.setDropoffLocation("Dropoff");
+        ride.setRideTime(RIDE_TIME);
+        ride.setSeats(1);
+        ride.setDistance(estimatedKm);
+        ride.setStatus(RideStatus.IN_PROGRESS);
+        ride.setStartTime(LocalDateTime.now());
+        return rideRepository.save(ride);
+    }
+
+    private BigDecimal price(double distanceKm) {
+        RideServiceImpl target = AopTestUtils.getTargetObject(rideService);
+        return target.calculatePrice(distanceKm, 1, RIDE_TIME);
+    }
+
+    private static void assertPrice(BigDecimal expected, Ride ride) {
+        assertEquals(expected.doubleValue(), ride.getPrice(), 0.011);
+    }
+
+    private double capped() {
+        return meterRegistry.get("rides.fare.capped").counter().count();
+    }
+
+    private User user(UserRole role) {
+        User user = new User();
+        user.setName(role.name());
+        user.setEmail(UUID.randomUUID() + "@example.com");
+        user.setPassword("hash");
+        user.setRole(role);
+        return userRepository.save(user);
+    }
+}
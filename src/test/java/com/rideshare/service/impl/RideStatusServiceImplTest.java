@@ -0,0 +1,85 @@
+package com.rideshare.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rideshare.config.WorkerThreads;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RideStatusServiceImplTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private RideStatusServiceImpl service;
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void closesAConnectionThatDoesNotAuthenticateInTime() throws Exception {
+        service = service(200, 10);
+        WebSocketSession silent = session("silent");
+        WebSocketSession prompt = session("prompt");
+
+        service.connect(silent);
+        service.connect(prompt);
+        service.authenticated(prompt);
+
+        verify(silent, timeout(2000)).close(CloseStatus.POLICY_VIOLATION.withReason("Authentication required"));
+        Thread.sleep(400);
+        verify(prompt, never()).close(any());
+        assertEquals(1.0, closed("auth_timeout"));
+        assertEquals(0.0, meterRegistry.get("rides.status.unauthenticated").gauge().value());
+    }
+
+    @Test
+    void turnsAwayConnectionsBeyondTheUnauthenticatedCap() throws Exception {
+        service = service(60_000, 2);
+        WebSocketSession first = session("1");
+        service.connect(first);
+        service.connect(session("2"));
+
+        WebSocketSession third = session("3");
+        service.connect(third);
+        verify(third).close(CloseStatus.SERVICE_OVERLOAD);
+        assertEquals(1.0, closed("too_many_unauthenticated"));
+
+        // Authenticating, or leaving, frees a place
+        service.authenticated(first);
+        WebSocketSession fourth = session("4");
+        service.connect(fourth);
+        verify(fourth, never()).close(any());
+        assertEquals(2.0, meterRegistry.get("rides.status.unauthenticated").gauge().value());
+    }
+
+    private RideStatusServiceImpl service(long authTimeoutMillis, int maxUnauthenticated) {
+        return new RideStatusServiceImpl(new ObjectMapper(), meterRegistry,
+                new WorkerThreads(new StandardEnvironment()), 4, 5000, 2, authTimeoutMillis, maxUnauthenticated);
+    }
+
+    private double closed(String reason) {
+        return meterRegistry.get("rides.status.closed").tag("reason", reason).counter().count();
+    }
+
+    private static WebSocketSession session(String id) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.getAttributes()).thenReturn(new HashMap<>());
+        when(session.isOpen()).thenReturn(true);
+        return session;
+    }
+}
@@ -0,0 +1,134 @@
+package com.rideshare.service.impl;
+
+import com.rideshare.dto.PaymentIntentResult;
+import com.rideshare.exception.PaymentGatewayException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The gateway against a local stand-in for the Stripe API
+ */
+class StripeServiceImplTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile boolean failing;
+    private volatile boolean holding;
+    private HttpServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/v1/payment_intents", this::handle);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        release.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    void aFullBulkheadFailsFastWithoutCallingStripe() throws Exception {
+        StripeServiceImpl stripe = gateway(1, 50, 10);
+        holding = true;
+
+        CompletableFuture<PaymentIntentResult> first = CompletableFuture.supplyAsync(() -> createIntent(stripe, "key-1"));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        long started = System.nanoTime();
+        PaymentGatewayException busy = assertThrows(PaymentGatewayException.class, () -> createIntent(stripe, "key-2"));
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        assertTrue(busy.isRetryable());
+        assertTrue(busy.getMessage().contains("busy"), busy.getMessage());
+        // Only the bulkhead wait, not the held call's duration
+        assertTrue(waitedMillis < 1000, "waited " + waitedMillis + " ms");
+        assertEquals(1, requests.get());
+        assertEquals(1.0, rejected("bulkhead"));
+
+        release.countDown();
+        assertEquals("pi_test", first.get(5, TimeUnit.SECONDS).getPaymentIntentId());
+        // The slot is free again
+        assertEquals("pi_test", createIntent(stripe, "key-3").getPaymentIntentId());
+    }
+
+    @Test
+    void anOpenCircuitShortCircuitsCalls() {
+        StripeServiceImpl stripe = gateway(5, 50, 4);
+        failing = true;
+
+        for (int i = 0; i < 4; i++) {
+            String key = "key-" + i;
+            assertTrue(assertThrows(PaymentGatewayException.class, () -> createIntent(stripe, key)).isRetryable());
+        }
+        assertEquals(4, requests.get());
+
+        PaymentGatewayException open = assertThrows(PaymentGatewayException.class, () -> createIntent(stripe, "key-4"));
+        assertTrue(open.isRetryable());
+        assertTrue(open.getMessage().contains("unavailable"), open.getMessage());
+        assertEquals(4, requests.get());
+        assertEquals(1.0, rejected("circuit_open"));
+        assertEquals(1.0, meterRegistry.get("payment.gateway.circuit.state").gauge().value());
+    }
+
+    private PaymentIntentResult createIntent(StripeServiceImpl stripe, String idempotencyKey) {
+        return stripe.createPaymentIntent(new BigDecimal("12.50"), "usd", null, idempotencyKey);
+    }
+
+    private StripeServiceImpl gateway(int maxConcurrentCalls, long bulkheadWaitMillis, int minimumCalls) {
+        return new StripeServiceImpl(meterRegistry, "sk_test_local", "pk_test_local",
+                "http://127.0.0.1:" + server.getAddress().getPort(),
+                1000, 5000, maxConcurrentCalls, bulkheadWaitMillis,
+                10, minimumCalls, 0.5, 1.0, 3000, 60_000, 1);
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.get("payment.gateway.rejected").tag("reason", reason).counter().count();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        exchange.getRequestBody().readAllBytes();
+        if (holding) {
+            entered.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        int status = failing ? 500 : 200;
+        String body = failing
+                ? "{\"error\":{\"type\":\"api_error\",\"message\":\"Stripe is down\"}}"
+                : "{\"id\":\"pi_test\",\"object\":\"payment_intent\",\"client_secret\":\"pi_test_secret\",\"status\":\"requires_payment_method\"}";
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+}
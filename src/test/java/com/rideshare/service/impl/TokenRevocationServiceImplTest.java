@@ -0,0 +1,95 @@
+package com.rideshare.service.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenRevocationServiceImplTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    private final Clock clock = Clock.fixed(Instant.ofEpochMilli(NOW), ZoneOffset.UTC);
+    private final List<TokenRevocationServiceImpl> opened = new ArrayList<>();
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(TokenRevocationServiceImpl::close);
+    }
+
+    @Test
+    void onlyTheFirstRevocationOfATokenWins() {
+        TokenRevocationServiceImpl service = open();
+        String tokenId = UUID.randomUUID().toString();
+
+        assertTrue(service.revoke(tokenId, NOW + 60_000));
+        assertFalse(service.revoke(tokenId, NOW + 60_000));
+        assertTrue(service.isRevoked(tokenId));
+        assertFalse(service.isRevoked(UUID.randomUUID().toString()));
+        // An expired token has nothing left to revoke
+        assertFalse(service.revoke(UUID.randomUUID().toString(), NOW));
+    }
+
+    @Test
+    void revocationsSurviveACrashBeforeAnySnapshot() {
+        TokenRevocationServiceImpl service = open();
+        String tokenId = UUID.randomUUID().toString();
+        service.revoke(tokenId, NOW + 60_000);
+
+        // No purge and no shutdown: only the journal has it
+        TokenRevocationServiceImpl restarted = open();
+        assertTrue(restarted.isRevoked(tokenId));
+        // A spent refresh token cannot be redeemed again after the restart
+        assertFalse(restarted.revoke(tokenId, NOW + 60_000));
+    }
+
+    @Test
+    void purgeFoldsTheJournalIntoTheSnapshot() throws IOException {
+        TokenRevocationServiceImpl service = open();
+        String live = UUID.randomUUID().toString();
+        service.revoke(live, NOW + 60_000);
+        service.purgeExpired();
+
+        assertEquals(0, Files.size(dir.resolve("revoked.bin.journal")));
+        assertTrue(open().isRevoked(live));
+    }
+
+    @Test
+    void aTornJournalRecordIsDroppedAndAppendsStayAligned() throws IOException {
+        TokenRevocationServiceImpl service = open();
+        String first = UUID.randomUUID().toString();
+        service.revoke(first, NOW + 60_000);
+        Files.write(dir.resolve("revoked.bin.journal"), new byte[]{1, 2, 3}, StandardOpenOption.APPEND);
+
+        TokenRevocationServiceImpl restarted = open();
+        String second = UUID.randomUUID().toString();
+        restarted.revoke(second, NOW + 60_000);
+
+        TokenRevocationServiceImpl again = open();
+        assertTrue(again.isRevoked(first));
+        assertTrue(again.isRevoked(second));
+    }
+
+    private TokenRevocationServiceImpl open() {
+        TokenRevocationServiceImpl service = new TokenRevocationServiceImpl(dir.resolve("revoked.bin").toString(), 1000, clock);
+        opened.add(service);
+        return service;
+    }
+}
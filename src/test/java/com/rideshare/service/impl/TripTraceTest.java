@@ -0,0 +1,108 @@
+package com.rideshare.service.impl;
+
+import com.rideshare.dto.TracePoint;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TripTraceTest {
+
+    private static final long START = 1_760_000_000_000L;
+
+    @Test
+    void roundTripsAWanderingTraceThroughTheBlob() {
+        // Turns, stops and uneven fix intervals give deltas of both signs and changing size,
+        // and a western, southern start makes the absolute first point negative
+        Random random = new Random(7);
+        TripTrace trace = new TripTrace(0, Double.MAX_VALUE, 1 << 20);
+        List<TracePoint> expected = new ArrayList<>();
+        double lat = -33.86882;
+        double lng = -151.20929;
+        long time = START;
+        for (int i = 0; i < 2000; i++) {
+            lat += (random.nextDouble() - 0.5) * 0.002;
+            lng += (random.nextDouble() - 0.5) * 0.002;
+            time += 200 + random.nextInt(30_000);
+            assertTrue(trace.append(lat, lng, time));
+            expected.add(new TracePoint(Math.round(lat * 1e5) / 1e5, Math.round(lng * 1e5) / 1e5, time));
+        }
+
+        assertPoints(expected, TripTrace.fromBlob(trace.toBlob(), trace.getPointCount()));
+        assertPoints(expected, trace.toPoints());
+        assertEquals(expected.get(expected.size() - 1).getTimestamp() - expected.get(0).getTimestamp(), trace.getDurationMillis());
+    }
+
+    @Test
+    void aSteadyDriveTakesAFewBytesAPoint() {
+        TripTrace trace = new TripTrace(3, 70, 1 << 20);
+        for (int i = 0; i < 3600; i++) {
+            trace.append(25.2048 + i * 0.0001, 55.2708 + i * 0.00005, START + i * 1000L);
+        }
+
+        assertEquals(3600, trace.getPointCount());
+        // Constant deltas encode as zeros, which deflate to almost nothing
+        assertTrue(trace.toBlob().length < 3600, "blob was " + trace.toBlob().length + " bytes");
+        assertEquals(3600, TripTrace.fromBlob(trace.toBlob(), 3600).size());
+    }
+
+    @Test
+    void skipsDuplicatesNoiseAndImpossibleJumps() {
+        TripTrace trace = new TripTrace(3, 70, 1 << 20);
+        assertTrue(trace.append(25.2000, 55.3000, START));
+        // Same time, earlier time, and a metre of GPS jitter
+        assertFalse(trace.append(25.2010, 55.3000, START));
+        assertFalse(trace.append(25.2010, 55.3000, START - 1000));
+        assertFalse(trace.append(25.20001, 55.3000, START + 1000));
+        // About 11 km in ten seconds
+        assertFalse(trace.append(25.3000, 55.3000, START + 10_000));
+        // About 111 m in ten seconds
+        assertTrue(trace.append(25.2010, 55.3000, START + 10_000));
+
+        assertEquals(2, trace.getPointCount());
+        assertEquals(111.2, trace.getDistanceMeters(), 0.5);
+    }
+
+    @Test
+    void stopsRecordingAtTheByteCap() {
+        TripTrace trace = new TripTrace(0, Double.MAX_VALUE, 300);
+        int recorded = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (trace.append(25 + i * 0.001 * (i % 7), 55, START + i * 1000L)) {
+                recorded++;
+            }
+        }
+
+        assertTrue(recorded > 0 && recorded < 1000);
+        assertEquals(recorded, trace.getPointCount());
+        assertEquals(recorded, TripTrace.fromBlob(trace.toBlob(), recorded).size());
+    }
+
+    @Test
+    void rejectsATruncatedBlob() {
+        TripTrace trace = new TripTrace(0, Double.MAX_VALUE, 1 << 20);
+        for (int i = 0; i < 100; i++) {
+            trace.append(25 + i * 0.001, 55 - i * 0.002, START + i * 1000L);
+        }
+        byte[] blob = trace.toBlob();
+        byte[] truncated = Arrays.copyOf(blob, blob.length / 2);
+
+        assertThrows(IllegalArgumentException.class, () -> TripTrace.fromBlob(truncated, 100));
+    }
+
+    private static void assertPoints(List<TracePoint> expected, List<TracePoint> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getLatitude(), actual.get(i).getLatitude(), 1e-9, "latitude of point " + i);
+            assertEquals(expected.get(i).getLongitude(), actual.get(i).getLongitude(), 1e-9, "longitude of point " + i);
+            assertEquals(expected.get(i).getTimestamp(), actual.get(i).getTimestamp(), "time of point " + i);
+        }
+    }
+}